@@ -1,6 +1,7 @@
 package base.workbench;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,6 +11,13 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import modules.Module;
+import modules.ModuleNetworkRun;
+import modules.ModuleScheduler;
+import modules.PoolModuleScheduler;
+import modules.ThreadModuleScheduler;
+import modules.VirtualThreadModuleScheduler;
+
 /**
  * Provides a CLI to run module trees.
  * @author Marcel Boeing
@@ -23,6 +31,8 @@ public class ModuleBatchRunner {
 		Options options = new Options();
 		options.addOption("c", "config", true, "Module tree configuration file");
 		options.addOption("u", "update", true, "Update module tree configuration file and write it to the specified location");
+		options.addOption("s", "scheduler", true, "Module scheduler to use: 'threads' (one thread per module, default), 'pool' (bounded thread pool) or 'virtual' (virtual threads, needs Java 21+)");
+		options.addOption("p", "poolsize", true, "Maximum number of modules computing at the same time when using the 'pool' scheduler (default: number of processors)");
 		options.addOption("h", "help", false, "Show help and exit");
 		
 		// Instantiate parser for CLI options
@@ -91,16 +101,53 @@ public class ModuleBatchRunner {
 			System.exit(1);
 		}
 		
+		// Set up the scheduler
+		try {
+			controller.getModuleNetwork().setScheduler(createScheduler(commandLine.getOptionValue("s", "threads"), commandLine.getOptionValue("p")));
+		} catch (IllegalArgumentException e) {
+			Logger.getLogger("").log(Level.SEVERE, "Could not set up the module scheduler: "+e.getMessage());
+			System.exit(1);
+		}
+		
 		// Finally: Run the module tree
+		ModuleNetworkRun run = null;
 		try {
-			controller.getModuleNetwork().runModules(true);
+			run = controller.getModuleNetwork().runModules(true);
 		} catch (Exception e) {
 			Logger.getLogger("").log(Level.SEVERE, "Error running the module tree.", e);
 			System.exit(1);
 		}
 		
-		Logger.getLogger("").log(Level.INFO, "Finished successfully.");
+		// Report modules that did not finish successfully
+		Iterator<Module> failedModules = run.getFailedModules().iterator();
+		if (!failedModules.hasNext())
+			Logger.getLogger("").log(Level.INFO, "Finished successfully.");
+		while (failedModules.hasNext())
+			Logger.getLogger("").log(Level.WARNING, "Module "+failedModules.next().getName()+" did not finish successfully.");
 		
 	}
+	
+	/**
+	 * Creates the module scheduler specified on the command line.
+	 * @param schedulerName Name of the scheduler ('threads', 'pool' or 'virtual')
+	 * @param poolSize Pool size for the 'pool' scheduler (may be null)
+	 * @return Scheduler
+	 * @throws IllegalArgumentException Thrown if the options are invalid
+	 */
+	private static ModuleScheduler createScheduler(String schedulerName, String poolSize) throws IllegalArgumentException {
+		if (schedulerName.equalsIgnoreCase("threads"))
+			return new ThreadModuleScheduler();
+		else if (schedulerName.equalsIgnoreCase("pool")) {
+			if (poolSize == null)
+				return new PoolModuleScheduler();
+			try {
+				return new PoolModuleScheduler(Integer.parseInt(poolSize));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid pool size '"+poolSize+"'.");
+			}
+		} else if (schedulerName.equalsIgnoreCase("virtual"))
+			return new VirtualThreadModuleScheduler();
+		throw new IllegalArgumentException("Unknown scheduler '"+schedulerName+"'.");
+	}
 
 }
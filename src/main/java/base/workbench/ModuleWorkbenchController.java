@@ -36,6 +36,7 @@ import modules.basic_text_processing.RegExReplacementModule;
 import modules.basic_text_processing.ReverserModule;
 import modules.basic_text_processing.TextSorterModule;
 import modules.basic_text_processing.burrows_wheeler.BurrowsWheelerTransformationModule;
+import modules.basic_text_processing.burrows_wheeler.FmIndexModule;
 import modules.clustering.minkowskiDistance.MinkowskiDistanceMatrixModule;
 import modules.clustering.suffixTreeClusteringModuleWrapper.SuffixTreeClusteringModuleWrapper;
 import modules.clustering.suffixTreeClusteringModuleWrapper.SuffixTreeClusteringWrapperV2;
@@ -227,6 +228,7 @@ public class ModuleWorkbenchController{ // TODO anderer Listener
 		createAndRegisterModule(MorphologyCheckModule.class);
 		createAndRegisterModule(MatrixValuesExpressionApplyModule.class);
 		createAndRegisterModule(MatrixOperations.class);
+		createAndRegisterModule(FmIndexModule.class);
 	}
 	
 	/**
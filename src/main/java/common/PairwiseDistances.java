@@ -0,0 +1,175 @@
+package common;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the upper triangle of a pairwise distance matrix. The rows are
+ * split into blocks of rows; the tiles of one block row are computed in
+ * parallel on a fork/join pool and its rows are handed to a {@link RowHandler}
+ * in ascending order before the next block row is started. Thus only one block
+ * row is held in memory and the results can be written out while the rest is
+ * still being computed.
+ */
+public class PairwiseDistances {
+
+	/**
+	 * Distance between two elements, identified by their index. Must be safe
+	 * to call from several threads at once.
+	 */
+	public interface Metric {
+		double distance(int i, int j);
+	}
+
+	/**
+	 * Receives the computed rows in ascending order.
+	 */
+	public interface RowHandler {
+		/**
+		 * @param row
+		 *            Index of the row
+		 * @param distances
+		 *            Holds the distance from row to j at index j for every j
+		 *            with row &lt; j &lt; size (other entries are undefined).
+		 *            The array is reused for later rows and must not be kept.
+		 * @throws Exception
+		 *             Aborts the computation
+		 */
+		void handleRow(int row, double[] distances) throws Exception;
+	}
+
+	// rows/columns per tile (64 x 64 vectors of moderate dimension fit into the cache)
+	public static final int DEFAULT_BLOCK_SIZE = 64;
+
+	private final int size;
+	private final Metric metric;
+	private final int blockSize;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor using the common fork/join pool.
+	 * @param size Amount of elements
+	 * @param metric Distance between two elements
+	 */
+	public PairwiseDistances(int size, Metric metric) {
+		this(size, metric, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor.
+	 * @param size Amount of elements
+	 * @param metric Distance between two elements
+	 * @param blockSize Rows/columns per tile
+	 * @param pool Pool to compute the tiles on
+	 */
+	public PairwiseDistances(int size, Metric metric, int blockSize, ForkJoinPool pool) {
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		this.size = size;
+		this.metric = metric;
+		this.blockSize = blockSize;
+		this.pool = pool;
+	}
+
+	/**
+	 * Computes the distances of all pairs i &lt; j and passes them on row by
+	 * row.
+	 * @param handler Receives the rows in ascending order
+	 * @throws Exception Thrown by the handler
+	 */
+	public void compute(RowHandler handler) throws Exception {
+		double[][] rows = new double[Math.min(this.blockSize, this.size)][this.size];
+		for (int start = 0; start < this.size; start += this.blockSize) {
+			int end = Math.min(start + this.blockSize, this.size);
+
+			// Tiles right of and on the diagonal
+			this.pool.invoke(new TileTask(rows, start, end, start, this.size));
+
+			for (int i = start; i < end; i++) {
+				handler.handleRow(i, rows[i - start]);
+			}
+		}
+	}
+
+	/*
+	 * Computes the columns [from, to) of the rows [rowStart, rowEnd), splitting
+	 * the columns at tile borders until a single tile remains.
+	 */
+	private class TileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 4718563305581373212L;
+		private final double[][] rows;
+		private final int rowStart;
+		private final int rowEnd;
+		private final int from;
+		private final int to;
+
+		TileTask(double[][] rows, int rowStart, int rowEnd, int from, int to) {
+			this.rows = rows;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int tiles = (this.to - this.from + blockSize - 1) / blockSize;
+			if (tiles > 1) {
+				int middle = this.from + (tiles / 2) * blockSize;
+				invokeAll(new TileTask(this.rows, this.rowStart, this.rowEnd, this.from, middle),
+						new TileTask(this.rows, this.rowStart, this.rowEnd, middle, this.to));
+				return;
+			}
+			for (int i = this.rowStart; i < this.rowEnd; i++) {
+				double[] row = this.rows[i - this.rowStart];
+				for (int j = Math.max(this.from, i + 1); j < this.to; j++) {
+					row[j] = metric.distance(i, j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Minkowski distance between the rows of a packed matrix, computed like
+	 * {@link VectorCalculation#calculateMinkowskiDistance(java.util.List, java.util.List, double)}.
+	 * @param vectors Row after row, each with the given amount of dimensions
+	 * @param dimensions Length of each vector
+	 * @param power 1: Manhattan distance; 2: Euclidian; or any other positive value ...
+	 * @return Metric
+	 */
+	public static Metric minkowski(final double[] vectors, final int dimensions, final double power) {
+		return new Metric() {
+			@Override
+			public double distance(int i, int j) {
+				double result = 0d;
+				for (int a = i * dimensions, b = j * dimensions, end = a + dimensions; a < end; a++, b++) {
+					result += Math.pow(Math.abs(vectors[a] - vectors[b]), power);
+				}
+				return Math.sqrt(result);
+			}
+		};
+	}
+
+	/**
+	 * Hamming distance (no. of differing values) between the rows of a packed
+	 * matrix.
+	 * @param vectors Row after row, each with the given amount of dimensions
+	 * @param dimensions Length of each vector
+	 * @return Metric
+	 */
+	public static Metric hamming(final double[] vectors, final int dimensions) {
+		return new Metric() {
+			@Override
+			public double distance(int i, int j) {
+				int result = 0;
+				for (int a = i * dimensions, b = j * dimensions, end = a + dimensions; a < end; a++, b++) {
+					if (Double.compare(vectors[a], vectors[b]) != 0) {
+						result++;
+					}
+				}
+				return result;
+			}
+		};
+	}
+}
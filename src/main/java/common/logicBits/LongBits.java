@@ -0,0 +1,108 @@
+package common.logicBits;
+
+import java.util.BitSet;
+
+/**
+ * Logical operations on bit vectors packed into long words (bit i in word
+ * i/64, as used by {@link BitSet#toLongArray()}). Counting the bits of a
+ * combination works word by word and does not create a result vector.
+ * Vectors may differ in length; missing words count as zero.
+ */
+public class LongBits {
+
+	/**
+	 * Packs the given values, setting the bit of every value that is not 0.0
+	 * (in the sense of Double.equals, i.e. -0.0 sets a bit).
+	 * @param values values
+	 * @return bit vector
+	 */
+	public static long[] fromValues(double[] values) {
+		long[] words = new long[(values.length + 63) >>> 6];
+		for (int i = 0; i < values.length; i++) {
+			if (Double.doubleToLongBits(values[i]) != 0l) {
+				words[i >>> 6] |= 1l << i;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Packs the given matrix by columns (the bit vector of column c has the
+	 * bit of row r set if values[r][c] is not 0.0, see
+	 * {@link #fromValues(double[])}).
+	 * @param values values (rows of equal length)
+	 * @return bit vector per column
+	 */
+	public static long[][] fromColumns(double[][] values) {
+		int cols = values.length == 0 ? 0 : values[0].length;
+		long[][] words = new long[cols][(values.length + 63) >>> 6];
+		for (int r = 0; r < values.length; r++) {
+			for (int c = 0; c < cols; c++) {
+				if (Double.doubleToLongBits(values[r][c]) != 0l) {
+					words[c][r >>> 6] |= 1l << r;
+				}
+			}
+		}
+		return words;
+	}
+
+	public static int cardinality(long[] a) {
+		int result = 0;
+		for (int i = 0; i < a.length; i++) {
+			result += Long.bitCount(a[i]);
+		}
+		return result;
+	}
+
+	public static int andCardinality(long[] a, long[] b) {
+		int n = Math.min(a.length, b.length);
+		int result = 0;
+		for (int i = 0; i < n; i++) {
+			result += Long.bitCount(a[i] & b[i]);
+		}
+		return result;
+	}
+
+	public static int orCardinality(long[] a, long[] b) {
+		return cardinality(a) + cardinality(b) - andCardinality(a, b);
+	}
+
+	public static int xorCardinality(long[] a, long[] b) {
+		int n = Math.min(a.length, b.length);
+		int result = 0;
+		for (int i = 0; i < n; i++) {
+			result += Long.bitCount(a[i] ^ b[i]);
+		}
+		for (int i = n; i < a.length; i++) {
+			result += Long.bitCount(a[i]);
+		}
+		for (int i = n; i < b.length; i++) {
+			result += Long.bitCount(b[i]);
+		}
+		return result;
+	}
+
+	public static BitSet and(long[] a, long[] b) {
+		long[] result = new long[Math.min(a.length, b.length)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = a[i] & b[i];
+		}
+		return BitSet.valueOf(result);
+	}
+
+	public static BitSet or(long[] a, long[] b) {
+		long[] result = new long[Math.max(a.length, b.length)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (i < a.length ? a[i] : 0l) | (i < b.length ? b[i] : 0l);
+		}
+		return BitSet.valueOf(result);
+	}
+
+	public static BitSet xor(long[] a, long[] b) {
+		long[] result = new long[Math.max(a.length, b.length)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (i < a.length ? a[i] : 0l) ^ (i < b.length ? b[i] : 0l);
+		}
+		return BitSet.valueOf(result);
+	}
+}
@@ -1,12 +1,12 @@
 package common.parallelization;
 
 import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
@@ -17,10 +17,10 @@ import java.util.logging.Logger;
 public abstract class CallbackReceiverImpl implements
 		CallbackReceiver, UncaughtExceptionHandler {
 	
-	// Maps containing the actions to perform on process callback
-	private Map<Thread, Action> successActions = new HashMap<Thread, Action>();
-	private Map<Thread, Action> failActions = new HashMap<Thread, Action>();
-	private List<CallbackReceiver> externalCallbackReceiverList = new ArrayList<CallbackReceiver>();
+	// Maps containing the actions to perform on process callback (callbacks arrive from the processes' own threads)
+	private Map<Thread, Action> successActions = new ConcurrentHashMap<Thread, Action>();
+	private Map<Thread, Action> failActions = new ConcurrentHashMap<Thread, Action>();
+	private List<CallbackReceiver> externalCallbackReceiverList = new CopyOnWriteArrayList<CallbackReceiver>();
 
 	/**
 	 * Registers an Action to perform on a successful process' callback
@@ -65,8 +65,10 @@ public abstract class CallbackReceiverImpl implements
 			Action action;
 			if (repeat)
 				action = successActions.get(process);
-			else
+			else {
 				action = successActions.remove(process);
+				failActions.remove(process);
+			}
 			
 			// Perform the action
 			action.perform(processingResult);
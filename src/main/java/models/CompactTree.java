@@ -0,0 +1,480 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Immutable tree with the structure of an ExtensibleTreeNode tree, stored as
+ * an arena: nodes are numbered (the root is 0) and kept in int arrays, keys
+ * and node values are interned, the children of every node are a sorted
+ * range of one array, and attributes are kept in typed columns (int, double
+ * or, for other values, Object). This needs a fraction of the heap of
+ * ExtensibleTreeNode objects with their maps and boxed values.
+ *
+ * Existing consumers of ExtensibleTreeNode trees can read the tree through
+ * {@link #getRoot()}, which returns read-only views (see CompactTreeNode).
+ * Trees are created by a {@link Builder} or copied from ExtensibleTreeNode
+ * trees by {@link #fromTree(ExtensibleTreeNode)}.
+ */
+public class CompactTree {
+
+	/*
+	 * Attribute values of all nodes; exactly one of the arrays is in use.
+	 */
+	private static final class Column {
+		final BitSet present = new BitSet();
+		int[] ints;
+		double[] doubles;
+		Object[] objects;
+
+		Object get(int node) {
+			if (!this.present.get(node))
+				return null;
+			if (this.ints != null)
+				return this.ints[node];
+			if (this.doubles != null)
+				return this.doubles[node];
+			return this.objects[node];
+		}
+	}
+
+	// Interned keys and node values
+	private final String[] labels;
+
+	// Key under which each node is attached to its parent, node value (label
+	// ids, -1 for none) and counter
+	private final int[] keyIds;
+	private final int[] valueIds;
+	private final int[] counters;
+
+	// The children of node n are children[childOffsets[n]] to
+	// children[childOffsets[n + 1] - 1], sorted by key
+	private final int[] childOffsets;
+	private final int[] children;
+
+	private final Map<String, Column> attributes;
+
+	// Views handed out so far (each node is represented by at most one object,
+	// so clients may compare them by identity), allocated on first use
+	private volatile CompactTreeNode[] views;
+
+	private CompactTree(Builder builder) {
+		int size = builder.size;
+		this.labels = builder.labels.toArray(new String[builder.labels.size()]);
+		this.keyIds = Arrays.copyOf(builder.keyIds, size);
+		this.valueIds = Arrays.copyOf(builder.valueIds, size);
+		this.counters = Arrays.copyOf(builder.counters, size);
+
+		// order the labels once, so children can be sorted by int ranks
+		Integer[] order = new Integer[this.labels.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return labels[a].compareTo(labels[b]);
+			}
+		});
+		int[] ranks = new int[this.labels.length];
+		for (int i = 0; i < order.length; i++)
+			ranks[order[i]] = i;
+
+		// group the nodes by parent, then sort each group by key
+		this.childOffsets = new int[size + 1];
+		for (int node = 1; node < size; node++)
+			this.childOffsets[builder.parents[node] + 1]++;
+		for (int node = 0; node < size; node++)
+			this.childOffsets[node + 1] += this.childOffsets[node];
+		long[] sorted = new long[Math.max(0, size - 1)];
+		int[] fill = Arrays.copyOf(this.childOffsets, size);
+		for (int node = 1; node < size; node++)
+			sorted[fill[builder.parents[node]]++] = ((long) ranks[this.keyIds[node]] << 32) | node;
+		this.children = new int[sorted.length];
+		for (int node = 0; node < size; node++) {
+			Arrays.sort(sorted, this.childOffsets[node], this.childOffsets[node + 1]);
+			for (int i = this.childOffsets[node]; i < this.childOffsets[node + 1]; i++) {
+				this.children[i] = (int) sorted[i];
+				if (i > this.childOffsets[node] && (sorted[i] >>> 32) == (sorted[i - 1] >>> 32))
+					throw new IllegalArgumentException("Duplicate key below node " + node + ": "
+							+ this.labels[this.keyIds[this.children[i]]]);
+			}
+		}
+
+		this.attributes = new LinkedHashMap<String, Column>();
+		for (Entry<String, Column> column : builder.columns.entrySet()) {
+			Column value = column.getValue();
+			if (value.ints != null)
+				value.ints = Arrays.copyOf(value.ints, size);
+			if (value.doubles != null)
+				value.doubles = Arrays.copyOf(value.doubles, size);
+			if (value.objects != null)
+				value.objects = Arrays.copyOf(value.objects, size);
+			this.attributes.put(column.getKey(), value);
+		}
+	}
+
+	/**
+	 * Copies the given tree.
+	 * @param root Root node
+	 * @return Compact tree
+	 */
+	public static CompactTree fromTree(ExtensibleTreeNode root) {
+		Builder builder = new Builder();
+		Deque<ExtensibleTreeNode> nodes = new ArrayDeque<ExtensibleTreeNode>();
+		Deque<Integer> ids = new ArrayDeque<Integer>();
+		nodes.push(root);
+		ids.push(builder.addRoot(root.getNodeValue(), root.getNodeCounter()));
+		while (!nodes.isEmpty()) {
+			ExtensibleTreeNode node = nodes.pop();
+			int id = ids.pop();
+			for (Entry<String, Object> attribute : node.getAttributes().entrySet())
+				if (attribute.getValue() != null)
+					builder.setAttribute(id, attribute.getKey(), attribute.getValue());
+			for (Entry<String, ExtensibleTreeNode> child : node.getChildNodes().entrySet()) {
+				nodes.push(child.getValue());
+				ids.push(builder.addChild(id, child.getKey(), child.getValue().getNodeValue(),
+						child.getValue().getNodeCounter()));
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return The root node's view
+	 */
+	public CompactTreeNode getRoot() {
+		return this.getView(0);
+	}
+
+	/**
+	 * Returns the view of the given node; there is at most one per node.
+	 * @param node Node number
+	 * @return View
+	 */
+	public CompactTreeNode getView(int node) {
+		CompactTreeNode[] views = this.views;
+		if (views == null) {
+			synchronized (this) {
+				if (this.views == null)
+					this.views = new CompactTreeNode[this.size()];
+				views = this.views;
+			}
+		}
+		CompactTreeNode view = views[node];
+		if (view == null) {
+			synchronized (views) {
+				if (views[node] == null)
+					views[node] = new CompactTreeNode(this, node);
+				view = views[node];
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * @return Amount of nodes
+	 */
+	public int size() {
+		return this.counters.length;
+	}
+
+	public String getKey(int node) {
+		return this.keyIds[node] < 0 ? null : this.labels[this.keyIds[node]];
+	}
+
+	public String getNodeValue(int node) {
+		return this.valueIds[node] < 0 ? null : this.labels[this.valueIds[node]];
+	}
+
+	public int getNodeCounter(int node) {
+		return this.counters[node];
+	}
+
+	public int getChildAmount(int node) {
+		return this.childOffsets[node + 1] - this.childOffsets[node];
+	}
+
+	/**
+	 * @param node Node number
+	 * @param i Index of the child (children are sorted by key)
+	 * @return Node number of the child
+	 */
+	public int getChild(int node, int i) {
+		return this.children[this.childOffsets[node] + i];
+	}
+
+	/**
+	 * Finds a child by key (binary search).
+	 * @param node Node number
+	 * @param key Key
+	 * @return Node number of the child or -1 if there is none
+	 */
+	public int findChild(int node, String key) {
+		int low = this.childOffsets[node];
+		int high = this.childOffsets[node + 1] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = this.labels[this.keyIds[this.children[middle]]].compareTo(key);
+			if (comparison < 0)
+				low = middle + 1;
+			else if (comparison > 0)
+				high = middle - 1;
+			else
+				return this.children[middle];
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Names of all attributes
+	 */
+	public Set<String> getAttributeNames() {
+		return Collections.unmodifiableSet(this.attributes.keySet());
+	}
+
+	/**
+	 * @param node Node number
+	 * @param name Attribute name
+	 * @return Value of the attribute (boxed for int and double columns) or
+	 *         null if it is not set for the node
+	 */
+	public Object getAttribute(int node, String name) {
+		Column column = this.attributes.get(name);
+		return column == null ? null : column.get(node);
+	}
+
+	/**
+	 * @param node Node number
+	 * @param name Name of an int attribute
+	 * @return Value (0 if it is not set for the node)
+	 * @throws IllegalArgumentException If there is no such int attribute
+	 */
+	public int getIntAttribute(int node, String name) {
+		Column column = this.attributes.get(name);
+		if (column == null || column.ints == null)
+			throw new IllegalArgumentException("No int attribute: " + name);
+		return column.ints[node];
+	}
+
+	/**
+	 * @param node Node number
+	 * @param name Name of a double attribute
+	 * @return Value (0 if it is not set for the node)
+	 * @throws IllegalArgumentException If there is no such double attribute
+	 */
+	public double getDoubleAttribute(int node, String name) {
+		Column column = this.attributes.get(name);
+		if (column == null || column.doubles == null)
+			throw new IllegalArgumentException("No double attribute: " + name);
+		return column.doubles[node];
+	}
+
+	/**
+	 * @param node Node number
+	 * @return Attributes set for the node (a new map)
+	 */
+	public Map<String, Object> getAttributes(int node) {
+		Map<String, Object> result = new HashMap<String, Object>();
+		for (Entry<String, Column> column : this.attributes.entrySet()) {
+			Object value = column.getValue().get(node);
+			if (value != null)
+				result.put(column.getKey(), value);
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the nodes of a compact tree. Nodes may be added in any order;
+	 * keys must be unique among the children of a node.
+	 */
+	public static class Builder {
+		private final Map<String, Integer> labelIds = new HashMap<String, Integer>();
+		private final List<String> labels = new ArrayList<String>();
+		private int[] parents = new int[16];
+		private int[] keyIds = new int[16];
+		private int[] valueIds = new int[16];
+		private int[] counters = new int[16];
+		private int size = 0;
+		private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+
+		private int intern(String label) {
+			if (label == null)
+				return -1;
+			Integer id = this.labelIds.get(label);
+			if (id == null) {
+				id = this.labels.size();
+				this.labelIds.put(label, id);
+				this.labels.add(label);
+			}
+			return id;
+		}
+
+		private int addNode(int parent, String key, String value, int counter) {
+			if (this.size == this.parents.length) {
+				int length = this.size * 2;
+				this.parents = Arrays.copyOf(this.parents, length);
+				this.keyIds = Arrays.copyOf(this.keyIds, length);
+				this.valueIds = Arrays.copyOf(this.valueIds, length);
+				this.counters = Arrays.copyOf(this.counters, length);
+			}
+			this.parents[this.size] = parent;
+			this.keyIds[this.size] = this.intern(key);
+			this.valueIds[this.size] = this.intern(value);
+			this.counters[this.size] = counter;
+			return this.size++;
+		}
+
+		/**
+		 * Adds the root node; must be called first.
+		 * @param value Node value
+		 * @param counter Node counter
+		 * @return Node number (0)
+		 */
+		public int addRoot(String value, int counter) {
+			if (this.size > 0)
+				throw new IllegalStateException("The root has already been added.");
+			return this.addNode(-1, null, value, counter);
+		}
+
+		/**
+		 * Adds a child node.
+		 * @param parent Node number of the parent
+		 * @param key Key of the child in the parent's child map
+		 * @param value Node value (may be null)
+		 * @param counter Node counter
+		 * @return Node number
+		 */
+		public int addChild(int parent, String key, String value, int counter) {
+			if (parent < 0 || parent >= this.size)
+				throw new IllegalArgumentException("Unknown parent node: " + parent);
+			if (key == null)
+				throw new IllegalArgumentException("Child keys must not be null.");
+			return this.addNode(parent, key, value, counter);
+		}
+
+		public void setNodeCounter(int node, int counter) {
+			this.counters[node] = counter;
+		}
+
+		private Column column(String name) {
+			Column column = this.columns.get(name);
+			if (column == null) {
+				column = new Column();
+				this.columns.put(name, column);
+			}
+			return column;
+		}
+
+		private static int[] ensure(int[] array, int node) {
+			return array.length > node ? array : Arrays.copyOf(array, Math.max(node + 1, array.length * 2));
+		}
+
+		private static double[] ensure(double[] array, int node) {
+			return array.length > node ? array : Arrays.copyOf(array, Math.max(node + 1, array.length * 2));
+		}
+
+		/**
+		 * Sets an attribute of an int column.
+		 * @param node Node number
+		 * @param name Attribute name
+		 * @param value Value
+		 * @throws IllegalArgumentException If the attribute is not an int column
+		 */
+		public void setAttribute(int node, String name, int value) {
+			Column column = this.column(name);
+			if (column.ints == null) {
+				if (column.doubles != null || column.objects != null)
+					throw new IllegalArgumentException("Not an int attribute: " + name);
+				column.ints = new int[16];
+			}
+			column.ints = ensure(column.ints, node);
+			column.ints[node] = value;
+			column.present.set(node);
+		}
+
+		/**
+		 * Sets an attribute of a double column.
+		 * @param node Node number
+		 * @param name Attribute name
+		 * @param value Value
+		 * @throws IllegalArgumentException If the attribute is not a double column
+		 */
+		public void setAttribute(int node, String name, double value) {
+			Column column = this.column(name);
+			if (column.doubles == null) {
+				if (column.ints != null || column.objects != null)
+					throw new IllegalArgumentException("Not a double attribute: " + name);
+				column.doubles = new double[16];
+			}
+			column.doubles = ensure(column.doubles, node);
+			column.doubles[node] = value;
+			column.present.set(node);
+		}
+
+		/**
+		 * Sets an attribute. Integer and Double values go into int or double
+		 * columns as long as all values of the attribute have that type;
+		 * otherwise the column keeps the objects.
+		 * @param node Node number
+		 * @param name Attribute name
+		 * @param value Value (not null)
+		 */
+		public void setAttribute(int node, String name, Object value) {
+			Column column = this.columns.get(name);
+			boolean empty = column == null || column.present.isEmpty();
+			if (value instanceof Integer && (empty || column.ints != null)) {
+				this.setAttribute(node, name, ((Integer) value).intValue());
+				return;
+			}
+			if (value instanceof Double && (empty || column.doubles != null)) {
+				this.setAttribute(node, name, ((Double) value).doubleValue());
+				return;
+			}
+			column = this.column(name);
+			if (column.objects == null) {
+				// box the values set so far
+				Object[] objects = new Object[Math.max(16, node + 1)];
+				for (int i = column.present.nextSetBit(0); i >= 0; i = column.present.nextSetBit(i + 1))
+					if (i != node) {
+						objects = i < objects.length ? objects : Arrays.copyOf(objects, Math.max(i + 1, objects.length * 2));
+						objects[i] = column.get(i);
+					}
+				column.ints = null;
+				column.doubles = null;
+				column.objects = objects;
+			}
+			if (column.objects.length <= node)
+				column.objects = Arrays.copyOf(column.objects, Math.max(node + 1, column.objects.length * 2));
+			column.objects[node] = value;
+			column.present.set(node);
+		}
+
+		/**
+		 * @return Amount of nodes added so far
+		 */
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * Creates the tree; the builder must not be used afterwards.
+		 * @return Compact tree
+		 */
+		public CompactTree build() {
+			if (this.size == 0)
+				throw new IllegalStateException("No root node has been added.");
+			return new CompactTree(this);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package models;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Read-only view of a node of a CompactTree, so the tree can be handed to
+ * consumers of ExtensibleTreeNode trees without copying it. Every getter
+ * reads from the tree; child node and attribute maps are created on each
+ * call (changing them has no effect), so single children should be looked
+ * up via {@link #getChildNode(String)}. Setters throw an
+ * UnsupportedOperationException. There is one view per node, so views may
+ * be compared by identity.
+ *
+ * Gson cannot serialise views reflectively; register {@link JsonAdapter}
+ * for this class, which writes the same JSON as for ExtensibleTreeNode.
+ */
+public class CompactTreeNode extends ExtensibleTreeNode {
+
+	private final CompactTree tree;
+	private final int node;
+
+	CompactTreeNode(CompactTree tree, int node) {
+		super(false);
+		this.tree = tree;
+		this.node = node;
+	}
+
+	/**
+	 * @return The tree the node belongs to
+	 */
+	public CompactTree getTree() {
+		return this.tree;
+	}
+
+	/**
+	 * @return The node's number in the tree
+	 */
+	public int getNodeNumber() {
+		return this.node;
+	}
+
+	@Override
+	public String getNodeValue() {
+		return this.tree.getNodeValue(this.node);
+	}
+
+	@Override
+	public int getNodeCounter() {
+		return this.tree.getNodeCounter(this.node);
+	}
+
+	@Override
+	public TreeMap<String, ExtensibleTreeNode> getChildNodes() {
+		TreeMap<String, ExtensibleTreeNode> childNodes = new TreeMap<String, ExtensibleTreeNode>();
+		for (int i = 0; i < this.tree.getChildAmount(this.node); i++) {
+			int child = this.tree.getChild(this.node, i);
+			childNodes.put(this.tree.getKey(child), this.tree.getView(child));
+		}
+		return childNodes;
+	}
+
+	@Override
+	public ExtensibleTreeNode getChildNode(String key) {
+		int child = this.tree.findChild(this.node, key);
+		return child < 0 ? null : this.tree.getView(child);
+	}
+
+	@Override
+	public Map<String, Object> getAttributes() {
+		return Collections.unmodifiableMap(this.tree.getAttributes(this.node));
+	}
+
+	@Override
+	public void setNodeValue(String nodeValue) {
+		throw new UnsupportedOperationException("Compact tree nodes are read-only.");
+	}
+
+	@Override
+	public void setNodeCounter(int nodeCounter) {
+		throw new UnsupportedOperationException("Compact tree nodes are read-only.");
+	}
+
+	@Override
+	public void setChildNodes(TreeMap<String, ExtensibleTreeNode> childNodes) {
+		throw new UnsupportedOperationException("Compact tree nodes are read-only.");
+	}
+
+	@Override
+	public void setAttributes(Map<String, Object> attributes) {
+		throw new UnsupportedOperationException("Compact tree nodes are read-only.");
+	}
+
+	/**
+	 * Writes views as JSON, in the format Gson uses for ExtensibleTreeNode
+	 * trees (these can be read back as such). Reading is not supported.
+	 */
+	public static class JsonAdapter extends TypeAdapter<CompactTreeNode> {
+
+		private final Gson gson = new Gson();
+
+		@Override
+		public void write(JsonWriter out, CompactTreeNode value) throws IOException {
+			if (value == null)
+				out.nullValue();
+			else
+				this.write(out, value.tree, value.node);
+		}
+
+		private void write(JsonWriter out, CompactTree tree, int node) throws IOException {
+			out.beginObject();
+			if (tree.getNodeValue(node) != null)
+				out.name("nodeValue").value(tree.getNodeValue(node));
+			out.name("nodeCounter").value(tree.getNodeCounter(node));
+			out.name("childNodes").beginObject();
+			for (int i = 0; i < tree.getChildAmount(node); i++) {
+				int child = tree.getChild(node, i);
+				out.name(tree.getKey(child));
+				this.write(out, tree, child);
+			}
+			out.endObject();
+			out.name("attributes").beginObject();
+			for (Entry<String, Object> attribute : tree.getAttributes(node).entrySet()) {
+				out.name(attribute.getKey());
+				this.gson.toJson(attribute.getValue(), attribute.getValue().getClass(), out);
+			}
+			out.endObject();
+			out.endObject();
+		}
+
+		@Override
+		public CompactTreeNode read(JsonReader in) throws IOException {
+			throw new UnsupportedOperationException("Read ExtensibleTreeNode trees and copy them instead (see CompactTree.fromTree()).");
+		}
+	}
+}
@@ -8,16 +8,28 @@ public class ExtensibleTreeNode implements Comparable<ExtensibleTreeNode> {
 	
 	private String nodeValue;
 	private int nodeCounter = 0;
-	private TreeMap<String,ExtensibleTreeNode> childNodes = new TreeMap<String,ExtensibleTreeNode>();
-	private Map<String,Object> attributes = new HashMap<String,Object>();
+	private TreeMap<String,ExtensibleTreeNode> childNodes;
+	private Map<String,Object> attributes;
 	
 	public ExtensibleTreeNode() {
-		super();
+		this(true);
 	}
 	public ExtensibleTreeNode(String nodeValue) {
-		super();
+		this(true);
 		this.nodeValue = nodeValue;
 	}
+	/**
+	 * Constructor for subclasses that provide their data through the getters
+	 * themselves (see CompactTreeNode).
+	 * @param allocateMaps whether to create the child node and attribute maps
+	 */
+	protected ExtensibleTreeNode(boolean allocateMaps) {
+		super();
+		if (allocateMaps) {
+			this.childNodes = new TreeMap<String,ExtensibleTreeNode>();
+			this.attributes = new HashMap<String,Object>();
+		}
+	}
 	/**
 	 * @return the attributes
 	 */
@@ -30,6 +42,16 @@ public class ExtensibleTreeNode implements Comparable<ExtensibleTreeNode> {
 	public TreeMap<String, ExtensibleTreeNode> getChildNodes() {
 		return childNodes;
 	}
+	/**
+	 * Returns a single child node; prefer this to getChildNodes().get(key)
+	 * for lookups, as subclasses may have to create the child node map first
+	 * (see CompactTreeNode).
+	 * @param key the key of the child node
+	 * @return the child node (null if there is none)
+	 */
+	public ExtensibleTreeNode getChildNode(String key) {
+		return this.getChildNodes().get(key);
+	}
 	/**
 	 * @return the nodeCounter
 	 */
@@ -69,7 +91,7 @@ public class ExtensibleTreeNode implements Comparable<ExtensibleTreeNode> {
 	
 	@Override
 	public int compareTo(ExtensibleTreeNode node) {
-		return (this.nodeValue+this.toString()).compareTo(node.nodeValue+node.toString());
+		return (this.getNodeValue()+this.toString()).compareTo(node.getNodeValue()+node.toString());
 	}
 
 }
@@ -1,23 +1,89 @@
 package models;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 
 /**
  * A dynamically resizing two-dimensional Array whose fields can be addressed by
  * pairs of Strings as well as pairs of numbers.
  * 
- * Supports output to a csv-Table and can be read from a csv-Table.
+ * Supports output to a csv-Table and can be read from a csv-Table. CSV input
+ * can also be processed row by row without building a matrix (see
+ * {@link #readCSV(Reader, String, RowVisitor)}).
  */
 public class NamedFieldMatrix {
 
+	/**
+	 * Receives the rows of a CSV table as they are read.
+	 */
+	public interface RowVisitor {
+
+		/**
+		 * Called once with the table's head row.
+		 * 
+		 * @param columnNames
+		 *            The column names (without the empty first header field)
+		 * @throws Exception
+		 *             To abort reading
+		 */
+		void visitHeader(String[] columnNames) throws Exception;
+
+		/**
+		 * Called for every data row.
+		 * 
+		 * @param rowName
+		 *            The row's name (its first field)
+		 * @param values
+		 *            The row's values, value i belongs to column i (empty
+		 *            fields are 0). Rows shorter than the header yield fewer
+		 *            values, fields beyond the header are dropped. The array
+		 *            is only valid during the call.
+		 * @throws Exception
+		 *             To abort reading
+		 */
+		void visitRow(String rowName, double[] values) throws Exception;
+	}
+
+	/**
+	 * Names of one axis and their indices in both directions.
+	 */
+	private static class NameIndex {
+
+		private final List<String> names = new ArrayList<String>();
+		private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+		Integer get(String name) {
+			return indices.get(name);
+		}
+
+		String get(int index) {
+			return (index >= 0 && index < names.size()) ? names.get(index) : null;
+		}
+
+		int add(String name) {
+			int index = names.size();
+			names.add(name);
+			indices.put(name, index);
+			return index;
+		}
+
+		Set<String> sortedNames() {
+			return Collections.unmodifiableSet(new TreeSet<String>(names));
+		}
+	}
+
 	// the actual values in a 2-dimensional list
 	private double[][] values;
 
@@ -30,23 +96,15 @@ public class NamedFieldMatrix {
 	private int rowAmount = 0;
 
 	// maps rows of the table to a row name and vice versa
-	private final Map<Integer, String> rowsToRowNames;
-	private final Map<String, Integer> rowNamesToRows;
+	private final NameIndex rowNames = new NameIndex();
 
-	// maps columns of the table to a column name no and vice versa
-	private final Map<Integer, String> colsToColNames;
-	private final Map<String, Integer> colNamesToCols;
+	// maps columns of the table to a column name and vice versa
+	private final NameIndex colNames = new NameIndex();
 
 	private String delimiter = ",";
 
 	public NamedFieldMatrix() {
 		this.values = new double[rowMax][];
-
-		this.rowNamesToRows = new TreeMap<String, Integer>();
-		this.colNamesToCols = new TreeMap<String, Integer>();
-
-		this.rowsToRowNames = new TreeMap<Integer, String>();
-		this.colsToColNames = new TreeMap<Integer, String>();
 	}
 
 	/**
@@ -129,8 +187,8 @@ public class NamedFieldMatrix {
 	 *         null if the field does not exist
 	 */
 	public Double getValue(String rowName, String columnName) {
-		Integer row = rowNamesToRows.get(rowName);
-		Integer col = colNamesToCols.get(columnName);
+		Integer row = rowNames.get(rowName);
+		Integer col = colNames.get(columnName);
 
 		if (row == null || col == null) {
 			return null;
@@ -205,7 +263,7 @@ public class NamedFieldMatrix {
 	 *             If there is no row with that name.
 	 */
 	public double[] getRow(String rowName) throws IllegalArgumentException {
-		Integer row = rowNamesToRows.get(rowName);
+		Integer row = rowNames.get(rowName);
 		if (row == null) {
 			throw new IllegalArgumentException("No row for name: " + rowName);
 		} else {
@@ -240,7 +298,7 @@ public class NamedFieldMatrix {
 	 */
 	public double[] getColumn(String columnName) throws IllegalArgumentException {
 		// get col number and fail if none exists
-		Integer col = colNamesToCols.get(columnName);
+		Integer col = colNames.get(columnName);
 		if (col == null) {
 			throw new IllegalArgumentException("No column for name: " + columnName);
 		}
@@ -287,21 +345,21 @@ public class NamedFieldMatrix {
 	}
 
 	/**
-	 * Gets a view on the matrix' row names currently set.
+	 * Gets the matrix' row names currently set in alphabetical order.
 	 * 
-	 * @return a view on the matrix' row names currently set.
+	 * @return an unmodifiable set of the matrix' row names currently set.
 	 */
 	public Set<String> getRowNames() {
-		return Collections.unmodifiableSet(rowNamesToRows.keySet());
+		return rowNames.sortedNames();
 	}
 
 	/**
-	 * Gets a view on the matrix' column names currently set.
+	 * Gets the matrix' column names currently set in alphabetical order.
 	 * 
-	 * @return a view on the matrix' column names currently set.
+	 * @return an unmodifiable set of the matrix' column names currently set.
 	 */
 	public Set<String> getColumnNames() {
-		return Collections.unmodifiableSet(colNamesToCols.keySet());
+		return colNames.sortedNames();
 	}
 
 	/**
@@ -331,7 +389,7 @@ public class NamedFieldMatrix {
 	 * @return the row number or null if the rowName is not part of the table.
 	 */
 	public Integer getRowNo(String rowName) {
-		return rowNamesToRows.get(rowName);
+		return rowNames.get(rowName);
 	}
 
 	/**
@@ -343,7 +401,7 @@ public class NamedFieldMatrix {
 	 *         table.
 	 */
 	public Integer getColumnNo(String columnName) {
-		return colNamesToCols.get(columnName);
+		return colNames.get(columnName);
 	}
 
 	/**
@@ -355,7 +413,7 @@ public class NamedFieldMatrix {
 	 *         table.
 	 */
 	public String getColumnName(int colNo) {
-		return colsToColNames.get(colNo);
+		return colNames.get(colNo);
 	}
 
 	/**
@@ -367,7 +425,7 @@ public class NamedFieldMatrix {
 	 *         table.
 	 */
 	public String getRowName(int rowNo) {
-		return rowsToRowNames.get(rowNo);
+		return rowNames.get(rowNo);
 	}
 
 	/**
@@ -473,15 +531,19 @@ public class NamedFieldMatrix {
 	 */
 	public String csvHeader() {
 		StringBuilder sb = new StringBuilder();
+		appendCsvHeader(sb);
+		return sb.toString();
+	}
+
+	private void appendCsvHeader(StringBuilder sb) {
 		// the first header field is empty
 		sb.append(delimiter);
 		for (int col = 0; col < colAmount; col++) {
-			sb.append(colsToColNames.get(col));
+			sb.append(colNames.get(col));
 			sb.append(delimiter);
 		}
 		sb.setLength(sb.length() - 1);
 		sb.append('\n');
-		return sb.toString();
 	}
 
 	/**
@@ -498,8 +560,13 @@ public class NamedFieldMatrix {
 			throw new IllegalArgumentException("No row for index: " + row);
 		}
 		StringBuilder sb = new StringBuilder();
+		appendCsvLine(sb, row);
+		return sb.toString();
+	}
+
+	private void appendCsvLine(StringBuilder sb, int row) {
 		// write the row header
-		sb.append(rowsToRowNames.get(row));
+		sb.append(rowNames.get(row));
 		sb.append(delimiter);
 		// write values
 		for (int col = 0; col < colAmount; col++) {
@@ -511,7 +578,27 @@ public class NamedFieldMatrix {
 		}
 		sb.setLength(sb.length() - 1);
 		sb.append('\n');
-		return sb.toString();
+	}
+
+	/**
+	 * Writes the whole table as csv (the header followed by every row, as
+	 * given by {@link #csvHeader()} and {@link #csvLine(int)}) without
+	 * building it in memory first.
+	 * 
+	 * @param writer
+	 *            The writer to write to (neither flushed nor closed).
+	 * @throws IOException
+	 *             If writing fails
+	 */
+	public void writeCSV(Writer writer) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		appendCsvHeader(sb);
+		for (int row = 0; row < rowAmount; row++) {
+			writer.append(sb);
+			sb.setLength(0);
+			appendCsvLine(sb, row);
+		}
+		writer.append(sb);
 	}
 
 	/**
@@ -524,7 +611,7 @@ public class NamedFieldMatrix {
 	 * @return row index
 	 */
 	private int getOrAddRow(String rowName) {
-		Integer row = rowNamesToRows.get(rowName);
+		Integer row = rowNames.get(rowName);
 		// If the row is new, add it
 		if (row == null) {
 			if (rowAmount >= rowMax - 1) {
@@ -532,8 +619,7 @@ public class NamedFieldMatrix {
 			}
 			row = rowAmount;
 			values[row] = new double[colMax];
-			rowNamesToRows.put(rowName, row);
-			rowsToRowNames.put(row, rowName);
+			rowNames.add(rowName);
 			rowAmount += 1;
 		}
 		return row;
@@ -548,31 +634,38 @@ public class NamedFieldMatrix {
 	 * @return column index
 	 */
 	private int getOrAddColumn(String columnName) {
-		Integer col = colNamesToCols.get(columnName);
+		Integer col = colNames.get(columnName);
 		// If the column is new, add it
 		if (col == null) {
 			if (colAmount >= colMax) {
 				xResize();
 			}
-			col = colAmount;
-			colNamesToCols.put(columnName, col);
-			colsToColNames.put(col, columnName);
+			col = colNames.add(columnName);
 			colAmount += 1;
 		}
 		return col;
 	}
 
 	/**
-	 * Increase the amount of allocated rows
+	 * Returns the new amount of allocated elements when growing: doubled up
+	 * to 100000, then grown by half, so that resizing stays amortised constant
+	 * per element added.
 	 */
-	private void yResize() {
-		if (rowMax < 100) {
-			rowMax = 100;
-		} else if (rowMax < 100000) {
-			rowMax *= 2;
+	private static int grow(int max) {
+		if (max < 100) {
+			return 100;
+		} else if (max < 100000) {
+			return max * 2;
 		} else {
-			rowMax += 50000;
+			return max + (max >> 1);
 		}
+	}
+
+	/**
+	 * Increase the amount of allocated rows
+	 */
+	private void yResize() {
+		rowMax = grow(rowMax);
 		values = Arrays.copyOf(values, rowMax);
 	}
 
@@ -580,13 +673,7 @@ public class NamedFieldMatrix {
 	 * Increase the amount of allocated columns
 	 */
 	private void xResize() {
-		if (colMax < 100) {
-			colMax = 100;
-		} else if (colMax < 100000) {
-			colMax *= 2;
-		} else {
-			colMax += 50000;
-		}
+		colMax = grow(colMax);
 		for (int i = 0; i < rowAmount; i++) {
 			double[] row = values[i];
 			if (row != null) {
@@ -651,36 +738,76 @@ public class NamedFieldMatrix {
 	public static NamedFieldMatrix parseCSV(Reader csvReader, String delimiter) throws Exception {
 
 		// Instantiate matrix
-		NamedFieldMatrix matrix = new NamedFieldMatrix();
+		final NamedFieldMatrix matrix = new NamedFieldMatrix();
 
-		// Use scanner for input
-		Scanner input = new Scanner(csvReader);
-		input.useDelimiter("\\R");
+		// Store data into matrix (assuming the first column contains the
+		// dataset names)
+		readCSV(csvReader, delimiter, new RowVisitor() {
+			private String[] colNames;
 
-		// Read csv head row
-		String[] colNames = null;
-		if (input.hasNext()) {
-			colNames = input.next().split(delimiter, -1);
-		} else {
-			input.close();
-			throw new IOException("Cannot parse CSV data -- no head row found.");
-		}
+			@Override
+			public void visitHeader(String[] columnNames) {
+				this.colNames = columnNames;
+			}
 
-		// Read data rows
-		while (input.hasNext()) {
-			String[] data = input.next().split(delimiter, -1);
-			// Store data into matrix (assuming the first column contains the
-			// dataset names)
-			for (int i = 1; i < data.length && i < colNames.length; i++) {
-				Double value = 0d; // Default value for empty string input
-				if (data[i] != null && !data[i].isEmpty())
-					value = Double.parseDouble(data[i]);
-				matrix.addValue(data[0], colNames[i], value);
+			@Override
+			public void visitRow(String rowName, double[] values) {
+				for (int i = 0; i < values.length; i++) {
+					matrix.addValue(rowName, colNames[i], values[i]);
+				}
 			}
-		}
+		});
 
-		input.close();
 		return matrix;
 	}
 
+	/**
+	 * Reads CSV data from the specified reader line by line and hands the
+	 * head row and each data row to the visitor as soon as it is read. Only
+	 * the current row is held in memory.
+	 * 
+	 * @param csvReader
+	 *            Reader instance providing CSV formatted data (closed when
+	 *            done)
+	 * @param delimiter
+	 *            The input delimiter to split cells on.
+	 * @param visitor
+	 *            Visitor to receive the rows
+	 * @throws Exception
+	 *             Thrown if the CSV input cannot be parsed or the visitor
+	 *             fails
+	 */
+	public static void readCSV(Reader csvReader, String delimiter, RowVisitor visitor) throws Exception {
+		Pattern delimiterPattern = Pattern.compile(delimiter);
+		BufferedReader input = new BufferedReader(csvReader);
+		try {
+			// Read csv head row (a leading line break is skipped)
+			String line = input.readLine();
+			if (line != null && line.isEmpty()) {
+				line = input.readLine();
+			}
+			if (line == null) {
+				throw new IOException("Cannot parse CSV data -- no head row found.");
+			}
+			String[] head = delimiterPattern.split(line, -1);
+			visitor.visitHeader(Arrays.copyOfRange(head, 1, Math.max(head.length, 1)));
+
+			// Read data rows
+			double[] values = new double[Math.max(head.length - 1, 0)];
+			while ((line = input.readLine()) != null) {
+				String[] data = delimiterPattern.split(line, -1);
+				int valueAmount = Math.max(Math.min(data.length, head.length) - 1, 0);
+				if (valueAmount == 0) {
+					continue;
+				}
+				for (int i = 1; i <= valueAmount; i++) {
+					values[i - 1] = data[i].isEmpty() ? 0d : Double.parseDouble(data[i]);
+				}
+				visitor.visitRow(data[0], valueAmount == values.length ? values : Arrays.copyOf(values, valueAmount));
+			}
+		} finally {
+			input.close();
+		}
+	}
+
 }
@@ -1,15 +1,29 @@
 package modules;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
+/**
+ * Byte pipe between two module ports, backed by a lock-free
+ * single-producer/single-consumer ring buffer (see {@link ByteRingBuffer}).
+ */
 public class BytePipe implements Pipe {
 	
-	private PipedInputStream input;
-	private PipedOutputStream output;
+	private final int capacity;
+	private ByteRingBuffer buffer;
 
 	public BytePipe() throws IOException {
+		this(RingBuffer.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor
+	 * @param capacity Buffer capacity in bytes
+	 * @throws IOException Thrown if something goes wrong
+	 */
+	public BytePipe(int capacity) throws IOException {
+		this.capacity = capacity;
 		this.reset();
 	}
 	
@@ -17,38 +31,50 @@ public class BytePipe implements Pipe {
 	 * Get the input stream.
 	 * @return input stream
 	 */
-	public PipedInputStream getInput() {
-		return input;
+	public InputStream getInput() {
+		return buffer.getInputStream();
 	}
 
 	/**
 	 * Get the output stream.
 	 * @return output stream
 	 */
-	public PipedOutputStream getOutput() {
-		return output;
+	public OutputStream getOutput() {
+		return buffer.getOutputStream();
+	}
+	
+	/**
+	 * @return the buffer capacity in bytes
+	 */
+	public int getCapacity() {
+		return buffer.getCapacity();
 	}
 
 	/**
 	 * Writes to the output pipe.
-	 * @see PipedOutputStream#write(byte[], int, int) PipedOutputStream.write
+	 * @see java.io.OutputStream#write(byte[], int, int) OutputStream.write
 	 * @param data byte-array with data to write
 	 * @param offset write offset
 	 * @param length length of data to write
 	 * @throws IOException thrown on I/O error
 	 */
 	public void write(byte[] data, int offset, int length) throws IOException {
-		this.output.write(data, offset, length);
+		this.buffer.write(data, offset, length);
 	}
 	
 	@Override
 	public void writeClose() throws IOException {
-		this.output.close();
+		this.buffer.closeWrite();
+	}
+
+	@Override
+	public void writeAbort() throws IOException {
+		this.buffer.abortWrite();
 	}
 	
 	/**
 	 * Reads from the input pipe.
-	 * @see PipedInputStream#read(byte[], int, int) PipedInputStream.read
+	 * @see java.io.InputStream#read(byte[], int, int) InputStream.read
 	 * @param buffer buffer to store read input in
 	 * @param offset read offset
 	 * @param length amount of bytes to read
@@ -56,19 +82,17 @@ public class BytePipe implements Pipe {
 	 * @throws IOException thrown on I/O error
 	 */
 	public int read(byte[] buffer, int offset, int length) throws IOException {
-		return this.input.read(buffer, offset, length);
+		return this.buffer.read(buffer, offset, length);
 	}
 	
 	@Override
 	public void readClose() throws IOException {
-		this.input.close();
+		this.buffer.closeRead();
 	}
 
 	@Override
 	public void reset() throws IOException {
-		this.input = new PipedInputStream();
-		this.output = new PipedOutputStream();
-		this.input.connect(this.output);
+		this.buffer = new ByteRingBuffer(this.capacity);
 	}
 
 }
@@ -0,0 +1,143 @@
+package modules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Single-producer/single-consumer ring buffer for bytes, accessible
+ * through an OutputStream (producer side) and an InputStream (consumer side).
+ */
+public class ByteRingBuffer extends RingBuffer {
+
+	private final byte[] buffer;
+	private final InputStream inputStream;
+	private final OutputStream outputStream;
+
+	/**
+	 * Constructor
+	 * @param capacity Minimal capacity in bytes (will be rounded up to the next power of two)
+	 */
+	public ByteRingBuffer(int capacity) {
+		super(capacity);
+		this.buffer = new byte[this.getCapacity()];
+		this.inputStream = new RingBufferInputStream();
+		this.outputStream = new RingBufferOutputStream();
+	}
+
+	/**
+	 * @return The input stream (consumer side)
+	 */
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * @return The output stream (producer side)
+	 */
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/**
+	 * Writes the given bytes, blocking while the buffer is full.
+	 * @param data Data to write
+	 * @param offset Write offset
+	 * @param length Length of data to write
+	 * @throws IOException Thrown if the pipe is closed or the reading thread died
+	 */
+	public void write(byte[] data, int offset, int length) throws IOException {
+		while (length > 0){
+			int amount = Math.min(length, this.awaitWritable());
+			int index = this.index(this.getWritePosition());
+			int firstPart = Math.min(amount, this.buffer.length - index);
+			System.arraycopy(data, offset, this.buffer, index, firstPart);
+			if (firstPart < amount)
+				System.arraycopy(data, offset + firstPart, this.buffer, 0, amount - firstPart);
+			this.commitWrite(amount);
+			offset += amount;
+			length -= amount;
+		}
+	}
+
+	/**
+	 * Reads up to the given amount of bytes, blocking until at least one is available.
+	 * @param target Buffer to store read input in
+	 * @param offset Read offset
+	 * @param length Maximum amount of bytes to read
+	 * @return Amount of bytes read (-1 if the producer side is closed and all data has been read)
+	 * @throws IOException Thrown if the pipe is closed or the writing thread died
+	 */
+	public int read(byte[] target, int offset, int length) throws IOException {
+		if (length == 0)
+			return 0;
+		int available = this.awaitReadable();
+		if (available < 0)
+			return -1;
+		int amount = Math.min(length, available);
+		int index = this.index(this.getReadPosition());
+		int firstPart = Math.min(amount, this.buffer.length - index);
+		System.arraycopy(this.buffer, index, target, offset, firstPart);
+		if (firstPart < amount)
+			System.arraycopy(this.buffer, 0, target, offset + firstPart, amount - firstPart);
+		this.commitRead(amount);
+		return amount;
+	}
+
+	/**
+	 * Reads a single byte, blocking until it is available.
+	 * @return Byte read as int in the range 0 to 255 (-1 if the producer side is closed and all data has been read)
+	 * @throws IOException Thrown if the pipe is closed or the writing thread died
+	 */
+	public int read() throws IOException {
+		if (this.awaitReadable() < 0)
+			return -1;
+		int b = this.buffer[this.index(this.getReadPosition())] & 0xFF;
+		this.commitRead(1);
+		return b;
+	}
+
+	private class RingBufferInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			return ByteRingBuffer.this.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return ByteRingBuffer.this.read(b, off, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return ByteRingBuffer.this.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			ByteRingBuffer.this.closeRead();
+		}
+	}
+
+	private class RingBufferOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			ByteRingBuffer.this.awaitWritable();
+			ByteRingBuffer.this.buffer[ByteRingBuffer.this.index(ByteRingBuffer.this.getWritePosition())] = (byte) b;
+			ByteRingBuffer.this.commitWrite(1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteRingBuffer.this.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			ByteRingBuffer.this.closeWrite();
+		}
+	}
+
+}
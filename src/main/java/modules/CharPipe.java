@@ -1,32 +1,53 @@
 package modules;
 
 import java.io.IOException;
-import java.io.PipedReader;
-import java.io.PipedWriter;
+import java.io.Reader;
+import java.io.Writer;
 
+/**
+ * Character pipe between two module ports, backed by a lock-free
+ * single-producer/single-consumer ring buffer (see {@link CharRingBuffer}).
+ */
 public class CharPipe implements Pipe {
 	
-	private PipedReader input;
-	private PipedWriter output;
+	private final int capacity;
+	private CharRingBuffer buffer;
 
 	public CharPipe() throws IOException {
+		this(RingBuffer.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor
+	 * @param capacity Buffer capacity in chars
+	 * @throws IOException Thrown if something goes wrong
+	 */
+	public CharPipe(int capacity) throws IOException {
+		this.capacity = capacity;
 		this.reset();
 	}
 	
 	/**
-	 * Get input writer
+	 * Get input reader
 	 * @return the input
 	 */
-	public PipedReader getInput() {
-		return input;
+	public Reader getInput() {
+		return buffer.getReader();
 	}
 
 	/**
 	 * Get output writer
 	 * @return the output
 	 */
-	public PipedWriter getOutput() {
-		return output;
+	public Writer getOutput() {
+		return buffer.getWriter();
+	}
+	
+	/**
+	 * @return the buffer capacity in chars
+	 */
+	public int getCapacity() {
+		return buffer.getCapacity();
 	}
 	
 	/**
@@ -36,29 +57,34 @@ public class CharPipe implements Pipe {
 	 * @throws IOException thrown on I/O error
 	 */
 	public void write(String data) throws IOException {
-		this.output.write(data);
+		this.buffer.write(data, 0, data.length());
 	}
 	
 	/**
 	 * Writes to the output pipe.
-	 * @see PipedWriter#write(char[], int, int) PipedReader.write
+	 * @see java.io.Writer#write(char[], int, int) Writer.write
 	 * @param data char-array with data to write
 	 * @param offset write offset
 	 * @param length length of data to write
 	 * @throws IOException thrown on I/O error
 	 */
 	public void write(char[] data, int offset, int length) throws IOException {
-		this.output.write(data, offset, length);
+		this.buffer.write(data, offset, length);
 	}
 
 	@Override
 	public void writeClose() throws IOException {
-		this.output.close();
+		this.buffer.closeWrite();
+	}
+
+	@Override
+	public void writeAbort() throws IOException {
+		this.buffer.abortWrite();
 	}
 	
 	/**
 	 * Reads from the input pipe.
-	 * @see PipedReader#read(char[], int, int) PipedReader.read
+	 * @see java.io.Reader#read(char[], int, int) Reader.read
 	 * @param buffer buffer to store read input in
 	 * @param offset read offset
 	 * @param length amount of chars to read
@@ -66,19 +92,17 @@ public class CharPipe implements Pipe {
 	 * @throws IOException thrown on I/O error
 	 */
 	public int read(char[] buffer, int offset, int length) throws IOException {
-		return this.input.read(buffer, offset, length);
+		return this.buffer.read(buffer, offset, length);
 	}
 	
 	@Override
 	public void readClose() throws IOException {
-		this.input.close();
+		this.buffer.closeRead();
 	}
 
 	@Override
 	public void reset() throws IOException {
-		this.input = new PipedReader();
-		this.output = new PipedWriter();
-		this.input.connect(this.output);
+		this.buffer = new CharRingBuffer(this.capacity);
 	}
 
 }
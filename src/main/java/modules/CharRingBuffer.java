@@ -0,0 +1,174 @@
+package modules;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Single-producer/single-consumer ring buffer for characters, accessible
+ * through a Writer (producer side) and a Reader (consumer side).
+ */
+public class CharRingBuffer extends RingBuffer {
+
+	private final char[] buffer;
+	private final Reader reader;
+	private final Writer writer;
+
+	/**
+	 * Constructor
+	 * @param capacity Minimal capacity in chars (will be rounded up to the next power of two)
+	 */
+	public CharRingBuffer(int capacity) {
+		super(capacity);
+		this.buffer = new char[this.getCapacity()];
+		this.reader = new RingBufferReader();
+		this.writer = new RingBufferWriter();
+	}
+
+	/**
+	 * @return The reader (consumer side)
+	 */
+	public Reader getReader() {
+		return reader;
+	}
+
+	/**
+	 * @return The writer (producer side)
+	 */
+	public Writer getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Writes the given chars, blocking while the buffer is full.
+	 * @param data Data to write
+	 * @param offset Write offset
+	 * @param length Length of data to write
+	 * @throws IOException Thrown if the pipe is closed or the reading thread died
+	 */
+	public void write(char[] data, int offset, int length) throws IOException {
+		while (length > 0){
+			int amount = Math.min(length, this.awaitWritable());
+			int index = this.index(this.getWritePosition());
+			int firstPart = Math.min(amount, this.buffer.length - index);
+			System.arraycopy(data, offset, this.buffer, index, firstPart);
+			if (firstPart < amount)
+				System.arraycopy(data, offset + firstPart, this.buffer, 0, amount - firstPart);
+			this.commitWrite(amount);
+			offset += amount;
+			length -= amount;
+		}
+	}
+
+	/**
+	 * Writes the given part of a String without copying it to an intermediate array.
+	 * @param data Data to write
+	 * @param offset Write offset
+	 * @param length Length of data to write
+	 * @throws IOException Thrown if the pipe is closed or the reading thread died
+	 */
+	public void write(String data, int offset, int length) throws IOException {
+		while (length > 0){
+			int amount = Math.min(length, this.awaitWritable());
+			int index = this.index(this.getWritePosition());
+			int firstPart = Math.min(amount, this.buffer.length - index);
+			data.getChars(offset, offset + firstPart, this.buffer, index);
+			if (firstPart < amount)
+				data.getChars(offset + firstPart, offset + amount, this.buffer, 0);
+			this.commitWrite(amount);
+			offset += amount;
+			length -= amount;
+		}
+	}
+
+	/**
+	 * Reads up to the given amount of chars, blocking until at least one is available.
+	 * @param target Buffer to store read input in
+	 * @param offset Read offset
+	 * @param length Maximum amount of chars to read
+	 * @return Amount of chars read (-1 if the producer side is closed and all data has been read)
+	 * @throws IOException Thrown if the pipe is closed or the writing thread died
+	 */
+	public int read(char[] target, int offset, int length) throws IOException {
+		if (length == 0)
+			return 0;
+		int available = this.awaitReadable();
+		if (available < 0)
+			return -1;
+		int amount = Math.min(length, available);
+		int index = this.index(this.getReadPosition());
+		int firstPart = Math.min(amount, this.buffer.length - index);
+		System.arraycopy(this.buffer, index, target, offset, firstPart);
+		if (firstPart < amount)
+			System.arraycopy(this.buffer, 0, target, offset + firstPart, amount - firstPart);
+		this.commitRead(amount);
+		return amount;
+	}
+
+	/**
+	 * Reads a single char, blocking until it is available.
+	 * @return Char read (-1 if the producer side is closed and all data has been read)
+	 * @throws IOException Thrown if the pipe is closed or the writing thread died
+	 */
+	public int read() throws IOException {
+		if (this.awaitReadable() < 0)
+			return -1;
+		char c = this.buffer[this.index(this.getReadPosition())];
+		this.commitRead(1);
+		return c;
+	}
+
+	private class RingBufferReader extends Reader {
+
+		@Override
+		public int read() throws IOException {
+			return CharRingBuffer.this.read();
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return CharRingBuffer.this.read(cbuf, off, len);
+		}
+
+		@Override
+		public boolean ready() throws IOException {
+			return CharRingBuffer.this.available() > 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			CharRingBuffer.this.closeRead();
+		}
+	}
+
+	private class RingBufferWriter extends Writer {
+
+		@Override
+		public void write(int c) throws IOException {
+			CharRingBuffer.this.awaitWritable();
+			CharRingBuffer.this.buffer[CharRingBuffer.this.index(CharRingBuffer.this.getWritePosition())] = (char) c;
+			CharRingBuffer.this.commitWrite(1);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			CharRingBuffer.this.write(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			CharRingBuffer.this.write(str, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// Data is visible to the reader as soon as it is written
+		}
+
+		@Override
+		public void close() throws IOException {
+			CharRingBuffer.this.closeWrite();
+		}
+	}
+
+}
@@ -1,8 +1,8 @@
 package modules;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedReader;
+import java.io.InputStream;
+import java.io.Reader;
 
 
 public class InputPort extends AbstractPort {
@@ -34,7 +34,7 @@ public class InputPort extends AbstractPort {
 	 * @return Input stream
 	 * @throws NotSupportedException Thrown if something goes wrong
 	 */
-	public PipedInputStream getInputStream() throws NotSupportedException {
+	public InputStream getInputStream() throws NotSupportedException {
 		if (this.pipe == null) return null;
 		if (!this.pipe.getClass().equals(BytePipe.class)){
 			throw new NotSupportedException("This port ("+this.toString()+") does not provide byte stream input.");
@@ -49,7 +49,7 @@ public class InputPort extends AbstractPort {
 	 * @return Input reader
 	 * @throws NotSupportedException Thrown if something goes wrong
 	 */
-	public PipedReader getInputReader() throws NotSupportedException {
+	public Reader getInputReader() throws NotSupportedException {
 		if (this.pipe == null) return null;
 		if (!this.pipe.getClass().equals(CharPipe.class)){
 			throw new NotSupportedException("This port ("+this.toString()+") does not provide character stream input.");
@@ -99,6 +99,28 @@ public class InputPort extends AbstractPort {
 		}
 	}
 
+	/**
+	 * Reads the next object from the input.
+	 * @see modules.ObjectPipe#read()
+	 * @param type Expected class of the object
+	 * @param <T> Expected type of the object
+	 * @return Object read (null if input is closed)
+	 * @throws NotSupportedException Thrown if this port does not provide object input after all
+	 * @throws IOException Thrown if something goes wrong or the object read is not of the expected type
+	 */
+	public <T> T readObject(Class<T> type) throws NotSupportedException, IOException {
+		if (this.pipe == null) throw new IOException("There is no pipe to read from.");
+		if (!this.pipe.getClass().equals(ObjectPipe.class)){
+			throw new NotSupportedException("This port ("+this.toString()+") does not provide object input.");
+		} else {
+			ObjectPipe<?> objectPipe = (ObjectPipe<?>) this.pipe;
+			Object object = objectPipe.read();
+			if (object != null && !type.isInstance(object))
+				throw new IOException("This port ("+this.toString()+") received an object of type "+object.getClass().getCanonicalName()+" instead of "+type.getCanonicalName()+".");
+			return type.cast(object);
+		}
+	}
+
 	@Override
 	public void addPipe(Pipe pipe, Port connectedPort) throws NotSupportedException, OccupiedException {
 		if (super.supportsPipe(pipe)){
@@ -9,6 +9,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gson.Gson;
+
 import common.parallelization.CallbackReceiver;
 
 public abstract class ModuleImpl implements Module {
@@ -137,6 +139,27 @@ public abstract class ModuleImpl implements Module {
 		return stringBuilder.toString();
 	}
 
+	/**
+	 * Reads the next object from inputPort. If the port is connected through
+	 * an object pipe, the object is handed over by reference; otherwise the
+	 * remaining character input is parsed as its JSON representation.
+	 *
+	 * @param inputPort the port to read from
+	 * @param type the class of the object to read
+	 * @param <T> the type of the object to read
+	 * @return The object read (null if there is none)
+	 * @throws IOException if an IO-Error occurs
+	 * @throws NotSupportedException if the InputPort provides neither an object nor a char pipe to read from.
+	 */
+	protected <T> T readObjectFromInputPort(InputPort inputPort, Class<T> type)
+			throws IOException, NotSupportedException {
+		
+		if (inputPort.getPipe() instanceof ObjectPipe)
+			return inputPort.readObject(type);
+		
+		return new Gson().fromJson(inputPort.getInputReader(), type);
+	}
+
 	/*
 	 * @see parallelization.CallbackProcess#getRueckmeldungsEmpfaenger()
 	 */
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,10 +26,16 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 
 	// List of started threads
 	private Map<Module,Thread> startedThreads = new HashMap<Module,Thread>();
+	
+	// Handle of the latest run
+	private volatile ModuleNetworkRun currentRun = null;
+	
+	// Scheduler providing the threads to run the modules on
+	private ModuleScheduler scheduler = new ThreadModuleScheduler();
 
 	/**
 	 * Determines which pipe to use between both given module ports (prefers
-	 * byte pipe).
+	 * object pipe, then byte pipe).
 	 * 
 	 * @param port1
 	 *            Module port 1
@@ -42,6 +49,8 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 	 */
 	public static Pipe getCompatiblePipe(Port port1,
 			Port port2) throws NotSupportedException, IOException {
+		if (port1.supportsPipeClass(ObjectPipe.class) && port2.supportsPipeClass(ObjectPipe.class))
+			return new ObjectPipe<Object>();
 		Pipe pipe = new BytePipe();
 		if (!(port2.supportsPipe(pipe) && port1
 				.supportsPipe(pipe))) {
@@ -70,6 +79,33 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 		return startedThreads;
 	}
 	
+	/**
+	 * @return Returns the scheduler used to run the modules
+	 */
+	public ModuleScheduler getScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * Sets the scheduler used to run the modules (takes effect on the next
+	 * run). The previous scheduler gets shut down.
+	 * @param scheduler Scheduler
+	 */
+	public synchronized void setScheduler(ModuleScheduler scheduler) {
+		if (scheduler == null)
+			throw new IllegalArgumentException("The scheduler cannot be null.");
+		if (this.scheduler != null && this.scheduler != scheduler)
+			this.scheduler.shutdown();
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * @return Returns the handle of the latest run (null if the modules have not been run yet)
+	 */
+	public ModuleNetworkRun getCurrentRun() {
+		return currentRun;
+	}
+	
 	/**
 	 * Adds a thread to the list of the ones started in a thread-safe manner.
 	 * If there already is a thread associated to the specified module, it will be interrupted.
@@ -111,6 +147,21 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 		}
 	}
 	
+	/**
+	 * Marks modules of the given run as finished if their thread is not
+	 * listed as running anymore (e.g. because the module reported to a
+	 * different callback receiver).
+	 * @param run Run to update
+	 */
+	private synchronized void completeOrphanedModules(ModuleNetworkRun run){
+		Iterator<Module> modules = this.moduleList.iterator();
+		while (modules.hasNext()) {
+			Module module = modules.next();
+			if (run.isModuleStarted(module) && !this.startedThreads.containsKey(module) && run.getModuleStatus(module) == Module.STATUSCODE_RUNNING)
+				run.moduleFinished(module, module.getStatus() == Module.STATUSCODE_SUCCESS ? Module.STATUSCODE_SUCCESS : Module.STATUSCODE_FAILURE);
+		}
+	}
+	
 	public synchronized void interruptAllThreads(){
 		
 		Iterator<Thread> threads = this.startedThreads.values().iterator();
@@ -247,6 +298,11 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 		Logger.getLogger("")
 		.log(Level.INFO,
 				"Stopping running module threads. Please wait...");
+		
+		// Keep modules that are still waiting for a thread from starting
+		ModuleNetworkRun run = this.currentRun;
+		if (run != null)
+			run.requestStop();
 			
 		// Check whether there are running threads and if not, write a
 		// message into the log
@@ -268,10 +324,11 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 	 * finish, so you should only call it from within another continuous thread
 	 * or loop.
 	 * 
+	 * @return Handle to await the run's completion
 	 * @throws Exception Thrown if something goes wrong
 	 */
-	public void runModules() throws Exception {
-		this.runModules(false);
+	public ModuleNetworkRun runModules() throws Exception {
+		return this.runModules(false);
 	}
 
 	/**
@@ -280,10 +337,11 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 	 * @param runUntilAllThreadsAreDone
 	 *            If true, the method blocks until all spawned threads have
 	 *            finished
+	 * @return Handle to await the run's completion
 	 * @throws Exception Thrown if something goes wrong
 	 */
-	public void runModules(boolean runUntilAllThreadsAreDone) throws Exception {
-		this.runModules(runUntilAllThreadsAreDone, 5000l);
+	public ModuleNetworkRun runModules(boolean runUntilAllThreadsAreDone) throws Exception {
+		return this.runModules(runUntilAllThreadsAreDone, 5000l);
 	}
 
 	/**
@@ -293,28 +351,35 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 	 *            If true, the method runs until all spawned threads have
 	 *            finished
 	 * @param interval
-	 *            Interval to check for thread completion in milliseconds
+	 *            Interval to log the modules' status in milliseconds (the
+	 *            method returns as soon as the last module has finished)
+	 * @return Handle to await the run's completion
 	 * @throws Exception Thrown if something goes wrong
 	 */
-	public void runModules(boolean runUntilAllThreadsAreDone, long interval)
+	public ModuleNetworkRun runModules(boolean runUntilAllThreadsAreDone, long interval)
 			throws Exception {
 
+		// Create handle that gets completed by the modules' callbacks
+		ModuleNetworkRun run = new ModuleNetworkRun(this.moduleList);
+		this.currentRun = run;
+
 		// Loop over all modules
 		Iterator<Module> modules = this.moduleList.iterator();
 		while (modules.hasNext()){
 			// Run module
-			this.runModule(modules.next());
+			this.runModule(modules.next(), run);
 		}
 		
 		// Determine runtime environment
 		Runtime rt = Runtime.getRuntime();
 		long maxBelegterHauptspeicher = 0l;
 
-		// Wait for threads to finish, if requested
-		while (runUntilAllThreadsAreDone && !this.startedThreads.isEmpty()) {
+		// Wait for modules to finish, if requested
+		while (runUntilAllThreadsAreDone) {
 			try {
-				// Sleep for a quarter second
-				Thread.sleep(interval);
+				// Wait for completion; log status every interval
+				if (run.await(interval, TimeUnit.MILLISECONDS))
+					break;
 
 				// Print pretty overview
 				Logger.getLogger(this.getClass().getSimpleName()).log(
@@ -330,76 +395,151 @@ public class ModuleNetwork extends CallbackReceiverImpl {
 				// Test which threads are still active and remove the rest from
 				// the list
 				this.removeDeadThreads();
+				
+				// Modules that ended without calling back to this network are marked finished as well
+				this.completeOrphanedModules(run);
 
 			} catch (InterruptedException e) {
 				break;
 			}
 		}
+		
+		return run;
 	}
 
 	/**
-	 * Runs the specified module (within a separate thread).
+	 * Runs the specified module (on a thread provided by the scheduler).
 	 * 
 	 * @param module Module to run
+	 * @param run Handle to notify once the module has finished
 	 * @throws Exception
 	 */
-	private void runModule(Module module) throws Exception {
-
-		// Initialize thread
-		final Thread moduleThread = new Thread(module);
-		moduleThread.setName(module.getName());
+	private void runModule(final Module module, final ModuleNetworkRun run) throws Exception {
 
 		// Final list of started threads
 		final ModuleNetwork moduleNetworkInstance = this;
 
-		// Define action to perform on success (note that this merely means the
-		// module finished without throwing an exception -- not necessarily that
-		// the module's own computation was successful)
-		Action successAction = new Action() {
+		// Define the task to hand to the scheduler (the executing thread is
+		// only known once the task has started)
+		Runnable moduleTask = new Runnable() {
 			@Override
-			public void perform(Object processResult) {
-				Boolean result = Boolean.parseBoolean(processResult.toString());
-				if (result)
-					Logger.getLogger("").log(
-							Level.INFO,
-							"Module " + module.getName()
-									+ " has successfully finished processing.");
-				else
-					Logger.getLogger("")
-							.log(Level.WARNING,
-									"Module "
-											+ module.getName()
-											+ " did not finish processing successfully.");
-				// Remove thread from list of running ones
-				moduleNetworkInstance.removeStartedThread(moduleThread);
+			public void run() {
+				final Thread moduleThread = Thread.currentThread();
+				
+				// Do not start modules of a run that has been stopped in the meantime
+				if (run.isStopRequested()){
+					Logger.getLogger("").log(Level.INFO,
+							"Module " + module.getName() + " has not been started since the modules were stopped.");
+					run.moduleFinished(module, Module.STATUSCODE_FAILURE);
+					return;
+				}
+				
+				// Pooled threads get named after the module while running it
+				String previousThreadName = moduleThread.getName();
+				moduleThread.setName(module.getName());
+				
+				// Define action to perform on success (note that this merely means the
+				// module finished without throwing an exception -- not necessarily that
+				// the module's own computation was successful)
+				Action successAction = new Action() {
+					@Override
+					public void perform(Object processResult) {
+						Boolean result = Boolean.parseBoolean(processResult.toString());
+						if (result)
+							Logger.getLogger("").log(
+									Level.INFO,
+									"Module " + module.getName()
+											+ " has successfully finished processing.");
+						else
+							Logger.getLogger("")
+									.log(Level.WARNING,
+											"Module "
+													+ module.getName()
+													+ " did not finish processing successfully.");
+						// Remove thread from list of running ones
+						moduleNetworkInstance.removeStartedThread(moduleThread);
+						// Notify anyone waiting for the run
+						run.moduleFinished(module, result ? Module.STATUSCODE_SUCCESS : Module.STATUSCODE_FAILURE);
+					}
+				};
+
+				// Define action to perform on failure
+				Action failureAction = new Action() {
+					@Override
+					public void perform(Object processResult) {
+						// Since any exception already gets reported from within the
+						// super class' receiveException() method, we only need to
+						// remove the thread from our list.
+						moduleNetworkInstance.removeStartedThread(moduleThread);
+						// Notify anyone waiting for the run
+						run.moduleFinished(module, Module.STATUSCODE_FAILURE);
+					}
+				};
+
+				// Add module thread to list of the ones started
+				moduleNetworkInstance.addStartedThread(module, moduleThread);
+				run.moduleStarted(module);
+
+				// Register callback actions
+				moduleNetworkInstance.registerSuccessCallback(moduleThread, successAction);
+				moduleNetworkInstance.registerFailureCallback(moduleThread, failureAction);
+
+				// Log thread start message & run the module
+				Logger.getLogger("").log(
+						Level.INFO,
+						"Starting to process module " + module.getName()
+								+ " on thread #" + moduleThread.getId());
+				boolean failed = true;
+				try {
+					module.run();
+					failed = module.getStatus() != Module.STATUSCODE_SUCCESS;
+				} catch (Throwable t) {
+					moduleNetworkInstance.receiveException(moduleThread, t);
+				} finally {
+					// Release the module's pipes, so connected modules do not wait on a thread that is alive but done (pooled threads)
+					moduleNetworkInstance.closeModulePipes(module, failed);
+					moduleThread.setName(previousThreadName);
+					// Do not pass on an interrupt meant for this module to the next task on a pooled thread
+					Thread.interrupted();
+				}
 			}
 		};
+		
+		// Hand the task to the scheduler
+		this.scheduler.execute(module, moduleTask);
 
-		// Define action to perform on failure
-		Action failureAction = new Action() {
-			@Override
-			public void perform(Object processResult) {
-				// Since any exception already gets reported from within the
-				// super class' receiveException() method, we only need to
-				// remove the thread from our list.
-				moduleNetworkInstance.removeStartedThread(moduleThread);
+	}
+	
+	/**
+	 * Closes the write side of the specified module's output pipes and the
+	 * read side of its input pipes. The output pipes of a failed module are
+	 * aborted instead, so connected modules do not take its incomplete output
+	 * for a regular end of data.
+	 * @param module Module
+	 * @param failed Whether the module did not finish successfully
+	 */
+	private void closeModulePipes(Module module, boolean failed){
+		Iterator<OutputPort> outputPorts = module.getOutputPorts().values().iterator();
+		while (outputPorts.hasNext()){
+			try {
+				if (failed)
+					outputPorts.next().abort();
+				else
+					outputPorts.next().close();
+			} catch (IOException e) {
+				Logger.getLogger(this.getClass().getSimpleName()).log(Level.WARNING, "Could not close output of module "+module.getName()+".", e);
 			}
-		};
-
-		// Add module thread to list of the ones started
-		this.addStartedThread(module, moduleThread);
-
-		// Register callback actions
-		this.registerSuccessCallback(moduleThread, successAction);
-		this.registerFailureCallback(moduleThread, failureAction);
-
-		// Log thread start message & fire it up 
-		Logger.getLogger("").log(
-				Level.INFO,
-				"Starting to process module " + module.getName()
-						+ " on thread #" + moduleThread.getId());
-		moduleThread.start();
-
+		}
+		Iterator<InputPort> inputPorts = module.getInputPorts().values().iterator();
+		while (inputPorts.hasNext()){
+			Pipe pipe = inputPorts.next().getPipe();
+			if (pipe != null)
+				try {
+					pipe.readClose();
+				} catch (IOException e) {
+					Logger.getLogger(this.getClass().getSimpleName()).log(Level.WARNING, "Could not close input of module "+module.getName()+".", e);
+				}
+		}
 	}
 
 	/**
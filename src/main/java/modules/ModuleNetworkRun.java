@@ -0,0 +1,177 @@
+package modules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handle for one run of a module network. Holds a future per module that is
+ * completed by the network's success/failure callbacks as soon as the module
+ * has finished, so waiting for the run does not involve any polling.
+ */
+public class ModuleNetworkRun {
+
+	// Futures completing with the final status code of each module (see Module.STATUSCODE_*)
+	private final Map<Module, CompletableFuture<Integer>> moduleFutures;
+	private final CompletableFuture<Void> allDone;
+	
+	// Modules whose task has been picked up by a thread
+	private final Set<Module> startedModules = Collections.newSetFromMap(new ConcurrentHashMap<Module, Boolean>());
+	
+	// Set once the network has been asked to stop
+	private volatile boolean stopRequested = false;
+
+	/**
+	 * Constructor
+	 * @param modules Modules that are part of this run
+	 */
+	protected ModuleNetworkRun(List<Module> modules) {
+		super();
+		this.moduleFutures = new LinkedHashMap<Module, CompletableFuture<Integer>>();
+		Iterator<Module> moduleIterator = modules.iterator();
+		while (moduleIterator.hasNext())
+			this.moduleFutures.put(moduleIterator.next(), new CompletableFuture<Integer>());
+		this.allDone = CompletableFuture.allOf(this.moduleFutures.values().toArray(new CompletableFuture<?>[this.moduleFutures.size()]));
+	}
+
+	/**
+	 * Marks the specified module as started (i.e. picked up by a thread).
+	 * @param module Module
+	 */
+	protected void moduleStarted(Module module) {
+		this.startedModules.add(module);
+	}
+	
+	/**
+	 * @param module Module
+	 * @return True if the specified module has been picked up by a thread
+	 */
+	public boolean isModuleStarted(Module module) {
+		return this.startedModules.contains(module);
+	}
+	
+	/**
+	 * Keeps modules that have not been picked up by a thread yet from starting.
+	 */
+	protected void requestStop() {
+		this.stopRequested = true;
+	}
+	
+	/**
+	 * @return True if the network has been asked to stop this run
+	 */
+	public boolean isStopRequested() {
+		return this.stopRequested;
+	}
+
+	/**
+	 * Marks the specified module as finished. Subsequent calls for the same module are ignored.
+	 * @param module Module
+	 * @param statusCode Final status code (see Module.STATUSCODE_*)
+	 */
+	protected void moduleFinished(Module module, int statusCode) {
+		CompletableFuture<Integer> future = this.moduleFutures.get(module);
+		if (future != null)
+			future.complete(statusCode);
+	}
+
+	/**
+	 * Blocks until all modules have finished.
+	 * @throws InterruptedException Thrown if the waiting thread gets interrupted
+	 */
+	public void await() throws InterruptedException {
+		try {
+			this.allDone.get();
+		} catch (ExecutionException e) {
+			// Futures are never completed exceptionally
+		}
+	}
+
+	/**
+	 * Blocks until all modules have finished or the timeout expires.
+	 * @param timeout Maximum time to wait
+	 * @param unit Unit of the timeout
+	 * @return True if all modules have finished
+	 * @throws InterruptedException Thrown if the waiting thread gets interrupted
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		try {
+			this.allDone.get(timeout, unit);
+		} catch (ExecutionException e) {
+			// Futures are never completed exceptionally
+		} catch (TimeoutException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if all modules have finished
+	 */
+	public boolean isDone() {
+		return this.allDone.isDone();
+	}
+
+	/**
+	 * Returns the future associated to the specified module. It completes
+	 * with the module's final status code once the module has finished.
+	 * @param module Module
+	 * @return Future (null if the module is not part of this run)
+	 */
+	public CompletableFuture<Integer> getModuleFuture(Module module) {
+		return this.moduleFutures.get(module);
+	}
+
+	/**
+	 * Returns the status of the specified module.
+	 * @param module Module
+	 * @return Final status code if the module has finished, Module.STATUSCODE_RUNNING if it is running and Module.STATUSCODE_NOTYETRUN if it is still waiting for a thread (see Module.STATUSCODE_*)
+	 */
+	public int getModuleStatus(Module module) {
+		CompletableFuture<Integer> future = this.moduleFutures.get(module);
+		if (future == null)
+			return Module.STATUSCODE_NOTYETRUN;
+		if (future.isDone())
+			return future.getNow(Module.STATUSCODE_FAILURE);
+		return this.isModuleStarted(module) ? Module.STATUSCODE_RUNNING : Module.STATUSCODE_NOTYETRUN;
+	}
+
+	/**
+	 * Returns the status codes of all modules that are part of this run.
+	 * @return Map of module to status code (see Module.STATUSCODE_*)
+	 */
+	public Map<Module, Integer> getModuleStatuses() {
+		Map<Module, Integer> statuses = new LinkedHashMap<Module, Integer>();
+		Iterator<Module> modules = this.moduleFutures.keySet().iterator();
+		while (modules.hasNext()) {
+			Module module = modules.next();
+			statuses.put(module, this.getModuleStatus(module));
+		}
+		return statuses;
+	}
+
+	/**
+	 * @return List of modules that have finished with a failure so far
+	 */
+	public List<Module> getFailedModules() {
+		List<Module> failedModules = new ArrayList<Module>();
+		Iterator<Entry<Module, Integer>> statuses = this.getModuleStatuses().entrySet().iterator();
+		while (statuses.hasNext()) {
+			Entry<Module, Integer> status = statuses.next();
+			if (status.getValue() == Module.STATUSCODE_FAILURE)
+				failedModules.add(status.getKey());
+		}
+		return failedModules;
+	}
+
+}
@@ -0,0 +1,22 @@
+package modules;
+
+/**
+ * Strategy used by the ModuleNetwork to run its modules.
+ */
+public interface ModuleScheduler {
+
+	/**
+	 * Schedules the given module task for execution. The task takes care of
+	 * registering the executing thread with the module network itself.
+	 * @param module Module the task belongs to
+	 * @param moduleTask Task that runs the module
+	 */
+	public void execute(Module module, Runnable moduleTask);
+
+	/**
+	 * Releases the scheduler's threads. Modules that are still running are
+	 * not interrupted (use ModuleNetwork.stopModules() for that).
+	 */
+	public void shutdown();
+
+}
@@ -0,0 +1,74 @@
+package modules;
+
+import java.io.IOException;
+
+/**
+ * Pipe that hands over object references between two module ports instead
+ * of (de)serialising them. The objects are shared with the receiving module,
+ * so neither side should modify them after they have been written. Output
+ * ports that support this pipe should still support CharPipe as a fallback
+ * for consumers that expect a serialised (JSON) form.
+ * 
+ * @param <T> Type of the objects passed through the pipe
+ */
+public class ObjectPipe<T> implements Pipe {
+	
+	// Default capacity in objects
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	private final int capacity;
+	private ObjectRingBuffer<T> buffer;
+
+	public ObjectPipe() throws IOException {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor
+	 * @param capacity Buffer capacity in objects
+	 * @throws IOException Thrown if something goes wrong
+	 */
+	public ObjectPipe(int capacity) throws IOException {
+		this.capacity = capacity;
+		this.reset();
+	}
+	
+	/**
+	 * Writes an object to the pipe.
+	 * @param object Object to write (must not be null)
+	 * @throws IOException thrown on I/O error
+	 */
+	public void write(T object) throws IOException {
+		this.buffer.write(object);
+	}
+
+	@Override
+	public void writeClose() throws IOException {
+		this.buffer.closeWrite();
+	}
+
+	@Override
+	public void writeAbort() throws IOException {
+		this.buffer.abortWrite();
+	}
+	
+	/**
+	 * Reads the next object from the pipe.
+	 * @return object read (null if the pipe has been closed and all objects have been read)
+	 * @throws IOException thrown on I/O error
+	 */
+	public T read() throws IOException {
+		return this.buffer.read();
+	}
+	
+	@Override
+	public void readClose() throws IOException {
+		this.buffer.closeRead();
+	}
+
+	@Override
+	public void reset() throws IOException {
+		this.buffer = new ObjectRingBuffer<T>(this.capacity);
+	}
+
+}
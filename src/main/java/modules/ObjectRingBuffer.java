@@ -0,0 +1,52 @@
+package modules;
+
+import java.io.IOException;
+
+/**
+ * Single-producer/single-consumer ring buffer for object references.
+ * @param <T> Type of the objects passed through the buffer
+ */
+public class ObjectRingBuffer<T> extends RingBuffer {
+
+	private final Object[] buffer;
+
+	/**
+	 * Constructor
+	 * @param capacity Minimal capacity in objects (will be rounded up to the next power of two)
+	 */
+	public ObjectRingBuffer(int capacity) {
+		super(capacity);
+		this.buffer = new Object[this.getCapacity()];
+	}
+
+	/**
+	 * Writes the given object, blocking while the buffer is full.
+	 * @param object Object to write (must not be null)
+	 * @throws IOException Thrown if the pipe is closed or the reading thread died
+	 */
+	public void write(T object) throws IOException {
+		if (object == null)
+			throw new NullPointerException("Cannot pass null through a ring buffer.");
+		this.awaitWritable();
+		this.buffer[this.index(this.getWritePosition())] = object;
+		this.commitWrite(1);
+	}
+
+	/**
+	 * Reads the next object, blocking until it is available.
+	 * @return Object read (null if the producer side is closed and all objects have been read)
+	 * @throws IOException Thrown if the pipe is closed or the writing thread died
+	 */
+	@SuppressWarnings("unchecked")
+	public T read() throws IOException {
+		if (this.awaitReadable() < 0)
+			return null;
+		int index = this.index(this.getReadPosition());
+		T object = (T) this.buffer[index];
+		// Release reference so the buffer does not keep the object from being collected
+		this.buffer[index] = null;
+		this.commitRead(1);
+		return object;
+	}
+
+}
@@ -129,6 +129,26 @@ public class OutputPort extends AbstractPort {
 		}
 	}
 	
+	/**
+	 * Writes the given object (by reference) to all object output pipes.
+	 * @param data Object to write
+	 * @throws IOException Thrown if an I/O problem occurs
+	 */
+	public void outputToAllObjectPipes(Object data) throws IOException {
+		
+		// Check whether this port does support object output
+		if (!this.supportsPipeClass(ObjectPipe.class))
+			throw new IOException("This port ("+this.toString()+") does not support object output.");
+		
+		// Loop over the defined outputs
+		Iterator<Pipe> outputPipes = this.pipes.get(ObjectPipe.class).iterator();
+		while (outputPipes.hasNext()) {
+			@SuppressWarnings("unchecked")
+			ObjectPipe<Object> outputPipe = (ObjectPipe<Object>) outputPipes.next();
+			outputPipe.write(data);
+		}
+	}
+	
 	/**
 	 * Writes the given byte array to all byte stream output pipes.
 	 * @param data Data to write
@@ -144,8 +164,19 @@ public class OutputPort extends AbstractPort {
 	 * @throws IOException Thrown if an I/O problem occurs
 	 */
 	public void outputToAllCharPipes(String data) throws IOException {
-		if (data != null && !data.isEmpty())
-			this.outputToAllCharPipes(data.toCharArray(), 0, data.length());
+		if (data == null || data.isEmpty())
+			return;
+		
+		// Check whether this port does support character stream output
+		if (!this.supportsPipeClass(CharPipe.class))
+			throw new IOException("This port ("+this.toString()+") does not support character stream output.");
+		
+		// Loop over the defined outputs (the String's chars get copied straight into each pipe's buffer)
+		Iterator<Pipe> outputPipes = this.pipes.get(CharPipe.class).iterator();
+		while (outputPipes.hasNext()) {
+			CharPipe outputPipe = (CharPipe) outputPipes.next();
+			outputPipe.write(data);
+		}
 	}
 	
 	public void close() throws IOException{
@@ -158,6 +189,22 @@ public class OutputPort extends AbstractPort {
 			}
 		}
 	}
+	
+	/**
+	 * Aborts all output pipes, so that connected ports get an IOException
+	 * instead of the end of the data (to be used if the output is incomplete).
+	 * @throws IOException Thrown if something goes wrong
+	 */
+	public void abort() throws IOException{
+		Iterator<List<Pipe>> pipeLists = this.getPipes().values().iterator();
+		while (pipeLists.hasNext()){
+			Iterator<Pipe> pipes = pipeLists.next().iterator();
+			while (pipes.hasNext()){
+				Pipe pipe = pipes.next();
+				pipe.writeAbort();
+			}
+		}
+	}
 
 
 	@Override
@@ -0,0 +1,37 @@
+package modules;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer passing everything written to it on to all char pipes of an output
+ * port. Closing it does not close the port (that is still done by the
+ * module); wrap it into a BufferedWriter to avoid many small writes.
+ */
+public class OutputPortWriter extends Writer {
+
+	private final OutputPort outputPort;
+
+	public OutputPortWriter(OutputPort outputPort) {
+		this.outputPort = outputPort;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (len > 0)
+			this.outputPort.outputToAllCharPipes(cbuf, off, len);
+	}
+
+	@Override
+	public void write(String str) throws IOException {
+		this.outputPort.outputToAllCharPipes(str);
+	}
+
+	@Override
+	public void flush() throws IOException {
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+}
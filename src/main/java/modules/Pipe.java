@@ -16,6 +16,13 @@ public interface Pipe {
 	 */
 	public void writeClose() throws IOException;
 	
+	/**
+	 * Aborts the pipe's output (that is written to); the reading side gets an
+	 * IOException instead of the end of the data
+	 * @throws IOException Thrown if something goes wrong
+	 */
+	public void writeAbort() throws IOException;
+	
 	/**
 	 * Resets the I/O (for re-use after close)
 	 * @throws IOException Thrown if something goes wrong
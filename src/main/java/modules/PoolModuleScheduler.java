@@ -0,0 +1,51 @@
+package modules;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs modules on a bounded pool of platform threads. The pool size caps
+ * the number of modules that compute at the same time. Modules that wait
+ * on a pipe do not count towards that limit (pipes block through
+ * ForkJoinPool.managedBlock, which lets the pool activate another worker),
+ * so connected modules cannot starve each other.
+ */
+public class PoolModuleScheduler implements ModuleScheduler {
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor (pool size equals the number of available processors)
+	 */
+	public PoolModuleScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 * @param poolSize Maximum number of modules computing at the same time
+	 */
+	public PoolModuleScheduler(int poolSize) {
+		super();
+		if (poolSize < 1)
+			throw new IllegalArgumentException("The pool size must be positive.");
+		this.pool = new ForkJoinPool(poolSize);
+	}
+
+	/**
+	 * @return the pool size
+	 */
+	public int getPoolSize() {
+		return this.pool.getParallelism();
+	}
+
+	@Override
+	public void execute(Module module, Runnable moduleTask) {
+		this.pool.execute(moduleTask);
+	}
+
+	@Override
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+}
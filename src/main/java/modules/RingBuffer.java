@@ -0,0 +1,269 @@
+package modules;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Position bookkeeping for a single-producer/single-consumer ring buffer.
+ * Producer and consumer only ever write their own position (both volatile),
+ * so no lock is needed to hand data over. A side that has to wait for the
+ * other one parks its thread and is unparked as soon as the other side
+ * commits; the park is timed so that a dead counterpart thread gets noticed
+ * (same behaviour as java.io.PipedReader/PipedWriter).
+ *
+ * Subclasses hold the actual array and copy data in and out of it using
+ * {@link #index(long)}.
+ */
+public abstract class RingBuffer {
+
+	// Default capacity (gets rounded up to the next power of two)
+	public static final int DEFAULT_CAPACITY = 65536;
+
+	// Maximum time a waiting side parks before re-checking the other one (in nanoseconds)
+	private static final long MAXPARKNANOS = 100000000l;
+
+	private final int capacity;
+	private final int mask;
+
+	// Positions (only written by the producer or the consumer, respectively)
+	private volatile long writePosition = 0l;
+	private volatile long readPosition = 0l;
+
+	// Close flags
+	private volatile boolean writeClosed = false;
+	private volatile boolean readClosed = false;
+	private volatile boolean writeAborted = false;
+
+	// Threads currently parked waiting for the other side
+	private volatile Thread waitingWriter = null;
+	private volatile Thread waitingReader = null;
+
+	// Threads last seen writing and reading
+	private volatile Thread writeSide = null;
+	private volatile Thread readSide = null;
+
+	// Parks once per call (used for managed blocking within a ForkJoinPool)
+	private final ForkJoinPool.ManagedBlocker parker = new ForkJoinPool.ManagedBlocker() {
+		@Override
+		public boolean block() throws InterruptedException {
+			LockSupport.parkNanos(RingBuffer.this, MAXPARKNANOS);
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return false;
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @param capacity Minimal capacity (will be rounded up to the next power of two)
+	 */
+	public RingBuffer(int capacity) {
+		super();
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of a ring buffer must be positive.");
+		if (capacity > (1 << 30))
+			throw new IllegalArgumentException("The capacity of a ring buffer cannot exceed 2^30.");
+		int c = 1;
+		while (c < capacity)
+			c <<= 1;
+		this.capacity = c;
+		this.mask = c - 1;
+	}
+
+	/**
+	 * @return The capacity of the buffer
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the array index for the given position.
+	 * @param position Position
+	 * @return Array index
+	 */
+	protected int index(long position){
+		return (int) (position & this.mask);
+	}
+
+	/**
+	 * @return The current write position (producer side)
+	 */
+	protected long getWritePosition() {
+		return writePosition;
+	}
+
+	/**
+	 * @return The current read position (consumer side)
+	 */
+	protected long getReadPosition() {
+		return readPosition;
+	}
+
+	/**
+	 * Returns the amount of data that can be read without blocking.
+	 * @return Available amount
+	 */
+	public int available(){
+		return (int) (this.writePosition - this.readPosition);
+	}
+
+	/**
+	 * Blocks until there is free space in the buffer (producer side).
+	 * @return Amount of free space (always greater than zero)
+	 * @throws IOException Thrown if the pipe is closed, the reading thread died or the writing thread got interrupted
+	 */
+	protected int awaitWritable() throws IOException {
+		if (this.writeClosed || this.writeAborted || this.readClosed)
+			throw new IOException("Pipe closed");
+		Thread currentThread = Thread.currentThread();
+		if (this.writeSide != currentThread)
+			this.writeSide = currentThread;
+
+		long free = this.capacity - (this.writePosition - this.readPosition);
+		while (free == 0) {
+			Thread reader = this.readSide;
+			if (this.readClosed)
+				throw new IOException("Pipe closed");
+			else if (reader != null && !reader.isAlive())
+				throw new IOException("Read end dead");
+
+			// Announce wait, re-check and park
+			this.waitingWriter = currentThread;
+			free = this.capacity - (this.writePosition - this.readPosition);
+			if (free == 0 && !this.readClosed)
+				this.park();
+			this.waitingWriter = null;
+
+			if (Thread.interrupted()){
+				currentThread.interrupt();
+				throw new InterruptedIOException();
+			}
+			free = this.capacity - (this.writePosition - this.readPosition);
+		}
+		return (int) free;
+	}
+
+	/**
+	 * Parks the current thread until it is unparked by the other side or the
+	 * maximum park time has passed. Within a ForkJoinPool (see
+	 * PoolModuleScheduler) this is done as a managed block, so the pool can
+	 * activate another worker while this one waits.
+	 */
+	private void park(){
+		if (Thread.currentThread() instanceof ForkJoinWorkerThread){
+			try {
+				ForkJoinPool.managedBlock(this.parker);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else
+			LockSupport.parkNanos(this, MAXPARKNANOS);
+	}
+
+	/**
+	 * Publishes the given amount of written data to the consumer.
+	 * @param amount Amount written
+	 */
+	protected void commitWrite(int amount){
+		this.writePosition = this.writePosition + amount;
+		Thread reader = this.waitingReader;
+		if (reader != null)
+			LockSupport.unpark(reader);
+	}
+
+	/**
+	 * Blocks until there is data to read (consumer side).
+	 * @return Amount of data available or -1 if the producer has closed the buffer and everything has been read
+	 * @throws IOException Thrown if the pipe is closed, the producer aborted, the writing thread died or the reading thread got interrupted
+	 */
+	protected int awaitReadable() throws IOException {
+		if (this.readClosed)
+			throw new IOException("Pipe closed");
+		Thread currentThread = Thread.currentThread();
+		if (this.readSide != currentThread)
+			this.readSide = currentThread;
+
+		long available = this.writePosition - this.readPosition;
+		while (available == 0) {
+
+			// An aborted producer leaves the data incomplete, which must not look like a regular end
+			if (this.writeAborted)
+				throw new IOException("Write end aborted");
+
+			// The close flag is set after the last commit, so the position read afterwards is final
+			if (this.writeClosed){
+				available = this.writePosition - this.readPosition;
+				if (available == 0)
+					return -1;
+				break;
+			}
+			Thread writer = this.writeSide;
+			if (writer != null && !writer.isAlive() && this.writePosition == this.readPosition)
+				throw new IOException("Write end dead");
+
+			// Announce wait, re-check and park
+			this.waitingReader = currentThread;
+			available = this.writePosition - this.readPosition;
+			if (available == 0 && !this.writeClosed && !this.writeAborted)
+				this.park();
+			this.waitingReader = null;
+
+			if (Thread.interrupted()){
+				currentThread.interrupt();
+				throw new InterruptedIOException();
+			}
+			available = this.writePosition - this.readPosition;
+		}
+		return (int) available;
+	}
+
+	/**
+	 * Releases the given amount of read data to the producer.
+	 * @param amount Amount read
+	 */
+	protected void commitRead(int amount){
+		this.readPosition = this.readPosition + amount;
+		Thread writer = this.waitingWriter;
+		if (writer != null)
+			LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Closes the producer side; the consumer will receive the remaining data and then EOF.
+	 */
+	public void closeWrite(){
+		this.writeClosed = true;
+		Thread reader = this.waitingReader;
+		if (reader != null)
+			LockSupport.unpark(reader);
+	}
+
+	/**
+	 * Aborts the producer side; the consumer will receive the data written so
+	 * far and then an IOException instead of EOF.
+	 */
+	public void abortWrite(){
+		this.writeAborted = true;
+		Thread reader = this.waitingReader;
+		if (reader != null)
+			LockSupport.unpark(reader);
+	}
+
+	/**
+	 * Closes the consumer side; further writes will fail.
+	 */
+	public void closeRead(){
+		this.readClosed = true;
+		Thread writer = this.waitingWriter;
+		if (writer != null)
+			LockSupport.unpark(writer);
+	}
+
+}
@@ -0,0 +1,20 @@
+package modules;
+
+/**
+ * Runs every module on a thread of its own (default scheduler).
+ */
+public class ThreadModuleScheduler implements ModuleScheduler {
+
+	@Override
+	public void execute(Module module, Runnable moduleTask) {
+		Thread moduleThread = new Thread(moduleTask);
+		moduleThread.setName(module.getName());
+		moduleThread.start();
+	}
+
+	@Override
+	public void shutdown() {
+		// Nothing to release
+	}
+
+}
@@ -0,0 +1,55 @@
+package modules;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs every module on a virtual thread, which suits networks whose modules
+ * mostly wait on pipes. Virtual threads need a Java 21+ runtime; since the
+ * project is compiled for Java 8, the executor is looked up reflectively.
+ * On older runtimes this scheduler falls back to one platform thread per
+ * module.
+ */
+public class VirtualThreadModuleScheduler implements ModuleScheduler {
+
+	private final ExecutorService executor;
+	private final ModuleScheduler fallback;
+
+	public VirtualThreadModuleScheduler() {
+		super();
+		ExecutorService virtualThreadExecutor = null;
+		try {
+			Method factoryMethod = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			virtualThreadExecutor = (ExecutorService) factoryMethod.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			Logger.getLogger(this.getClass().getSimpleName()).log(Level.WARNING,
+					"Virtual threads are not supported by this Java runtime; running one platform thread per module instead.");
+		}
+		this.executor = virtualThreadExecutor;
+		this.fallback = virtualThreadExecutor == null ? new ThreadModuleScheduler() : null;
+	}
+
+	/**
+	 * @return True if modules actually run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return this.executor != null;
+	}
+
+	@Override
+	public void execute(Module module, Runnable moduleTask) {
+		if (this.executor != null)
+			this.executor.execute(moduleTask);
+		else
+			this.fallback.execute(module, moduleTask);
+	}
+
+	@Override
+	public void shutdown() {
+		if (this.executor != null)
+			this.executor.shutdown();
+	}
+
+}
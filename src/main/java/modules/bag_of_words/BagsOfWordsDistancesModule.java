@@ -1,6 +1,12 @@
 package modules.bag_of_words;
 
+import java.io.BufferedWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -10,12 +16,15 @@ import java.util.logging.Logger;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
+import common.PairwiseDistances;
 import common.parallelization.CallbackReceiver;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 
 /**
  * Module to determine the distance between Bags of Words.
@@ -45,7 +54,7 @@ public class BagsOfWordsDistancesModule extends ModuleImpl {
 	// Types for deserializing the input and serializing output
 	private final static Type INPUT_TYPE = new TypeToken<TreeMap<Integer, TreeMap<String, Integer>>>() {
 	}.getType();
-	private final static Type OUTPUT_TYPE = new TypeToken<TreeMap<Integer, TreeMap<Integer, Float>>>() {
+	private final static Type OUTPUT_ROW_TYPE = new TypeToken<TreeMap<Integer, Float>>() {
 	}.getType();
 
 	// Name and description of this module for the User
@@ -98,10 +107,6 @@ public class BagsOfWordsDistancesModule extends ModuleImpl {
 		// read the whole text once
 		final String input = this.readStringFromInputPort(this.getInputPorts().get(INPUT_ID));
 
-		// the output: an empty result map mapping sentence Nrs to a map holding
-		// the distance of this sentence to each other sentence
-		final Map<Integer, Map<Integer, Float>> sentenceNrsToDistances = new TreeMap<Integer, Map<Integer, Float>>();
-
 		try {
 			// deserialize the input
 			final Gson gson = new GsonBuilder().setPrettyPrinting().create();
@@ -138,57 +143,71 @@ public class BagsOfWordsDistancesModule extends ModuleImpl {
 				}
 			}
 
-			// bags that are compared
-			// word => count in sentence
-			Map<String, Integer> thisBag;
-			Map<String, Integer> otherBag;
-
-			// distances that are produced by comparison
-			// sentenceNr => distance
-			Map<Integer, Float> thisDistances;
-			Map<Integer, Float> otherDistances;
-
-			// first loop over sentences to compare
-			for (Integer thisSentence : sentenceNrs) {
-				thisDistances = sentenceNrsToDistances.getOrDefault(thisSentence, new TreeMap<Integer, Float>());
-
-				// second loop over sentences to compare with
-				for (Integer otherSentence : sentenceNrs) {
-					// move on if there is already a distance for this
-					// combination or the sentences are the same
-					if ((thisSentence == otherSentence) || (thisDistances.get(otherSentence) != null)) {
-						continue;
+			// bags that are compared, their words replaced by ascending ids
+			// (sentences without a bag are left out)
+			final List<Integer> comparedSentences = new ArrayList<Integer>();
+			final List<int[]> wordIds = new ArrayList<int[]>();
+			final Map<String, Integer> words = new HashMap<String, Integer>();
+			for (Integer sentenceNr : sentenceNrs) {
+				final Map<String, Integer> bag = sentenceNrsToBagOfWords.get(sentenceNr);
+				if (bag == null) {
+					LOGGER.warning("Missing Bag of Words for sentence: " + sentenceNr);
+					continue;
+				}
+				final int[] ids = new int[bag.size()];
+				int i = 0;
+				for (String word : bag.keySet()) {
+					Integer id = words.get(word);
+					if (id == null) {
+						id = words.size();
+						words.put(word, id);
+					}
+					ids[i++] = id;
+				}
+				Arrays.sort(ids);
+				comparedSentences.add(sentenceNr);
+				wordIds.add(ids);
+			}
+			final int size = comparedSentences.size();
+
+			// distances that are produced by comparison, the upper triangle row
+			// after row
+			final float[] distances = new float[(int) ((long) size * (size - 1) / 2)];
+			new PairwiseDistances(size, new PairwiseDistances.Metric() {
+				@Override
+				public double distance(int i, int j) {
+					return levenshteinDistance(wordIds.get(i), wordIds.get(j));
+				}
+			}).compute(new PairwiseDistances.RowHandler() {
+				@Override
+				public void handleRow(int row, double[] rowDistances) {
+					for (int j = row + 1; j < size; j++) {
+						distances[triangleIndex(row, j, size)] = (float) rowDistances[j];
 					}
-					// get bags of words and paranoia check that they exist
-					thisBag = sentenceNrsToBagOfWords.get(thisSentence);
-					otherBag = sentenceNrsToBagOfWords.get(otherSentence);
-					if (thisBag != null && otherBag != null) {
-						// actually compare bags
-						final Float distance;
-						if (this.normalizeDistance) {
-							distance = BagOfWordsHelper.normalizedLevenshteinDistance(thisBag, otherBag);
-						} else {
-							distance = BagOfWordsHelper.levenshteinDistance(thisBag, otherBag);
-						}
-
-						// write distance to both distance maps and write maps
-						// back
-						otherDistances = sentenceNrsToDistances.getOrDefault(otherSentence,
-								new TreeMap<Integer, Float>());
-						thisDistances.put(otherSentence, distance);
-						otherDistances.put(thisSentence, distance);
-						sentenceNrsToDistances.put(thisSentence, thisDistances);
-						sentenceNrsToDistances.put(otherSentence, otherDistances);
-					} else {
-						LOGGER.warning(
-								"Missing Bag of Words for sentence pair: " + thisSentence + ", " + otherSentence);
+				}
+			});
+
+			// serialize and flush to output, mapping sentence Nrs to a map
+			// holding the distance of this sentence to each other sentence
+			final Writer writer = new BufferedWriter(new OutputPortWriter(this.getOutputPorts().get(OUTPUT_ID)));
+			final JsonWriter jsonWriter = new JsonWriter(writer);
+			jsonWriter.setIndent("  ");
+			jsonWriter.setHtmlSafe(true);
+			jsonWriter.beginObject();
+			for (int i = 0; i < size && size > 1; i++) {
+				final TreeMap<Integer, Float> thisDistances = new TreeMap<Integer, Float>();
+				for (int j = 0; j < size; j++) {
+					if (j != i) {
+						thisDistances.put(comparedSentences.get(j),
+								distances[i < j ? triangleIndex(i, j, size) : triangleIndex(j, i, size)]);
 					}
-
 				}
+				jsonWriter.name(comparedSentences.get(i).toString());
+				gson.toJson(thisDistances, OUTPUT_ROW_TYPE, jsonWriter);
 			}
-			// serialize and flush to output
-			final String jsonOut = gson.toJson(sentenceNrsToDistances, OUTPUT_TYPE);
-			this.getOutputPorts().get(OUTPUT_ID).outputToAllCharPipes(jsonOut);
+			jsonWriter.endObject();
+			jsonWriter.flush();
+			writer.flush();
 		} catch (Exception e) {
 			result = false;
 			throw e;
@@ -199,6 +218,36 @@ public class BagsOfWordsDistancesModule extends ModuleImpl {
 		return result;
 	}
 
+	/*
+	 * Levenshtein distance of two bags given as ascending word ids (see
+	 * BagOfWordsHelper), normalized if requested.
+	 */
+	private float levenshteinDistance(int[] bagOne, int[] bagTwo) {
+		final int maxSize = Math.max(bagOne.length, bagTwo.length);
+		int matchCount = 0;
+		for (int i = 0, j = 0; i < bagOne.length && j < bagTwo.length;) {
+			if (bagOne[i] < bagTwo[j]) {
+				i++;
+			} else if (bagTwo[j] < bagOne[i]) {
+				j++;
+			} else {
+				matchCount++;
+				i++;
+				j++;
+			}
+		}
+		final float distance = (float) (maxSize - matchCount);
+		if (this.normalizeDistance) {
+			return distance / (float) maxSize;
+		}
+		return distance;
+	}
+
+	// Position of the pair i < j within the upper triangle of size elements.
+	private static int triangleIndex(int i, int j, int size) {
+		return (int) ((long) i * (2 * size - i - 1) / 2) + (j - i - 1);
+	}
+
 	@Override
 	public void applyProperties() throws Exception {
 		super.setDefaultsIfMissing();
@@ -0,0 +1,128 @@
+package modules.basic_text_processing.burrows_wheeler;
+
+/**
+ * Burrows-Wheeler Transformation of strings (see
+ * https://en.wikipedia.org/wiki/Burrows-Wheeler_transform). The forward
+ * transform is derived from a suffix array, the reverse transform uses the
+ * LF-mapping; both run in linear time and space.
+ */
+public final class BurrowsWheelerTransform {
+
+	// class should not be instantiated
+	private BurrowsWheelerTransform() {
+	}
+
+	/**
+	 * Returns the last column of the sorted table of all rotations of the
+	 * given string.
+	 * @param str Input string
+	 * @return Transformed string
+	 */
+	public static String transform(String str) {
+		// Return if input is empty
+		if (str == null || str.isEmpty())
+			return str;
+
+		// The rotations of str are ordered like the suffixes of str+str that
+		// start within the first copy (rotations that are equal in their first
+		// n chars are equal altogether and may be ordered arbitrarily)
+		int n = str.length();
+		int[] sa = SuffixArray.build(new DoubledString(str));
+
+		char[] returnValue = new char[n];
+		int row = 0;
+		for (int i = 0; i < sa.length; i++) {
+			if (sa[i] < n)
+				returnValue[row++] = str.charAt((sa[i] + n - 1) % n);
+		}
+
+		return new String(returnValue);
+	}
+
+	/**
+	 * Reverses the transformation: Returns the first row of the sorted
+	 * rotation table that ends with the given string end char.
+	 * @param rts Transformed string
+	 * @param stringEndChar String end char
+	 * @return Original string or null if the input does not contain the string end char
+	 */
+	public static String reverseTransform(String rts, char stringEndChar) {
+		int n = rts.length();
+
+		// Count the chars (within the range of chars actually present)
+		int min = Character.MAX_VALUE;
+		int max = Character.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			min = Math.min(min, rts.charAt(i));
+			max = Math.max(max, rts.charAt(i));
+		}
+		if (n == 0 || stringEndChar < min || stringEndChar > max)
+			return null;
+		int[] counts = new int[max - min + 1];
+		for (int i = 0; i < n; i++)
+			counts[rts.charAt(i) - min]++;
+
+		// Turn the counts into the first row of each char in the sorted first column
+		int sum = 0;
+		for (int c = 0; c < counts.length; c++) {
+			int count = counts[c];
+			counts[c] = sum;
+			sum += count;
+		}
+
+		// LF-mapping: row of the rotation that starts with the last char of row i
+		int[] lf = new int[n];
+		int startRow = -1;
+		for (int i = 0; i < n; i++) {
+			char c = rts.charAt(i);
+			lf[i] = counts[c - min]++;
+			if (startRow < 0 && c == stringEndChar)
+				startRow = i;
+		}
+		if (startRow < 0)
+			return null;
+
+		// Walk backwards through the rotation of the start row
+		char[] returnValue = new char[n];
+		int row = startRow;
+		for (int i = n - 1; i >= 0; i--) {
+			returnValue[i] = rts.charAt(row);
+			row = lf[row];
+		}
+
+		return new String(returnValue);
+	}
+
+	/*
+	 * A string concatenated with itself, without copying it.
+	 */
+	private static class DoubledString implements CharSequence {
+
+		private final String str;
+
+		DoubledString(String str) {
+			this.str = str;
+		}
+
+		@Override
+		public int length() {
+			return this.str.length() * 2;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return this.str.charAt(index < this.str.length() ? index : index - this.str.length());
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new StringBuilder(this).subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return this.str + this.str;
+		}
+	}
+
+}
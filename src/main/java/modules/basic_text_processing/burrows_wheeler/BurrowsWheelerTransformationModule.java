@@ -1,12 +1,10 @@
 package modules.basic_text_processing.burrows_wheeler;
 
-import java.util.Arrays;
 import java.util.Properties;
 import java.util.Scanner;
 
 import base.workbench.ModuleWorkbenchController;
 import common.StringUnescaper;
-import common.StringUtil;
 import common.parallelization.CallbackReceiver;
 import modules.CharPipe;
 import modules.InputPort;
@@ -100,9 +98,9 @@ public class BurrowsWheelerTransformationModule extends ModuleImpl {
 			String segment = lineScanner.next();
 			String output;
 			if (this.reverse)
-				output = this.bwt_reverse(segment, this.stringEndChar);
+				output = BurrowsWheelerTransform.reverseTransform(segment, this.stringEndChar);
 			else
-				output = this.bwt(segment);
+				output = BurrowsWheelerTransform.transform(segment);
 			
 			this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(output+this.outputdelimiter);
 			
@@ -119,52 +117,6 @@ public class BurrowsWheelerTransformationModule extends ModuleImpl {
 		return true;
 	}
 	
-	private String bwt(String str){
-		// Return if input is empty
-		if (str == null || str.isEmpty())
-			return str;
-		
-		// Create table for BWT
-		String[] table = new String[str.length()];
-		table[0] = str;
-		for (int i=1; i<str.length(); i++){
-			table[i] = StringUtil.shift(table[i-1]);
-		}
-		
-		// Sort table
-		Arrays.sort(table);
-		
-		char[] returnValue = new char[str.length()];
-		for (int i=0; i<table.length; i++)
-			returnValue[i] = table[i].charAt(str.length()-1);
-		
-		return new String(returnValue);
-	}
-	
-	private String bwt_reverse(String rts, char stringEndChar){
-		
-		// Create table for BWT
-		String[] table = new String[rts.length()];
-		
-		// Fill and sort table
-		for (int i=0; i<rts.length(); i++){
-			for (int j=0; j<rts.length(); j++)
-				if (table[j] != null)
-					table[j] = rts.charAt(j)+table[j];
-				else
-					table[j] = rts.charAt(j)+"";
-			Arrays.sort(table);
-		}
-		
-		// Determine table row that end with end char
-		for (int i=0; i<rts.length(); i++){
-			if (table[i].charAt(rts.length()-1) == stringEndChar)
-				return table[i];
-		}
-		
-		return null;
-	}
-
 	@Override
 	public void applyProperties() throws Exception {
 
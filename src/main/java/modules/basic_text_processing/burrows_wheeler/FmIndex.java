@@ -0,0 +1,319 @@
+package modules.basic_text_processing.burrows_wheeler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * FM-index over a text (see Ferragina &amp; Manzini: "Opportunistic Data
+ * Structures with Applications", FOCS 2000): The Burrows-Wheeler transform of
+ * the text plus rank checkpoints and a sampled suffix array. Counting the
+ * occurrences of a pattern takes O(|pattern|) steps, locating each occurrence
+ * additionally takes at most sampleRate steps. Neither the text nor a suffix
+ * tree has to be kept in memory.
+ */
+public class FmIndex {
+
+	// Identifies the file format
+	private static final int MAGIC = 0x464d4958;
+	private static final int VERSION = 1;
+
+	// Default distance of suffix array samples (in text positions)
+	public static final int DEFAULT_SAMPLE_RATE = 32;
+
+	// Length of the text including the sentinel (= number of rows)
+	private final int rows;
+
+	// Symbols by code (code 0 is the sentinel that ends the text)
+	private final char[] symbols;
+	// Codes by char (relative to the smallest symbol; 0 if the char does not occur)
+	private final int[] codes;
+	private final char minSymbol;
+
+	// The BWT as codes (bytes if there are at most 256 codes, chars otherwise)
+	private final byte[] bwtBytes;
+	private final char[] bwtChars;
+
+	// Number of positions in the text with a code smaller than the index
+	private final int[] smallerCodes;
+
+	// Occurrences of each code before each block of the BWT
+	private final int blockShift;
+	private final int[] checkpoints;
+
+	// Rows whose suffix array value is a multiple of the sample rate (bit vector
+	// with cumulative counts per 64 bits) and their suffix array values
+	private final int sampleRate;
+	private final long[] sampledRows;
+	private final int[] sampledRowRanks;
+	private final int[] samples;
+
+	private FmIndex(char[] symbols, byte[] bwtBytes, char[] bwtChars, int rows, int sampleRate, long[] sampledRows,
+			int[] samples) {
+		this.rows = rows;
+		this.symbols = symbols;
+		this.bwtBytes = bwtBytes;
+		this.bwtChars = bwtChars;
+		this.sampleRate = sampleRate;
+		this.sampledRows = sampledRows;
+		this.samples = samples;
+
+		// char to code lookup
+		this.minSymbol = symbols.length > 1 ? symbols[1] : 0;
+		int range = symbols.length > 1 ? symbols[symbols.length - 1] - this.minSymbol + 1 : 0;
+		this.codes = new int[range];
+		for (int c = 1; c < symbols.length; c++)
+			this.codes[symbols[c] - this.minSymbol] = c;
+
+		// blocks hold max(64, sigma) rows (rounded up to a power of two), which
+		// bounds the scan of a rank lookup. A checkpoint holds sigma ints, so the
+		// checkpoints take 4 * sigma / blockLength bytes per row: as much as a
+		// byte coded BWT for 16 codes, less below and up to four times as much
+		// for larger alphabets
+		int shift = 6;
+		while ((1 << shift) < symbols.length)
+			shift++;
+		this.blockShift = shift;
+		int sigma = symbols.length;
+		this.checkpoints = new int[((rows >> shift) + 1) * sigma];
+		int[] counts = new int[sigma];
+		for (int i = 0; i < rows; i++) {
+			if ((i & ((1 << shift) - 1)) == 0)
+				System.arraycopy(counts, 0, this.checkpoints, (i >> shift) * sigma, sigma);
+			counts[this.codeAt(i)]++;
+		}
+		if ((rows & ((1 << shift) - 1)) == 0)
+			System.arraycopy(counts, 0, this.checkpoints, (rows >> shift) * sigma, sigma);
+
+		this.smallerCodes = new int[sigma + 1];
+		for (int c = 0; c < sigma; c++)
+			this.smallerCodes[c + 1] = this.smallerCodes[c] + counts[c];
+
+		this.sampledRowRanks = new int[sampledRows.length + 1];
+		for (int i = 0; i < sampledRows.length; i++)
+			this.sampledRowRanks[i + 1] = this.sampledRowRanks[i] + Long.bitCount(sampledRows[i]);
+	}
+
+	/**
+	 * Builds the FM-index of the given text.
+	 * @param text Text
+	 * @param sampleRate Every sampleRate-th text position is kept in the sampled suffix array
+	 * @return FM-index
+	 */
+	public static FmIndex build(CharSequence text, int sampleRate) {
+		if (sampleRate < 1)
+			throw new IllegalArgumentException("The sample rate must be positive.");
+		int n = text.length();
+
+		// determine the symbols occurring in the text
+		boolean[] present = new boolean[Character.MAX_VALUE + 1];
+		int sigma = 1;
+		for (int i = 0; i < n; i++) {
+			if (!present[text.charAt(i)]) {
+				present[text.charAt(i)] = true;
+				sigma++;
+			}
+		}
+		char[] symbols = new char[sigma];
+		int[] codes = new int[Character.MAX_VALUE + 1];
+		for (int ch = 0, c = 1; ch <= Character.MAX_VALUE; ch++) {
+			if (present[ch]) {
+				symbols[c] = (char) ch;
+				codes[ch] = c++;
+			}
+		}
+
+		// suffix array of the coded text plus sentinel
+		int[] s = new int[n + 1];
+		for (int i = 0; i < n; i++)
+			s[i] = codes[text.charAt(i)];
+		int[] sa = SuffixArray.build(s, sigma);
+
+		// BWT and suffix array samples
+		byte[] bwtBytes = sigma <= 256 ? new byte[n + 1] : null;
+		char[] bwtChars = sigma <= 256 ? null : new char[n + 1];
+		long[] sampledRows = new long[(n >> 6) + 1];
+		int[] samples = new int[n / sampleRate + 1];
+		int sampleCount = 0;
+		for (int i = 0; i <= n; i++) {
+			int code = sa[i] == 0 ? 0 : s[sa[i] - 1];
+			if (bwtBytes != null)
+				bwtBytes[i] = (byte) code;
+			else
+				bwtChars[i] = (char) code;
+			if (sa[i] % sampleRate == 0) {
+				sampledRows[i >> 6] |= 1l << (i & 63);
+				samples[sampleCount++] = sa[i];
+			}
+		}
+
+		return new FmIndex(symbols, bwtBytes, bwtChars, n + 1, sampleRate, sampledRows, samples);
+	}
+
+	/**
+	 * @return Length of the indexed text
+	 */
+	public int length() {
+		return this.rows - 1;
+	}
+
+	/**
+	 * @return Distance of suffix array samples
+	 */
+	public int getSampleRate() {
+		return this.sampleRate;
+	}
+
+	/**
+	 * Counts the occurrences of the pattern in the text.
+	 * @param pattern Pattern
+	 * @return Number of occurrences
+	 */
+	public int count(CharSequence pattern) {
+		int[] range = this.findRows(pattern);
+		return range == null ? 0 : range[1] - range[0];
+	}
+
+	/**
+	 * @param pattern Pattern
+	 * @return True if the pattern occurs in the text
+	 */
+	public boolean contains(CharSequence pattern) {
+		return this.count(pattern) > 0;
+	}
+
+	/**
+	 * Returns the start positions of all occurrences of the pattern in the text.
+	 * @param pattern Pattern
+	 * @return Sorted positions
+	 */
+	public int[] locate(CharSequence pattern) {
+		int[] range = this.findRows(pattern);
+		if (range == null)
+			return new int[0];
+		int[] positions = new int[range[1] - range[0]];
+		for (int row = range[0]; row < range[1]; row++)
+			positions[row - range[0]] = this.textPosition(row);
+		Arrays.sort(positions);
+		return positions;
+	}
+
+	// backward search; returns the range of rows [from, to) prefixed by the pattern or null if there is none
+	private int[] findRows(CharSequence pattern) {
+		if (pattern.length() == 0)
+			return null;
+		int from = 0;
+		int to = this.rows;
+		for (int i = pattern.length() - 1; i >= 0; i--) {
+			int code = this.codeOf(pattern.charAt(i));
+			if (code == 0)
+				return null;
+			from = this.smallerCodes[code] + this.occurrences(code, from);
+			to = this.smallerCodes[code] + this.occurrences(code, to);
+			if (from >= to)
+				return null;
+		}
+		return new int[] { from, to };
+	}
+
+	// LF-mapping until a sampled row is reached
+	private int textPosition(int row) {
+		int steps = 0;
+		while ((this.sampledRows[row >> 6] & (1l << (row & 63))) == 0) {
+			int code = this.codeAt(row);
+			row = this.smallerCodes[code] + this.occurrences(code, row);
+			steps++;
+		}
+		int rank = this.sampledRowRanks[row >> 6] + Long.bitCount(this.sampledRows[row >> 6] & ((1l << (row & 63)) - 1));
+		return this.samples[rank] + steps;
+	}
+
+	// number of occurrences of the code in the BWT before the given row
+	private int occurrences(int code, int row) {
+		int block = row >> this.blockShift;
+		int count = this.checkpoints[block * this.symbols.length + code];
+		for (int i = block << this.blockShift; i < row; i++)
+			if (this.codeAt(i) == code)
+				count++;
+		return count;
+	}
+
+	private int codeAt(int row) {
+		return this.bwtBytes != null ? this.bwtBytes[row] & 0xff : this.bwtChars[row];
+	}
+
+	private int codeOf(char ch) {
+		int i = ch - this.minSymbol;
+		return i >= 0 && i < this.codes.length ? this.codes[i] : 0;
+	}
+
+	/**
+	 * Writes the index to the given stream. Rank checkpoints are not written
+	 * but recomputed when reading.
+	 * @param out Output stream (not closed)
+	 * @throws IOException Thrown if writing fails
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(this.rows);
+		data.writeInt(this.sampleRate);
+		data.writeInt(this.symbols.length);
+		for (int c = 1; c < this.symbols.length; c++)
+			data.writeChar(this.symbols[c]);
+		if (this.bwtBytes != null)
+			data.write(this.bwtBytes);
+		else
+			for (int i = 0; i < this.rows; i++)
+				data.writeChar(this.bwtChars[i]);
+		data.writeInt(this.sampledRows.length);
+		for (int i = 0; i < this.sampledRows.length; i++)
+			data.writeLong(this.sampledRows[i]);
+		data.writeInt(this.samples.length);
+		for (int i = 0; i < this.samples.length; i++)
+			data.writeInt(this.samples[i]);
+		data.flush();
+	}
+
+	/**
+	 * Reads an index written by write().
+	 * @param in Input stream (not closed)
+	 * @return FM-index
+	 * @throws IOException Thrown if reading fails or the stream does not contain an index
+	 */
+	public static FmIndex read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC)
+			throw new IOException("The input is not an FM-index.");
+		int version = data.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported FM-index version: " + version);
+		int rows = data.readInt();
+		int sampleRate = data.readInt();
+		char[] symbols = new char[data.readInt()];
+		for (int c = 1; c < symbols.length; c++)
+			symbols[c] = data.readChar();
+		byte[] bwtBytes = null;
+		char[] bwtChars = null;
+		if (symbols.length <= 256) {
+			bwtBytes = new byte[rows];
+			data.readFully(bwtBytes);
+		} else {
+			bwtChars = new char[rows];
+			for (int i = 0; i < rows; i++)
+				bwtChars[i] = data.readChar();
+		}
+		long[] sampledRows = new long[data.readInt()];
+		for (int i = 0; i < sampledRows.length; i++)
+			sampledRows[i] = data.readLong();
+		int[] samples = new int[data.readInt()];
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = data.readInt();
+		return new FmIndex(symbols, bwtBytes, bwtChars, rows, sampleRate, sampledRows, samples);
+	}
+
+}
@@ -0,0 +1,195 @@
+package modules.basic_text_processing.burrows_wheeler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import base.workbench.ModuleRunner;
+import common.parallelization.CallbackReceiver;
+import modules.CharPipe;
+import modules.InputPort;
+import modules.ModuleImpl;
+import modules.OutputPort;
+
+public class FmIndexModule extends ModuleImpl {
+
+	// Main method for stand-alone execution
+	public static void main(String[] args) throws Exception {
+		ModuleRunner.runStandAlone(FmIndexModule.class, args);
+	}
+
+	// Define property keys (every setting has to have a unique key to associate
+	// it with)
+	public static final String PROPERTYKEY_INDEXFILE = "index file";
+	public static final String PROPERTYKEY_LOCATE = "locate";
+	public static final String PROPERTYKEY_SAMPLERATE = "sample rate";
+
+	// Define I/O IDs (must be unique for every input or output)
+	private static final String ID_INPUT_TEXT = "text";
+	private static final String ID_INPUT_QUERIES = "queries";
+	private static final String ID_OUTPUT = "output";
+
+	// Local variables
+	private String indexFile;
+	private boolean locate;
+	private int sampleRate;
+
+	public FmIndexModule(CallbackReceiver callbackReceiver, Properties properties) throws Exception {
+
+		// Call parent constructor
+		super(callbackReceiver, properties);
+
+		// Add module description
+		this.setDescription(
+				"Builds an FM-index (Burrows-Wheeler transform with rank structures and a sampled suffix array) over the text input and answers the patterns from the query input (one per line) with their number of occurrences and, optionally, their positions. The index can be written to and read from a file, so the text does not have to be indexed again for further queries.");
+
+		// Add property descriptions (obligatory for every property!)
+		this.getPropertyDescriptions().put(PROPERTYKEY_INDEXFILE,
+				"Path of the index file; the index is written to it if the text input is connected, otherwise it is read from it (leave empty to keep the index in memory only).");
+		this.getPropertyDescriptions().put(PROPERTYKEY_LOCATE,
+				"Output the positions of the occurrences as well [true|false].");
+		this.getPropertyDescriptions().put(PROPERTYKEY_SAMPLERATE,
+				"Every n-th text position is stored in the index; higher values result in smaller indexes but slower locating.");
+
+		// Add property defaults (_should_ be provided for every property)
+		this.getPropertyDefaultValues().put(ModuleImpl.PROPERTYKEY_NAME, "FM-Index");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_INDEXFILE, "");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_LOCATE, "false");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_SAMPLERATE, "" + FmIndex.DEFAULT_SAMPLE_RATE);
+
+		// Define I/O
+		InputPort textInputPort = new InputPort(ID_INPUT_TEXT, "Text to index (optional if an index file is given).", this);
+		textInputPort.addSupportedPipe(CharPipe.class);
+		InputPort queryInputPort = new InputPort(ID_INPUT_QUERIES, "Patterns to look up (one per line).", this);
+		queryInputPort.addSupportedPipe(CharPipe.class);
+		OutputPort outputPort = new OutputPort(ID_OUTPUT, "Tab separated lines of pattern, count and (optionally) comma separated positions.", this);
+		outputPort.addSupportedPipe(CharPipe.class);
+
+		// Add I/O ports to instance (don't forget...)
+		super.addInputPort(textInputPort);
+		super.addInputPort(queryInputPort);
+		super.addOutputPort(outputPort);
+
+	}
+
+	@Override
+	public boolean process() throws Exception {
+
+		FmIndex index;
+		InputPort textInputPort = this.getInputPorts().get(ID_INPUT_TEXT);
+
+		if (textInputPort.isConnected()) {
+
+			// Read the whole text
+			StringBuilder text = new StringBuilder();
+			Reader reader = textInputPort.getInputReader();
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				// Check for interrupt signal
+				if (Thread.interrupted()) {
+					this.closeAllOutputs();
+					throw new InterruptedException("Thread has been interrupted.");
+				}
+				text.append(buffer, 0, read);
+			}
+
+			// Build the index and write it to file if requested
+			index = FmIndex.build(text, this.sampleRate);
+			text = null;
+			if (!this.indexFile.isEmpty()) {
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(this.indexFile)));
+				try {
+					index.write(out);
+				} finally {
+					out.close();
+				}
+				Logger.getLogger("").log(Level.INFO, "Wrote FM-index of " + index.length() + " chars to " + this.indexFile);
+			}
+
+		} else if (!this.indexFile.isEmpty()) {
+
+			// Read the index from file
+			InputStream in = new BufferedInputStream(new FileInputStream(new File(this.indexFile)));
+			try {
+				index = FmIndex.read(in);
+			} finally {
+				in.close();
+			}
+
+		} else {
+			this.closeAllOutputs();
+			throw new Exception("Either the text input has to be connected or an index file has to be given.");
+		}
+
+		// Answer the queries
+		InputPort queryInputPort = this.getInputPorts().get(ID_INPUT_QUERIES);
+		if (queryInputPort.isConnected()) {
+			OutputPort outputPort = this.getOutputPorts().get(ID_OUTPUT);
+			BufferedReader queryReader = new BufferedReader(queryInputPort.getInputReader());
+			String pattern;
+			while ((pattern = queryReader.readLine()) != null) {
+
+				// Check for interrupt signal
+				if (Thread.interrupted()) {
+					this.closeAllOutputs();
+					throw new InterruptedException("Thread has been interrupted.");
+				}
+
+				if (pattern.isEmpty())
+					continue;
+
+				StringBuilder line = new StringBuilder(pattern);
+				if (this.locate) {
+					int[] positions = index.locate(pattern);
+					line.append('\t').append(positions.length).append('\t');
+					for (int i = 0; i < positions.length; i++) {
+						if (i > 0)
+							line.append(',');
+						line.append(positions[i]);
+					}
+				} else
+					line.append('\t').append(index.count(pattern));
+				outputPort.outputToAllCharPipes(line.append(System.lineSeparator()).toString());
+			}
+		}
+
+		// Close outputs (important!)
+		this.closeAllOutputs();
+
+		// Done
+		return true;
+	}
+
+	@Override
+	public void applyProperties() throws Exception {
+
+		// Set defaults for properties not yet set
+		super.setDefaultsIfMissing();
+
+		// Apply own properties
+		this.indexFile = this.getProperties().getProperty(PROPERTYKEY_INDEXFILE,
+				this.getPropertyDefaultValues().get(PROPERTYKEY_INDEXFILE)).trim();
+		String value = this.getProperties().getProperty(PROPERTYKEY_LOCATE,
+				this.getPropertyDefaultValues().get(PROPERTYKEY_LOCATE));
+		if (value != null && !value.isEmpty())
+			this.locate = Boolean.parseBoolean(value);
+		value = this.getProperties().getProperty(PROPERTYKEY_SAMPLERATE,
+				this.getPropertyDefaultValues().get(PROPERTYKEY_SAMPLERATE));
+		if (value != null && !value.isEmpty())
+			this.sampleRate = Integer.parseInt(value);
+
+		// Apply parent object's properties (just the name variable actually)
+		super.applyProperties();
+	}
+
+}
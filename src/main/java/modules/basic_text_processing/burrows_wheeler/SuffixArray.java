@@ -0,0 +1,178 @@
+package modules.basic_text_processing.burrows_wheeler;
+
+import java.util.Arrays;
+
+/**
+ * Linear time suffix array construction by induced sorting (SA-IS, see Nong,
+ * Zhang &amp; Chan: "Two Efficient Algorithms for Linear Time Suffix Array
+ * Construction", IEEE Transactions on Computers 60(10), 2011).
+ */
+public final class SuffixArray {
+
+	// class should not be instantiated
+	private SuffixArray() {
+	}
+
+	/**
+	 * Returns the suffix array of the given string, i.e. the start positions
+	 * of all suffixes in lexicographical order (comparing chars by their
+	 * numerical value; a suffix that is a prefix of another one comes first).
+	 * @param str Input string
+	 * @return Suffix array
+	 */
+	public static int[] build(CharSequence str) {
+		int n = str.length();
+		// map chars to 1..K-1 and append the sentinel 0
+		int[] s = new int[n + 1];
+		int min = Character.MAX_VALUE;
+		int max = Character.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			min = Math.min(min, str.charAt(i));
+			max = Math.max(max, str.charAt(i));
+		}
+		for (int i = 0; i < n; i++)
+			s[i] = str.charAt(i) - min + 1;
+		int alphabetSize = n == 0 ? 1 : max - min + 2;
+
+		int[] sa = build(s, alphabetSize);
+		// drop the sentinel suffix (always first)
+		return Arrays.copyOfRange(sa, 1, sa.length);
+	}
+
+	/**
+	 * Returns the suffix array of the given integer string.
+	 * @param s Input; the last element has to be 0 and 0 must not occur anywhere else
+	 * @param alphabetSize All values of the input are smaller than this
+	 * @return Suffix array (including the sentinel suffix, which is always the first element)
+	 */
+	public static int[] build(int[] s, int alphabetSize) {
+		if (s.length == 0 || s[s.length - 1] != 0)
+			throw new IllegalArgumentException("The input has to end with the sentinel 0.");
+		int[] sa = new int[s.length];
+		sais(s, sa, s.length, alphabetSize);
+		return sa;
+	}
+
+	private static void sais(int[] s, int[] sa, int n, int alphabetSize) {
+		if (n == 1) {
+			sa[0] = 0;
+			return;
+		}
+
+		// classify the suffixes into S-type (true) and L-type (false)
+		boolean[] t = new boolean[n];
+		t[n - 1] = true;
+		for (int i = n - 2; i >= 0; i--)
+			t[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && t[i + 1]);
+
+		// stage 1: sort the LMS substrings
+		int[] buckets = new int[alphabetSize];
+		bucketEnds(s, buckets, n);
+		Arrays.fill(sa, 0, n, -1);
+		for (int i = 1; i < n; i++)
+			if (isLMS(t, i))
+				sa[--buckets[s[i]]] = i;
+		induceL(s, sa, t, buckets, n);
+		induceS(s, sa, t, buckets, n);
+
+		// compact the sorted LMS substrings into the first n1 items
+		int n1 = 0;
+		for (int i = 0; i < n; i++)
+			if (isLMS(t, sa[i]))
+				sa[n1++] = sa[i];
+
+		// name the LMS substrings
+		Arrays.fill(sa, n1, n, -1);
+		int name = 0;
+		int prev = -1;
+		for (int i = 0; i < n1; i++) {
+			int pos = sa[i];
+			boolean diff = false;
+			for (int d = 0; d < n; d++) {
+				if (prev == -1 || s[pos + d] != s[prev + d] || t[pos + d] != t[prev + d]) {
+					diff = true;
+					break;
+				} else if (d > 0 && (isLMS(t, pos + d) || isLMS(t, prev + d)))
+					break;
+			}
+			if (diff) {
+				name++;
+				prev = pos;
+			}
+			sa[n1 + pos / 2] = name - 1;
+		}
+		for (int i = n - 1, j = n - 1; i >= n1; i--)
+			if (sa[i] >= 0)
+				sa[j--] = sa[i];
+
+		// stage 2: sort the reduced problem (recursively if names are not unique)
+		int[] s1 = Arrays.copyOfRange(sa, n - n1, n);
+		int[] sa1 = new int[n1];
+		if (name < n1)
+			sais(s1, sa1, n1, name);
+		else
+			for (int i = 0; i < n1; i++)
+				sa1[s1[i]] = i;
+
+		// stage 3: induce the suffix array from the sorted LMS suffixes
+		for (int i = 1, j = 0; i < n; i++)
+			if (isLMS(t, i))
+				s1[j++] = i;
+		for (int i = 0; i < n1; i++)
+			sa1[i] = s1[sa1[i]];
+		bucketEnds(s, buckets, n);
+		Arrays.fill(sa, 0, n, -1);
+		for (int i = n1 - 1; i >= 0; i--) {
+			int j = sa1[i];
+			sa[--buckets[s[j]]] = j;
+		}
+		induceL(s, sa, t, buckets, n);
+		induceS(s, sa, t, buckets, n);
+	}
+
+	private static boolean isLMS(boolean[] t, int i) {
+		return i > 0 && t[i] && !t[i - 1];
+	}
+
+	private static void bucketStarts(int[] s, int[] buckets, int n) {
+		Arrays.fill(buckets, 0);
+		for (int i = 0; i < n; i++)
+			buckets[s[i]]++;
+		int sum = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			int count = buckets[i];
+			buckets[i] = sum;
+			sum += count;
+		}
+	}
+
+	private static void bucketEnds(int[] s, int[] buckets, int n) {
+		Arrays.fill(buckets, 0);
+		for (int i = 0; i < n; i++)
+			buckets[s[i]]++;
+		int sum = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			sum += buckets[i];
+			buckets[i] = sum;
+		}
+	}
+
+	private static void induceL(int[] s, int[] sa, boolean[] t, int[] buckets, int n) {
+		bucketStarts(s, buckets, n);
+		for (int i = 0; i < n; i++) {
+			int j = sa[i] - 1;
+			if (j >= 0 && !t[j])
+				sa[buckets[s[j]]++] = j;
+		}
+	}
+
+	private static void induceS(int[] s, int[] sa, boolean[] t, int[] buckets, int n) {
+		bucketEnds(s, buckets, n);
+		for (int i = n - 1; i >= 0; i--) {
+			int j = sa[i] - 1;
+			if (j >= 0 && t[j])
+				sa[--buckets[s[j]]] = j;
+		}
+	}
+
+}
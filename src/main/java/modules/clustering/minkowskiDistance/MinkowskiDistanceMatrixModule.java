@@ -1,25 +1,29 @@
 package modules.clustering.minkowskiDistance;
 
+import java.io.BufferedWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.TreeMap;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
+import common.PairwiseDistances;
 import common.StringUnescaper;
-import common.VectorCalculation;
 import common.parallelization.CallbackReceiver;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 
 import base.workbench.ModuleRunner;
 
@@ -48,6 +52,12 @@ public class MinkowskiDistanceMatrixModule extends ModuleImpl {
 	private String outputdelimiter;
 	private String emptyValue;
 
+	// Types for deserializing the JSON input and serializing the output rows
+	private static final Type INPUT_TYPE = new TypeToken<TreeMap<String, List<Double>>>() {
+	}.getType();
+	private static final Type OUTPUT_ROW_TYPE = new TypeToken<HashMap<String, Double>>() {
+	}.getType();
+
 	public MinkowskiDistanceMatrixModule(CallbackReceiver callbackReceiver, Properties properties) throws Exception {
 
 		// Call parent constructor
@@ -94,17 +104,14 @@ public class MinkowskiDistanceMatrixModule extends ModuleImpl {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public boolean process() throws Exception {
 
 		// JSON parser
 		Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-		// Minkowski Distance matrix
-		Map<String, Map<String, Double>> minkowskiDistanceMatrix = new TreeMap<String, Map<String, Double>>();
-
-		Map<String, List<Double>> aberrationValuesMap = null;
+		// Vectors sorted by their keys
+		TreeMap<String, List<Double>> aberrationValuesMap = null;
 		
 		if (this.inputFormat.equals("csv")){
 			Scanner lineScanner = new Scanner(this.getInputPorts().get(ID_INPUT).getInputReader());
@@ -140,86 +147,87 @@ public class MinkowskiDistanceMatrixModule extends ModuleImpl {
 		
 		// Read input
 		aberrationValuesMap = gson.fromJson(
-				this.getInputPorts().get(ID_INPUT).getInputReader(), new HashMap<String, List<Double>>().getClass());
+				this.getInputPorts().get(ID_INPUT).getInputReader(), INPUT_TYPE);
 		
 		} else {
 			throw new Exception("Unrecognised input format '"+this.inputFormat+"'.");
 		}
 
+		if (!this.outputFormat.equals("json") && !this.outputFormat.equals("csv")) {
+			throw new Exception("Unknown output format specified: '"+this.outputFormat+"'. Valid values are 'csv' or 'json'.");
+		}
+
 		/*
-		 * Iterate through map, removing the current item from it and comparing
-		 * it to the remainder (to avoid comparing a pair twice [A-B and B-A] or
-		 * an element to itself).
+		 * Pack the vectors into one contiguous array (row after row), so the
+		 * distances can be computed without boxing and in cache-sized tiles.
 		 */
-		Iterator<Entry<String, List<Double>>> types = aberrationValuesMap.entrySet().iterator();
-		while (types.hasNext()) {
-
-			// Remove entry
-			Entry<String, List<Double>> entry = types.next();
-			types.remove();
-
-			// Create result map for current entry
-			Map<String, Double> distanceMap = new HashMap<String, Double>();
-
-			// Add result map to result matrix
-			minkowskiDistanceMatrix.put(entry.getKey(), distanceMap);
-
-			// Second level iteration to compare the current entry with the rest
-			Iterator<Entry<String, List<Double>>> remainingTypes = aberrationValuesMap.entrySet().iterator();
-			while (remainingTypes.hasNext()) {
-
-				Entry<String, List<Double>> comparisonEntry = remainingTypes.next();
-
-				// Calculate distance
-				double distance = VectorCalculation.calculateMinkowskiDistance(entry.getValue(),
-						comparisonEntry.getValue());
-
-				// Store result
-				distanceMap.put(comparisonEntry.getKey(), distance);
-
+		final String[] keys = aberrationValuesMap.keySet().toArray(new String[aberrationValuesMap.size()]);
+		int dimensions = 0;
+		if (keys.length > 0 && aberrationValuesMap.get(keys[0]) != null)
+			dimensions = aberrationValuesMap.get(keys[0]).size();
+		double[] vectors = new double[keys.length * dimensions];
+		for (int i = 0; i < keys.length; i++) {
+			List<Double> values = aberrationValuesMap.get(keys[i]);
+			if (keys.length > 1 && (values == null || values.size() != dimensions)) {
+				throw new Exception("Sets must both be non-null and equal in length.");
+			}
+			for (int d = 0; d < dimensions; d++) {
+				vectors[i * dimensions + d] = values.get(d);
 			}
-
 		}
-		
-		// Output
-		if (this.outputFormat.equals("json")) {
-			// Prepare JSON output
-			String jsonOutput = gson.toJson(minkowskiDistanceMatrix);
+		aberrationValuesMap = null;
 
-			// Write output
-			this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(jsonOutput);
-		} else if (this.outputFormat.equals("csv")) {
+		/*
+		 * Compare each entry to the ones after it only (to avoid comparing a
+		 * pair twice [A-B and B-A] or an element to itself); the rows are
+		 * written out as soon as they are complete.
+		 */
+		final Writer writer = new BufferedWriter(new OutputPortWriter(this.getOutputPorts().get(ID_OUTPUT)));
+		PairwiseDistances distances = new PairwiseDistances(keys.length,
+				PairwiseDistances.minkowski(vectors, dimensions, 2d));
+
+		if (this.outputFormat.equals("json")) {
+			final JsonWriter jsonWriter = new JsonWriter(writer);
+			jsonWriter.setIndent("  ");
+			jsonWriter.setHtmlSafe(true);
+			jsonWriter.beginObject();
+			distances.compute(new PairwiseDistances.RowHandler() {
+				@Override
+				public void handleRow(int row, double[] rowDistances) throws Exception {
+					Map<String, Double> distanceMap = new HashMap<String, Double>();
+					for (int j = row + 1; j < keys.length; j++) {
+						distanceMap.put(keys[j], rowDistances[j]);
+					}
+					jsonWriter.name(keys[row]);
+					gson.toJson(distanceMap, OUTPUT_ROW_TYPE, jsonWriter);
+				}
+			});
+			jsonWriter.endObject();
+			jsonWriter.flush();
+		} else {
 			// Write CSV header line
-			this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(this.outputdelimiter);
-			Iterator<String> matrixFirstLevelKeys = minkowskiDistanceMatrix.keySet().iterator();
-			while (matrixFirstLevelKeys.hasNext()){
-				String matrixFirstLevelKey = matrixFirstLevelKeys.next();
-				this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(matrixFirstLevelKey+this.outputdelimiter);
+			writer.write(this.outputdelimiter);
+			for (String key : keys) {
+				writer.write(key + this.outputdelimiter);
 			}
-			this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes("\n");
+			writer.write("\n");
 			
-			// Write data lines
-			matrixFirstLevelKeys = minkowskiDistanceMatrix.keySet().iterator();
-			while (matrixFirstLevelKeys.hasNext()){
-				String matrixFirstLevelKey = matrixFirstLevelKeys.next();
-				this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(matrixFirstLevelKey+this.outputdelimiter);
-				Iterator<String> matrixSecondLevelKeys = minkowskiDistanceMatrix.keySet().iterator();
-				while (matrixSecondLevelKeys.hasNext()){
-					String matrixSecondLevelKey = matrixSecondLevelKeys.next();
-					Double value = minkowskiDistanceMatrix.get(matrixFirstLevelKey).get(matrixSecondLevelKey);
-					if (value == null)
-						this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(this.emptyValue+this.outputdelimiter);
-					else
-						this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes(value+this.outputdelimiter);
+			// Write data lines (the lower triangle and the diagonal are empty)
+			distances.compute(new PairwiseDistances.RowHandler() {
+				@Override
+				public void handleRow(int row, double[] rowDistances) throws Exception {
+					writer.write(keys[row] + outputdelimiter);
+					for (int j = 0; j < keys.length; j++) {
+						if (j <= row)
+							writer.write(emptyValue + outputdelimiter);
+						else
+							writer.write(rowDistances[j] + outputdelimiter);
+					}
+					writer.write("\n");
 				}
-				this.getOutputPorts().get(ID_OUTPUT).outputToAllCharPipes("\n");
-			}
-			
-			
-		} else {
-			throw new Exception("Unknown output format specified: '"+this.outputFormat+"'. Valid values are 'csv' or 'json'.");
+			});
 		}
-		
+		writer.flush();
 
 		// Close output port
 		this.closeAllOutputs();
@@ -2,6 +2,7 @@ package modules.clustering.treeSimilarityClustering;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import models.ExtensibleTreeNode;
@@ -11,6 +12,7 @@ public class NodeComparator {
 	private int maximaleAuswertungsEbene = -1;
 	private double ebenenexponent = 0d;
 	private boolean ebenenFaktorNurAufTrefferAnwenden = false;
+	private SubtreeSignatures signaturen = null;
 	
 	public NodeComparator() {
 		super();
@@ -40,6 +42,25 @@ public class NodeComparator {
 		this.ebenenexponent = ebenenexponent;
 	}
 
+	public boolean isEbenenFaktorNurAufTrefferAnwenden() {
+		return ebenenFaktorNurAufTrefferAnwenden;
+	}
+
+	public SubtreeSignatures getSignaturen() {
+		return signaturen;
+	}
+
+	/**
+	 * Setzt die Signaturen der Teilbaeume. Baeume, deren Signaturen bekannt
+	 * sind, vergleicht {@link #vergleiche(ExtensibleTreeNode, ExtensibleTreeNode)}
+	 * direkt, ohne sie zu verschmelzen; gleich aufgebaute Teilbaeume werden
+	 * dabei nicht durchlaufen.
+	 * @param signaturen Signaturen (null, um stets zu verschmelzen)
+	 */
+	public void setSignaturen(SubtreeSignatures signaturen) {
+		this.signaturen = signaturen;
+	}
+
 	/**
 	 * Vergleicht die Baeume miteinander, deren WurzelExtensibleTreeNode uebergeben wurden.
 	 * @param k1 WurzelExtensibleTreeNode 1
@@ -48,12 +69,59 @@ public class NodeComparator {
 	 */
 	public Double vergleiche(ExtensibleTreeNode k1, ExtensibleTreeNode k2) {
 
+		// Ggf. ohne Verschmelzen vergleichen
+		if (this.signaturen != null && this.signaturen.contains(k1) && this.signaturen.contains(k2)) {
+			double trefferWert = this.ermittleTrefferwert(k1, k2, 0);
+			double gesamtWert = this.signaturen.getValues(k1, 0, this.maximaleAuswertungsEbene, this.ebenenexponent, this.ebenenFaktorNurAufTrefferAnwenden)[1]
+					+ this.signaturen.getValues(k2, 0, this.maximaleAuswertungsEbene, this.ebenenexponent, this.ebenenFaktorNurAufTrefferAnwenden)[1];
+			return new Double(trefferWert / gesamtWert);
+		}
+
 		ExtensibleTreeNode verschmolzenerBaum = verschmelzeBaeume(k1, k2);
 		Double[] trefferWert = this.ermittleExtensibleTreeNodeTrefferwert(verschmolzenerBaum, this.maximaleAuswertungsEbene, this.ebenenexponent);
 		return new Double(trefferWert[0] / trefferWert[1]);
 
 	}
 	
+	/**
+	 * Ermittelt den Trefferwert, den der Baum aus der Verschmelzung der beiden
+	 * uebergebenen ExtensibleTreeNode haette (vgl. {@link #verschmelzeBaeume(ExtensibleTreeNode, ExtensibleTreeNode)}).
+	 * Nur Kinder, die beide ExtensibleTreeNode haben, koennen Treffer enthalten;
+	 * sind zwei Teilbaeume gleich aufgebaut, ist jeder ihrer ExtensibleTreeNode ein
+	 * Treffer und ihr Wert wird den Signaturen entnommen.
+	 * @param k1 ExtensibleTreeNode 1
+	 * @param k2 ExtensibleTreeNode 2
+	 * @param ebene Ebene der beiden ExtensibleTreeNode
+	 * @return Trefferwert
+	 */
+	private double ermittleTrefferwert(ExtensibleTreeNode k1, ExtensibleTreeNode k2, int ebene) {
+
+		// Gleich aufgebaute Teilbaeume
+		if (this.signaturen.sameShape(k1, k2)) {
+			return this.signaturen.getValues(k1, ebene, this.maximaleAuswertungsEbene, this.ebenenexponent, this.ebenenFaktorNurAufTrefferAnwenden)[0]
+					+ this.signaturen.getValues(k2, ebene, this.maximaleAuswertungsEbene, this.ebenenexponent, this.ebenenFaktorNurAufTrefferAnwenden)[0];
+		}
+
+		double trefferWert = 0d;
+		if (ebene > 0 && k1.getNodeValue().equals(k2.getNodeValue())) {
+			trefferWert += (k1.getNodeCounter() + k2.getNodeCounter()) * Math.pow(ebene, this.ebenenexponent);
+		}
+
+		// Gemeinsame Kinder durchlaufen
+		if (ebene < this.maximaleAuswertungsEbene || this.maximaleAuswertungsEbene < 0) {
+			Iterator<Entry<String, ExtensibleTreeNode>> kinder = k1.getChildNodes().entrySet().iterator();
+			while (kinder.hasNext()) {
+				Entry<String, ExtensibleTreeNode> kind = kinder.next();
+				ExtensibleTreeNode kind2 = k2.getChildNode(kind.getKey());
+				if (kind2 != null) {
+					trefferWert += this.ermittleTrefferwert(kind.getValue(), kind2, ebene + 1);
+				}
+			}
+		}
+
+		return trefferWert;
+	}
+	
 	/**
 	 * Vergleicht alle uebergebenen Baeume miteinander und gibt eine Matrix aus Uebereinstimmungsquotienten zurueck.
 	 * @param ExtensibleTreeNodeListe Liste der WurzelExtensibleTreeNode der miteinander zu vergleichenden Baeume.
@@ -85,8 +153,8 @@ public class NodeComparator {
 				ExtensibleTreeNode vergleichsBaumWurzel1;
 				ExtensibleTreeNode vergleichsBaumWurzel2;
 				if (vergleichAufVergleichswortzweigBeschraenken) {
-					vergleichsBaumWurzel1 = ExtensibleTreeNodeListe.get(i).getChildNodes().get(ExtensibleTreeNodeListe.get(i).getNodeValue());
-					vergleichsBaumWurzel2 = ExtensibleTreeNodeListe.get(j).getChildNodes().get(ExtensibleTreeNodeListe.get(j).getNodeValue());
+					vergleichsBaumWurzel1 = ExtensibleTreeNodeListe.get(i).getChildNode(ExtensibleTreeNodeListe.get(i).getNodeValue());
+					vergleichsBaumWurzel2 = ExtensibleTreeNodeListe.get(j).getChildNode(ExtensibleTreeNodeListe.get(j).getNodeValue());
 				} else {
 					vergleichsBaumWurzel1 = ExtensibleTreeNodeListe.get(i);
 					vergleichsBaumWurzel2 = ExtensibleTreeNodeListe.get(j);
@@ -146,31 +214,20 @@ public class NodeComparator {
 			ergebnisExtensibleTreeNode.setNodeValue(ExtensibleTreeNode1.getNodeValue());
 
 			// Schleife ueber Kinder des ersten ExtensibleTreeNodes
-			Iterator<String> k1Kinder = ExtensibleTreeNode1.getChildNodes().keySet().iterator();
+			Iterator<Entry<String, ExtensibleTreeNode>> k1Kinder = ExtensibleTreeNode1.getChildNodes().entrySet().iterator();
 			while (k1Kinder.hasNext()) {
 
 				// Variable fuer neuen KindExtensibleTreeNode definieren
 				ExtensibleTreeNode kindExtensibleTreeNode;
 
 				// Name des Kindes von ExtensibleTreeNode1 ermitteln
-				String k1KindName = k1Kinder.next();
+				Entry<String, ExtensibleTreeNode> k1Kind = k1Kinder.next();
+				String k1KindName = k1Kind.getKey();
 
 				// Pruefen, ob ExtensibleTreeNode2 existiert und ebenfalls ein solches Kind
-				// hat
-				if (ExtensibleTreeNode2 != null
-						&& ExtensibleTreeNode2.getChildNodes().containsKey(k1KindName)) {
-					// Kind mit diesem Namen gefunden, steige hinab
-					kindExtensibleTreeNode = this.verschmelzeBaeume(ExtensibleTreeNode1.getChildNodes()
-							.get(k1KindName),
-							ExtensibleTreeNode2.getChildNodes().get(k1KindName));
-
-				} else {
-					// Kein Kind mit diesem Namen gefunden oder ExtensibleTreeNode2 ist
-					// Null, steige hinab
-					kindExtensibleTreeNode = this.verschmelzeBaeume(ExtensibleTreeNode1.getChildNodes()
-							.get(k1KindName), null);
-
-				}
+				// hat; steige in jedem Fall hinab
+				ExtensibleTreeNode k2Kind = ExtensibleTreeNode2 != null ? ExtensibleTreeNode2.getChildNode(k1KindName) : null;
+				kindExtensibleTreeNode = this.verschmelzeBaeume(k1Kind.getValue(), k2Kind);
 
 				// Neuen KindExtensibleTreeNode an Ergebnis anfuegen
 				ergebnisExtensibleTreeNode.getChildNodes().put(k1KindName, kindExtensibleTreeNode);
@@ -198,14 +255,15 @@ public class NodeComparator {
 			}
 
 			// Schleife ueber Kinder des ersten ExtensibleTreeNodes
-			Iterator<String> k2Kinder = ExtensibleTreeNode2.getChildNodes().keySet().iterator();
+			Iterator<Entry<String, ExtensibleTreeNode>> k2Kinder = ExtensibleTreeNode2.getChildNodes().entrySet().iterator();
 			while (k2Kinder.hasNext()) {
 
 				// Variable fuer neuen KindExtensibleTreeNode definieren
 				ExtensibleTreeNode kindExtensibleTreeNode;
 
 				// Name des Kindes von ExtensibleTreeNode1 ermitteln
-				String k2KindName = k2Kinder.next();
+				Entry<String, ExtensibleTreeNode> k2Kind = k2Kinder.next();
+				String k2KindName = k2Kind.getKey();
 
 				// Falls dieser ExtensibleTreeNode schon im Ergebnis existiert, kann
 				// abgebrochen werden
@@ -213,22 +271,10 @@ public class NodeComparator {
 					continue;
 				}
 
-				// Pruefen, ob ExtensibleTreeNode2 existiert und ebenfalls ein solches Kind
-				// hat
-				if (ExtensibleTreeNode1 != null
-						&& ExtensibleTreeNode1.getChildNodes().containsKey(k2KindName)) {
-					// Kind mit diesem Namen gefunden, steige hinab
-					kindExtensibleTreeNode = this.verschmelzeBaeume(ExtensibleTreeNode1.getChildNodes()
-							.get(k2KindName),
-							ExtensibleTreeNode2.getChildNodes().get(k2KindName));
-
-				} else {
-					// Kein Kind mit diesem Namen gefunden oder ExtensibleTreeNode2 ist
-					// Null, steige hinab
-					kindExtensibleTreeNode = this.verschmelzeBaeume(null, ExtensibleTreeNode2
-							.getChildNodes().get(k2KindName));
-
-				}
+				// Pruefen, ob ExtensibleTreeNode1 existiert und ebenfalls ein solches Kind
+				// hat; steige in jedem Fall hinab
+				ExtensibleTreeNode k1Kind = ExtensibleTreeNode1 != null ? ExtensibleTreeNode1.getChildNode(k2KindName) : null;
+				kindExtensibleTreeNode = this.verschmelzeBaeume(k1Kind, k2Kind.getValue());
 
 				// Neuen KindExtensibleTreeNode an Ergebnis anfuegen
 				ergebnisExtensibleTreeNode.getChildNodes().put(k2KindName, kindExtensibleTreeNode);
@@ -301,11 +347,9 @@ public class NodeComparator {
 
 		if (ebene < maxebene || maxebene <0) {
 			// Kinder durchlaufen
-			Iterator<String> kinder = ExtensibleTreeNode.getChildNodes().keySet().iterator();
+			Iterator<ExtensibleTreeNode> kinder = ExtensibleTreeNode.getChildNodes().values().iterator();
 			while (kinder.hasNext()) {
-				String kindName = kinder.next();
-				Double[] kindExtensibleTreeNodeMatches = ermittleExtensibleTreeNodeTrefferwert(ExtensibleTreeNode
-						.getChildNodes().get(kindName), ebene + 1, maxebene,
+				Double[] kindExtensibleTreeNodeMatches = ermittleExtensibleTreeNodeTrefferwert(kinder.next(), ebene + 1, maxebene,
 						ebenenexponent);
 				ExtensibleTreeNodeMatches[0] += kindExtensibleTreeNodeMatches[0];
 				ExtensibleTreeNodeMatches[1] += kindExtensibleTreeNodeMatches[1];
@@ -0,0 +1,210 @@
+package modules.clustering.treeSimilarityClustering;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import models.ExtensibleTreeNode;
+
+/**
+ * Canonical ids of the subtrees of one or more trees (Merkle-style: a
+ * node's id is derived from its own label and its children's ids, so equal
+ * subtrees get equal ids wherever they occur). Each subtree gets
+ * <ul>
+ * <li>a shape id (node values and child keys) -- if two subtrees share it,
+ * every node of the merged subtree is a match,</li>
+ * <li>a full id (shape plus node counters) -- used to memorise the values a
+ * subtree adds to a comparison,</li>
+ * <li>its height.</li>
+ * </ul>
+ * Trees must not be changed after they have been added.
+ */
+public class SubtreeSignatures {
+
+	/*
+	 * Signature of one node
+	 */
+	private static class Signature {
+		final int shapeId;
+		final int fullId;
+		final int height;
+
+		Signature(int shapeId, int fullId, int height) {
+			this.shapeId = shapeId;
+			this.fullId = fullId;
+			this.height = height;
+		}
+	}
+
+	/*
+	 * Interning key (label, child keys and ids)
+	 */
+	private static class Key {
+		final String value;
+		final String[] keys;
+		final int[] ids;
+		final int hash;
+
+		Key(String value, String[] keys, int[] ids) {
+			this.value = value;
+			this.keys = keys;
+			this.ids = ids;
+			this.hash = 31 * (31 * (value == null ? 0 : value.hashCode()) + Arrays.hashCode(keys)) + Arrays.hashCode(ids);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return this.hash == other.hash && (this.value == null ? other.value == null : this.value.equals(other.value))
+					&& Arrays.equals(this.keys, other.keys) && Arrays.equals(this.ids, other.ids);
+		}
+	}
+
+	private final Map<ExtensibleTreeNode, Signature> signatures = new IdentityHashMap<ExtensibleTreeNode, Signature>();
+	private final Map<Key, Integer> shapeIds = new HashMap<Key, Integer>();
+	private final Map<Key, Integer> fullIds = new HashMap<Key, Integer>();
+
+	// Memorised values of subtrees (per full id and level) for each comparator setting
+	private final Map<String, Map<Long, double[]>> values = new ConcurrentHashMap<String, Map<Long, double[]>>();
+
+	/**
+	 * Determines the signatures of all nodes of the given tree.
+	 * @param root Root node
+	 */
+	public void add(ExtensibleTreeNode root) {
+		// Nodes in pre-order; processed backwards, children come before their parents
+		List<ExtensibleTreeNode> nodes = new ArrayList<ExtensibleTreeNode>();
+		Deque<ExtensibleTreeNode> stack = new ArrayDeque<ExtensibleTreeNode>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			ExtensibleTreeNode node = stack.pop();
+			if (this.signatures.containsKey(node))
+				continue;
+			nodes.add(node);
+			for (ExtensibleTreeNode child : node.getChildNodes().values())
+				stack.push(child);
+		}
+
+		for (int n = nodes.size() - 1; n >= 0; n--) {
+			ExtensibleTreeNode node = nodes.get(n);
+			int childAmount = node.getChildNodes().size();
+			String[] keys = new String[childAmount];
+			int[] childShapes = new int[childAmount];
+			int[] childFulls = new int[childAmount + 2];
+			int height = 0;
+			int i = 0;
+			for (Entry<String, ExtensibleTreeNode> child : node.getChildNodes().entrySet()) {
+				Signature signature = this.signatures.get(child.getValue());
+				keys[i] = child.getKey();
+				childShapes[i] = signature.shapeId;
+				childFulls[i] = signature.fullId;
+				height = Math.max(height, signature.height + 1);
+				i++;
+			}
+			int shapeId = intern(this.shapeIds, new Key(node.getNodeValue(), keys, childShapes));
+			childFulls[childAmount] = shapeId;
+			childFulls[childAmount + 1] = node.getNodeCounter();
+			int fullId = intern(this.fullIds, new Key(null, null, childFulls));
+			this.signatures.put(node, new Signature(shapeId, fullId, height));
+		}
+	}
+
+	private static int intern(Map<Key, Integer> ids, Key key) {
+		Integer id = ids.get(key);
+		if (id == null) {
+			id = ids.size();
+			ids.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @param node Node of an added tree
+	 * @return True if the signature of the given node is known
+	 */
+	public boolean contains(ExtensibleTreeNode node) {
+		return this.signatures.containsKey(node);
+	}
+
+	/**
+	 * @param node1 Node of an added tree
+	 * @param node2 Node of an added tree
+	 * @return True if both subtrees have the same node values and child keys throughout
+	 */
+	public boolean sameShape(ExtensibleTreeNode node1, ExtensibleTreeNode node2) {
+		return this.signatures.get(node1).shapeId == this.signatures.get(node2).shapeId;
+	}
+
+	/**
+	 * @param node Node of an added tree
+	 * @return Amount of levels below the node
+	 */
+	public int getHeight(ExtensibleTreeNode node) {
+		return this.signatures.get(node).height;
+	}
+
+	/**
+	 * Returns the values the subtree of the given node adds to a comparison,
+	 * supposing all of its nodes are matches: the matching value on index 0 and
+	 * the total value on index 1 (see NodeComparator). The node itself is
+	 * counted unless it is on level 0.
+	 * @param node Node of an added tree
+	 * @param level Level of the node
+	 * @param maxLevel Deepest level to count (&lt;0 to ignore)
+	 * @param exponent Exponent of the level number to weight the counters with
+	 * @param weightMatchesOnly Whether the total value is counted without weight
+	 * @return Matching and total value
+	 */
+	public double[] getValues(ExtensibleTreeNode node, int level, int maxLevel, double exponent, boolean weightMatchesOnly) {
+		Map<Long, double[]> cache = this.values.get(maxLevel + "/" + exponent + "/" + weightMatchesOnly);
+		if (cache == null) {
+			cache = new ConcurrentHashMap<Long, double[]>();
+			this.values.put(maxLevel + "/" + exponent + "/" + weightMatchesOnly, cache);
+		}
+		return this.getValues(node, level, maxLevel, exponent, weightMatchesOnly, cache);
+	}
+
+	private double[] getValues(ExtensibleTreeNode node, int level, int maxLevel, double exponent,
+			boolean weightMatchesOnly, Map<Long, double[]> cache) {
+		Signature signature = this.signatures.get(node);
+
+		// Unweighted and complete subtrees below level 0 add the same values on every level
+		int keyLevel = level;
+		if (level > 0 && exponent == 0d && (maxLevel < 0 || level + signature.height <= maxLevel))
+			keyLevel = 1;
+		Long key = ((long) signature.fullId << 32) | keyLevel;
+		double[] result = cache.get(key);
+		if (result != null)
+			return result;
+
+		result = new double[] { 0d, 0d };
+		if (level > 0) {
+			double weighted = node.getNodeCounter() * Math.pow(level, exponent);
+			result[0] += weighted;
+			result[1] += weightMatchesOnly ? node.getNodeCounter() : weighted;
+		}
+		if (level < maxLevel || maxLevel < 0) {
+			for (ExtensibleTreeNode child : node.getChildNodes().values()) {
+				double[] childResult = this.getValues(child, level + 1, maxLevel, exponent, weightMatchesOnly, cache);
+				result[0] += childResult[0];
+				result[1] += childResult[1];
+			}
+		}
+		cache.put(key, result);
+		return result;
+	}
+}
@@ -0,0 +1,104 @@
+package modules.clustering.treeSimilarityClustering;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import models.ExtensibleTreeNode;
+
+/**
+ * Cheap summary of a tree used to bound the result of
+ * {@link NodeComparator#vergleiche(ExtensibleTreeNode, ExtensibleTreeNode)}
+ * before running it. Only nodes below first level children with the same
+ * key in both trees can be matches, so the matching value of two trees is
+ * at most the weight of these branches; the total value is the sum of both
+ * trees' weights.
+ */
+public class TreeSignature {
+
+	// Weight of the whole tree as counted into the total value
+	private final double totalWeight;
+
+	// Weight of each first level branch as it could be counted into the matching value
+	private final Map<String, Double> branchWeights = new HashMap<String, Double>();
+
+	// One bit per first level key (hash), to rule out common keys quickly
+	private final long keyBits;
+
+	/**
+	 * Determines the signature of the given tree for comparisons using the
+	 * given comparator's settings.
+	 * @param root Root node of the tree
+	 * @param comparator Comparator
+	 */
+	public TreeSignature(ExtensibleTreeNode root, NodeComparator comparator) {
+		int maxLevel = comparator.getMaximaleAuswertungsEbene();
+		double exponent = comparator.getEbenenexponent();
+		boolean weightMatchesOnly = comparator.isEbenenFaktorNurAufTrefferAnwenden();
+
+		double total = 0d;
+		long bits = 0l;
+		Deque<ExtensibleTreeNode> nodes = new ArrayDeque<ExtensibleTreeNode>();
+		Deque<Integer> levels = new ArrayDeque<Integer>();
+		for (Entry<String, ExtensibleTreeNode> branch : root.getChildNodes().entrySet()) {
+			bits |= keyBit(branch.getKey());
+
+			// Sum up the branch (levels 1 to maxLevel)
+			double matchWeight = 0d;
+			nodes.push(branch.getValue());
+			levels.push(1);
+			while (!nodes.isEmpty()) {
+				ExtensibleTreeNode node = nodes.pop();
+				int level = levels.pop();
+				double weighted = node.getNodeCounter() * Math.pow(level, exponent);
+				matchWeight += weighted;
+				total += weightMatchesOnly ? node.getNodeCounter() : weighted;
+				if (level < maxLevel || maxLevel < 0) {
+					for (ExtensibleTreeNode child : node.getChildNodes().values()) {
+						nodes.push(child);
+						levels.push(level + 1);
+					}
+				}
+			}
+			this.branchWeights.put(branch.getKey(), matchWeight);
+		}
+		this.totalWeight = total;
+		this.keyBits = bits;
+	}
+
+	private static long keyBit(String key) {
+		return 1l << ((key.hashCode() * 0x9E3779B9) >>> 26);
+	}
+
+	/**
+	 * Returns an upper bound of the quotient the comparator determines for
+	 * the two trees (NaN if the comparator would yield NaN, i.e. both trees
+	 * are empty).
+	 * @param other Signature of the other tree
+	 * @return Upper bound
+	 */
+	public double maxQuotient(TreeSignature other) {
+		double total = this.totalWeight + other.totalWeight;
+		if (total == 0d)
+			return Double.NaN;
+		if ((this.keyBits & other.keyBits) == 0l)
+			return 0d;
+
+		// Weight of the branches both trees have
+		Map<String, Double> smaller = this.branchWeights;
+		Map<String, Double> larger = other.branchWeights;
+		if (smaller.size() > larger.size()) {
+			smaller = other.branchWeights;
+			larger = this.branchWeights;
+		}
+		double matchWeight = 0d;
+		for (Entry<String, Double> branch : smaller.entrySet()) {
+			Double otherWeight = larger.get(branch.getKey());
+			if (otherWeight != null)
+				matchWeight += branch.getValue() + otherWeight;
+		}
+		return matchWeight / total;
+	}
+}
@@ -20,21 +20,19 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
 
 import models.ExtensibleTreeNode;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
+import modules.ObjectPipe;
 import modules.OutputPort;
 import modules.Pipe;
 import modules.ProgressWatcher;
 import modules.ProgressWatcherThread;
 
-import com.google.gson.Gson;
+import common.PairwiseDistances;
 import common.parallelization.CallbackReceiver;
 
 import base.workbench.ModuleRunner;
@@ -61,6 +59,12 @@ public class TreeSimilarityClusteringModule extends ModuleImpl {
 	private static final String ID_INPUT_REVERSED = "reversed tree";
 	private static final String ID_OUTPUT = "GEXF graph";
 
+	// Pairs per tile edge (tree comparisons are expensive, so tiles are kept small to balance the threads)
+	private static final int TILE_SIZE = 16;
+
+	// Relative tolerance applied to the upper bound of a pair's similarity
+	private static final double BOUND_TOLERANCE = 1e-9;
+
 	// Local variables
 	private long edgeId;
 	private int maxParallelThreads = 8;
@@ -97,9 +101,11 @@ public class TreeSimilarityClusteringModule extends ModuleImpl {
 		// Define I/O
 		InputPort inputPort = new InputPort(ID_INPUT,
 				"ExtensibleTreeNode atomic suffix tree.", this);
+		inputPort.addSupportedPipe(ObjectPipe.class);
 		inputPort.addSupportedPipe(CharPipe.class);
 		InputPort inputPort2 = new InputPort(ID_INPUT_REVERSED,
 				"(optional) ExtensibleTreeNode reversed atomic suffix tree.", this);
+		inputPort2.addSupportedPipe(ObjectPipe.class);
 		inputPort2.addSupportedPipe(CharPipe.class);
 		OutputPort outputPort = new OutputPort(ID_OUTPUT,
 				"GEXF graph.", this);
@@ -117,19 +123,16 @@ public class TreeSimilarityClusteringModule extends ModuleImpl {
 		
 		
 
-		// Instantiate JSON parser
-		Gson gson = new Gson();
-		
 		// Updating status detail
 		this.setStatusDetail("Receiving/parsing input");
 		
-		// Read tree from input & parse it
-		ExtensibleTreeNode rootNode = gson.fromJson(this.getInputPorts().get(ID_INPUT).getInputReader(), ExtensibleTreeNode.class);
+		// Read tree from input (parse it if it arrives JSON-encoded)
+		ExtensibleTreeNode rootNode = this.readObjectFromInputPort(this.getInputPorts().get(ID_INPUT), ExtensibleTreeNode.class);
 		
 		// Read reversed tree from input & parse it
 		ExtensibleTreeNode reversedRootNode = null;
 		if (this.getInputPorts().get(ID_INPUT_REVERSED).isConnected())
-			reversedRootNode = gson.fromJson(this.getInputPorts().get(ID_INPUT_REVERSED).getInputReader(), ExtensibleTreeNode.class);
+			reversedRootNode = this.readObjectFromInputPort(this.getInputPorts().get(ID_INPUT_REVERSED), ExtensibleTreeNode.class);
 		
 		// If a second (reversed) suffix tree is present, make sure it contains the same keys
 		if (reversedRootNode != null && !rootNode.getChildNodes().keySet().equals(reversedRootNode.getChildNodes().keySet())){
@@ -183,7 +186,7 @@ public class TreeSimilarityClusteringModule extends ModuleImpl {
 		 * We have to do this in advance to be able to insert the edges without hassle.
 		 */
 		// Map to store the node label <-> graph node relationship
-		Map<String,Node> graphNodes = new HashMap<String,Node>();
+		final Map<String,Node> graphNodes = new HashMap<String,Node>();
 		
 		// Node comparator
 		//NodeComparator comparator = new NodeComparator();
@@ -225,57 +228,90 @@ public class TreeSimilarityClusteringModule extends ModuleImpl {
 		long comparisonsToConduct = (long) ((Math.pow(elementsToCompare, 2)/2)-elementsToCompare);
 		
 		// Track progress
-		ProgressWatcher progress = new ProgressWatcher(comparisonsToConduct);
+		final ProgressWatcher progress = new ProgressWatcher(comparisonsToConduct);
 		Thread progressIndicator = new ProgressWatcherThread(progress,this, this.progressWatcherInterval);
 		progressIndicator.start();
 		
 		/*
-		 *  Compare every type to every other. We will do this by separating one by one
-		 *  from the list and comparing it to the remainder. 
+		 * Compare every type to every other (each pair once). The pairs are
+		 * computed tile by tile on one fork/join pool; pairs whose similarity
+		 * cannot exceed the minimum (judging by the trees' signatures) are
+		 * skipped without comparing the trees.
 		 */
-		
-		// Loop over types again
+		final int typeAmount = typeMap.size();
+		final String[] typeNames = new String[typeAmount];
+		final ExtensibleTreeNode[] typeNodes = new ExtensibleTreeNode[typeAmount];
+		final ExtensibleTreeNode[] reversedTypeNodes = new ExtensibleTreeNode[typeAmount];
+		final TreeSignature[] signatures = new TreeSignature[typeAmount];
+		final TreeSignature[] reversedSignatures = new TreeSignature[typeAmount];
+		final NodeComparator comparatorSettings = new NodeComparator();
+		comparatorSettings.setMaximaleAuswertungsEbene(this.maxComparisonDepth);
+		final SubtreeSignatures subtreeSignatures = new SubtreeSignatures();
+		final boolean compareReversed = reversedRootNode != null;
+		int index = 0;
 		types = typeMap.entrySet().iterator();
-		while(types.hasNext()){
-			
-			// Determine next type to compare
+		while (types.hasNext()) {
 			Entry<String, ExtensibleTreeNode> type = types.next();
-			// Remove it from list
-			types.remove();
-			
-			// Create executor service
-			ExecutorService executor = Executors.newFixedThreadPool(this.maxParallelThreads);
-			
-			// Map for comparison results
-			final ConcurrentHashMap<String,Double> comparisonResultMap = new ConcurrentHashMap<String,Double>();
-			
-			// Loop over remainder
-			Iterator<Entry<String, ExtensibleTreeNode>> typesRemainder = typeMap.entrySet().iterator();
-			while(typesRemainder.hasNext()){
-				// Determine next type to compare to the previously determined
-				Entry<String, ExtensibleTreeNode> typeToCompareTo = typesRemainder.next();
-				// Run comparison
-				Runnable comparisonProcess;
-				if (reversedRootNode != null){
-					comparisonProcess = new ComparisonProcess(this.maxComparisonDepth, new Double(this.minSimilarity), type.getValue(), typeToCompareTo.getValue(), reversedRootNode.getChildNodes().get(type.getKey()), reversedRootNode.getChildNodes().get(typeToCompareTo.getKey()), comparisonResultMap, progress);
-				} else {
-					comparisonProcess = new ComparisonProcess(this.maxComparisonDepth, new Double(this.minSimilarity), type.getValue(), typeToCompareTo.getValue(), comparisonResultMap, progress);
-				}
-				executor.execute(comparisonProcess);
+			typeNames[index] = type.getKey();
+			typeNodes[index] = type.getValue();
+			signatures[index] = new TreeSignature(type.getValue(), comparatorSettings);
+			subtreeSignatures.add(type.getValue());
+			if (compareReversed) {
+				reversedTypeNodes[index] = reversedRootNode.getChildNodes().get(type.getKey());
+				reversedSignatures[index] = new TreeSignature(reversedTypeNodes[index], comparatorSettings);
+				subtreeSignatures.add(reversedTypeNodes[index]);
 			}
-			
-			// Shutdown executor service
-			executor.shutdown();
-			executor.awaitTermination(5000l, TimeUnit.MILLISECONDS);
-			
-			// Put the results into the graph
-			Iterator<Entry<String, Double>> comparisonResults = comparisonResultMap.entrySet().iterator();
-			while(comparisonResults.hasNext()){
-				Entry<String, Double> comparisonResult = comparisonResults.next();
-				Edge edge = graphNodes.get(type.getKey()).connectTo(""+edgeId, "similar", EdgeType.UNDIRECTED, graphNodes.get(comparisonResult.getKey()));
-				edge.setWeight(comparisonResult.getValue().floatValue());
-				this.edgeId++;
+			index++;
+		}
+		typeMap = null;
+
+		// Similarity of a pair, NaN if no edge is to be created
+		final double minimumSimilarity = this.minSimilarity;
+		PairwiseDistances.Metric similarity = new PairwiseDistances.Metric() {
+			@Override
+			public double distance(int i, int j) {
+				try {
+					double quotient = Double.NaN;
+
+					// Upper bound (with some tolerance for rounding)
+					double bound = signatures[i].maxQuotient(signatures[j]);
+					if (compareReversed)
+						bound = (bound + reversedSignatures[i].maxQuotient(reversedSignatures[j])) / 2d;
+					if (bound * (1d + BOUND_TOLERANCE) > minimumSimilarity) {
+						NodeComparator comparator = new NodeComparator();
+						comparator.setMaximaleAuswertungsEbene(maxComparisonDepth);
+						comparator.setSignaturen(subtreeSignatures);
+						quotient = comparator.vergleiche(typeNodes[i], typeNodes[j]);
+						if (compareReversed)
+							quotient = (quotient + comparator.vergleiche(reversedTypeNodes[i], reversedTypeNodes[j])) / 2d;
+						if (!(quotient > minimumSimilarity))
+							quotient = Double.NaN;
+					}
+					return quotient;
+				} finally {
+					progress.countOne();
+				}
 			}
+		};
+
+		// Put the results into the graph (row by row)
+		ForkJoinPool pool = new ForkJoinPool(this.maxParallelThreads);
+		try {
+			new PairwiseDistances(typeAmount, similarity, TILE_SIZE, pool).compute(new PairwiseDistances.RowHandler() {
+				@Override
+				public void handleRow(int row, double[] similarities) throws Exception {
+					for (int j = row + 1; j < typeAmount; j++) {
+						if (Double.isNaN(similarities[j]))
+							continue;
+						Edge edge = graphNodes.get(typeNames[row]).connectTo("" + edgeId, "similar", EdgeType.UNDIRECTED,
+								graphNodes.get(typeNames[j]));
+						edge.setWeight((float) similarities[j]);
+						edgeId++;
+					}
+				}
+			});
+		} finally {
+			pool.shutdown();
 		}
 		
 		// Remove nodes not reaching the minimum degree range, if one is specified // DOES NOT WORK; APPARENTLY NODES CANNOT BE REMOVED
@@ -329,11 +365,14 @@ public class TreeSimilarityClusteringModule extends ModuleImpl {
 		this.minDegree = Integer.parseInt(minDegreeString);*/
 		
 		String maxParallelThreadsString = this.getProperties().getProperty(
-				PROPERTYKEY_MINDEGREE,
+				PROPERTYKEY_MAXPARALLELTHREADS,
 				this.getPropertyDefaultValues()
-						.get(PROPERTYKEY_MINDEGREE));
-		if (maxParallelThreadsString != null)
-		this.maxParallelThreads = Integer.parseInt(maxParallelThreadsString);
+						.get(PROPERTYKEY_MAXPARALLELTHREADS));
+		if (maxParallelThreadsString != null){
+			int value = Integer.parseInt(maxParallelThreadsString);
+			if (value>0)
+				this.maxParallelThreads = value;
+		}
 		
 		String minSimilarityString = this.getProperties().getProperty(
 				PROPERTYKEY_MINSIMILARITY,
@@ -5,13 +5,12 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
 
-import com.google.gson.Gson;
-
 import common.parallelization.CallbackReceiver;
 import models.ExtensibleTreeNode;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
+import modules.ObjectPipe;
 import modules.OutputPort;
 
 import base.workbench.ModuleRunner;
@@ -68,6 +67,7 @@ public class ExtensibleTreeNode2CSVModule extends ModuleImpl {
 		 */
 		InputPort inputPort = new InputPort(ID_INPUT,
 				"ExtensibleTreeNode tree.", this);
+		inputPort.addSupportedPipe(ObjectPipe.class);
 		inputPort.addSupportedPipe(CharPipe.class);
 		OutputPort outputPort = new OutputPort(ID_OUTPUT,
 				"GEXF graph.", this);
@@ -84,11 +84,8 @@ public class ExtensibleTreeNode2CSVModule extends ModuleImpl {
 		
 		
 
-		// Instantiate JSON parser
-		Gson gson = new Gson();
-		
-		// Read tree from input & parse it
-		ExtensibleTreeNode rootNode = gson.fromJson(this.getInputPorts().get(ID_INPUT).getInputReader(), ExtensibleTreeNode.class);
+		// Read tree from input (parse it if it arrives JSON-encoded)
+		ExtensibleTreeNode rootNode = this.readObjectFromInputPort(this.getInputPorts().get(ID_INPUT), ExtensibleTreeNode.class);
 		
 		// Compile set of all nodes of the tree
 		Set<ExtensibleTreeNode> allNodes = new TreeSet<ExtensibleTreeNode>();
@@ -15,16 +15,17 @@ import it.uniroma1.dis.wsngroup.gexf4j.core.impl.data.AttributeListImpl;
 
 import java.util.Calendar;
 import java.util.Iterator;
+import java.util.Map.Entry;
 import java.util.Properties;
 
 import models.ExtensibleTreeNode;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
+import modules.ObjectPipe;
 import modules.OutputPort;
 import modules.Pipe;
 
-import com.google.gson.Gson;
 import common.parallelization.CallbackReceiver;
 
 import base.workbench.ModuleRunner;
@@ -86,6 +87,7 @@ public class ExtensibleTreeNode2GEXFModule extends ModuleImpl {
 		 */
 		InputPort inputPort = new InputPort(ID_INPUT,
 				"ExtensibleTreeNode tree.", this);
+		inputPort.addSupportedPipe(ObjectPipe.class);
 		inputPort.addSupportedPipe(CharPipe.class);
 		OutputPort outputPort = new OutputPort(ID_OUTPUT,
 				"GEXF graph.", this);
@@ -102,11 +104,8 @@ public class ExtensibleTreeNode2GEXFModule extends ModuleImpl {
 		
 		
 
-		// Instantiate JSON parser
-		Gson gson = new Gson();
-		
-		// Read tree from input & parse it
-		ExtensibleTreeNode rootNode = gson.fromJson(this.getInputPorts().get(ID_INPUT).getInputReader(), ExtensibleTreeNode.class);
+		// Read tree from input (parse it if it arrives JSON-encoded)
+		ExtensibleTreeNode rootNode = this.readObjectFromInputPort(this.getInputPorts().get(ID_INPUT), ExtensibleTreeNode.class);
 
 		// Instantiate GEXF writer
 		Gexf gexf = new GexfImpl();
@@ -180,10 +179,10 @@ public class ExtensibleTreeNode2GEXFModule extends ModuleImpl {
 				gexfNode.getAttributeValues().addValue(attrList.get(i),node.getAttributes().get(attrList.get(i)).toString());
 		}
 		
-		Iterator<String> childLabels = node.getChildNodes().keySet().iterator();
-		while (childLabels.hasNext()){
-			String label = childLabels.next();
-			this.convertToGEXF(node.getChildNodes().get(label), graph, gexfNode, attrList, label);
+		Iterator<Entry<String, ExtensibleTreeNode>> children = node.getChildNodes().entrySet().iterator();
+		while (children.hasNext()){
+			Entry<String, ExtensibleTreeNode> child = children.next();
+			this.convertToGEXF(child.getValue(), graph, gexfNode, attrList, child.getKey());
 		}
 		
 	}
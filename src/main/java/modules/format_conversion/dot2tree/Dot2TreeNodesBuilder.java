@@ -0,0 +1,101 @@
+package modules.format_conversion.dot2tree;
+
+import java.util.Map;
+
+import models.Dot2TreeInnerNode;
+import models.Dot2TreeInnerNodesParent;
+import models.Dot2TreeLeafNode;
+import models.Dot2TreeNodes;
+import models.GSTXmlNode;
+
+/**
+ * Builds Dot2TreeNodes objects from the elements of a suffix tree dot file
+ * (see {@link DotTreeParser}). The node frequencies are taken from the GST
+ * XML nodes of the same tree.
+ */
+public class Dot2TreeNodesBuilder implements DotTreeListener {
+
+	private final Map<Integer, Dot2TreeNodes> dot2TreeNodesMap;
+	private final Map<Integer, GSTXmlNode> gstXmlNodes;
+	private final boolean trackParents;
+	private Dot2TreeInnerNode rootNode;
+
+	/**
+	 * @param dot2TreeNodesMap Map to put the nodes into (by node number)
+	 * @param gstXmlNodes GST XML nodes (by node number)
+	 * @param trackParents Whether to create Dot2TreeInnerNodesParent objects
+	 *            for inner nodes (which know their parent) instead of
+	 *            Dot2TreeInnerNode objects
+	 */
+	public Dot2TreeNodesBuilder(Map<Integer, Dot2TreeNodes> dot2TreeNodesMap, Map<Integer, GSTXmlNode> gstXmlNodes,
+			boolean trackParents) {
+		this.dot2TreeNodesMap = dot2TreeNodesMap;
+		this.gstXmlNodes = gstXmlNodes;
+		this.trackParents = trackParents;
+	}
+
+	/**
+	 * @return The root node (null if none was read)
+	 */
+	public Dot2TreeInnerNode getRootNode() {
+		return this.rootNode;
+	}
+
+	@Override
+	public void rootNode(int nodeNumber) {
+		int nodeFreq = this.gstXmlNodes.get(nodeNumber).getNodeFrequency();
+		if (this.trackParents)
+			this.rootNode = new Dot2TreeInnerNodesParent(nodeNumber, nodeFreq, "node1", "");
+		else
+			this.rootNode = new Dot2TreeInnerNode(nodeNumber, nodeFreq, "node1", "");
+
+		// Set tree depth for the root node.
+		this.rootNode.setNodeDepth(0);
+		this.dot2TreeNodesMap.put(nodeNumber, this.rootNode);
+	}
+
+	@Override
+	public void leafNode(int nodeNumber, String label, int[] leafInfo, int leafInfoLength) {
+		int nodeFreq = this.gstXmlNodes.get(nodeNumber).getNodeFrequency();
+		Dot2TreeLeafNode leafNode = new Dot2TreeLeafNode(nodeNumber, nodeFreq, label);
+
+		// Text number, starting point of occurrence and end point.
+		for (int i = 0; i + 2 < leafInfoLength; i += 3)
+			leafNode.setLeafInfo(leafInfo[i], leafInfo[i + 1], leafInfo[i + 2]);
+
+		this.dot2TreeNodesMap.put(nodeNumber, leafNode);
+	}
+
+	@Override
+	public void innerNode(int nodeNumber, String label) {
+		int nodeFreq = this.gstXmlNodes.get(nodeNumber).getNodeFrequency();
+		if (this.trackParents)
+			this.dot2TreeNodesMap.put(nodeNumber, new Dot2TreeInnerNodesParent(nodeNumber, nodeFreq, label));
+		else
+			this.dot2TreeNodesMap.put(nodeNumber, new Dot2TreeInnerNode(nodeNumber, nodeFreq, label));
+	}
+
+	@Override
+	public void edge(int parentNumber, int childNumber, String edgeLabel) {
+		Dot2TreeNodes child = this.dot2TreeNodesMap.get(childNumber);
+		child.setEdgeLabel(edgeLabel);
+		Dot2TreeInnerNode parent = (Dot2TreeInnerNode) this.dot2TreeNodesMap.get(parentNumber);
+		if (child instanceof Dot2TreeInnerNode) {
+			parent.addInnerNode(childNumber, (Dot2TreeInnerNode) child);
+
+			// Add the number of the direct parent.
+			if (this.trackParents)
+				((Dot2TreeInnerNodesParent) child).setParent(parent.getNodeNumber());
+		} else if (child instanceof Dot2TreeLeafNode) {
+			parent.addLeaf(childNumber, (Dot2TreeLeafNode) child);
+		}
+	}
+
+	@Override
+	public void suffixLink(int nodeNumber, int linkNumber) {
+		// Suffix links point upwards (lower node numbers), never in the
+		// opposite direction.
+		((Dot2TreeInnerNode) this.dot2TreeNodesMap.get(nodeNumber)).setSuffixLinks(linkNumber);
+	}
+
+}
@@ -0,0 +1,53 @@
+package modules.format_conversion.dot2tree;
+
+/**
+ * Receives the elements of a suffix tree dot file (as written by
+ * SuffixTree.printTree()) from a {@link DotTreeParser}, in the order in
+ * which they appear in the file.
+ */
+public interface DotTreeListener {
+
+	/**
+	 * Called for the root node (node1).
+	 * @param nodeNumber Node number
+	 * @throws Exception Thrown if the node cannot be processed
+	 */
+	public void rootNode(int nodeNumber) throws Exception;
+
+	/**
+	 * Called for a leaf node.
+	 * @param nodeNumber Node number
+	 * @param label Node label (e.g. "node5")
+	 * @param leafInfo Positions of the leaf as consecutive triples of text
+	 *            number, start and end position (only valid during the call)
+	 * @param leafInfoLength Amount of valid values in leafInfo
+	 * @throws Exception Thrown if the node cannot be processed
+	 */
+	public void leafNode(int nodeNumber, String label, int[] leafInfo, int leafInfoLength) throws Exception;
+
+	/**
+	 * Called for an inner node (other than the root).
+	 * @param nodeNumber Node number
+	 * @param label Node label (e.g. "node5")
+	 * @throws Exception Thrown if the node cannot be processed
+	 */
+	public void innerNode(int nodeNumber, String label) throws Exception;
+
+	/**
+	 * Called for an edge.
+	 * @param parentNumber Number of the parent node
+	 * @param childNumber Number of the child node
+	 * @param edgeLabel Edge label
+	 * @throws Exception Thrown if the edge cannot be processed
+	 */
+	public void edge(int parentNumber, int childNumber, String edgeLabel) throws Exception;
+
+	/**
+	 * Called for a suffix link.
+	 * @param nodeNumber Number of the node the link starts at
+	 * @param linkNumber Number of the node the link points to
+	 * @throws Exception Thrown if the link cannot be processed
+	 */
+	public void suffixLink(int nodeNumber, int linkNumber) throws Exception;
+
+}
@@ -0,0 +1,209 @@
+package modules.format_conversion.dot2tree;
+
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Incremental parser for suffix tree dot files (as written by
+ * SuffixTree.printTree()). The input is read in fixed size chunks and
+ * scanned line by line within a reusable buffer, so the time needed is
+ * linear in the input length and the memory bounded by the longest line.
+ * Recognised elements are passed on to a {@link DotTreeListener}; other
+ * lines (graph attributes, comments) are skipped.
+ *
+ * Recognised lines:
+ * <pre>
+ * 	node1 [label="",...]                  root
+ * 	node5 [label="5                       leaf, followed by one line per
+ *  0 3 7                                 position (text number, start,
+ *  1 0 4",shape=circle]                  end); the last one closes it
+ * 	node7 [label="7",...]                 inner node
+ * 	node1 -> node7[label="ab",...]        edge
+ * 	node7 -> node3 [label="",...]         suffix link
+ * </pre>
+ */
+public class DotTreeParser {
+
+	private static final int BUFFERLENGTH = 8192;
+
+	private final Reader reader;
+
+	// Current line
+	private char[] line = new char[256];
+	private int lineLength = 0;
+	private int position;
+
+	// Leaf whose position lines are being read (leafNumber is -1 if none)
+	private int leafNumber = -1;
+	private String leafLabel;
+	private int[] leafInfo = new int[30];
+	private int leafInfoLength;
+
+	/**
+	 * @param reader Reader to read the dot file from
+	 */
+	public DotTreeParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads the whole input and passes its elements on to the given
+	 * listener.
+	 * @param listener Listener
+	 * @throws Exception Thrown if the input cannot be read, the listener
+	 *             fails or the thread is interrupted
+	 */
+	public void parse(DotTreeListener listener) throws Exception {
+		char[] buffer = new char[BUFFERLENGTH];
+		int readChars = this.reader.read(buffer);
+		while (readChars != -1) {
+
+			// Check for interrupt signal.
+			if (Thread.interrupted())
+				throw new InterruptedException("Thread has been interrupted.");
+
+			int lineStart = 0;
+			for (int i = 0; i < readChars; i++) {
+				if (buffer[i] == '\n' || buffer[i] == '\r') {
+					this.appendToLine(buffer, lineStart, i - lineStart);
+					this.endLine(listener);
+					lineStart = i + 1;
+				}
+			}
+			this.appendToLine(buffer, lineStart, readChars - lineStart);
+
+			readChars = this.reader.read(buffer);
+		}
+		this.endLine(listener);
+	}
+
+	private void appendToLine(char[] chars, int offset, int length) {
+		if (this.lineLength + length > this.line.length)
+			this.line = Arrays.copyOf(this.line, Math.max(this.line.length * 2, this.lineLength + length));
+		System.arraycopy(chars, offset, this.line, this.lineLength, length);
+		this.lineLength += length;
+	}
+
+	private void endLine(DotTreeListener listener) throws Exception {
+		if (this.lineLength > 0)
+			this.parseLine(listener);
+		this.lineLength = 0;
+	}
+
+	private void parseLine(DotTreeListener listener) throws Exception {
+		this.position = 0;
+
+		// Position lines of a leaf
+		if (this.leafNumber >= 0) {
+			if (this.line[0] == ' ') {
+				this.parseLeafInfo(listener);
+				return;
+			}
+			// The leaf was not closed; drop it.
+			this.leafNumber = -1;
+		}
+
+		if (!this.skip("\tnode"))
+			return;
+		int nodeNumber = this.parseNumber();
+		if (nodeNumber < 0)
+			return;
+		int labelEnd = this.position;
+
+		if (nodeNumber == 1 && this.skip(" [")) {
+			listener.rootNode(nodeNumber);
+
+		} else if (this.skip(" [label=\"")) {
+			int labelNumber = this.parseNumber();
+			if (labelNumber < 0)
+				return;
+			if (this.position == this.lineLength) {
+				// Leaf; its positions follow on the next lines.
+				this.leafNumber = labelNumber;
+				this.leafLabel = new String(this.line, 1, labelEnd - 1);
+				this.leafInfoLength = 0;
+			} else if (this.skip("\",") && this.line[this.lineLength - 1] == ']') {
+				listener.innerNode(labelNumber, new String(this.line, 1, labelEnd - 1));
+			}
+
+		} else if (this.skip(" -> node")) {
+			int targetNumber = this.parseNumber();
+			if (targetNumber < 0)
+				return;
+			if (this.skip("[label=\"")) {
+				// The label ends at the last quote followed by a comma and
+				// (somewhere) a closing bracket.
+				int labelStart = this.position;
+				int bracket = this.lastIndexOf(']', labelStart);
+				for (int i = bracket - 2; i > labelStart; i--) {
+					if (this.line[i] == '"' && this.line[i + 1] == ',') {
+						listener.edge(nodeNumber, targetNumber, new String(this.line, labelStart, i - labelStart));
+						break;
+					}
+				}
+			} else if (this.skip(" [label=\"\",") && this.lastIndexOf(']', this.position) >= 0) {
+				listener.suffixLink(nodeNumber, targetNumber);
+			}
+		}
+	}
+
+	/*
+	 * Reads a line with a position triple of the current leaf; the leaf is
+	 * passed on after its last line.
+	 */
+	private void parseLeafInfo(DotTreeListener listener) throws Exception {
+		int textNumber = this.skip(" ") ? this.parseNumber() : -1;
+		int start = textNumber >= 0 && this.skip(" ") ? this.parseNumber() : -1;
+		int end = start >= 0 && this.skip(" ") ? this.parseNumber() : -1;
+		if (end < 0) {
+			this.leafNumber = -1;
+			return;
+		}
+
+		if (this.leafInfoLength + 3 > this.leafInfo.length)
+			this.leafInfo = Arrays.copyOf(this.leafInfo, this.leafInfo.length * 2);
+		this.leafInfo[this.leafInfoLength++] = textNumber;
+		this.leafInfo[this.leafInfoLength++] = start;
+		this.leafInfo[this.leafInfoLength++] = end;
+
+		if (this.position == this.lineLength)
+			return;
+		if (this.skip("\",") && this.lastIndexOf(']', this.position + 1) >= 0)
+			listener.leafNode(this.leafNumber, this.leafLabel, this.leafInfo, this.leafInfoLength);
+		this.leafNumber = -1;
+	}
+
+	private boolean skip(String prefix) {
+		if (this.lineLength - this.position < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (this.line[this.position + i] != prefix.charAt(i))
+				return false;
+		this.position += prefix.length();
+		return true;
+	}
+
+	/*
+	 * Parses the decimal number at the current position; returns -1 if there
+	 * is none.
+	 */
+	private int parseNumber() {
+		int number = 0;
+		int start = this.position;
+		while (this.position < this.lineLength && this.line[this.position] >= '0' && this.line[this.position] <= '9')
+			number = number * 10 + (this.line[this.position++] - '0');
+		return this.position > start ? number : -1;
+	}
+
+	/*
+	 * Returns the last index of the given char in the current line, or -1 if
+	 * it does not occur at or after the given index.
+	 */
+	private int lastIndexOf(char c, int from) {
+		for (int i = this.lineLength - 1; i >= from; i--)
+			if (this.line[i] == c)
+				return i;
+		return -1;
+	}
+
+}
@@ -0,0 +1,131 @@
+package modules.hal;
+
+import java.util.Arrays;
+
+/**
+ * Counts how often a segment occurs at a given distance after another one.
+ * Segments are identified by int ids; the counters of each (id, id) pair are
+ * kept in one primitive array, indexed by the slot the pair occupies in an
+ * open-addressing hash table (linear probing), followed by the offset within
+ * the window.
+ */
+public class CooccurrenceCounts {
+
+	private static final long EMPTY = -1l;
+
+	// Counters per pair (offsets 0 .. windowSize-1)
+	private final int windowSize;
+
+	// Pair keys (first id in the upper, second id in the lower half) and
+	// counters (windowSize per slot)
+	private long[] keys;
+	private int[] counts;
+	private int size;
+	private int shift;
+
+	/**
+	 * Constructor.
+	 * @param windowSize Amount of offsets counted per pair
+	 */
+	public CooccurrenceCounts(int windowSize) {
+		this.windowSize = windowSize;
+		this.allocate(16);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.counts = new int[capacity * this.windowSize];
+		this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		this.size = 0;
+	}
+
+	private static long key(int first, int second) {
+		return ((long) first << 32) | (second & 0xffffffffl);
+	}
+
+	private int slot(long key) {
+		int mask = this.keys.length - 1;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15l) >>> this.shift);
+		while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Increases the counter of the given pair at the given offset.
+	 * @param first Id of the segment occurring first
+	 * @param second Id of the segment following it
+	 * @param offset Position of the second segment within the first one's window (starting with 0)
+	 */
+	public void increment(int first, int second, int offset) {
+		long key = key(first, second);
+		int slot = this.slot(key);
+		if (this.keys[slot] == EMPTY) {
+			if ((this.size + 1) * 2 > this.keys.length) {
+				this.grow();
+				slot = this.slot(key);
+			}
+			this.keys[slot] = key;
+			this.size++;
+		}
+		this.counts[slot * this.windowSize + offset]++;
+	}
+
+	// Doubles the table, keeping it at most half full
+	private void grow() {
+		long[] oldKeys = this.keys;
+		int[] oldCounts = this.counts;
+		this.allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = this.slot(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				System.arraycopy(oldCounts, i * this.windowSize, this.counts, slot * this.windowSize, this.windowSize);
+				this.size++;
+			}
+		}
+	}
+
+	/**
+	 * Copies the counters of the given pair into the given array (zeros if the
+	 * pair never occurred).
+	 * @param first Id of the segment occurring first
+	 * @param second Id of the segment following it
+	 * @param target Array of at least window size length
+	 * @return True if the pair occurred
+	 */
+	public boolean get(int first, int second, int[] target) {
+		long key = key(first, second);
+		int slot = this.slot(key);
+		if (this.keys[slot] == EMPTY) {
+			Arrays.fill(target, 0, this.windowSize, 0);
+			return false;
+		}
+		System.arraycopy(this.counts, slot * this.windowSize, target, 0, this.windowSize);
+		return true;
+	}
+
+	/**
+	 * @return Amount of pairs that occurred
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns all pairs that occurred, each with the first segment's id in the
+	 * upper and the second one's in the lower 32 bits.
+	 * @return Pairs (unordered)
+	 */
+	public long[] pairs() {
+		long[] pairs = new long[this.size];
+		int i = 0;
+		for (long key : this.keys) {
+			if (key != EMPTY)
+				pairs[i++] = key;
+		}
+		return pairs;
+	}
+}
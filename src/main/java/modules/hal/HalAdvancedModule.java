@@ -1,16 +1,22 @@
 package modules.hal;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.TreeMap;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 import common.parallelization.CallbackReceiver;
 
 import base.workbench.ModuleRunner;
@@ -28,6 +34,7 @@ public class HalAdvancedModule extends ModuleImpl {
 	public static final String PROPERTYKEY_WINDOWSIZE = "window size";
 	public static final String PROPERTYKEY_FIELDSEPARATOR = "field separator";
 	public static final String PROPERTYKEY_COOCCURRSEPARATOR = "cooccurrency separator";
+	public static final String PROPERTYKEY_OUTPUTFORMAT = "output format";
 
 	// Define I/O IDs (must be unique for every input or output)
 	private final String inputTextId = "text input";
@@ -37,6 +44,7 @@ public class HalAdvancedModule extends ModuleImpl {
 	private int windowSize;
 	private String fieldSeparator;
 	private String cooccurrencySeparator;
+	private String outputFormat;
 
 	public HalAdvancedModule(CallbackReceiver callbackReceiver,
 			Properties properties) throws Exception {
@@ -58,6 +66,9 @@ public class HalAdvancedModule extends ModuleImpl {
 		// Add property descriptions (obligatory for every property!)
 		this.getPropertyDescriptions().put(PROPERTYKEY_COOCCURRSEPARATOR,
 				"Separator for the cooccurrency position numbers");
+		this.getPropertyDescriptions().put(PROPERTYKEY_OUTPUTFORMAT,
+				"Format of output [sparse|dense]: sparse writes one line per pair of segments that "
+				+ "occurred together, dense writes a full segment by segment matrix (including zeros).");
 
 		// Add property defaults (_should_ be provided for every property)
 		this.getPropertyDefaultValues().put(ModuleImpl.PROPERTYKEY_NAME,
@@ -66,6 +77,7 @@ public class HalAdvancedModule extends ModuleImpl {
 		this.getPropertyDefaultValues().put(PROPERTYKEY_WINDOWSIZE, "5");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_FIELDSEPARATOR, "\t\t");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_COOCCURRSEPARATOR, ",");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_OUTPUTFORMAT, "sparse");
 
 		// Define I/O
 		/*
@@ -96,128 +108,101 @@ public class HalAdvancedModule extends ModuleImpl {
 		BufferedReader reader = new BufferedReader(this.getInputPorts()
 				.get(inputTextId).getInputReader());
 
-		// Define comparator
-		Comparator<String> alphabetOrderComparator = new Comparator<String>() {
-			@Override
-			public int compare(String o1, String o2) {
-				return o1.compareTo(o2);
-			}
-		};
-		// Define map for results
-		TreeMap<String, TreeMap<String, Integer[]>> sequenceMap = new TreeMap<String, TreeMap<String, Integer[]>>(
-				alphabetOrderComparator);
+		// Segments and their ids (index within the list)
+		Map<String, Integer> segmentIds = new HashMap<String, Integer>();
+		List<String> segments = new ArrayList<String>();
+
+		// Co-occurrence counters per pair of segment ids and position
+		CooccurrenceCounts counts = new CooccurrenceCounts(this.windowSize);
 
-		// Queue that acts as input window (plus one element to operate on in
-		// each iteration)
-		LinkedBlockingQueue<String> sequenceQueue = new LinkedBlockingQueue<String>(
-				this.windowSize + 1);
+		// Ring buffer holding the ids of the preceding segments that are
+		// still within the window
+		int[] window = new int[Math.max(this.windowSize, 1)];
+		long position = 0;
 
 		// Read input
 		String segment;
-		while ((segment = reader.readLine()) != null || !sequenceQueue.isEmpty()) {
-
-			if (segment != null){
-				
-				// If there is not yet a map entry for that segment, construct one
-				if (!sequenceMap.containsKey(segment)) {
-					sequenceMap.put(segment, new TreeMap<String, Integer[]>(alphabetOrderComparator));
-				}
-
-				// Add segment to queue
-				sequenceQueue.put(segment);
-				
-				// Reset segment
-				segment = null;
-
-				// If the queue is not yet full, skip the rest
-				if (sequenceQueue.size() < this.windowSize + 1)
-					continue;
+		while ((segment = reader.readLine()) != null) {
+
+			// If there is not yet an id for that segment, assign one
+			Integer id = segmentIds.get(segment);
+			if (id == null) {
+				id = segments.size();
+				segmentIds.put(segment, id);
+				segments.add(segment);
 			}
 
-			// Split the first sequence from the queue
-			String firstSegment = sequenceQueue.poll();
-
-			// Determine line map for that segment
-			TreeMap<String, Integer[]> lineMap = sequenceMap.get(firstSegment);
-
-			// Iterate over the remaining sequences within the queue
-			Iterator<String> queueIterator = sequenceQueue.iterator();
-			int index = 0; // We will need to determine the index of each queue
-							// element
-			while (queueIterator.hasNext()) {
-				String queuedSegment = queueIterator.next();
-				
-				// Determine whether the two current segments (first in queue
-				// and the one the iterator is pointing to) already have an
-				// integer array associated.
-				Integer[] positionArray = lineMap.get(queuedSegment);
-				// Else, one will be instantiated
-				if (positionArray == null) {
-					positionArray = new Integer[this.windowSize];
-					for (int i=0; i<positionArray.length; i++){
-						positionArray[i] = new Integer(0);
-					}
-					lineMap.put(queuedSegment, positionArray);
-				}
-
-				// Update the integer array in the respective position
-				Integer cooccurrenceCounter = positionArray[index];
-				if (cooccurrenceCounter == null) {
-					cooccurrenceCounter = new Integer(1);
-					positionArray[index] = cooccurrenceCounter;
-				} else {
-					positionArray[index] += 1;
-				}
-
-				// Increase index
-				index++;
+			// Count the segment within the windows of its predecessors (the
+			// direct predecessor has index 0)
+			for (int index = 0; index < this.windowSize && index < position; index++) {
+				int precedingId = window[(int) ((position - index - 1) % this.windowSize)];
+				counts.increment(precedingId, id, index);
 			}
+
+			if (this.windowSize > 0)
+				window[(int) (position % this.windowSize)] = id;
+			position++;
 		}
 
 		// reader is empty
+		segmentIds = null;
+
+		// Ids in the alphabetical order of their segments
+		Integer[] sortedIds = new Integer[segments.size()];
+		for (int i = 0; i < sortedIds.length; i++)
+			sortedIds[i] = i;
+		final List<String> segmentList = segments;
+		Arrays.sort(sortedIds, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return segmentList.get(o1).compareTo(segmentList.get(o2));
+			}
+		});
 
-		// Output results (first head of CSV)
-		this.getOutputPorts().get(outputCsvId).outputToAllCharPipes("SEGMENT" + this.fieldSeparator);
-		Iterator<String> lineKeys = sequenceMap.keySet().iterator();
-		while (lineKeys.hasNext()) {
-			String lineKey = lineKeys.next();
-			this.getOutputPorts().get(outputCsvId)
-					.outputToAllCharPipes(lineKey + this.fieldSeparator);
-		}
-		this.getOutputPorts().get(outputCsvId).outputToAllCharPipes("\n");
-		// Output results (data lines)
-		lineKeys = sequenceMap.keySet().iterator();
-		while (lineKeys.hasNext()) {
-			String lineKey = lineKeys.next();
-			this.getOutputPorts().get(outputCsvId)
-			.outputToAllCharPipes(lineKey + this.fieldSeparator);
-			Iterator<String> rowKeys = sequenceMap.keySet().iterator();
-			while (rowKeys.hasNext()) {
-				String rowKey = rowKeys.next();
-				Integer[] cooccurrencePositionArray = sequenceMap.get(lineKey)
-						.get(rowKey);
-				// Construct array if it should be nonexistent
-				if (cooccurrencePositionArray == null) {
-					cooccurrencePositionArray = new Integer[this.windowSize];
-					for (int i=0; i<cooccurrencePositionArray.length; i++){
-						cooccurrencePositionArray[i] = new Integer(0);
-					}
-				}
+		Writer writer = new BufferedWriter(new OutputPortWriter(this.getOutputPorts().get(outputCsvId)));
+		int[] cooccurrencePositionArray = new int[this.windowSize];
 
-				for (int i = 0; i < cooccurrencePositionArray.length; i++) {
-					this.getOutputPorts()
-								.get(outputCsvId)
-								.outputToAllCharPipes(
-										cooccurrencePositionArray[i].toString());
-					if (i + 1 < cooccurrencePositionArray.length)
-						this.getOutputPorts().get(outputCsvId)
-								.outputToAllCharPipes(this.cooccurrencySeparator);
+		if (this.outputFormat.equals("dense")) {
+			// Output results (first head of CSV)
+			writer.write("SEGMENT" + this.fieldSeparator);
+			for (Integer lineId : sortedIds) {
+				writer.write(segments.get(lineId) + this.fieldSeparator);
+			}
+			writer.write("\n");
+			// Output results (data lines, zeros for pairs that never occurred)
+			for (Integer lineId : sortedIds) {
+				writer.write(segments.get(lineId) + this.fieldSeparator);
+				for (Integer rowId : sortedIds) {
+					counts.get(lineId, rowId, cooccurrencePositionArray);
+					this.writePositions(writer, cooccurrencePositionArray);
+					writer.write(this.fieldSeparator);
 				}
-				this.getOutputPorts().get(outputCsvId)
-						.outputToAllCharPipes(this.fieldSeparator);
+				writer.write("\n");
+			}
+		} else if (this.outputFormat.equals("sparse")) {
+			// Pairs that occurred, ordered by the ranks of both segments
+			int[] ranks = new int[sortedIds.length];
+			for (int i = 0; i < sortedIds.length; i++)
+				ranks[sortedIds[i]] = i;
+			long[] pairs = counts.pairs();
+			for (int i = 0; i < pairs.length; i++)
+				pairs[i] = ((long) ranks[(int) (pairs[i] >>> 32)] << 32) | ranks[(int) pairs[i]];
+			Arrays.sort(pairs);
+
+			// Output results (one line per pair)
+			writer.write("SEGMENT" + this.fieldSeparator + "CONTEXT SEGMENT" + this.fieldSeparator + "POSITIONS\n");
+			for (long pair : pairs) {
+				int lineId = sortedIds[(int) (pair >>> 32)];
+				int rowId = sortedIds[(int) pair];
+				counts.get(lineId, rowId, cooccurrencePositionArray);
+				writer.write(segments.get(lineId) + this.fieldSeparator + segments.get(rowId) + this.fieldSeparator);
+				this.writePositions(writer, cooccurrencePositionArray);
+				writer.write("\n");
 			}
-			this.getOutputPorts().get(outputCsvId).outputToAllCharPipes("\n");
+		} else {
+			throw new Exception("Unknown output format specified: '" + this.outputFormat + "'. Valid values are 'sparse' or 'dense'.");
 		}
+		writer.flush();
 
 		// Close outputs (important!)
 		this.closeAllOutputs();
@@ -226,6 +211,15 @@ public class HalAdvancedModule extends ModuleImpl {
 		return true;
 	}
 
+	// Writes the counters of one pair, separated by the cooccurrency separator
+	private void writePositions(Writer writer, int[] cooccurrencePositionArray) throws IOException {
+		for (int i = 0; i < cooccurrencePositionArray.length; i++) {
+			writer.write(Integer.toString(cooccurrencePositionArray[i]));
+			if (i + 1 < cooccurrencePositionArray.length)
+				writer.write(this.cooccurrencySeparator);
+		}
+	}
+
 	@Override
 	public void applyProperties() throws Exception {
 
@@ -242,6 +236,7 @@ public class HalAdvancedModule extends ModuleImpl {
 		
 		this.fieldSeparator = this.getProperties().getProperty(PROPERTYKEY_FIELDSEPARATOR);
 		this.cooccurrencySeparator = this.getProperties().getProperty(PROPERTYKEY_COOCCURRSEPARATOR);
+		this.outputFormat = this.getProperties().getProperty(PROPERTYKEY_OUTPUTFORMAT);
 
 		// Apply parent object's properties (just the name variable actually)
 		super.applyProperties();
@@ -2,13 +2,26 @@ package modules.input_output;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
+import java.util.ArrayDeque;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 import common.parallelization.CallbackReceiver;
@@ -17,6 +30,14 @@ import modules.CharPipe;
 import modules.ModuleImpl;
 import modules.OutputPort;
 
+/**
+ * Reads a file in a single pass and writes it to all connected byte and char
+ * pipes. Uncompressed files are memory mapped chunk by chunk; if they are
+ * UTF-8 or use a single byte charset, the chunks are decoded (and
+ * normalised) in parallel and written in order. Other files are streamed.
+ * Unicode normalisation is only applied between characters that no
+ * combining sequence spans, so it does not depend on the chunk boundaries.
+ */
 public class FileReaderModule extends ModuleImpl {
 
 	// Property keys
@@ -25,6 +46,8 @@ public class FileReaderModule extends ModuleImpl {
 	public static final String PROPERTYKEY_ENCODING = "Encoding";
 	public static final String PROPERTYKEY_BUFFERLENGTH = "Buffer length";
 	public static final String PROPERTYKEY_NORMALIZE = "Normalize Unicode";
+	public static final String PROPERTYKEY_CHUNKLENGTH = "Chunk length";
+	public static final String PROPERTYKEY_THREADS = "Decoder threads";
 
 	// Local variables
 	private final String OUTPUTID = "output";
@@ -33,6 +56,11 @@ public class FileReaderModule extends ModuleImpl {
 	private String encoding;
 	private int bufferLength = 8192;
 	private boolean normalizeUtf = true;
+	private int chunkLength = 4194304;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	// Chars of the last chunks that may still combine with the following ones
+	private final StringBuilder normalizationCarry = new StringBuilder();
 
 	public FileReaderModule(CallbackReceiver callbackReceiver,
 			Properties properties) throws Exception {
@@ -61,6 +89,10 @@ public class FileReaderModule extends ModuleImpl {
 				"Length of the I/O buffer");
 		this.getPropertyDescriptions().put(PROPERTYKEY_NORMALIZE,
 				"Normalize Unicode input text to composed form (see http://unicode.org/reports/tr15/). Only valid for char pipe output. [true|false]");
+		this.getPropertyDescriptions().put(PROPERTYKEY_CHUNKLENGTH,
+				"Length (in bytes) of the chunks an uncompressed file is mapped and decoded in");
+		this.getPropertyDescriptions().put(PROPERTYKEY_THREADS,
+				"Number of threads decoding chunks in parallel (UTF-8 and single byte encodings only)");
 
 		// Add default values
 		this.getPropertyDefaultValues().put(ModuleImpl.PROPERTYKEY_NAME,
@@ -71,10 +103,13 @@ public class FileReaderModule extends ModuleImpl {
 		this.getPropertyDefaultValues().put(PROPERTYKEY_ENCODING, "UTF-8");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_BUFFERLENGTH, "8192");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_NORMALIZE, "true");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_CHUNKLENGTH, "4194304");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_THREADS,
+				String.valueOf(Runtime.getRuntime().availableProcessors()));
 
 		// Add module description
 		this.setDescription("Reads contents from a file. Can handle GZIP compression.");
-		
+
 		// Add module category
 
 	}
@@ -82,116 +117,333 @@ public class FileReaderModule extends ModuleImpl {
 	@Override
 	public boolean process() throws Exception {
 
+		OutputPort outputPort = this.getOutputPorts().get(OUTPUTID);
+		if (!outputPort.isConnected())
+			throw new Exception("Sorry, but I could not write to any output (please connect a module to my output, else I am of little use).");
+
 		/*
-		 * write to both output channels (stream/writer)
+		 * write to both output channels (stream/writer) while reading the
+		 * file once
 		 */
-		boolean wroteToStream = false;
+		boolean writeBytes = !outputPort.getPipes(BytePipe.class).isEmpty();
+		Charset charset = null;
+		if (this.encoding != null && !this.encoding.isEmpty()
+				&& !outputPort.getPipes(CharPipe.class).isEmpty())
+			charset = Charset.forName(this.encoding);
+		this.normalizationCarry.setLength(0);
+
+		if (this.useGzip) {
+			InputStream fileInputStream = new GZIPInputStream(new FileInputStream(this.file), this.bufferLength);
+			try {
+				this.readStream(fileInputStream, writeBytes, charset);
+			} finally {
+				fileInputStream.close();
+			}
+		} else {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r");
+			try {
+				FileChannel channel = randomAccessFile.getChannel();
+				if (charset == null || isChunkable(charset))
+					this.readMapped(channel, writeBytes, charset);
+				else
+					this.readStream(Channels.newInputStream(channel), writeBytes, charset);
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+
+		outputPort.close();
+
+		// Success
+		return true;
+	}
+
+	/*
+	 * Whether the charset can be decoded from arbitrary chunk boundaries
+	 * (UTF-8 after skipping continuation bytes, single byte charsets as is)
+	 */
+	private static boolean isChunkable(Charset charset) {
+		if (isUtf8(charset))
+			return true;
+		if (!charset.canEncode())
+			return false;
+		return charset.newEncoder().maxBytesPerChar() == 1f && charset.newDecoder().maxCharsPerByte() == 1f;
+	}
+
+	private static boolean isUtf8(Charset charset) {
+		return charset.name().equals("UTF-8");
+	}
+
+	/*
+	 * Maps the file chunk by chunk; chunks are decoded and normalised by a
+	 * pool, a limited number of them ahead of the one being written.
+	 */
+	private void readMapped(final FileChannel channel, boolean writeBytes, final Charset charset)
+			throws Exception {
+		final long size = channel.size();
+		final long chunkAmount = (size + this.chunkLength - 1) / this.chunkLength;
+		byte[] buffer = new byte[this.bufferLength];
+
+		ForkJoinPool pool = null;
+		if (charset != null)
+			pool = new ForkJoinPool(this.threads);
+		ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+		long nextChunk = 0;
 		try {
-			// Instantiate a new input stream
-			InputStream fileInputStream = new FileInputStream(this.file);
+			for (long i = 0; i < chunkAmount; i++) {
 
-			// Use GZIP if requested
-			if (this.useGzip)
-				fileInputStream = new GZIPInputStream(fileInputStream);
+				// Auf Unterbrechersignal pruefen
+				if (Thread.interrupted()) {
+					this.closeAllOutputs();
+					throw new InterruptedException("Thread has been interrupted.");
+				}
 
-			// Define input buffer
-			byte[] buffer = new byte[this.bufferLength];
+				Chunk chunk;
+				if (pool == null) {
+					chunk = this.mapChunk(channel, size, i, false);
+				} else {
+					while (nextChunk < chunkAmount && pending.size() <= this.threads) {
+						final long chunkNr = nextChunk++;
+						pending.add(pool.submit(new Callable<Chunk>() {
+							@Override
+							public Chunk call() throws Exception {
+								Chunk chunk = mapChunk(channel, size, chunkNr, isUtf8(charset));
+								decode(chunk, charset);
+								return chunk;
+							}
+						}));
+					}
+					try {
+						chunk = pending.poll().get();
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof Exception)
+							throw (Exception) e.getCause();
+						throw e;
+					}
+				}
 
-			// Read file data into buffer and write to outputstream
-			int readBytes = fileInputStream.read(buffer);
-			while (readBytes != -1) {
+				if (writeBytes) {
+					while (chunk.bytes.hasRemaining()) {
+						int length = Math.min(buffer.length, chunk.bytes.remaining());
+						chunk.bytes.get(buffer, 0, length);
+						this.getOutputPorts().get(OUTPUTID).outputToAllBytePipes(buffer, 0, length);
+					}
+				}
+				if (charset != null)
+					this.writeChars(chunk);
+			}
+			if (charset != null)
+				this.finishChars();
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
+	}
 
+	/*
+	 * Streams the input (for compressed files and charsets that cannot be
+	 * split at arbitrary bytes); the bytes are passed on as they are read by
+	 * the decoder.
+	 */
+	private void readStream(InputStream inputStream, final boolean writeBytes, Charset charset) throws Exception {
+		InputStream teeInputStream = new FilterInputStream(inputStream) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0 && writeBytes)
+					getOutputPorts().get(OUTPUTID).outputToAllBytePipes(new byte[] { (byte) b }, 0, 1);
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int readBytes = super.read(b, off, len);
+				if (readBytes > 0 && writeBytes)
+					getOutputPorts().get(OUTPUTID).outputToAllBytePipes(b, off, readBytes);
+				return readBytes;
+			}
+		};
+
+		if (charset == null) {
+			byte[] buffer = new byte[this.bufferLength];
+			while (teeInputStream.read(buffer) != -1) {
 				// Auf Unterbrechersignal pruefen
 				if (Thread.interrupted()) {
-					fileInputStream.close();
 					this.closeAllOutputs();
-					throw new InterruptedException(
-							"Thread has been interrupted.");
+					throw new InterruptedException("Thread has been interrupted.");
 				}
+			}
+			return;
+		}
 
-				this.getOutputPorts().get(OUTPUTID).outputToAllBytePipes(buffer, 0, readBytes);
-				readBytes = fileInputStream.read(buffer);
+		InputStreamReader fileReader = new InputStreamReader(teeInputStream, charset);
+		Chunk chunk = new Chunk();
+		chunk.chars = new char[this.bufferLength];
+		chunk.length = fileReader.read(chunk.chars);
+		while (chunk.length != -1) {
+
+			// Auf Unterbrechersignal pruefen
+			if (Thread.interrupted()) {
+				this.closeAllOutputs();
+				throw new InterruptedException("Thread has been interrupted.");
 			}
 
-			// close relevant I/O instances
-			fileInputStream.close();
-			wroteToStream = true;
-		} catch (IOException e) {
-			/*
-			 * The inputstream does not seem to be connected or another
-			 * I/O-error occurred
-			 */
+			if (this.normalizeUtf)
+				findBoundaries(chunk);
+			this.writeChars(chunk);
+			chunk.length = fileReader.read(chunk.chars);
 		}
+		this.finishChars();
+	}
 
-		boolean wroteToChars = false;
-		try {
-			// Instantiate a new input stream
-			InputStream fileInputStream = new FileInputStream(this.file);
-
-			// Use GZIP if requested
-			if (this.useGzip)
-				fileInputStream = new GZIPInputStream(fileInputStream);
-
-			// Instantiate input reader if an encoding has been set
-			Reader fileReader = null;
-			if (this.encoding != null && !this.encoding.isEmpty()) {
-				fileReader = new InputStreamReader(fileInputStream, encoding);
-
-				// Define input buffer
-				char[] buffer = new char[this.bufferLength];
-
-				// Read file data into buffer and output to writer
-				int readChars = fileReader.read(buffer);
-				while (readChars != -1) {
-
-					// Auf Unterbrechersignal pruefen
-					if (Thread.interrupted()) {
-						fileReader.close();
-						fileInputStream.close();
-						this.closeAllOutputs();
-						throw new InterruptedException(
-								"Thread has been interrupted.");
-					}
-					
-					// Check if we need to normalize the input's UTF encoding
-					if (this.normalizeUtf){
-						String normalized = Normalizer.normalize(String.valueOf(buffer, 0, readChars), Form.NFC);
-						// Output normalized string
-						this.getOutputPorts().get(OUTPUTID).outputToAllCharPipes(normalized);
-					} else
-						// Output the char buffer unchanged
-						this.getOutputPorts().get(OUTPUTID).outputToAllCharPipes(buffer, 0, readChars);
-					
-					// Read next batch of characters
-					readChars = fileReader.read(buffer);
-				}
+	/*
+	 * Maps the given chunk. For UTF-8 both ends are moved forward past
+	 * continuation bytes, so that no character is split between chunks.
+	 */
+	private Chunk mapChunk(FileChannel channel, long size, long chunkNr, boolean utf8) throws IOException {
+		long start = chunkNr * this.chunkLength;
+		long end = Math.min(start + this.chunkLength, size);
+		ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start,
+				Math.min(end + (utf8 ? 3 : 0), size) - start);
+		int from = 0;
+		int to = (int) (end - start);
+		if (utf8) {
+			if (start > 0)
+				from = skipContinuationBytes(bytes, from);
+			if (end < size)
+				to = skipContinuationBytes(bytes, to);
+		}
+		bytes.limit(to);
+		bytes.position(Math.min(from, to));
+		Chunk chunk = new Chunk();
+		chunk.bytes = bytes;
+		return chunk;
+	}
+
+	private static int skipContinuationBytes(ByteBuffer bytes, int position) {
+		for (int i = 0; i < 3 && position < bytes.capacity() && (bytes.get(position) & 0xC0) == 0x80; i++)
+			position++;
+		return position;
+	}
 
-				// close relevant I/O instances
-				fileReader.close();
+	/*
+	 * Decodes the chunk's bytes (malformed input is replaced, as by
+	 * InputStreamReader) and normalises the part that does not depend on
+	 * the neighbouring chunks.
+	 */
+	private void decode(Chunk chunk, Charset charset) {
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer bytes = chunk.bytes.duplicate();
+		chunk.chars = new char[(int) (bytes.remaining() * (double) decoder.maxCharsPerByte()) + 1];
+		CharBuffer charBuffer = CharBuffer.wrap(chunk.chars);
+		decoder.decode(bytes, charBuffer, true);
+		decoder.flush(charBuffer);
+		chunk.length = charBuffer.position();
+		if (this.normalizeUtf)
+			findBoundaries(chunk);
+	}
+
+	/*
+	 * Determines the first and the last normalisation boundary of the chunk
+	 * and normalises the chars in between.
+	 */
+	private static void findBoundaries(Chunk chunk) {
+		chunk.first = -1;
+		chunk.normalized = null;
+		for (int i = 0; i < chunk.length; i++)
+			if (isBoundary(chunk.chars, i, chunk.length)) {
+				chunk.first = i;
+				break;
 			}
+		if (chunk.first < 0)
+			return;
+		chunk.last = chunk.first;
+		for (int i = chunk.length - 1; i > chunk.first; i--)
+			if (isBoundary(chunk.chars, i, chunk.length)) {
+				chunk.last = i;
+				break;
+			}
+		CharBuffer middle = CharBuffer.wrap(chunk.chars, chunk.first, chunk.last - chunk.first);
+		if (!Normalizer.isNormalized(middle, Form.NFC))
+			chunk.normalized = Normalizer.normalize(middle, Form.NFC);
+	}
 
-			// close relevant I/O instances
-			fileInputStream.close();
-		} catch (IOException e) {
-			/*
-			 * The inputstream does not seem to be connected or another
-			 * I/O-error occurred
-			 */
+	/*
+	 * Whether NFC never combines the chars before the given position with
+	 * the ones from there on, i.e. the char there is a starter that does not
+	 * compose with a preceding one (marks and Hangul medial vowels or final
+	 * consonants do). A high surrogate at the end is no boundary, as its code
+	 * point is not known before the next chars have been read.
+	 */
+	private static boolean isBoundary(char[] chars, int position, int length) {
+		if (Character.isLowSurrogate(chars[position])
+				|| (position == length - 1 && Character.isHighSurrogate(chars[position])))
+			return false;
+		int codePoint = Character.codePointAt(chars, position, length);
+		if (codePoint >= 0x1160 && codePoint <= 0x11FF)
+			return false;
+		switch (Character.getType(codePoint)) {
+		case Character.NON_SPACING_MARK:
+		case Character.ENCLOSING_MARK:
+		case Character.COMBINING_SPACING_MARK:
+			return false;
+		default:
+			return true;
 		}
-		
-		this.getOutputPorts().get(OUTPUTID).close();
+	}
 
-		if (!wroteToStream && !wroteToChars)
-			throw new Exception("Sorry, but I could not write to any output (please connect a module to my output, else I am of little use).");
+	/*
+	 * Writes the chars of a chunk; when normalising, the parts before the
+	 * first and after the last boundary are kept until they can be
+	 * normalised together with the adjacent chunks.
+	 */
+	private void writeChars(Chunk chunk) throws IOException {
+		OutputPort outputPort = this.getOutputPorts().get(OUTPUTID);
+		if (!this.normalizeUtf) {
+			outputPort.outputToAllCharPipes(chunk.chars, 0, chunk.length);
+			return;
+		}
+		if (chunk.first < 0) {
+			this.normalizationCarry.append(chunk.chars, 0, chunk.length);
+			return;
+		}
+		this.normalizationCarry.append(chunk.chars, 0, chunk.first);
+		outputPort.outputToAllCharPipes(Normalizer.normalize(this.normalizationCarry, Form.NFC));
+		if (chunk.normalized != null)
+			outputPort.outputToAllCharPipes(chunk.normalized);
+		else if (chunk.last > chunk.first)
+			outputPort.outputToAllCharPipes(chunk.chars, chunk.first, chunk.last - chunk.first);
+		this.normalizationCarry.setLength(0);
+		this.normalizationCarry.append(chunk.chars, chunk.last, chunk.length - chunk.last);
+	}
 
-		// Success
-		return true;
+	private void finishChars() throws IOException {
+		if (this.normalizeUtf) {
+			this.getOutputPorts().get(OUTPUTID)
+					.outputToAllCharPipes(Normalizer.normalize(this.normalizationCarry, Form.NFC));
+			this.normalizationCarry.setLength(0);
+		}
+	}
+
+	/*
+	 * Bytes and decoded chars of a part of the file. Between the boundaries
+	 * first and last (first is -1 if there are none), the chars are
+	 * normalised already (normalized is null if they were so before).
+	 */
+	private static class Chunk {
+		ByteBuffer bytes;
+		char[] chars;
+		int length;
+		int first = -1;
+		int last;
+		String normalized;
 	}
 
 	@Override
 	public void applyProperties() throws Exception {
 		super.setDefaultsIfMissing();
-		
+
 		if (this.getProperties().containsKey(PROPERTYKEY_INPUTFILE))
 			this.file = new File(this.getProperties().getProperty(
 					PROPERTYKEY_INPUTFILE));
@@ -207,6 +459,12 @@ public class FileReaderModule extends ModuleImpl {
 		if (this.getProperties().containsKey(PROPERTYKEY_NORMALIZE))
 			this.normalizeUtf = Boolean.parseBoolean(this.getProperties()
 					.getProperty(PROPERTYKEY_NORMALIZE));
+		if (this.getProperties().containsKey(PROPERTYKEY_CHUNKLENGTH))
+			this.chunkLength = Integer.parseInt(this.getProperties()
+					.getProperty(PROPERTYKEY_CHUNKLENGTH));
+		if (this.getProperties().containsKey(PROPERTYKEY_THREADS))
+			this.threads = Math.max(1, Integer.parseInt(this.getProperties()
+					.getProperty(PROPERTYKEY_THREADS)));
 		super.applyProperties();
 	}
 
@@ -5,7 +5,6 @@ package modules.kwip;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -16,26 +15,6 @@ import modules.ModuleImpl;
 import modules.OutputPort;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
-import org.apache.lucene.document.IntField;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.FieldInfo.IndexOptions;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.SlowCompositeReaderWrapper;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopScoreDocCollector;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 
 import common.parallelization.CallbackReceiver;
@@ -53,13 +32,6 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 	/*
 	 * Various variables
 	 */
-	private static final String POSITION = "Position";
-	private static final String SOURCE = "Source";
-	private static final String TEXT = "Text";
-	private static final String CONTEXT = "Context";
-	private static final String LEFT_CONTEXT = "LeftContext";
-	private static final String RIGHT_CONTEXT = "RightContext";
-
 	private static final Logger LOGGER = Logger.getGlobal();
 
 	private StandardAnalyzer analyzer;
@@ -128,88 +100,17 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 	}
 
 	/**
-	 * Adds a document to lucene index
-	 * @param w index writer
-	 * @param token token
-	 * @param context context
-	 * @param line line number
-	 * @throws IOException Thrown if an I/O error occurs
-	 */
-	private void addDoc(IndexWriter w, String token, String context,
-			int line) throws IOException {
-		Document doc = new Document();
-		// A text field will be tokenized
-		// ******************************************************************
-		FieldType fieldType = new FieldType();
-		fieldType.setIndexed(true);
-		fieldType
-				.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-		fieldType.setStored(true);
-		fieldType.setStoreTermVectors(true);
-
-		fieldType.setStoreTermVectorPositions(true);
-		fieldType.setStoreTermVectorOffsets(true);
-		Field field = new Field(TEXT, token, fieldType);
-		doc.add(field);
-		// ******************************************************************
-		doc.add(new StringField(CONTEXT, context, Field.Store.YES));
-		// ******************************************************************
-		// a field for source because not to be tokenized
-		doc.add(new IntField(SOURCE, line, Field.Store.YES));
-
-		// a field for the token's position in the text
-		int pos = context.toLowerCase().indexOf(token.toLowerCase());
-		doc.add(new IntField(POSITION, pos, Field.Store.YES));
-
-		String leftContext = getLeftContext(context, token);
-		doc.add(new StringField(LEFT_CONTEXT, leftContext, Field.Store.YES));
-
-		String rightContext = getRightContext(context, token);
-		doc.add(new StringField(RIGHT_CONTEXT, rightContext, Field.Store.YES));
-
-		w.addDocument(doc);
-	}
-
-	/**
-	 * Determine righthand context
-	 * @param text text
-	 * @param token token
-	 * @return righthand context
-	 */
-	private String getRightContext(String text, String token) {
-		int pos = text.toLowerCase().indexOf(token.toLowerCase());
-		return text.substring(pos + token.length(), text.length());
-	}
-
-	/**
-	 * Determine lefthand context
-	 * @param text text
-	 * @param token token
-	 * @return lefthand context
-	 */
-	private String getLeftContext(String text, String token) {
-		int pos = text.toLowerCase().indexOf(token.toLowerCase());
-		return text.substring(0, pos);
-	}
-
-	/**
-	 * Generates a lucene index from the given input.
+	 * Generates a keyword in context index from the given input.
 	 * @param bufreader Reader to obtain input from
-	 * @return lucene directory
+	 * @return index
 	 * @throws Exception Thrown if an error occurs
 	 */
-	private Directory generateIndex(BufferedReader bufreader) throws Exception {
-		Directory index = null;
+	private KwicIndex generateIndex(BufferedReader bufreader) throws Exception {
 		// Specify the analyzer for tokenizing text.
-		// The same analyzer should be used for indexing and searching
 		analyzer = new StandardAnalyzer(Version.LUCENE_46);
 
-		// Code to create the index
-		index = new RAMDirectory();
-
-		IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_46,
-				analyzer);
-		IndexWriter w = new IndexWriter(index, config);
+		// Each line is tokenized once, each token gets a posting
+		KwicIndex index = new KwicIndex(analyzer);
 		// ----------------------------------------------------------------------
 		int lineNr = 0;
 
@@ -223,40 +124,28 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 			}
 			
 			LOGGER.fine(String.valueOf(lineNr) + " " + line);
-			List<String> tokenList = TokenizeString.tokenizeString(analyzer,
-					line);
-			for (String token : tokenList) {
-				LOGGER.fine(token + "\t " + line);
-
-				// each token is one document
-				addDoc(w, token, line, lineNr);
-			}
+			index.addLine(line);
 
 			lineNr++;
 		}
-		w.close();
 		return index;
 	}
 
 	/**
 	 * Determine types
-	 * @param index lucene index
-	 * @param reader index reader
+	 * @param index keyword in context index
 	 * @throws Exception Thrown if an error occurs
 	 */
-	private void types(Directory index, IndexReader reader) throws Exception {
+	private void types(KwicIndex index) throws Exception {
 		ArrayList<Integer> unitList = new ArrayList<Integer>();
 		ArrayList<String> typeList = new ArrayList<String>();
 		int units = 0;
-		Terms terms = SlowCompositeReaderWrapper.wrap(reader).terms(TEXT);
-		TermsEnum termEnum = null;
-		termEnum = terms.iterator(termEnum);
 
 		String tabs = "\t\t";
 		int len = 0;
 		int currentPos = 0;
 		int typeNr = 0;
-		while (termEnum.next() != null) {
+		for (String type : index.getSortedTerms()) {
 			
 			// Check for interrupt signal
 			if (Thread.interrupted()) {
@@ -264,8 +153,6 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 				throw new InterruptedException("Thread has been interrupted.");
 			}
 			
-			String type = termEnum.term().utf8ToString();
-
 			xmlBuf.append("\t<type ").append("text=\"").append(type)
 					.append("\" ").append("id=\"").append(typeNr)
 					.append("\">\n");
@@ -275,11 +162,11 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 			else
 				len = 1;
 			LOGGER.finest("types type: " + type + tabs.substring(0, len)
-					+ "Freq.: " + termEnum.docFreq() + "\n");
+					+ "Freq.: " + index.getFrequency(type) + "\n");
 			// exclude numbers and numberstrings
 			if ((type.charAt(0) < '0') || (type.charAt(0) > '9')) {
-				currentPos = tokens(reader, type, currentPos);
-				units = units + termEnum.docFreq();
+				currentPos = tokens(index, type, currentPos);
+				units = units + index.getFrequency(type);
 				unitList.add(units);
 				typeList.add(type);
 				LOGGER.finest("units: " + units);
@@ -294,33 +181,16 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 
 	/**
 	 * Determine tokens
-	 * @param reader index reader
-	 * @param querystr query string
+	 * @param index keyword in context index
+	 * @param type type to list the tokens of
 	 * @param currentPos current position
 	 * @return
 	 * @throws Exception Exception Thrown if an error occurs
 	 */
-	private int tokens(IndexReader reader, String querystr, int currentPos)
+	private int tokens(KwicIndex index, String type, int currentPos)
 			throws Exception {
-		int lastSource = -1;
-
-		int hitsPerPage = 100000;
-		IndexSearcher searcher = new IndexSearcher(reader);
 
-		// The \"title\" arg specifies the default field to use when no
-		// field is explicitly specified in the query
-		Query query = new QueryParser(Version.LUCENE_46, TEXT, analyzer)
-				.parse(querystr);
-
-		TopScoreDocCollector collector = TopScoreDocCollector.create(
-				hitsPerPage, true);
-
-		searcher.search(query, collector);
-		ScoreDoc[] hits = collector.topDocs().scoreDocs;
-
-		// Code to display the results of search
-
-		for (int i = 0; i < hits.length; ++i) {
+		for (long posting : index.getPostings(type)) {
 			
 			// Check for interrupt signal
 			if (Thread.interrupted()) {
@@ -329,40 +199,34 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 			}
 			
 			xmlBuf.append("\t\t<token>\n");
-			int docId = hits[i].doc;
-			Document d = searcher.doc(docId);
-			StringBuffer context = new StringBuffer(d.get(CONTEXT));
+			int source = KwicIndex.line(posting);
+			String line = index.getLine(source);
+			StringBuffer context = new StringBuffer(line);
 			xmlBuf.append("\t\t\t<context>").append(context)
 					.append("</context>\n");
 
-			int tokenPosition = d.getField(POSITION).numericValue().intValue();
+			int tokenPosition = KwicIndex.offset(posting);
 			LOGGER.fine("position of token in context: " + tokenPosition);
 
-			LOGGER.finer("tokens querystr: " + querystr + " context: "
-					+ context /* d.get("Context") */
-					+ " source: " + d.get(SOURCE));
+			LOGGER.finer("tokens type: " + type + " context: "
+					+ context + " source: " + source);
 			xmlBuf.append("\t\t\t<contextStart>").append(currentPos)
 					.append("</contextStart>\n");
 			xmlBuf.append("\t\t\t<position>")
 					.append(currentPos + tokenPosition).append("</position>\n");
-			resultBuf.append(context+System.getProperty("line.separator"));// d.get("Context"));
+			resultBuf.append(context+System.getProperty("line.separator"));
 			currentPos += context.length();
 			xmlBuf.append("\t\t\t<contextEnd>").append(currentPos)
 					.append("</contextEnd>\n");
-			prettyBuf.append(pretty(context, querystr));
-
-			if (lastSource == Integer.parseInt(d.get(SOURCE))) {
-				// int i1= 10/0;
-			}
+			prettyBuf.append(pretty(context, type));
 
-			lastSource = Integer.parseInt(d.get(SOURCE));
-			xmlBuf.append("\t\t\t<source>").append(lastSource)
+			xmlBuf.append("\t\t\t<source>").append(source)
 					.append("</source>\n");
 
-			String leftContext = d.get(LEFT_CONTEXT);
+			String leftContext = line.substring(0, tokenPosition);
 			xmlBuf.append("\t\t\t<left>").append(leftContext)
 					.append("</left>\n");
-			String rightContext = d.get(RIGHT_CONTEXT);
+			String rightContext = line.substring(Math.min(line.length(), tokenPosition + type.length()));
 			xmlBuf.append("\t\t\t<right>").append(rightContext)
 					.append("</right>\n");
 
@@ -452,12 +316,9 @@ public class KeyWordInPhraseModule extends ModuleImpl {
 		}
 		
 		// Text to search
-		Directory index = generateIndex(new BufferedReader(this.getInputPorts().get(INPUT1ID).getInputReader()));
-		IndexReader reader = DirectoryReader.open(index);
-		types(index, reader);
-		// reader can only be closed if there is no need to access the
-		// documents any more
-		reader.close();
+		KwicIndex index = generateIndex(new BufferedReader(this.getInputPorts().get(INPUT1ID).getInputReader()));
+		types(index);
+		analyzer.close();
 		
 		// Check for interrupt signal
 		if (Thread.interrupted()) {
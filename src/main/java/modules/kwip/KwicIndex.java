@@ -0,0 +1,183 @@
+package modules.kwip;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+
+/**
+ * In-memory inverted index for keyword in context lookups. Every line is
+ * tokenised once; for each token the term gets a posting holding the line
+ * number and the token's offset within the line, packed into a long. The
+ * postings of a term stay in the order they were added (i.e. text order).
+ */
+public class KwicIndex {
+
+	/**
+	 * Orders terms by code point, which is the (UTF-8 byte) order of Lucene's
+	 * term dictionary.
+	 */
+	public static final Comparator<String> TERM_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String o1, String o2) {
+			int i = 0;
+			int j = 0;
+			while (i < o1.length() && j < o2.length()) {
+				int c1 = o1.codePointAt(i);
+				int c2 = o2.codePointAt(j);
+				if (c1 != c2)
+					return c1 < c2 ? -1 : 1;
+				i += Character.charCount(c1);
+				j += Character.charCount(c2);
+			}
+			return (o1.length() - i) - (o2.length() - j);
+		}
+	};
+
+	private final Analyzer analyzer;
+
+	// Indexed lines (the contexts)
+	private final List<String> lines = new ArrayList<String>();
+
+	// Terms and their ids (index within the list)
+	private final Map<String, Integer> termIds = new HashMap<String, Integer>();
+	private final List<String> terms = new ArrayList<String>();
+
+	// First and last posting and amount of postings per term id
+	private int[] firstPostings = new int[16];
+	private int[] lastPostings = new int[16];
+	private int[] frequencies = new int[16];
+
+	// Postings (line and offset) and the next posting of the same term (-1 if none)
+	private long[] postings = new long[64];
+	private int[] nextPostings = new int[64];
+	private int postingCount = 0;
+
+	/**
+	 * Constructor
+	 * @param analyzer Analyzer to tokenise the lines with
+	 */
+	public KwicIndex(Analyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	/**
+	 * Tokenises the given line and adds a posting for each token.
+	 * @param line line
+	 * @throws IOException Thrown if the analyzer fails
+	 */
+	public void addLine(String line) throws IOException {
+		int lineNr = this.lines.size();
+		this.lines.add(line);
+		TokenStream stream = this.analyzer.tokenStream(null, line);
+		CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offsetAttribute = stream.addAttribute(OffsetAttribute.class);
+		try {
+			stream.reset();
+			while (stream.incrementToken()) {
+				this.addPosting(termAttribute.toString(), lineNr, offsetAttribute.startOffset());
+			}
+			stream.end();
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void addPosting(String term, int lineNr, int offset) {
+		Integer termId = this.termIds.get(term);
+		if (termId == null) {
+			termId = this.terms.size();
+			this.termIds.put(term, termId);
+			this.terms.add(term);
+			if (termId == this.frequencies.length) {
+				this.firstPostings = Arrays.copyOf(this.firstPostings, termId * 2);
+				this.lastPostings = Arrays.copyOf(this.lastPostings, termId * 2);
+				this.frequencies = Arrays.copyOf(this.frequencies, termId * 2);
+			}
+			this.firstPostings[termId] = -1;
+		}
+
+		if (this.postingCount == this.postings.length) {
+			this.postings = Arrays.copyOf(this.postings, this.postingCount * 2);
+			this.nextPostings = Arrays.copyOf(this.nextPostings, this.postingCount * 2);
+		}
+		int posting = this.postingCount++;
+		this.postings[posting] = ((long) lineNr << 32) | (offset & 0xffffffffl);
+		this.nextPostings[posting] = -1;
+
+		// Append to the term's list
+		if (this.firstPostings[termId] < 0)
+			this.firstPostings[termId] = posting;
+		else
+			this.nextPostings[this.lastPostings[termId]] = posting;
+		this.lastPostings[termId] = posting;
+		this.frequencies[termId]++;
+	}
+
+	/**
+	 * @return All terms in {@link #TERM_ORDER}
+	 */
+	public String[] getSortedTerms() {
+		String[] sortedTerms = this.terms.toArray(new String[this.terms.size()]);
+		Arrays.sort(sortedTerms, TERM_ORDER);
+		return sortedTerms;
+	}
+
+	/**
+	 * @param term term
+	 * @return Amount of tokens of the given term
+	 */
+	public int getFrequency(String term) {
+		Integer termId = this.termIds.get(term);
+		return termId == null ? 0 : this.frequencies[termId];
+	}
+
+	/**
+	 * Returns the postings of the given term in text order; use
+	 * {@link #line(long)} and {@link #offset(long)} to unpack them.
+	 * @param term term
+	 * @return postings (empty if the term does not occur)
+	 */
+	public long[] getPostings(String term) {
+		Integer termId = this.termIds.get(term);
+		if (termId == null)
+			return new long[0];
+		long[] result = new long[this.frequencies[termId]];
+		for (int i = 0, posting = this.firstPostings[termId]; posting >= 0; i++, posting = this.nextPostings[posting]) {
+			result[i] = this.postings[posting];
+		}
+		return result;
+	}
+
+	/**
+	 * @param lineNr line number (starting with 0)
+	 * @return the line
+	 */
+	public String getLine(int lineNr) {
+		return this.lines.get(lineNr);
+	}
+
+	/**
+	 * @param posting posting
+	 * @return number of the line the token occurs in
+	 */
+	public static int line(long posting) {
+		return (int) (posting >>> 32);
+	}
+
+	/**
+	 * @param posting posting
+	 * @return offset of the token within its line
+	 */
+	public static int offset(long posting) {
+		return (int) posting;
+	}
+}
@@ -2,9 +2,11 @@
 package modules.matrix;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
@@ -19,12 +21,15 @@ import java.util.Set;
 import java.util.TreeMap;
 //import java.util.TreeSet;
 
+import common.PairwiseDistances;
+import common.logicBits.LongBits;
 import common.parallelization.CallbackReceiver;
 import models.NamedFieldMatrix;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 
 /**
  * Module interprets either rows or columns of an input matrix as binary bitsets
@@ -498,8 +503,8 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 	// The value zero as a double
 	private static final Double ZERO_D = new Double(0.0);
 
-	// Bitsets are initialised lazily and kept in this map
-	private Map<String, BitSet> bitsets;
+	// Rows (or columns) of the input matrix packed into long words, by index
+	private long[][] bitVectors;
 
 	// The input matrix may be accessed from some private methods
 	NamedFieldMatrix inMatrix;
@@ -569,9 +574,8 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 		// a reader to read input line by line
 		BufferedReader inputReader = new BufferedReader(getInputPorts().get(INPUT_ID).getInputReader());
 
-		// set the bitsets member which will be used to store bitsets when
-		// created
-		bitsets = new HashMap<>();
+		// the bit vectors are packed when first needed
+		bitVectors = null;
 		
 		try {
 			// read the input matrix to operate on and determine whether row or
@@ -595,81 +599,67 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 			//JR End competition
 			
 			// build a matrix containing the result of applying the operation to
-			// each pair of BitSets
-			NamedFieldMatrix outMatrix = new NamedFieldMatrix();
-			BitSet operand1 = null;
-			BitSet operand2 = null;
-			BitSet resultBitSet = null;
-			Double value = null;
-			// 2 nestested loops (for (String name1 : names), for (String name2 : names) 
-			// in order to find best adjacent pair (name1, name2)
-			// comparision is done by selectBest
-		    
-			//evalMatrixProposals eval=null;
-			// write competition; write name1 (outer for loop) only once,
+			// each pair of BitSets. The pairs (name1 < name2, as the operations
+			// are symmetrical) are counted in parallel on the packed bit
+			// vectors; the rows are handed over in order of name1 to find the
+			// best adjacent pair (name1, name2) by selectBest
+			final String[] nameArray = names.toArray(new String[names.size()]);
+			final long[][] operands = new long[nameArray.length][];
+			for (int i = 0; i < nameArray.length; i++) {
+				operands[i] = getBitVector(nameArray[i]);
+			}
+			final Operation pairOperation = operation;
+			final double[][] counts = new double[nameArray.length][nameArray.length];
+			PairwiseDistances.Metric bitCount = new PairwiseDistances.Metric() {
+				@Override
+				public double distance(int i, int j) {
+					return cardinality(operands[i], operands[j], pairOperation);
+				}
+			};
+
+			// write competition; write name1 (outer loop) only once,
 			// so name1ForCompetition notes that name1 was already written
-			String name1ForCompetition="";
-			for (String name1 : names) {
-				writer.print("Name: "+name1+ " ");
-				//eval=evalHashMap.get(name1);    //get(index);
-				//if(eval !=null) {
-				//	
-				//	System.out.print("\t "+" evalHashMap: "+eval.competition);
-				//}
-				//System.out.println();
-				
-				operand1 = getOrCreateBitSet(name1);
-			
-				for (String name2 : names) {
-					// If this combination was already calculated in a
-					// previous iteration, just copy the value
-					// this works as long as all possible operations are
-					// symmetrical
-					value = outMatrix.getValue(name2, name1);
-					if (value != null) {
-						outMatrix.setValue(name1, name2, value);
-						continue;
-					}
-					// don't compare a BitSet to itself unless instructed
-					if (!reflexive && name1.equals(name2)) {
-						// set to zero to get a symmetrical matrix
-						outMatrix.setValue(name1, name2, 0.0);
-						continue;
-					}
+			final PrintWriter pairWriter = writer;
+			final Competition pairCompetition = competition;
+			final String[] name1ForCompetition = { "" };
+			new PairwiseDistances(nameArray.length, bitCount).compute(new PairwiseDistances.RowHandler() {
+				@Override
+				public void handleRow(int i, double[] values) throws Exception {
+					String name1 = nameArray[i];
+					pairWriter.print("Name: " + name1 + " ");
 
-					// actually compare the two bitsets and save the amount of
-					// bits set in the result to the output matrix
-					operand2 = getOrCreateBitSet(name2);
-					// to do operation should be AND
-					resultBitSet = performOperation(operand1, operand2, operation);
-					outMatrix.setValue(name1, name2, (double) resultBitSet.cardinality());
-					if(resultBitSet.cardinality()>0){
-						//System.out.println(name1+" "+name2+" "+ resultBitSet.cardinality());
-					}
-					
-					
-					//---------------JR--------------------------
-					best.selectBest(resultBitSet,/*operand1,*/name1,name2);
-					//---------------JR--------------------------
-					
-					//----test jr
-					if (competition!=null)
-						//System.out.println("competition !=null");
-						
-						if (competition.checkcompetition(name1, name2,writer)) {
-							if(!name1ForCompetition.equals(name1)) {
-								
-								name1ForCompetition=name1;
-								writer.print("competition competition:"+name1+"  ");
+					// don't compare a BitSet to itself unless instructed
+					// (zero keeps the matrix symmetrical)
+					int from = reflexive ? i : i + 1;
+					for (int j = from; j < nameArray.length; j++) {
+						String name2 = nameArray[j];
+						int count = j == i ? cardinality(operands[i], operands[i], pairOperation) : (int) values[j];
+						counts[i][j] = count;
+						counts[j][i] = count;
+
+						//---------------JR--------------------------
+						if (count > best_nr)
+							best.selectBest(performOperation(operands[i], operands[j], pairOperation), name1, name2);
+						//---------------JR--------------------------
+
+						//----test jr
+						if (pairCompetition != null && pairCompetition.checkcompetition(name1, name2, pairWriter)) {
+							if (!name1ForCompetition[0].equals(name1)) {
+								name1ForCompetition[0] = name1;
+								pairWriter.print("competition competition:" + name1 + "  ");
 							}
-							writer.print(name2+" ");
-						};
-						
-					
-					
-				}//for (String name2 : names) 
-				if(name1ForCompetition.equals(name1))writer.println();
-			}//for (String name1 : names)
+							pairWriter.print(name2 + " ");
+						}
+					}
+					if (name1ForCompetition[0].equals(name1))
+						pairWriter.println();
+				}
+			});
+			NamedFieldMatrix outMatrix = new NamedFieldMatrix();
+			for (String name : nameArray) {
+				outMatrix.setValue(name, name, 0d);
+			}
+			outMatrix.setValues(counts);
 			
 			
 			
@@ -692,7 +682,7 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 			// these data structures might have gotten big and may be
 			// harvested directly after processing finished.
 			inMatrix = null;
-			bitsets = null;
+			bitVectors = null;
 
 			// write the output
 			OutputPort matrixOut = this.getOutputPorts().get(OUTPUT_MATRIX_ID);
@@ -720,6 +710,36 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 		return result;
 	}
 
+	// counts the bits set after performing the operation on both packed bit
+	// vectors
+	private static int cardinality(long[] op1, long[] op2, Operation op) {
+		switch (op) {
+		case AND:
+			return LongBits.andCardinality(op1, op2);
+		case OR:
+			return LongBits.orCardinality(op1, op2);
+		case XOR:
+			return LongBits.xorCardinality(op1, op2);
+		default:
+			throw new IllegalStateException("Unknown bitwise operation: " + op);
+		}
+	}
+
+	// performs the operation on both packed bit vectors and returns a new
+	// BitSet containing the result
+	private static BitSet performOperation(long[] op1, long[] op2, Operation op) {
+		switch (op) {
+		case AND:
+			return LongBits.and(op1, op2);
+		case OR:
+			return LongBits.or(op1, op2);
+		case XOR:
+			return LongBits.xor(op1, op2);
+		default:
+			throw new IllegalStateException("Unknown bitwise operation: " + op);
+		}
+	}
+
 	// performs the operation on both BitSets and returns a new BitSet
 	// containing the result
 	private static BitSet performOperation(BitSet op1, BitSet op2, Operation op) {
@@ -743,36 +763,32 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 		return result;
 	}
 
-	// get the BitSet associated with the given row or column name. If it
-	// doesn't exist already create it from the given matrix
+	// get the BitSet associated with the given row or column name
 	private BitSet getOrCreateBitSet(String name) {
-		// try to find the BitSet in those already created
-		BitSet result = bitsets.get(name);
-
-		// if it doesn't exist, create it
-		if (result == null) {
-			double[] values;
+		return BitSet.valueOf(getBitVector(name));
+	}
 
-			// decide on whether to use rows or columns
+	// get the packed bit vector associated with the given row or column name.
+	// All rows (or columns) are packed at once when the first one is needed
+	private long[] getBitVector(String name) {
+		if (bitVectors == null) {
+			double[][] values = inMatrix.getValues();
 			if (useRows) {
-				values = inMatrix.getRow(name);
-			} else {
-				values = inMatrix.getColumn(name);
-			}
-
-			// create the BitSet from the matrix' values
-			result = new BitSet(values.length);
-			for (int i = 0; i < values.length; i++) {
-				if (!ZERO_D.equals(values[i])) {
-					result.set(i);
+				bitVectors = new long[values.length][];
+				for (int i = 0; i < values.length; i++) {
+					bitVectors[i] = LongBits.fromValues(values[i]);
 				}
+			} else {
+				bitVectors = LongBits.fromColumns(values);
 			}
-
-			// save the new BitSet
-			bitsets.put(name, result);
 		}
 
-		return result;
+		// decide on whether to use rows or columns
+		Integer index = useRows ? inMatrix.getRowNo(name) : inMatrix.getColumnNo(name);
+		if (index == null) {
+			throw new IllegalArgumentException("No " + (useRows ? "row" : "column") + " for name: " + name);
+		}
+		return bitVectors[index];
 	}
 	
 	
@@ -780,10 +796,9 @@ public class MatrixBitwiseOperationModule extends ModuleImpl {
 	private static void writeMatrixOutput(NamedFieldMatrix matrix, OutputPort out, String separator)
 			throws IOException {
 		matrix.setDelimiter(separator);
-		out.outputToAllCharPipes(matrix.csvHeader());
-		for (int i = 0; i < matrix.getRowAmount(); i++) {
-			out.outputToAllCharPipes(matrix.csvLine(i));
-		}
+		Writer writer = new BufferedWriter(new OutputPortWriter(out));
+		matrix.writeCSV(writer);
+		writer.flush();
 	}
 
 	private static void writeListOutput(NamedFieldMatrix matrix, OutputPort out) throws IOException {
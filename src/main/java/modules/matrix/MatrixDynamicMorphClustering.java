@@ -8,9 +8,12 @@ import java.util.Comparator;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import models.NamedFieldMatrix;
 import common.logicBits.LogOp;
+import common.logicBits.LongBits;
 
 
 public class MatrixDynamicMorphClustering {
@@ -45,27 +48,114 @@ public class MatrixDynamicMorphClustering {
 	 * 
 	 */
 
+	// Rows per task below which a range of rows is not split any further
+	private static final int MIN_ROWS_PER_TASK = 8;
+
 	private PrintWriter writer;
 	private NamedFieldMatrix namedFieldMatrix;
 	private ArrayList<MatrixDynamicMorphClusteringEntryBitValue> contextBitSetList;
-	// The value zero as a double
-	private static final Double ZERO_D = new Double(0.0);
-	
 	private static Stack<MatrixDynamicMorphClusteringEntryBitValue> best,actual;
 	
-	private BitSet generateBitVector(int row) {
-		double[] values;
-
-		values = namedFieldMatrix.getRow(row);
+	/*
+	 * Runs computeRow for a range of rows, splitting it in halves on the
+	 * common fork/join pool. Each row writes its own result only.
+	 */
+	private static abstract class RowRangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int from, to;
 		
-		// create the BitSet from the matrix' values
-		BitSet result = new BitSet(values.length);
-		for (int i = 0; i < values.length; i++) {
-			if (!ZERO_D.equals(values[i])) {
-				result.set(i);
+		RowRangeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		abstract RowRangeTask split(int from, int to);
+		
+		abstract void computeRow(int row);
+		
+		@Override
+		protected void compute() {
+			if (this.to - this.from > MIN_ROWS_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(this.split(this.from, middle), this.split(middle, this.to));
+			} else {
+				for (int row = this.from; row < this.to; row++)
+					this.computeRow(row);
+			}
+		}
+	}
+	
+	/*
+	 * Counts the common bits of element i and every element j (i < j < end).
+	 */
+	private static class CommonCountTask extends RowRangeTask {
+		private static final long serialVersionUID = 1L;
+		private final long[][] words;
+		private final int end;
+		private final int[][] counts;
+		
+		CommonCountTask(long[][] words, int end, int[][] counts, int from, int to) {
+			super(from, to);
+			this.words = words;
+			this.end = end;
+			this.counts = counts;
+		}
+		
+		@Override
+		RowRangeTask split(int from, int to) {
+			return new CommonCountTask(this.words, this.end, this.counts, from, to);
+		}
+		
+		@Override
+		void computeRow(int i) {
+			int[] rowCounts = new int[this.end];
+			for (int j = i + 1; j < this.end; j++)
+				rowCounts[j] = LongBits.andCardinality(this.words[i], this.words[j]);
+			this.counts[i] = rowCounts;
+		}
+	}
+	
+	/*
+	 * Determines for every element i not excluded the first j > i with the
+	 * largest amount of differing bits (|i OR j| - |i AND j| = |i XOR j|),
+	 * as {difference, j}.
+	 */
+	private static class PairSearchTask extends RowRangeTask {
+		private static final long serialVersionUID = 1L;
+		private final long[][] words;
+		private final boolean[] excluded;
+		private final int[][] bestPairs;
+		
+		PairSearchTask(long[][] words, boolean[] excluded, int[][] bestPairs, int from, int to) {
+			super(from, to);
+			this.words = words;
+			this.excluded = excluded;
+			this.bestPairs = bestPairs;
+		}
+		
+		@Override
+		RowRangeTask split(int from, int to) {
+			return new PairSearchTask(this.words, this.excluded, this.bestPairs, from, to);
+		}
+		
+		@Override
+		void computeRow(int i) {
+			if (this.excluded[i]) return;
+			int maxDiff = 0, maxJ = 0;
+			for (int j = i + 1; j < this.words.length; j++) {
+				int val = LongBits.xorCardinality(this.words[i], this.words[j]);
+				if (val > maxDiff) {
+					maxDiff = val;
+					maxJ = j;
 				}
-			}//
-		return result;
+			}
+			this.bestPairs[i] = new int[] { maxDiff, maxJ };
+		}
+	}
+	
+	private BitSet generateBitVector(int row) {
+		// create the BitSet from the matrix' values
+		return BitSet.valueOf(LongBits.fromValues(namedFieldMatrix.getRow(row)));
 		}//generateBitVector
 	
 	// generates a list of context bits set in falling order
@@ -344,6 +434,16 @@ public class MatrixDynamicMorphClustering {
 		
 		ArrayList <MatrixDynamicMorphClusteringEntryBitValue> commonContexts=
 				new ArrayList <MatrixDynamicMorphClusteringEntryBitValue>();
+		
+		// count common bits of all pairs in parallel; the list is sorted in
+		// falling order, elements with less than two bits set are at its end
+		int end=0;
+		while (end<contextBitSetList.size() && contextBitSetList.get(end).bitSet.cardinality()>1) end++;
+		long[][] words=new long[end][];
+		for (int i=0;i<end;i++) words[i]=contextBitSetList.get(i).words;
+		int[][] commonCounts=new int[Math.min(end,contextBitSetList.size()-1)][];
+		if (commonCounts.length>0)
+			ForkJoinPool.commonPool().invoke(new CommonCountTask(words,end,commonCounts,0,commonCounts.length));
 				
 		for (int i=0;i<contextBitSetList.size()-1;i++){
 			MatrixDynamicMorphClusteringEntryBitValue selectedElement=
@@ -358,13 +458,12 @@ public class MatrixDynamicMorphClustering {
 				MatrixDynamicMorphClusteringEntryBitValue localElement=
 				contextBitSetList.get(j);
 				if (localElement.bitSet.cardinality()<=1) break;
-				BitSet and=LogOp.AND(selectedElement.bitSet,localElement.bitSet);
-				int card=and.cardinality();
+				int card=commonCounts[i][j];
 				if(card>0){
 					writer.println(" not empty i: "+j+" card: "+card+ " "+
 							namedFieldMatrix.getRowName(localElement.rowIndex));
 					commonContexts.add(new MatrixDynamicMorphClusteringEntryBitValue(
-					localElement.rowIndex,and.cardinality(),and));
+					localElement.rowIndex,card,LongBits.and(selectedElement.words,localElement.words)));
 				}
 			}
 		}
@@ -442,18 +541,14 @@ private ArrayList<Integer> disjunct(ArrayList <MatrixDynamicMorphClusteringEntry
 			BitSet oredLocal=new BitSet();
 			// look for best (max) diff pair which covers well bits set
 			// remind: each element of pair was ANDed with element in list
+			// (best pair of each i in parallel, the first maximum wins)
+			int[][] bestPairs=this.maxDiffPairs(commonContexts,start);
 			for (int i=start;i<commonContexts.size()-1;i++)
-				if (commonContexts.get(i).exclude==-1){
-					for (int j=i+1;j<commonContexts.size();j++){
-						int val=
-						LogOp.OR(commonContexts.get(i).bitSet,commonContexts.get(j).bitSet).cardinality()
-						-LogOp.AND(commonContexts.get(i).bitSet,commonContexts.get(j).bitSet).cardinality();
-						if(val>maxDiff){
-							maxDiff=val;maxI=i;maxJ=j;
-							oredLocal=LogOp.OR(commonContexts.get(i).bitSet,commonContexts.get(j).bitSet);
-						}
-					}
+				if (bestPairs[i]!=null && bestPairs[i][0]>maxDiff){
+					maxDiff=bestPairs[i][0];maxI=i;maxJ=bestPairs[i][1];
 				}
+			if (maxDiff>0)
+				oredLocal=LogOp.OR(commonContexts.get(maxI).bitSet,commonContexts.get(maxJ).bitSet);
 				// flag element
 				element=commonContexts.get(maxI);
 				element.exclude=1;
@@ -490,6 +585,22 @@ private ArrayList<Integer> disjunct(ArrayList <MatrixDynamicMorphClusteringEntry
 	
 	
 	
+	// best pair {diff, j} of every element i>=start not excluded (else null)
+	private int[][] maxDiffPairs(ArrayList <MatrixDynamicMorphClusteringEntryBitValue>commonContexts,
+			int start){
+		int size=commonContexts.size();
+		long[][] words=new long[size][];
+		boolean[] excluded=new boolean[size];
+		for (int i=0;i<size;i++){
+			words[i]=commonContexts.get(i).words;
+			excluded[i]=commonContexts.get(i).exclude!=-1;
+		}
+		int[][] bestPairs=new int[size][];
+		if (start<size-1)
+			ForkJoinPool.commonPool().invoke(new PairSearchTask(words,excluded,bestPairs,start,size-1));
+		return bestPairs;
+	}
+	
 	public NamedFieldMatrix restruct(NamedFieldMatrix nFieldMatrix,
 			PrintWriter pwriter){
 		this.namedFieldMatrix=nFieldMatrix;
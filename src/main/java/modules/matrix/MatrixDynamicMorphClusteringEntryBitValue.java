@@ -9,11 +9,13 @@ class MatrixDynamicMorphClusteringEntryBitValue {
 	// of ANDing selected element and local element(s); comjunction
 	// of all local (stack) elements
 	int exclude;
+	long[] words;// bitSet packed into long words (see LongBits)
 	
 	MatrixDynamicMorphClusteringEntryBitValue(int row,int val,BitSet bitSet){
 		this.rowIndex=row;
 		this.value=val;
 		this.bitSet=bitSet;
+		this.words=bitSet.toLongArray();
 		this.exclude=-1;
 	}
 	
@@ -2,14 +2,18 @@ package modules.matrix;
 
 // Project specific imports.
 import models.NamedFieldMatrix;
+import common.PairwiseDistances;
 import common.parallelization.CallbackReceiver;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 
 // Java imports.
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Writer;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -47,8 +51,9 @@ public class MatrixOperations extends ModuleImpl {
 	
 	private NamedFieldMatrix matrix;
 	
-	// Save the calculated distance matrix as two dimensional double array.
-	private int[][] hamMatrix;
+	// Save the calculated distances as upper triangle (without the diagonal),
+	// row after row.
+	private int[] hamDistances;
 	
 	// Save the column names as string array.
 	private String[] colNames;
@@ -114,45 +119,40 @@ public class MatrixOperations extends ModuleImpl {
 		try {
 			BufferedReader reader = new BufferedReader(getInputPorts().get(ID_INPUT).getInputReader());
 
-			String line;
-			
 			LOGGER.info("Starting to fill the matrix.");
-						
-			String wholeCsv = "";
-			
-			// Read csv information line wise.
-			while ((line = reader.readLine()) != null) {
-								
-				wholeCsv += line + "\n";
-				
-			}
 
-			this.matrix = NamedFieldMatrix.parseCSV(wholeCsv, this.delimiter);
-			
-			// After the matrix is filled the String wholeCsv is obsolete.
-			wholeCsv = null;
+			this.matrix = NamedFieldMatrix.parseCSV(reader, this.delimiter);
 			
 			LOGGER.info("Matrix filled.");
 			
-			// Initialize the matrix holding the hamming distance values.
-			this.hamMatrix = new int [this.matrix.getRowAmount()][this.matrix.getColumnsAmount()];
+			final int rows = this.matrix.getRowAmount();
+			final int columns = this.matrix.getColumnsAmount();
+			if (columns < rows)
+				throw new IllegalArgumentException("The matrix has more rows (" + rows + ") than columns (" + columns + ").");
 
-			
-			LOGGER.info("Starting to calculate Hamming distances.");
-			// Calculate the Hamming distances line-wise and save the result in form of 
-			// a distance matrix.
-			// Attention we start with the second row, since the first is the header line.
-			for (int i = 0; i < this.matrix.getRowAmount() - 1 ; i ++) {
-				for (int j = i + 1; j < this.matrix.getRowAmount(); j ++) {
-					if (! (i == j) ) {
-						this.hamMatrix[i][j] = this.matrix.getHammingDistanceForRows(i, j);
-						// Mirror the matrix.
-						this.hamMatrix[j][i] = this.hamMatrix[i][j];
-					} else {
-						this.hamMatrix[i][j] = 0;
-					}
-				}
+			// Pack the rows into one array, row after row.
+			double[][] values = this.matrix.getValues();
+			double[] vectors = new double[rows * columns];
+			for (int i = 0; i < rows; i ++) {
+				System.arraycopy(values[i], 0, vectors, i * columns, columns);
 			}
+
+			// Initialize the upper triangle holding the hamming distance values.
+			this.hamDistances = new int[(int) ((long) rows * (rows - 1) / 2)];
+
+			LOGGER.info("Starting to calculate Hamming distances.");
+			// Calculate the Hamming distances line-wise and save the upper triangle
+			// (the matrix is mirrored on output).
+			new PairwiseDistances(rows, PairwiseDistances.hamming(vectors, columns))
+					.compute(new PairwiseDistances.RowHandler() {
+						@Override
+						public void handleRow(int row, double[] distances) {
+							for (int j = row + 1; j < rows; j ++) {
+								hamDistances[triangleIndex(row, j)] = (int) distances[j];
+							}
+						}
+					});
+			vectors = null;
 			
 			LOGGER.info("Hamming distances calculated.");
 			
@@ -173,20 +173,23 @@ public class MatrixOperations extends ModuleImpl {
 			OutputPort hamOut = getOutputPorts().get(ID_OUTPUT);
 
 			if (hamOut.isConnected()) {
+				Writer writer = new BufferedWriter(new OutputPortWriter(hamOut));
+
 				// Write an initial empty field.
-				hamOut.outputToAllCharPipes(this.outputDelimiter);
+				writer.write(this.outputDelimiter);
 				
 				for (int i = 0; i < this.matrix.getRowAmount(); i ++) {
 					if (i < this.matrix.getRowAmount() - 1)
-						hamOut.outputToAllCharPipes(this.colNames[i] + this.outputDelimiter);
+						writer.write(this.colNames[i] + this.outputDelimiter);
 					else
 						// Avoid printing the last ";".
-						hamOut.outputToAllCharPipes(this.colNames[i]);
+						writer.write(this.colNames[i]);
 				}
 				
-				hamOut.outputToAllCharPipes("\n");
+				writer.write("\n");
 				for (int i = 0; i < this.matrix.getRowAmount(); i ++)
-					hamOut.outputToAllCharPipes(toCsvLine(i));
+					writer.write(toCsvLine(i));
+				writer.flush();
 			}
 			
 		} catch (Exception e) {
@@ -201,19 +204,32 @@ public class MatrixOperations extends ModuleImpl {
 	
 	private String toCsvLine(int row) {
 		
-		String out = this.rowNames[row] + this.outputDelimiter;
+		StringBuilder out = new StringBuilder(this.rowNames[row]).append(this.outputDelimiter);
 		for (int i = 0; i < this.matrix.getColumnsAmount(); i ++) {
+			out.append(hammingDistance(row, i));
 			// Avoid printing ";" as last character before new line.
 			if (i < this.matrix.getColumnsAmount() - 1 )
-				out += this.hamMatrix[row][i] + this.outputDelimiter ;
-			else 
-				out += this.hamMatrix[row][i];
+				out.append(this.outputDelimiter);
 		}
-		out += "\n";
-		return out;
+		out.append("\n");
+		return out.toString();
 		
 	}
 	
+	// Distance between a row and the row with the given column's index (0 on
+	// the diagonal and for columns without a row).
+	private int hammingDistance(int row, int col) {
+		if (row == col || col >= this.matrix.getRowAmount())
+			return 0;
+		return this.hamDistances[row < col ? triangleIndex(row, col) : triangleIndex(col, row)];
+	}
+	
+	// Position of the pair i < j within the upper triangle.
+	private int triangleIndex(int i, int j) {
+		int rows = this.matrix.getRowAmount();
+		return (int) ((long) i * (2 * rows - i - 1) / 2) + (j - i - 1);
+	}
+	
 	@Override
 	public void applyProperties() throws Exception {
 		
@@ -1,16 +1,19 @@
 package modules.matrix;
 
-import java.io.PipedReader;
+import java.io.BufferedWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
-import Jama.Matrix;
 import common.parallelization.CallbackReceiver;
 import models.NamedFieldMatrix;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 
 import base.workbench.ModuleRunner;
 
@@ -29,6 +32,10 @@ public class MclModule extends ModuleImpl {
 	public static final String PROPERTYKEY_R = "r";
 	public static final String PROPERTYKEY_ITERATIONS = "iterations";
 	public static final String PROPERTYKEY_CSV_DELIMITER = "csv delimiter";
+	public static final String PROPERTYKEY_PRUNE_THRESHOLD = "prune threshold";
+	public static final String PROPERTYKEY_PRUNE_TOPK = "prune top k";
+	public static final String PROPERTYKEY_CHAOS_THRESHOLD = "chaos threshold";
+	public static final String PROPERTYKEY_MAXPARALLELTHREADS = "maximum threads";
 
 	// Define I/O IDs (must be unique for every input or output)
 	private static final String ID_INPUT = "input matrix";
@@ -38,6 +45,10 @@ public class MclModule extends ModuleImpl {
 	private int l;
 	private double r;
 	private String csvDelimiter;
+	private double pruneThreshold;
+	private int pruneTopK;
+	private double chaosThreshold;
+	private int maxParallelThreads;
 
 	public MclModule(CallbackReceiver callbackReceiver, Properties properties) throws Exception {
 
@@ -45,15 +56,22 @@ public class MclModule extends ModuleImpl {
 		super(callbackReceiver, properties);
 
 		// Add module description
-		this.setDescription("Takes a matrix and runs a fixed number of iterations of markov clustering on it.");
+		this.setDescription("Takes a matrix and runs markov clustering on it, until it converges or for a maximum number of iterations.");
 
 		// Add property descriptions (obligatory for every property!)
 		// TODO: Write proper descriptions
 		this.getPropertyDescriptions().put(PROPERTYKEY_ITERATIONS,
-				"How often to iterate the inflation and deflation steps.");
+				"How often to iterate the inflation and deflation steps at most (stops earlier once the matrix does not change any more).");
 		this.getPropertyDescriptions().put(PROPERTYKEY_L, "Amount of matrix multiplications per iteration, int >= 1.");
 		this.getPropertyDescriptions().put(PROPERTYKEY_R, "Exponent in the inflation step, double >= 1.");
 		this.getPropertyDescriptions().put(PROPERTYKEY_CSV_DELIMITER, "Delimiter of the input csv cells.");
+		this.getPropertyDescriptions().put(PROPERTYKEY_PRUNE_THRESHOLD,
+				"Entries below this value are removed from each row after expansion, double >= 0 (0 keeps all).");
+		this.getPropertyDescriptions().put(PROPERTYKEY_PRUNE_TOPK,
+				"Maximum amount of entries kept per row after expansion, int >= 0 (0 keeps all).");
+		this.getPropertyDescriptions().put(PROPERTYKEY_CHAOS_THRESHOLD,
+				"Stop once the chaos (how far the rows are from having equal entries) falls below this value, double >= 0 (0 stops only when the matrix does not change any more).");
+		this.getPropertyDescriptions().put(PROPERTYKEY_MAXPARALLELTHREADS, "Maximum number of parallel threads the module will use.");
 
 		// Add property defaults (_should_ be provided for every property)
 		this.getPropertyDefaultValues().put(ModuleImpl.PROPERTYKEY_NAME, "Markov Clustering Module");
@@ -61,6 +79,11 @@ public class MclModule extends ModuleImpl {
 		this.getPropertyDefaultValues().put(PROPERTYKEY_L, "2");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_R, "2.0");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_CSV_DELIMITER, ";");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_PRUNE_THRESHOLD, "0");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_PRUNE_TOPK, "0");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_CHAOS_THRESHOLD, "0");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_MAXPARALLELTHREADS,
+				"" + Runtime.getRuntime().availableProcessors());
 
 		// Define I/O
 		InputPort inputPort = new InputPort(ID_INPUT,
@@ -79,7 +102,7 @@ public class MclModule extends ModuleImpl {
 	public boolean process() throws Exception {
 
 		boolean result = true;
-		PipedReader inputReader = null;
+		Reader inputReader = null;
 
 		try {
 			inputReader = this.getInputPorts().get(ID_INPUT).getInputReader();
@@ -87,29 +110,34 @@ public class MclModule extends ModuleImpl {
 			// read the input into a NamedFieldMatrix
 			final NamedFieldMatrix nfMatrix = NamedFieldMatrix.parseCSV(inputReader, this.csvDelimiter);
 
-			// The JAMA matrix is initialised from the named field matrix'
-			// values and will operate on them directly, avoiding some
-			// duplication of memory or copying of values.
-			// This is ok because the mcl algorithm changes fields' values
-			// but not their location, such that the mapping of array fields to
-			// column and row names in the named field matrix stays intact.
-			Matrix matrix = new Matrix(nfMatrix.getValues());
+			// The sparse matrix is initialised from the named field matrix'
+			// values and written back into them when done. This is ok
+			// because the mcl algorithm changes fields' values but not their
+			// location, such that the mapping of array fields to column and
+			// row names in the named field matrix stays intact.
+			double[][] values = nfMatrix.getValues();
 			LOGGER.info("Input matrix read successfully, starting mcl.");
 
-			// run the algorithm as many times as specified by the user
-			for (int i = 0; i < this.iterations; i++) {
-				matrix = mcl(matrix, this.l, this.r);
+			// run the algorithm until it converges, at most as many times as
+			// specified by the user
+			ForkJoinPool pool = new ForkJoinPool(this.maxParallelThreads);
+			try {
+				SparseMarkovClustering mcl = new SparseMarkovClustering(values, pool);
+				int iterationsRun = mcl.run(this.iterations, this.l, this.r, this.pruneThreshold, this.pruneTopK,
+						this.chaosThreshold);
+				LOGGER.info("Mcl stopped after " + iterationsRun + " iterations (chaos " + mcl.getChaos() + ").");
+				mcl.toDense(values);
+			} finally {
+				pool.shutdown();
 			}
 
-			// Set the named fields matrix' values to the ones given by mcl
-			// and write them to the output port
-			nfMatrix.setValues(matrix.getArray());
+			// write the named fields matrix' values given by mcl to the
+			// output port
 			OutputPort out = this.getOutputPorts().get(ID_OUTPUT);
 			nfMatrix.setDelimiter(this.csvDelimiter);
-			out.outputToAllCharPipes(nfMatrix.csvHeader());
-			for (int i = 0; i < nfMatrix.getRowAmount(); i++) {
-				out.outputToAllCharPipes(nfMatrix.csvLine(i));
-			}
+			Writer writer = new BufferedWriter(new OutputPortWriter(out));
+			nfMatrix.writeCSV(writer);
+			writer.flush();
 		} catch (Exception e) {
 			result = false;
 			throw e;
@@ -124,47 +152,6 @@ public class MclModule extends ModuleImpl {
 		return result;
 	}
 
-	// The main routine altering as well as returning the transformed matrix.
-	private Matrix mcl(Matrix A, int l, double r) {
-		A = gamma(A, r);
-		A = power(A, l);
-
-		return A;
-	}
-
-	// The inflation step of MCL boosts big matrix entries in contrast to small
-	// ones, such that clusters can form
-	public Matrix gamma(Matrix A, double r) {
-
-		for (int i = 0; i < A.getRowDimension(); i++) {
-			double denom = 0;
-
-			for (int k = 0; k < A.getColumnDimension(); k++) {
-				denom = denom + Math.pow(A.get(i, k), r);
-			}
-
-			if (denom != 0) {
-				for (int j = 0; j < A.getColumnDimension(); j++) {
-					A.set(i, j, Math.pow(A.get(i, j), r) / denom);
-				}
-			}
-		}
-
-		return A;
-	}
-
-	// alters and returns the input matrix by multiplying it l-1 times with
-	// itself.
-	private Matrix power(Matrix A, int l) {
-		Matrix B = A.copy();
-
-		for (int i = 1; i < l; i++) {
-			A = A.times(B);
-		}
-
-		return A;
-	}
-
 	@Override
 	public void applyProperties() throws Exception {
 		// Set defaults for properties not yet set
@@ -183,6 +170,19 @@ public class MclModule extends ModuleImpl {
 		if (this.getProperties().getProperty(PROPERTYKEY_CSV_DELIMITER) != null) {
 			this.csvDelimiter = this.getProperties().getProperty(PROPERTYKEY_CSV_DELIMITER);
 		}
+		if (this.getProperties().getProperty(PROPERTYKEY_PRUNE_THRESHOLD) != null) {
+			this.pruneThreshold = Double.parseDouble(this.getProperties().getProperty(PROPERTYKEY_PRUNE_THRESHOLD));
+		}
+		if (this.getProperties().getProperty(PROPERTYKEY_PRUNE_TOPK) != null) {
+			this.pruneTopK = Integer.parseInt(this.getProperties().getProperty(PROPERTYKEY_PRUNE_TOPK));
+		}
+		if (this.getProperties().getProperty(PROPERTYKEY_CHAOS_THRESHOLD) != null) {
+			this.chaosThreshold = Double.parseDouble(this.getProperties().getProperty(PROPERTYKEY_CHAOS_THRESHOLD));
+		}
+		if (this.getProperties().getProperty(PROPERTYKEY_MAXPARALLELTHREADS) != null) {
+			this.maxParallelThreads = Math.max(1,
+					Integer.parseInt(this.getProperties().getProperty(PROPERTYKEY_MAXPARALLELTHREADS)));
+		}
 
 		// Apply parent object's properties (just the name variable actually)
 		super.applyProperties();
@@ -0,0 +1,354 @@
+package modules.matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Markov clustering on a sparse matrix. Each row is stored as the ascending
+ * indices of its non-zero columns and their values; the rows are the
+ * stochastic vectors (inflation normalises rows, expansion multiplies from
+ * the left), as in {@link MclModule}. Expansion, pruning and inflation run
+ * row by row on a fork/join pool.
+ *
+ * Without pruning, every step adds up the same products in the same order
+ * as the dense computation (ascending column/row index), so the results are
+ * identical to it.
+ */
+public class SparseMarkovClustering {
+
+	// Rows per task below which a row range is not split any further
+	private static final int MIN_ROWS_PER_TASK = 16;
+
+	private final int rowAmount;
+	private final int colAmount;
+	private final ForkJoinPool pool;
+
+	// Non-zero columns and values of every row
+	private int[][] cols;
+	private double[][] vals;
+
+	// Chaos of the matrix after the last inflation
+	private double chaos = Double.NaN;
+
+	/**
+	 * Operation on a single row.
+	 */
+	private interface RowOperation {
+		void apply(int row, double[] accumulator, int[] marks);
+	}
+
+	/**
+	 * Applies a row operation to a range of rows, splitting it in halves.
+	 * Each leaf task brings its own dense accumulator and marks (row + 1 for
+	 * the columns touched in that row).
+	 */
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RowOperation operation;
+		private final int from;
+		private final int to;
+		private final boolean needsAccumulator;
+
+		RowTask(RowOperation operation, int from, int to, boolean needsAccumulator) {
+			this.operation = operation;
+			this.from = from;
+			this.to = to;
+			this.needsAccumulator = needsAccumulator;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > MIN_ROWS_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new RowTask(this.operation, this.from, middle, this.needsAccumulator),
+						new RowTask(this.operation, middle, this.to, this.needsAccumulator));
+				return;
+			}
+			double[] accumulator = this.needsAccumulator ? new double[colAmount] : null;
+			int[] marks = this.needsAccumulator ? new int[colAmount] : null;
+			for (int row = this.from; row < this.to; row++) {
+				this.operation.apply(row, accumulator, marks);
+			}
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param values
+	 *            Dense matrix (rows of equal length), not changed
+	 * @param pool
+	 *            Pool to run the row operations on
+	 */
+	public SparseMarkovClustering(double[][] values, ForkJoinPool pool) {
+		this.rowAmount = values.length;
+		this.colAmount = this.rowAmount == 0 ? 0 : values[0].length;
+		this.pool = pool;
+		this.cols = new int[this.rowAmount][];
+		this.vals = new double[this.rowAmount][];
+		for (int row = 0; row < this.rowAmount; row++) {
+			this.setRow(row, values[row], null, this.colAmount);
+		}
+	}
+
+	/*
+	 * Stores the non-zero entries of the given dense row (only the given
+	 * columns if touched is not null).
+	 */
+	private void setRow(int row, double[] dense, int[] touched, int touchedAmount) {
+		int nonZero = 0;
+		for (int i = 0; i < touchedAmount; i++) {
+			if (dense[touched == null ? i : touched[i]] != 0d)
+				nonZero++;
+		}
+		int[] rowCols = new int[nonZero];
+		double[] rowVals = new double[nonZero];
+		int n = 0;
+		for (int i = 0; i < touchedAmount; i++) {
+			int col = touched == null ? i : touched[i];
+			if (dense[col] != 0d) {
+				rowCols[n] = col;
+				rowVals[n] = dense[col];
+				n++;
+			}
+		}
+		this.cols[row] = rowCols;
+		this.vals[row] = rowVals;
+	}
+
+	private void forEachRow(RowOperation operation, boolean needsAccumulator) {
+		if (this.rowAmount > 0)
+			this.pool.invoke(new RowTask(operation, 0, this.rowAmount, needsAccumulator));
+	}
+
+	/**
+	 * Inflation: raises every entry to the power of r and normalises each row
+	 * to sum 1 (rows summing up to 0 are left alone). Also determines the
+	 * chaos of the result.
+	 *
+	 * @param r
+	 *            Inflation exponent
+	 * @return The chaos (see {@link #getChaos()})
+	 */
+	public double inflate(final double r) {
+		final double[] rowChaos = new double[this.rowAmount];
+		this.forEachRow(new RowOperation() {
+			@Override
+			public void apply(int row, double[] accumulator, int[] marks) {
+				double[] rowVals = vals[row];
+				double denom = 0;
+				for (int i = 0; i < rowVals.length; i++) {
+					denom = denom + Math.pow(rowVals[i], r);
+				}
+				if (denom != 0) {
+					double max = 0d;
+					double squares = 0d;
+					for (int i = 0; i < rowVals.length; i++) {
+						rowVals[i] = Math.pow(rowVals[i], r) / denom;
+						max = Math.max(max, rowVals[i]);
+						squares += rowVals[i] * rowVals[i];
+					}
+					rowChaos[row] = (max - squares) * rowVals.length;
+				}
+			}
+		}, false);
+		double result = 0d;
+		for (double value : rowChaos) {
+			result = Math.max(result, value);
+		}
+		this.chaos = result;
+		return result;
+	}
+
+	/**
+	 * Expansion: replaces the matrix by its l-th power, pruning every row of
+	 * each product (see {@link #prune(int, double[], int[], int, double, int)}).
+	 *
+	 * @param l
+	 *            Exponent, the matrix is multiplied l-1 times with itself
+	 * @param threshold
+	 *            Entries below this value are removed (0 to keep all)
+	 * @param topK
+	 *            Maximum amount of entries kept per row (0 to keep all)
+	 * @throws IllegalArgumentException
+	 *             If a multiplication is needed and the matrix is not square
+	 */
+	public void expand(int l, final double threshold, final int topK) {
+		if (l > 1 && this.rowAmount != this.colAmount) {
+			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+		}
+		final int[][] factorCols = this.cols;
+		final double[][] factorVals = this.vals;
+		for (int i = 1; i < l; i++) {
+			final int[][] leftCols = this.cols;
+			final double[][] leftVals = this.vals;
+			this.cols = new int[this.rowAmount][];
+			this.vals = new double[this.rowAmount][];
+			this.forEachRow(new RowOperation() {
+				@Override
+				public void apply(int row, double[] accumulator, int[] marks) {
+					// Scatter the products into the accumulator (for every
+					// column, summing up in ascending order of k)
+					int[] touched = new int[16];
+					int touchedAmount = 0;
+					int[] rowCols = leftCols[row];
+					double[] rowVals = leftVals[row];
+					for (int n = 0; n < rowCols.length; n++) {
+						int k = rowCols[n];
+						double a = rowVals[n];
+						int[] kCols = factorCols[k];
+						double[] kVals = factorVals[k];
+						for (int m = 0; m < kCols.length; m++) {
+							int col = kCols[m];
+							if (marks[col] != row + 1) {
+								marks[col] = row + 1;
+								if (touchedAmount == touched.length)
+									touched = Arrays.copyOf(touched, touchedAmount * 2);
+								touched[touchedAmount++] = col;
+							}
+							accumulator[col] += a * kVals[m];
+						}
+					}
+
+					// Gather the row and reset the accumulator
+					Arrays.sort(touched, 0, touchedAmount);
+					prune(row, accumulator, touched, touchedAmount, threshold, topK);
+					for (int n = 0; n < touchedAmount; n++) {
+						accumulator[touched[n]] = 0d;
+					}
+				}
+			}, true);
+		}
+	}
+
+	/*
+	 * Stores a row from the accumulator, removing entries below the threshold
+	 * and all but the topK largest. If entries were removed, the remaining
+	 * ones are scaled up to the row's previous sum.
+	 */
+	private void prune(int row, double[] accumulator, int[] touched, int touchedAmount, double threshold, int topK) {
+		if (threshold <= 0d && (topK <= 0 || touchedAmount <= topK)) {
+			this.setRow(row, accumulator, touched, touchedAmount);
+			return;
+		}
+
+		double sum = 0d;
+		int kept = 0;
+		for (int n = 0; n < touchedAmount; n++) {
+			sum += accumulator[touched[n]];
+			if (accumulator[touched[n]] >= threshold)
+				kept++;
+		}
+
+		// Value a kept entry must at least have (the topK-th largest) and how
+		// many entries of exactly that value may be kept (by column index)
+		double minimum = threshold;
+		int ties = touchedAmount;
+		if (topK > 0 && kept > topK) {
+			double[] sorted = new double[touchedAmount];
+			for (int n = 0; n < touchedAmount; n++) {
+				sorted[n] = accumulator[touched[n]];
+			}
+			Arrays.sort(sorted);
+			minimum = sorted[touchedAmount - topK];
+			ties = 0;
+			for (int n = touchedAmount - topK; n < touchedAmount && sorted[n] == minimum; n++) {
+				ties++;
+			}
+		}
+
+		// Remove entries
+		double keptSum = 0d;
+		for (int n = 0; n < touchedAmount; n++) {
+			double value = accumulator[touched[n]];
+			if (value < minimum || (value == minimum && ties-- <= 0)) {
+				accumulator[touched[n]] = 0d;
+			} else {
+				keptSum += value;
+			}
+		}
+		if (keptSum != 0d && keptSum != sum) {
+			for (int n = 0; n < touchedAmount; n++) {
+				accumulator[touched[n]] = accumulator[touched[n]] / keptSum * sum;
+			}
+		}
+		this.setRow(row, accumulator, touched, touchedAmount);
+	}
+
+	/*
+	 * Returns true if this matrix equals the given rows exactly.
+	 */
+	private boolean equalsRows(int[][] otherCols, double[][] otherVals) {
+		for (int row = 0; row < this.rowAmount; row++) {
+			if (!Arrays.equals(this.cols[row], otherCols[row]) || !Arrays.equals(this.vals[row], otherVals[row]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs up to the given amount of iterations (inflation followed by
+	 * expansion). Stops early once an iteration leaves the matrix unchanged
+	 * (an attractor has been reached, further iterations would not change
+	 * anything) or the chaos falls below the given threshold.
+	 *
+	 * @param iterations
+	 *            Maximum amount of iterations
+	 * @param l
+	 *            Expansion exponent
+	 * @param r
+	 *            Inflation exponent
+	 * @param threshold
+	 *            Pruning threshold (0 for none)
+	 * @param topK
+	 *            Maximum amount of entries per row (0 for no limit)
+	 * @param chaosThreshold
+	 *            Chaos below which to stop (0 to only stop at a fixed point)
+	 * @return The amount of iterations run
+	 */
+	public int run(int iterations, int l, double r, double threshold, int topK, double chaosThreshold) {
+		for (int i = 0; i < iterations; i++) {
+			int[][] previousCols = this.cols;
+			double[][] previousVals = new double[this.rowAmount][];
+			for (int row = 0; row < this.rowAmount; row++) {
+				previousVals[row] = this.vals[row].clone();
+			}
+
+			this.inflate(r);
+			this.expand(l, threshold, topK);
+
+			if (this.chaos < chaosThreshold || this.equalsRows(previousCols, previousVals)) {
+				return i + 1;
+			}
+		}
+		return iterations;
+	}
+
+	/**
+	 * @return The chaos of the matrix after the last inflation: the maximum
+	 *         over all rows of (largest entry - sum of squared entries) *
+	 *         amount of entries. It is 0 if every row's entries are equal,
+	 *         as they are in an attractor.
+	 */
+	public double getChaos() {
+		return this.chaos;
+	}
+
+	/**
+	 * Writes the matrix into the given dense array.
+	 *
+	 * @param values
+	 *            Array of the matrix' dimensions
+	 */
+	public void toDense(double[][] values) {
+		for (int row = 0; row < this.rowAmount; row++) {
+			Arrays.fill(values[row], 0d);
+			int[] rowCols = this.cols[row];
+			double[] rowVals = this.vals[row];
+			for (int n = 0; n < rowCols.length; n++) {
+				values[row][rowCols[n]] = rowVals[n];
+			}
+		}
+	}
+}
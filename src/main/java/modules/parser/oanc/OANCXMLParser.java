@@ -5,10 +5,17 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -23,6 +30,7 @@ import modules.ModuleImpl;
 import modules.OutputPort;
 
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -62,12 +70,11 @@ public class OANCXMLParser extends ModuleImpl {
 	public static final String PROPERTYKEY_JSONOUTPUT_ONEOBJECTPERLINE = "oneJSONObjectPerLine";
 	public static final String PROPERTYKEY_OUTPUTJSON = "output JSON";
 	public static final String PROPERTYKEY_SPACE = "word divider";
+	public static final String PROPERTYKEY_THREADS = "parallel threads";
+	public static final String PROPERTYKEY_KEEPORDER = "keep input order";
 	// local variables
 	private final String INPUTID = "input";
 	private final String OUTPUTID = "output";
-	private File quellDatei;
-	private File satzGrenzenXMLDatei;
-	private File annotationsXMLDatei;
 	private boolean fuegeStartSymbolHinzu;
 	private boolean fuegeTerminierSymbolHinzu;
 	private boolean wandleInKleinbuchstaben;
@@ -76,6 +83,9 @@ public class OANCXMLParser extends ModuleImpl {
 	private boolean oneJSONObjectPerLine;
 	private boolean outputJson;
 	private String wortTrennzeichen;
+	private int threads = 1;
+	private boolean keepOrder = true;
+	private final ThreadLocal<SAXParser> saxParsers = new ThreadLocal<SAXParser>();
 	
 	public OANCXMLParser(CallbackReceiver callbackReceiver, Properties properties) throws Exception {
 		super(callbackReceiver, properties);
@@ -101,6 +111,8 @@ public class OANCXMLParser extends ModuleImpl {
 		this.getPropertyDescriptions().put(PROPERTYKEY_JSONOUTPUT_ONEOBJECTPERLINE,"If this and \'"+PROPERTYKEY_OUTPUTJSON+"\' is set to 'true' the output will be one JSON object per line.");
 		this.getPropertyDescriptions().put(PROPERTYKEY_OUTPUTJSON,"If set to 'true' the output will be JSON instead of plain text");
 		this.getPropertyDescriptions().put(PROPERTYKEY_SPACE,"symbol or string to divide words from each other");
+		this.getPropertyDescriptions().put(PROPERTYKEY_THREADS,"Number of files to parse concurrently (1 parses them one after another)");
+		this.getPropertyDescriptions().put(PROPERTYKEY_KEEPORDER,"If set to 'true' the results are output in the order of the input files, else as soon as a file is parsed (only applies to parallel parsing)");
 		
 		// Add default values
 		this.getPropertyDefaultValues().put(ModuleImpl.PROPERTYKEY_NAME, "OANC-Parser");
@@ -112,65 +124,67 @@ public class OANCXMLParser extends ModuleImpl {
 		this.getPropertyDefaultValues().put(PROPERTYKEY_JSONOUTPUT_ONEOBJECTPERLINE, "true");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_OUTPUTJSON, "true");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_SPACE, " ");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_THREADS, "1");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_KEEPORDER, "true");
 	}
 	
 	/**
 	 * Guesses the location of the sentence borders file in relation to the
-	 * source file (if existent) and sets the internal variable accordingly.
-	 * @return true if file is found & readable
+	 * source file.
+	 * @param quellDatei Source file
+	 * @return The file if it is found &amp; readable, else null
 	 */
-	private boolean guessSentenceBordersFile() {
-		if (quellDatei != null) {
-			this.satzGrenzenXMLDatei = new File(quellDatei.getPath().substring(0, quellDatei.getPath().lastIndexOf('.'))+SATZGRENZENDATEISUFFIX+".xml");
-			if (this.satzGrenzenXMLDatei.canRead())
-				return true;
-		}
-		return false;
+	private File guessSentenceBordersFile(File quellDatei) {
+		return guessFile(quellDatei, SATZGRENZENDATEISUFFIX);
 	}
 
 	/**
 	 * Guesses the location of the annotation file in relation to the
-	 * source file (if existent) and sets the internal variable accordingly.
-	 * @return true if file is found & readable
+	 * source file.
+	 * @param quellDatei Source file
+	 * @return The file if it is found &amp; readable, else null
 	 */
-	private boolean guessAnnotationsFile() {
+	private File guessAnnotationsFile(File quellDatei) {
+		return guessFile(quellDatei, ANNOTATIONSDATEISUFFIX);
+	}
+
+	private static File guessFile(File quellDatei, String suffix) {
 		if (quellDatei != null) {
-			this.annotationsXMLDatei = new File(quellDatei.getPath().substring(0, quellDatei.getPath().lastIndexOf('.'))+ANNOTATIONSDATEISUFFIX+".xml");
-			if (this.annotationsXMLDatei.canRead())
-				return true;
+			File file = new File(quellDatei.getPath().substring(0, quellDatei.getPath().lastIndexOf('.'))+suffix+".xml");
+			if (file.canRead())
+				return file;
 		}
-		return false;
+		return null;
 	}
 
 	/**
 	 * Parst die Quell- und Satzgrenzendatei und gibt eine Liste von (Roh)Saetzen zurueck
+	 * @param quellDatei Quelldatei
+	 * @param satzGrenzenXMLDatei Satzgrenzendatei
+	 * @param parser SAX-Parser (wird wiederverwendet)
 	 * @return
 	 * @throws IOException 
 	 * @throws SAXException 
-	 * @throws ParserConfigurationException 
 	 */
-	private List<String> parseQuellDatei() throws SAXException, IOException, ParserConfigurationException{
+	private List<String> parseQuellDatei(File quellDatei, File satzGrenzenXMLDatei, SAXParser parser) throws SAXException, IOException{
 		
 		// Zugriff auf Dateien pruefen
-		if (!this.quellDatei.canRead()){
-			throw new IOException("Kann Quelldatei nicht lesen: "+this.quellDatei.getAbsolutePath());
+		if (!quellDatei.canRead()){
+			throw new IOException("Kann Quelldatei nicht lesen: "+quellDatei.getAbsolutePath());
 		}
-		if (!this.satzGrenzenXMLDatei.canRead()){
-			throw new IOException("Kann Satzgrenzendatei nicht lesen: "+this.satzGrenzenXMLDatei.getAbsolutePath());
+		if (!satzGrenzenXMLDatei.canRead()){
+			throw new IOException("Kann Satzgrenzendatei nicht lesen: "+satzGrenzenXMLDatei.getAbsolutePath());
 		}
 		
 		// Liste fuer Ergebnis
 		ArrayList<String> ergebnisListe = new ArrayList<String>();
 		
 		// XML-Satzgrenzendatei parsen
-		SAXParserFactory parserFactor = SAXParserFactory.newInstance();
-	    SAXParser parser = parserFactor.newSAXParser();
 	    OANCSatzgrenzenXMLHandler handler = new OANCSatzgrenzenXMLHandler();
-	    InputStream satzgrenzenInputStream = new FileInputStream(satzGrenzenXMLDatei);
-	    parser.parse(satzgrenzenInputStream, handler);
+	    parseXML(parser, satzGrenzenXMLDatei, handler);
 
 	    // Quelldatei oeffnen
-	    FileReader datei = new FileReader(this.quellDatei);
+	    FileReader datei = new FileReader(quellDatei);
 	    
 	    // Markierung fuer Leselposition in der Quelldatei
     	int position = 0;
@@ -216,6 +230,24 @@ public class OANCXMLParser extends ModuleImpl {
 		return ergebnisListe;
 	}
 	
+	/**
+	 * Parst die XML-Datei mit dem (danach zurueckgesetzten) Parser.
+	 * @param parser SAX-Parser
+	 * @param xmlDatei XML-Datei
+	 * @param handler Handler
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	private static void parseXML(SAXParser parser, File xmlDatei, DefaultHandler handler) throws SAXException, IOException {
+		InputStream inputStream = new FileInputStream(xmlDatei);
+		try {
+			parser.parse(inputStream, handler);
+		} finally {
+			inputStream.close();
+			parser.reset();
+		}
+	}
+	
 	/**
 	 * Bereinigt und segmentiert den uebergebenen Satz. Entfernt Zeilenumbrueche, Tabulatoren, Leerzeichen, Punktuation.
 	 * Fuegt ggf. am Ende das Terminiersymbol ein.
@@ -283,47 +315,43 @@ public class OANCXMLParser extends ModuleImpl {
 	
 	/**
 	 * Parst die Quell-, Annotations- und Satzgrenzendatei und gibt eine Liste von Saetzen mit annotierten Worten zurueck.
+	 * @param quellDatei Quelldatei
+	 * @param satzGrenzenXMLDatei Satzgrenzendatei
+	 * @param annotationsXMLDatei Annotationsdatei
+	 * @param parser SAX-Parser (wird wiederverwendet)
 	 * @param wandleZuKleinbuchstaben Zeigt an, ob die eingelesenen Worte in Kleinbuchstaben gewandelt werden sollen
 	 * @return
-	 * @throws SAXException
 	 * @throws IOException
-	 * @throws ParserConfigurationException
 	 */
-	private List<List<WortAnnotationTupel>> parseQuellDateiMitAnnotationen(boolean wandleZuKleinbuchstaben) throws SAXException, IOException, ParserConfigurationException{
+	private List<List<WortAnnotationTupel>> parseQuellDateiMitAnnotationen(File quellDatei, File satzGrenzenXMLDatei, File annotationsXMLDatei, SAXParser parser, boolean wandleZuKleinbuchstaben) throws IOException{
 		
 		// Zugriff auf Dateien pruefen
-		if (!this.quellDatei.canRead()){
-			throw new IOException("Kann Quelldatei nicht lesen: "+this.quellDatei.getAbsolutePath());
+		if (!quellDatei.canRead()){
+			throw new IOException("Kann Quelldatei nicht lesen: "+quellDatei.getAbsolutePath());
 		}
-		if (!this.satzGrenzenXMLDatei.canRead()){
-			throw new IOException("Kann Satzgrenzendatei nicht lesen: "+this.satzGrenzenXMLDatei.getAbsolutePath());
+		if (!satzGrenzenXMLDatei.canRead()){
+			throw new IOException("Kann Satzgrenzendatei nicht lesen: "+satzGrenzenXMLDatei.getAbsolutePath());
 		}
 		
 		// Liste fuer Ergebnis
 		ArrayList<List<WortAnnotationTupel>> ergebnisListe = new ArrayList<List<WortAnnotationTupel>>();
 		
 		// XML-Satzgrenzendatei parsen
-		SAXParserFactory satzgrenzenParserFactory = SAXParserFactory.newInstance();
-	    SAXParser satzgrenzenParser = satzgrenzenParserFactory.newSAXParser();
 	    OANCSatzgrenzenXMLHandler satzgrenzenHandler = new OANCSatzgrenzenXMLHandler();
-	    InputStream satzgrenzenInputStream = new FileInputStream(satzGrenzenXMLDatei);
 	    try {
-	    	satzgrenzenParser.parse(satzgrenzenInputStream, satzgrenzenHandler);
+	    	parseXML(parser, satzGrenzenXMLDatei, satzgrenzenHandler);
 	    } catch (Exception e){
-	    	Logger.getLogger(this.getClass().getSimpleName()).warning("Fehler beim Parsen der Satzgrenzendatei \'"+this.satzGrenzenXMLDatei.getAbsolutePath()+"\': "+e.getMessage());
+	    	Logger.getLogger(this.getClass().getSimpleName()).warning("Fehler beim Parsen der Satzgrenzendatei \'"+satzGrenzenXMLDatei.getAbsolutePath()+"\': "+e.getMessage());
 	    	return ergebnisListe;
 	    }
 	    
 		
 		// XML-Annotationsdatei parsen
-		SAXParserFactory annotationsParserFactory = SAXParserFactory.newInstance();
-	    SAXParser annotationsParser = annotationsParserFactory.newSAXParser();
 	    OANCAnnotationsXMLHandler annotationsHandler = new OANCAnnotationsXMLHandler();
-	    InputStream annotationsInputStream = new FileInputStream(annotationsXMLDatei);
 	    try {
-		    annotationsParser.parse(annotationsInputStream, annotationsHandler);
+	    	parseXML(parser, annotationsXMLDatei, annotationsHandler);
 	    } catch (Exception e){
-	    	Logger.getLogger(this.getClass().getSimpleName()).warning("Fehler beim Parsen der Annotationsdatei \'"+this.annotationsXMLDatei.getAbsolutePath()+"\': "+e.getMessage());
+	    	Logger.getLogger(this.getClass().getSimpleName()).warning("Fehler beim Parsen der Annotationsdatei \'"+annotationsXMLDatei.getAbsolutePath()+"\': "+e.getMessage());
 	    	return ergebnisListe;
 	    }
 	    
@@ -331,7 +359,7 @@ public class OANCXMLParser extends ModuleImpl {
 	    List<OANCXMLAnnotation> annotationsListe = annotationsHandler.getAnnotationen();
 
 	    // Quelldatei oeffnen
-	    FileReader datei = new FileReader(this.quellDatei);
+	    FileReader datei = new FileReader(quellDatei);
 	    
 	    // Markierung fuer Leselposition in der Quelldatei
     	int position = 0;
@@ -411,11 +439,110 @@ public class OANCXMLParser extends ModuleImpl {
 		return ergebnisListe;
 	}
 
+	/**
+	 * Parses the given source file (and the corresponding XML files) and
+	 * returns the strings to output for it.
+	 * @param inputFile Source file
+	 * @param parser SAX parser (gets reused)
+	 * @param gson JSON converter
+	 * @return Output strings (one per sentence, or one for the whole file if
+	 *         the output format is annotated JSON)
+	 * @throws Exception Thrown if the sentence borders or annotations are missing
+	 */
+	private List<String> parseFile(File inputFile, SAXParser parser, Gson gson) throws Exception {
+		
+		// Write log message
+		Logger.getLogger(this.getClass().getSimpleName()).log(Level.FINEST,"Parser is processing "+inputFile.getPath());
+		
+		// Satzgrenzendatei auf ermitteln
+		File satzGrenzenXMLDatei = this.guessSentenceBordersFile(inputFile);
+		
+		// If the sentence borders are missing, throw an exception
+		if (satzGrenzenXMLDatei == null)
+			throw new Exception("I'm very sorry indeed, but I must stop processing for I could not find the file containing the sentence borders.");
+		else
+			Logger.getLogger(this.getClass().getSimpleName()).log(Level.FINEST,"Found sentence borders in "+satzGrenzenXMLDatei.getPath());
+		
+		List<String> outputStrings = new ArrayList<String>();
+		
+		// If the output format is set to annotated JSON, the method used for parsing differs
+		if (this.outputAnnotatedJson){
+			
+			// The output format is annotated JSON; first we need to get the annotations
+			File annotationsXMLDatei = this.guessAnnotationsFile(inputFile);
+			
+			// If the annotations are missing, throw an exception
+			if (annotationsXMLDatei == null)
+				throw new Exception("I'm very sorry indeed, but I must stop processing for I could not find the file containing the annotation data.");
+			else
+				Logger.getLogger(this.getClass().getSimpleName()).log(Level.FINEST,"Found annotations in "+annotationsXMLDatei.getPath());
+			
+			// Parse the source text with annotations
+			List<List<WortAnnotationTupel>> annotatedTupelList = this.parseQuellDateiMitAnnotationen(inputFile, satzGrenzenXMLDatei, annotationsXMLDatei, parser, this.wandleInKleinbuchstaben);
+			
+			// Convert tupel list to JSON
+			outputStrings.add(gson.toJson(annotatedTupelList)+"\n");
+			
+		} else {
+			// The output format is plain sentences, cleaned up a bit
+			
+			// Datei parsen und Rohsaetze ermitteln
+			List<String> rohsatzListe = this.parseQuellDatei(inputFile, satzGrenzenXMLDatei, parser);
+
+			// Liste der Rohsaetze durchlaufen
+			Iterator<String> rohsaetze = rohsatzListe.iterator();
+			while (rohsaetze.hasNext()) {
+				
+				// Clean up raw sentence
+				List<String> bereinigterSatz = this.bereinigeUndSegmentiereSatz(
+						rohsaetze.next(), fuegeStartSymbolHinzu,
+						fuegeTerminierSymbolHinzu, wandleInKleinbuchstaben,
+						behaltePunktuation);
+
+				// Check whether we need to convert the output into JSON
+				if (this.outputJson){
+
+					// Convert to JSON
+					outputStrings.add(gson.toJson(bereinigterSatz));
+					
+				} else {
+					
+					// Create a stringbuilder for better performance
+					StringBuilder stringBuilder = new StringBuilder();
+					
+					// Loop over words of the parsed sentence to construct a single output string
+					Iterator<String> worte = bereinigterSatz.iterator();
+					while(worte.hasNext()){
+						stringBuilder.append(worte.next());
+						//if (worte.hasNext())
+							stringBuilder.append(this.wortTrennzeichen);
+					}
+					
+					outputStrings.add(stringBuilder.toString());
+				}
+			}
+		}
+		
+		return outputStrings;
+	}
+	
+	/*
+	 * Returns the SAX parser of the current thread (each worker reuses its own).
+	 */
+	private SAXParser getSAXParser() throws ParserConfigurationException, SAXException {
+		SAXParser parser = this.saxParsers.get();
+		if (parser == null) {
+			parser = SAXParserFactory.newInstance().newSAXParser();
+			this.saxParsers.set(parser);
+		}
+		return parser;
+	}
+
 	@Override
 	public boolean process() throws Exception {
 		
 		// Instantiate JSON converter
-		Gson gson;
+		final Gson gson;
 		
 		if (this.oneJSONObjectPerLine)
 			gson = new Gson();
@@ -429,100 +556,70 @@ public class OANCXMLParser extends ModuleImpl {
 		} catch (Exception e) {
 			throw new Exception("Error parsing the input -- it does not seem to be the expected list of files.", e);
 		}
+		
+		if (this.threads <= 1) {
+			for (int i=0; i<inputFileList.length; i++){
 				
-		for (int i=0; i<inputFileList.length; i++){
-			
-			// Auf Unterbrechersignal pruefen
-			if (Thread.interrupted()) {
-				this.closeAllOutputs();
-				throw new InterruptedException("Thread has been interrupted.");
+				// Auf Unterbrechersignal pruefen
+				if (Thread.interrupted()) {
+					this.closeAllOutputs();
+					throw new InterruptedException("Thread has been interrupted.");
+				}
+				
+				this.outputAll(this.parseFile(inputFileList[i], this.getSAXParser(), gson));
 			}
+		} else {
 			
-			// Determine the next input file
-			File inputFile = inputFileList[i];
-			
-			// Write log message
-			Logger.getLogger(this.getClass().getSimpleName()).log(Level.FINEST,"Parser is processing "+inputFile.getPath());
-			
-			// Aktuelle Korpusdatei als Quelle fuer Parser setzen
-			this.quellDatei = inputFile;
-
-			// Satzgrenzendatei auf ermitteln
-			boolean sentenceBordersArePresent = this.guessSentenceBordersFile();
-			
-			// If the sentence borders are missing, throw an exception
-			if (!sentenceBordersArePresent)
-				throw new Exception("I'm very sorry indeed, but I must stop processing for I could not find the file containing the sentence borders.");
-			else
-				Logger.getLogger(this.getClass().getSimpleName()).log(Level.FINEST,"Found sentence borders in "+this.satzGrenzenXMLDatei.getPath());
-			
-			// If the output format is set to annotated JSON, the method used for parsing differs
-			if (this.outputAnnotatedJson){
-				
-				// The output format is annotated JSON; first we need to get the annotations
-				boolean annotationsArePresent = this.guessAnnotationsFile();
-				
-				// If the annotations are missing, throw an exception
-				if (!annotationsArePresent)
-					throw new Exception("I'm very sorry indeed, but I must stop processing for I could not find the file containing the annotation data.");
-				else
-					Logger.getLogger(this.getClass().getSimpleName()).log(Level.FINEST,"Found annotations in "+this.annotationsXMLDatei.getPath());
-				
-				// Parse the source text with annotations
-				List<List<WortAnnotationTupel>> annotatedTupelList = this.parseQuellDateiMitAnnotationen(this.wandleInKleinbuchstaben);
-				
-				// Convert tupel list to JSON
-				String annotatedTupelListJson = gson.toJson(annotatedTupelList);
-				
-				// Output the result
-				this.getOutputPorts().get(OUTPUTID).outputToAllCharPipes(annotatedTupelListJson+"\n");
-				
-			} else {
-				// The output format is plain sentences, cleaned up a bit
-				
-				// Datei parsen und Rohsaetze ermitteln
-				List<String> rohsatzListe = this.parseQuellDatei();
-
-				// Liste der Rohsaetze durchlaufen
-				Iterator<String> rohsaetze = rohsatzListe.iterator();
-				while (rohsaetze.hasNext()) {
+			/*
+			 * Parse the files on a pool, at most twice as many as there are
+			 * threads at once; the results are written in input order or as
+			 * they are completed.
+			 */
+			ForkJoinPool pool = new ForkJoinPool(this.threads);
+			CompletionService<List<String>> completionService = new ExecutorCompletionService<List<String>>(pool);
+			ArrayDeque<Future<List<String>>> pending = new ArrayDeque<Future<List<String>>>();
+			int nextFile = 0;
+			try {
+				for (int i=0; i<inputFileList.length; i++){
 					
-					// Clean up raw sentence
-					List<String> bereinigterSatz = this.bereinigeUndSegmentiereSatz(
-							rohsaetze.next(), fuegeStartSymbolHinzu,
-							fuegeTerminierSymbolHinzu, wandleInKleinbuchstaben,
-							behaltePunktuation);
-
-					// Variable for the data that gets sent to output
-					String outputString;
+					// Auf Unterbrechersignal pruefen
+					if (Thread.interrupted()) {
+						this.closeAllOutputs();
+						throw new InterruptedException("Thread has been interrupted.");
+					}
 					
-					// Check whether we need to convert the output into JSON
-					if (this.outputJson){
-
-						// Convert to JSON
-						outputString = gson.toJson(bereinigterSatz);
-						
-					} else {
-						
-						// Create a stringbuilder for better performance
-						StringBuilder stringBuilder = new StringBuilder();
-						
-						// Loop over words of the parsed sentence to construct a single output string
-						Iterator<String> worte = bereinigterSatz.iterator();
-						while(worte.hasNext()){
-							stringBuilder.append(worte.next());
-							//if (worte.hasNext())
-								stringBuilder.append(this.wortTrennzeichen);
-						}
-						
-						// Set the output variable
-						outputString = stringBuilder.toString();
-						
+					while (nextFile < inputFileList.length && pending.size() < this.threads * 2) {
+						final File inputFile = inputFileList[nextFile++];
+						Callable<List<String>> task = new Callable<List<String>>() {
+							@Override
+							public List<String> call() throws Exception {
+								return parseFile(inputFile, getSAXParser(), gson);
+							}
+						};
+						if (this.keepOrder)
+							pending.add(pool.submit(task));
+						else
+							pending.add(completionService.submit(task));
+					}
+					
+					Future<List<String>> result;
+					if (this.keepOrder)
+						result = pending.poll();
+					else {
+						result = completionService.take();
+						pending.remove(result);
+					}
+					
+					try {
+						this.outputAll(result.get());
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof Exception)
+							throw (Exception) e.getCause();
+						throw e;
 					}
-
-					// Output the result
-					this.getOutputPorts().get(OUTPUTID).outputToAllCharPipes(outputString);
 				}
+			} finally {
+				pool.shutdownNow();
 			}
 		}
 
@@ -531,6 +628,12 @@ public class OANCXMLParser extends ModuleImpl {
 		
 		return true;
 	}
+	
+	private void outputAll(List<String> outputStrings) throws IOException {
+		Iterator<String> outputs = outputStrings.iterator();
+		while (outputs.hasNext())
+			this.getOutputPorts().get(OUTPUTID).outputToAllCharPipes(outputs.next());
+	}
 
 	/* (non-Javadoc)
 	 * @see modularization.ModuleImpl#applyProperties()
@@ -555,6 +658,10 @@ public class OANCXMLParser extends ModuleImpl {
 			this.outputJson = Boolean.parseBoolean(this.getProperties().getProperty(PROPERTYKEY_OUTPUTJSON));
 		if (this.getProperties().containsKey(PROPERTYKEY_SPACE))
 			this.wortTrennzeichen = this.getProperties().getProperty(PROPERTYKEY_SPACE);
+		if (this.getProperties().containsKey(PROPERTYKEY_THREADS))
+			this.threads = Integer.parseInt(this.getProperties().getProperty(PROPERTYKEY_THREADS));
+		if (this.getProperties().containsKey(PROPERTYKEY_KEEPORDER))
+			this.keepOrder = Boolean.parseBoolean(this.getProperties().getProperty(PROPERTYKEY_KEEPORDER));
 			
 		super.applyProperties();
 	}
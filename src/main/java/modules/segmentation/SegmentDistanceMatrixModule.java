@@ -1,6 +1,8 @@
 package modules.segmentation;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -11,6 +13,7 @@ import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
 import modules.OutputPort;
+import modules.OutputPortWriter;
 
 import base.workbench.ModuleRunner;
 
@@ -102,10 +105,9 @@ public class SegmentDistanceMatrixModule extends ModuleImpl {
 			}
 			if (hdOut.isConnected()) {
 				NamedFieldMatrix hammingMatrix = buildHammingDistancesMatrix(matrix);
-				hdOut.outputToAllCharPipes(hammingMatrix.csvHeader());
-				for (int i = 0; i < hammingMatrix.getRowAmount(); i++) {
-					hdOut.outputToAllCharPipes(hammingMatrix.csvLine(i));
-				}
+				Writer writer = new BufferedWriter(new OutputPortWriter(hdOut));
+				hammingMatrix.writeCSV(writer);
+				writer.flush();
 			}
 		} catch (Exception e) {
 			result = false;
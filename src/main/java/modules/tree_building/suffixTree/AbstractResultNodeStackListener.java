@@ -1,6 +1,8 @@
 package modules.tree_building.suffixTree;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
@@ -20,6 +22,12 @@ public abstract class AbstractResultNodeStackListener implements ITreeWalkerList
 	// while iterating the tree keeps track of the current path's length
 	private int pathLength = 0;
 
+	// the amount of nodes on the stack taken over from the listener this one was forked from
+	private final int forkDepth;
+
+	// leaves for the node this listener was forked at, handed over on joining
+	private final List<Node> forkLeaves;
+
 	/**
 	 * An initialiser for subclasses to setup all necessary variables.
 	 * 
@@ -30,6 +38,40 @@ public abstract class AbstractResultNodeStackListener implements ITreeWalkerList
 		this.tree = tree;
 		this.nodes = new Stack<Node>();
 		this.edges = new Stack<String>();
+		this.forkDepth = 0;
+		this.forkLeaves = null;
+	}
+
+	/**
+	 * An initialiser for subclasses that support forking (see
+	 * IForkableTreeWalkerListener). The new listener takes over a copy of the
+	 * path the given listener is currently at.
+	 * 
+	 * @param parent
+	 *            the listener to fork from
+	 */
+	protected AbstractResultNodeStackListener(AbstractResultNodeStackListener parent) {
+		this.tree = parent.tree;
+		this.nodes = new Stack<Node>();
+		this.nodes.addAll(parent.nodes);
+		this.edges = new Stack<String>();
+		this.edges.addAll(parent.edges);
+		this.pathLength = parent.pathLength;
+		this.forkDepth = this.nodes.size();
+		this.forkLeaves = new ArrayList<Node>();
+	}
+
+	/**
+	 * Hands the leaves collected by a forked listener over to the node it
+	 * was forked at. Subclasses supporting forking call this when joining.
+	 * 
+	 * @param forked
+	 *            the listener created by the forking constructor
+	 */
+	protected void joinLeaves(AbstractResultNodeStackListener forked) {
+		if (forked.forkLeaves != null && !forked.forkLeaves.isEmpty()) {
+			nodes.peek().getLeaves().addAll(forked.forkLeaves);
+		}
 	}
 
 	/**
@@ -78,14 +120,18 @@ public abstract class AbstractResultNodeStackListener implements ITreeWalkerList
 		if (nodeNr != tree.getRoot()) {
 			parent = nodes.peek();
 
+			// the parent's leaves are shared with other forks of the listener this
+			// one was forked from, so they are collected and handed over on joining
+			final Collection<Node> parentLeaves = (nodes.size() <= forkDepth) ? forkLeaves : parent.getLeaves();
+
 			// propagate leaf nodes from this node to the parent if any are
 			// present
-			parent.getLeaves().addAll(node.getLeaves());
+			parentLeaves.addAll(node.getLeaves());
 
 			// if the node is itself a terminal node, it is noted in the
 			// parent's leaves as well
 			if (node.isTerminal()) {
-				parent.getLeaves().add(node);
+				parentLeaves.add(node);
 			}
 		}
 
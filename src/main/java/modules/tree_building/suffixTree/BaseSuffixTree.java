@@ -2,7 +2,11 @@ package modules.tree_building.suffixTree;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
  Description, source base and comments see 
@@ -14,10 +18,52 @@ public class BaseSuffixTree {
 	// Expose .oo to the package read-only
 	protected static final int oo = Integer.MAX_VALUE / 2;
 	int position=-1;
-	Node[] nodes;
 	char[] text;
 	int root, currentNode, needSuffixLink, remainder;
 
+	/*
+	 * The nodes are stored as a struct of arrays indexed by node nr (node 0 is
+	 * unused, so 0 marks "no node"). Node objects handed out to clients are mere
+	 * views on these arrays (see Node).
+	 * 
+	 * Every node has at least one position which is kept in starts, ends, textNrs
+	 * and typeContextNrs. Further positions (terminal nodes reached by several
+	 * texts) are kept in extraPositions as [amount, start, end, textNr,
+	 * typeContextNr, start, end, ...].
+	 */
+	private int[] starts;
+	// end values or OPEN_END + index of the text end in textEnds
+	private int[] ends;
+	private int[] textNrs;
+	private int[] typeContextNrs;
+	private int[][] extraPositions;
+	int[] links;
+	
+	// The children of a node form a list sorted by the first char of their edges
+	private int[] firstChildren;
+	private int[] nextSiblings;
+	private char[] edgeBegins;
+	private int[] childAmounts;
+	
+	// Nodes with more children than this get an index of their edges (sorted by
+	// edge begin) to find a child by binary search instead of walking the list
+	private static final int CHILD_INDEX_THRESHOLD = 8;
+	private char[][] childIndexBegins;
+	private int[][] childIndexNodes;
+	
+	// Node objects handed out so far (each node is represented by at most one object,
+	// so clients may compare them by identity), allocated on first use.
+	private volatile Node[] nodeViews;
+	
+	// Data fields that may be used by clients (see Node). Listeners walking disjoint
+	// subtrees in parallel (see TreeWalker.walkParallel()) may access them concurrently.
+	private volatile int[] pathLengths;
+	private final Map<Integer, Set<Node>> leaves = new ConcurrentHashMap<Integer, Set<Node>>();
+	
+	// ends below this value refer to a text end (all real ends are >= -1)
+	private static final int OPEN_END = Integer.MIN_VALUE;
+	private static final int POSITION_SIZE = 4;
+
 	// The Suffix tree can be used to note type context numbers in addition
 	// to positions for every node.
 	public static final int NO_TYPE_CONTEXT = -1;
@@ -29,26 +75,376 @@ public class BaseSuffixTree {
 	
 	int active_node, active_length, active_edge;
 	
-	// An end to keep track of all node's end positions while setting a single
-	// text when this is used as a generalised suffix tree.
-	private NodePositionEnd end;
+	// Ends to keep track of all node's end positions while setting a single
+	// text when this is used as a generalised suffix tree (one per text, the
+	// last one is the current one).
+	private final List<NodePositionEnd> textEnds = new ArrayList<NodePositionEnd>();
 	
 	public BaseSuffixTree(int length) {
-		nodes = new Node[2 * length + 2];
 		text = new char[length];
+		allocateNodes(Math.max(16, length + 2));
 		root = active_node = newNode(-1, -1, 0, NO_TYPE_CONTEXT);
 		
 		textBegins = new ArrayList<Integer>();
 	}
 	
+	/**
+	 * Makes sure that the tree can hold a text of the given length by growing
+	 * the underlying array. Used when the length of the input is not known in
+	 * advance.
+	 * @param length Minimal text length
+	 */
+	void ensureCapacity(int length) {
+		if (length <= text.length)
+			return;
+		// grow at least by half to keep appending linear
+		int newLength = Math.max(length, text.length + (text.length >> 1) + 1);
+		text = Arrays.copyOf(text, newLength);
+	}
+	
+	/**
+	 * Shrinks the underlying arrays to the text read so far and the nodes
+	 * created for it.
+	 */
+	void trimToSize() {
+		if (text.length != position + 1)
+			text = Arrays.copyOf(text, position + 1);
+		if (starts.length != currentNode + 1)
+			resizeNodes(currentNode + 1);
+	}
+	
+	/**
+	 * Appends a character to the text without inserting it into the tree. Used
+	 * by the GST for prefixes of a new text that are already contained in the
+	 * tree (see GST.buildGST()).
+	 * @param ch Character
+	 */
+	void appendText(char ch) {
+		if (position + 1 >= text.length)
+			ensureCapacity(position + 2);
+		this.text[++position] = ch;
+	}
+	
 	int newNode(int start, int end, int nrText, int typeContextNr) {
-		nodes[++currentNode] = new Node(start, end, nrText, typeContextNr, this);
-		return currentNode;
+		if (currentNode + 1 >= starts.length)
+			resizeNodes(starts.length + (starts.length >> 1) + 1);
+		int node = ++currentNode;
+		starts[node] = start;
+		ends[node] = encodeEnd(end);
+		textNrs[node] = nrText;
+		typeContextNrs[node] = typeContextNr;
+		return node;
+	}
+	
+	private void allocateNodes(int capacity) {
+		starts = new int[capacity];
+		ends = new int[capacity];
+		textNrs = new int[capacity];
+		typeContextNrs = new int[capacity];
+		extraPositions = new int[capacity][];
+		links = new int[capacity];
+		firstChildren = new int[capacity];
+		nextSiblings = new int[capacity];
+		edgeBegins = new char[capacity];
+		childAmounts = new int[capacity];
+		childIndexBegins = new char[capacity][];
+		childIndexNodes = new int[capacity][];
+	}
+	
+	private void resizeNodes(int capacity) {
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		textNrs = Arrays.copyOf(textNrs, capacity);
+		typeContextNrs = Arrays.copyOf(typeContextNrs, capacity);
+		extraPositions = Arrays.copyOf(extraPositions, capacity);
+		links = Arrays.copyOf(links, capacity);
+		firstChildren = Arrays.copyOf(firstChildren, capacity);
+		nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+		edgeBegins = Arrays.copyOf(edgeBegins, capacity);
+		childAmounts = Arrays.copyOf(childAmounts, capacity);
+		childIndexBegins = Arrays.copyOf(childIndexBegins, capacity);
+		childIndexNodes = Arrays.copyOf(childIndexNodes, capacity);
+		if (nodeViews != null)
+			nodeViews = Arrays.copyOf(nodeViews, capacity);
+		if (pathLengths != null) {
+			int[] lengths = Arrays.copyOf(pathLengths, capacity);
+			if (capacity > pathLengths.length)
+				Arrays.fill(lengths, pathLengths.length, capacity, -1);
+			pathLengths = lengths;
+		}
+	}
+	
+	// open ends refer to the end of the current text
+	private int encodeEnd(int end) {
+		if (end == oo && !textEnds.isEmpty())
+			return OPEN_END + textEnds.size() - 1;
+		return end;
+	}
+	
+	private int decodeEnd(int end) {
+		if (end < -1)
+			return textEnds.get(end - OPEN_END).val;
+		return end;
+	}
+	
+	//------------------------------------------node positions---------------------------------------------------
+	
+	// Returns the number of positions noted for the node
+	int getPositionsAmount(int node) {
+		return extraPositions[node] == null ? 1 : extraPositions[node][0] + 1;
+	}
+	
+	// returns the index of the position's start in extraPositions[node]
+	private int extraIndex(int pos) {
+		return (pos - 1) * POSITION_SIZE + 1;
+	}
+	
+	int getStart(int node, int pos) {
+		return pos == 0 ? starts[node] : extraPositions[node][extraIndex(pos)];
+	}
+	
+	int getEnd(int node, int pos) {
+		return decodeEnd(pos == 0 ? ends[node] : extraPositions[node][extraIndex(pos) + 1]);
+	}
+	
+	int getTextNr(int node, int pos) {
+		return pos == 0 ? textNrs[node] : extraPositions[node][extraIndex(pos) + 2];
+	}
+	
+	int getTypeContext(int node, int pos) {
+		return pos == 0 ? typeContextNrs[node] : extraPositions[node][extraIndex(pos) + 3];
+	}
+	
+	void setStart(int node, int pos, int val) {
+		if (pos == 0)
+			starts[node] = val;
+		else
+			extraPositions[node][extraIndex(pos)] = val;
+	}
+	
+	// sets a fixed end value (independent of the end of the current text)
+	void setEnd(int node, int pos, int val) {
+		if (pos == 0)
+			ends[node] = val;
+		else
+			extraPositions[node][extraIndex(pos) + 1] = val;
+	}
+	
+	void setTextNr(int node, int pos, int val) {
+		if (pos == 0)
+			textNrs[node] = val;
+		else
+			extraPositions[node][extraIndex(pos) + 2] = val;
+	}
+	
+	void setTypeContextNr(int node, int pos, int val) {
+		if (pos == 0)
+			typeContextNrs[node] = val;
+		else
+			extraPositions[node][extraIndex(pos) + 3] = val;
+	}
+	
+	// Adds a further position to the node; an end of oo is set to the end of the current text
+	void addPos(int node, int start, int end, int textNr, int typeContext) {
+		// make sure that the position added is never equal to the last position set
+		int lastPos = this.getPositionsAmount(node) - 1;
+		if ((this.getStart(node, lastPos) == start) && (this.getEnd(node, lastPos) == end) 
+				&& (this.getTextNr(node, lastPos) == textNr)) {
+			throw new IllegalStateException("addPos equal entry start: " + start + " end: " + end + " textNr: " + textNr);
+		}
+		int[] extra = extraPositions[node];
+		if (extra == null) {
+			extra = new int[POSITION_SIZE + 1];
+		} else if (extraIndex(extra[0] + 2) > extra.length) {
+			extra = Arrays.copyOf(extra, extra.length * 2 - 1);
+		}
+		int i = extraIndex(extra[0] + 1);
+		extra[i] = start;
+		extra[i + 1] = encodeEnd(end);
+		extra[i + 2] = textNr;
+		extra[i + 3] = typeContext;
+		extra[0]++;
+		extraPositions[node] = extra;
+	}
+	
+	// returns a position of the node as an object (open ends are shared with the tree)
+	NodePosition getPosition(int node, int pos) {
+		int end = pos == 0 ? ends[node] : extraPositions[node][extraIndex(pos) + 1];
+		NodePositionEnd endPosition;
+		if (end < -1)
+			endPosition = textEnds.get(end - OPEN_END);
+		else
+			endPosition = new NodePositionEnd(end);
+		return new NodePosition(getStart(node, pos), endPosition, getTextNr(node, pos), getTypeContext(node, pos));
 	}
+	
+	// if a node is split and if it represents more than one text, all start positions in
+	// the position list of a node must be updated by active_length
+	void updateStartPositions(int node, int active_length) {
+		for (int i = 0; i < this.getPositionsAmount(node); i++) {
+			this.setStart(node, i, this.getStart(node, i) + active_length);
+		}
+	}
+	
+	// return the edge length of the node in the tree
+	int edgeLength(int node) {
+		return Math.min(this.getEnd(node, 0), position + 1) - this.getStart(node, 0);
+	}
+	
+	//------------------------------------------edges--------------------------------------------------------------
+	
+	boolean isTerminal(int node) {
+		return firstChildren[node] == 0;
+	}
+	
+	// returns the first child of a node (the one with the smallest edge begin), 0 if there is none
+	int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+	
+	// returns the next child of the same parent, 0 if there is none
+	int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+	
+	// returns the first char of the edge leading to the node
+	char getEdgeBegin(int node) {
+		return edgeBegins[node];
+	}
+	
+	// returns the child reached by the edge beginning with ch, 0 if there is none
+	int getChild(int node, char ch) {
+		char[] begins = childIndexBegins[node];
+		if (begins != null) {
+			int i = Arrays.binarySearch(begins, 0, childAmounts[node], ch);
+			return i < 0 ? 0 : childIndexNodes[node][i];
+		}
+		for (int child = firstChildren[node]; child != 0; child = nextSiblings[child]) {
+			if (edgeBegins[child] == ch)
+				return child;
+			// children are sorted
+			if (edgeBegins[child] > ch)
+				break;
+		}
+		return 0;
+	}
+	
+	// sets the child reached by the edge beginning with ch, replacing any previous one
+	void putChild(int node, char ch, int child) {
+		int previous = 0;
+		int current;
+		char[] begins = childIndexBegins[node];
+		int i = 0;
+		if (begins != null) {
+			// the index yields the neighbours in the list
+			int amount = childAmounts[node];
+			i = Arrays.binarySearch(begins, 0, amount, ch);
+			int insert = i < 0 ? -i - 1 : i;
+			if (insert > 0)
+				previous = childIndexNodes[node][insert - 1];
+			current = insert < amount ? childIndexNodes[node][insert] : 0;
+		} else {
+			current = firstChildren[node];
+			while (current != 0 && edgeBegins[current] < ch) {
+				previous = current;
+				current = nextSiblings[current];
+			}
+		}
+		if (current != 0 && edgeBegins[current] == ch) {
+			// replace the current child
+			if (current == child)
+				return;
+			nextSiblings[child] = nextSiblings[current];
+			nextSiblings[current] = 0;
+			if (begins != null)
+				childIndexNodes[node][i] = child;
+		} else {
+			nextSiblings[child] = current;
+			childAmounts[node]++;
+			if (begins != null)
+				insertIntoChildIndex(node, -i - 1, ch, child);
+		}
+		edgeBegins[child] = ch;
+		if (previous == 0)
+			firstChildren[node] = child;
+		else
+			nextSiblings[previous] = child;
+		if (begins == null && childAmounts[node] > CHILD_INDEX_THRESHOLD)
+			buildChildIndex(node);
+	}
+	
+	private void insertIntoChildIndex(int node, int index, char ch, int child) {
+		int amount = childAmounts[node] - 1;
+		char[] begins = childIndexBegins[node];
+		int[] nodes = childIndexNodes[node];
+		if (amount == begins.length) {
+			begins = childIndexBegins[node] = Arrays.copyOf(begins, amount * 2);
+			nodes = childIndexNodes[node] = Arrays.copyOf(nodes, amount * 2);
+		}
+		System.arraycopy(begins, index, begins, index + 1, amount - index);
+		System.arraycopy(nodes, index, nodes, index + 1, amount - index);
+		begins[index] = ch;
+		nodes[index] = child;
+	}
+	
+	// indexes the children of a node from its (sorted) list
+	private void buildChildIndex(int node) {
+		char[] begins = new char[childAmounts[node] * 2];
+		int[] nodes = new int[begins.length];
+		int i = 0;
+		for (int child = firstChildren[node]; child != 0; child = nextSiblings[child]) {
+			begins[i] = edgeBegins[child];
+			nodes[i++] = child;
+		}
+		childIndexBegins[node] = begins;
+		childIndexNodes[node] = nodes;
+	}
+	
+	//------------------------------------------client data--------------------------------------------------------
+	
+	void setPathLength(int node, int length) {
+		int[] lengths = pathLengths;
+		if (lengths == null)
+			lengths = allocatePathLengths();
+		lengths[node] = length;
+	}
+	
+	private synchronized int[] allocatePathLengths() {
+		if (pathLengths == null) {
+			int[] lengths = new int[starts.length];
+			Arrays.fill(lengths, -1);
+			pathLengths = lengths;
+		}
+		return pathLengths;
+	}
+	
+	int getPathLength(int node) {
+		int[] lengths = pathLengths;
+		return lengths == null ? -1 : lengths[node];
+	}
+	
+	Set<Node> getLeaves(int node) {
+		Set<Node> result = leaves.get(node);
+		if (result == null) {
+			result = new HashSet<Node>();
+			Set<Node> previous = leaves.putIfAbsent(node, result);
+			if (previous != null)
+				result = previous;
+		}
+		return result;
+	}
+
+	private synchronized Node[] allocateNodeViews() {
+		if (nodeViews == null)
+			nodeViews = new Node[starts.length];
+		return nodeViews;
+	}
+
+	//------------------------------------------construction-------------------------------------------------------
 
 	private void addSuffixLink(int node) {
 		if (needSuffixLink > 0)
-			nodes[needSuffixLink].link = node;
+			links[needSuffixLink] = node;
 		needSuffixLink = node;
 	}
 
@@ -57,9 +453,9 @@ public class BaseSuffixTree {
 	}
 
 	boolean walkDown(int next) {
-		if (active_length >= nodes[next].edgeLength(this)) {
-			active_edge += nodes[next].edgeLength(this);
-			active_length -= nodes[next].edgeLength(this);
+		if (active_length >= edgeLength(next)) {
+			active_edge += edgeLength(next);
+			active_length -= edgeLength(next);
 			active_node = next;
 			return true;
 		}
@@ -76,32 +472,36 @@ public class BaseSuffixTree {
 		for (int i=position-remainder+1;i<=position;i++){
 			pos=i;
 			while (pos<=position) {
-				if (!nodes[next].next.containsKey(this.text[pos]))  {
+				int child = getChild(next, this.text[pos]);
+				if (child == 0)  {
 					throw new IllegalStateException("addRemaining Error");
 				}
 				else {
-					next = nodes[next].next.get(this.text[pos]);
-					pos+=nodes[next].edgeLength(this);
+					next = child;
+					pos+=edgeLength(next);
 				}
 			
 			}// while
-			if (nodes[next].isTerminal()){
-				nodes[next].addPos(pos-nodes[next].edgeLength(this), BaseSuffixTree.oo, textNr, currentTypeContext, this);
+			if (isTerminal(next)){
+				addPos(next, pos-edgeLength(next), BaseSuffixTree.oo, textNr, currentTypeContext);
 			}
 			next=this.root;
 		}// for
 	}
 
 	public void addChar(char ch, int nrText) throws Exception {
+		if (position + 1 >= text.length)
+			ensureCapacity(position + 2);
 		this.text[++position] = ch;
 		needSuffixLink = -1;
 		remainder++;
 		while (remainder > 0) {
 			if (active_length == 0)
 				active_edge = position;
-			if (!nodes[active_node].next.containsKey(active_edge())) {
+			int next = getChild(active_node, active_edge());
+			if (next == 0) {
 				int leaf = newNode(position, oo, nrText, currentTypeContext);
-				nodes[active_node].next.put(active_edge(), leaf);
+				putChild(active_node, active_edge(), leaf);
 				addSuffixLink(active_node);  
 				/* rule 2:
 				If we create a new internal node OR make an inserter from an internal node, 
@@ -109,7 +509,6 @@ public class BaseSuffixTree {
 				then we link the previous SUCH node with THIS one through a suffix link.
 				*/
 			} else {
-				int next = nodes[active_node].next.get(active_edge());
 				if (walkDown(next)) {
 					continue; /* observation 2:
 						If at some point active_length is greater or equal to the length of 
@@ -117,10 +516,10 @@ public class BaseSuffixTree {
 						until edge_length is not strictly greater than active_length.
 					*/
 				}
-				if (this.text[nodes[next].getStart(0) + active_length] == ch) { 
+				if (this.text[getStart(next, 0) + active_length] == ch) { 
 					// end of text, for further texts in GST
 					if (ch=='$') {
-						if (nodes[next].isTerminal()){
+						if (isTerminal(next)){
 							addRemaining(nrText);
 						}// if  ..isTerminal
 						else {
@@ -142,14 +541,14 @@ public class BaseSuffixTree {
 
 					break;
 				}
-				int split = newNode(nodes[next].getStart(0), nodes[next].getStart(0) + active_length, nrText, currentTypeContext);
-				nodes[active_node].next.put(active_edge(), split);
+				int split = newNode(getStart(next, 0), getStart(next, 0) + active_length, nrText, currentTypeContext);
+				putChild(active_node, active_edge(), split);
 
 				int leaf = newNode(position, oo, nrText, currentTypeContext);
-				nodes[split].next.put(ch, leaf);
-				nodes[next].updateStartPositions(active_length);
+				putChild(split, ch, leaf);
+				updateStartPositions(next, active_length);
 
-				nodes[split].next.put(this.text[nodes[next].getStart(0)], next);
+				putChild(split, this.text[getStart(next, 0)], next);
 				addSuffixLink(split); 
 				/* rule 2:
 				 If we create a new internal node OR make an inserter from an internal node, 
@@ -170,7 +569,7 @@ public class BaseSuffixTree {
 				active_length--;
 				active_edge = position - remainder + 1;
 			} else
-				active_node = nodes[active_node].link > 0 ? nodes[active_node].link : root; 
+				active_node = links[active_node] > 0 ? links[active_node] : root; 
 				/*rule 3:
 				After an insert from the active node which is not the root node, 
 				we must follow the suffix link and set the active node to the node it points to. 
@@ -182,22 +581,22 @@ public class BaseSuffixTree {
 
 	// get the edge string of a node by node number
 	public String edgeString(int node) {
-		return edgeString(nodes[node]);
-	}
-	
-	// get the edge string of a node
-	public String edgeString(Node node) {
-		if (node == getNode(getRoot())) {
+		if (node == getRoot()) {
 			return "";
 		}
 
-		int end=node.getEnd(0);
+		int end=getEnd(node, 0);
 		if (end==oo) {
-			for (end=node.getStart(0);end<=oo;end++) {
+			for (end=getStart(node, 0);end<=position;end++) {
 				if (this.text[end]=='$') {end++; break;}
 			}
 		}
-		return new String(Arrays.copyOfRange(this.text, node.getStart(0), Math.min(position + 1,end)));
+		return new String(Arrays.copyOfRange(this.text, getStart(node, 0), Math.min(position + 1,end)));
+	}
+	
+	// get the edge string of a node
+	public String edgeString(Node node) {
+		return edgeString(node.getNodeNr());
 	}
 	
 
@@ -215,19 +614,19 @@ public class BaseSuffixTree {
 		int localActiveEdge=0;int i=0;
 		for (i=0;i<nextText.length();i++){
 			// find edge
-			if (nodes[node].next.containsKey(nextText.charAt(i))){
-				int child_node = this.nodes[node].next.get(nextText.charAt(i));
+			int child_node = getChild(node, nextText.charAt(i));
+			if (child_node != 0){
 				localActiveEdge=0;
 				// compare edge
 				int pos=i+1;// pos is index for position in nextText
-				for (int j=this.nodes[child_node].getStart(0)+1;j<this.nodes[child_node].getEnd(0);j++){
+				for (int j=getStart(child_node, 0)+1;j<getEnd(child_node, 0);j++){
 					if (this.text[j]==nextText.charAt(pos)) {
 						pos++;
 						localActiveEdge++;
 					}
 					else {
-						setActivePoint(node,this.nodes[child_node].getStart(0),
-								j-this.nodes[child_node].getStart(0));
+						setActivePoint(node,getStart(child_node, 0),
+								j-getStart(child_node, 0));
 						return pos;
 					};
 					
@@ -240,7 +639,7 @@ public class BaseSuffixTree {
 				return i;
 			}
 		} // for
-		setActivePoint(node,nodes[node].getStart(0),localActiveEdge);
+		setActivePoint(node,getStart(node, 0),localActiveEdge);
 		return i;
 	} // longestPath
 	
@@ -251,28 +650,28 @@ public class BaseSuffixTree {
 		}
 
 		boolean result = true;
-		Integer current = node;
+		int current = node;
 
 		// variables for the edge string currently compared
 		int start = 0;
 		int length = 0;
 		int pos = 0;
 		if(current != root) {
-			start = nodes[current].getStart(0);
-			length = nodes[current].edgeLength(this);
+			start = getStart(current, 0);
+			length = edgeLength(current);
 		}
 
 		for(int i = 0; i < pattern.length(); i++) {
 			// do we have to jump to the next node?
 			if (pos == length) {
-				current = nodes[current].getNext(pattern.charAt(i));
+				current = getChild(current, pattern.charAt(i));
 				// no node found for the next char
-				if (current == null) {
+				if (current == 0) {
 					result = false;
 					break;
 				}
-				start = nodes[current].getStart(0);
-				length = nodes[current].edgeLength(this);
+				start = getStart(current, 0);
+				length = edgeLength(current);
 				pos = 0;
 			}
 			// actual comparison
@@ -298,11 +697,19 @@ public class BaseSuffixTree {
 	
 	// return the node corresponding to nodeNr
 	public Node getNode(int nodeNr) {
-		try {
-			return this.nodes[nodeNr];
-		} catch (ArrayIndexOutOfBoundsException e) {
+		if (nodeNr < 1 || nodeNr > currentNode) {
 			return null;
 		}
+		Node[] views = nodeViews;
+		if (views == null) {
+			views = allocateNodeViews();
+		}
+		Node node = views[nodeNr];
+		if (node == null) {
+			node = new Node(this, nodeNr);
+			views[nodeNr] = node;
+		}
+		return node;
 	}
 	
 	// return the number of nodes in the tree
@@ -429,15 +836,16 @@ public class BaseSuffixTree {
 	 * @return the NodePositionEnd created as the new end.
 	 */
 	protected NodePositionEnd newEnd() {
-		this.end = new NodePositionEnd(BaseSuffixTree.oo);
-		return this.end;
+		NodePositionEnd end = new NodePositionEnd(BaseSuffixTree.oo);
+		this.textEnds.add(end);
+		return end;
 	}
 	
 	/**
 	 * @return The NodePositionEnd used to set multiple node's ends when this is used as a GST.
 	 */
 	protected NodePositionEnd getEnd() {
-		return this.end;
+		return this.textEnds.isEmpty() ? null : this.textEnds.get(this.textEnds.size() - 1);
 	}
 
 } // class st	
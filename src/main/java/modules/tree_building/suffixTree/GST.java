@@ -10,13 +10,77 @@ public class GST {
 	// class should not be instantiated
 	private GST() {};
 	
-	//jr
-	private static int findChar(String str, int start, char wanted) {
-		for (int i = start; i < str.length(); i++) {
-			if (str.charAt(i) == wanted)
-				return i;
+	// initial text capacity of a tree that is built from a stream
+	private static final int INITIAL_CAPACITY = 1 << 16;
+	
+	/*
+	 * Hands out the characters of the input one by one, joining the input lines the
+	 * same way the whole input was assembled before: a line ending on '$' is appended
+	 * as it is, any other line (except the first one) is preceded by a blank. Only the
+	 * lines needed for the current character resp. the next text are held in memory.
+	 */
+	private static class TextInput {
+		
+		private final BufferedReader in;
+		private final StringBuilder buffer = new StringBuilder();
+		private int offset = 0;
+		private boolean firstLine = true;
+		private boolean eof = false;
+		
+		TextInput(BufferedReader in) {
+			this.in = in;
+		}
+		
+		// appends the next line to the buffer; returns false if the input is exhausted
+		private boolean fill() throws IOException {
+			if (this.eof)
+				return false;
+			String line = this.in.readLine();
+			if (line == null) {
+				this.eof = true;
+				return false;
+			}
+			// drop the consumed part once it makes up at least half of the buffer
+			if (this.offset > 0 && this.offset >= this.buffer.length() / 2) {
+				this.buffer.delete(0, this.offset);
+				this.offset = 0;
+			}
+			if (!this.firstLine && (line.isEmpty() || line.charAt(line.length() - 1) != '$'))
+				this.buffer.append(' ');
+			this.buffer.append(line);
+			this.firstLine = false;
+			return true;
+		}
+		
+		// returns true if there is at least one more character
+		boolean hasNext() throws IOException {
+			while (this.offset >= this.buffer.length()) {
+				if (!this.fill())
+					return false;
+			}
+			return true;
+		}
+		
+		// returns the next character or -1 if the input is exhausted
+		int next() throws IOException {
+			if (!this.hasNext())
+				return -1;
+			return this.buffer.charAt(this.offset++);
+		}
+		
+		// returns the next text up to and including its '$' without consuming it, null if there is no further '$'
+		String peekText() throws IOException {
+			int from = this.offset;
+			int end;
+			while ((end = this.buffer.indexOf("$", from)) < 0) {
+				from = this.buffer.length() - this.offset;
+				if (!this.fill())
+					return null;
+				// the buffer may have been compacted by fill()
+				from += this.offset;
+			}
+			return this.buffer.substring(this.offset, end + 1);
 		}
-		return -1;
 	}
 
 	// 
@@ -50,18 +114,10 @@ public class GST {
 		System.out.println("SuffixTree");
 		
 		int nrText = 0;
-		 
-		String line,inText="",nextinText;		
-	   // BufferedReader in = new BufferedReader(inputReader);
-	    inText=in.readLine();
-	    while ((line=in.readLine())!=null) {
-	    	System.out.println("buildGST: "+line);
-	    	if(line.charAt(line.length()-1)=='$')inText=inText+line; else inText=inText+" "+line;
-	    }
-	    in.close();
-	    
-	   
-		SuffixTree st = new SuffixTree(inText.length());
+		
+		// the input is streamed into the tree; the tree's arrays grow as needed
+		TextInput input = new TextInput(in);
+		SuffixTree st = new SuffixTree(INITIAL_CAPACITY);
 		NodePositionEnd oo = st.newEnd();// end value for leaves; is changed if final '$' is reached
 									  // generate new st.OO for next text
 
@@ -75,14 +131,13 @@ public class GST {
 	    	st.incrementTypeContext();
 	    }
 		
-		for (int i = 0; i < inText.length(); i++) {
-			//JR test 16-09-29
-			//System.out.print(inText.charAt(i));
-			st.addChar(inText.charAt(i), nrText);
+		int ch;
+		while ((ch = input.next()) != -1) {
+			st.addChar((char) ch, nrText);
 			// while loop as completely repeated texts are possible
-			while(inText.charAt(i) == '$') {
-				//JR test  16-09-29
-				//System.out.println();
+			while(ch == '$') {
+				// index of the '$' just read
+				int i = st.position;
 				// set value for end in leaves
 				oo.val=i+1;
 				// generate new element for next text
@@ -90,7 +145,7 @@ public class GST {
 
 				nrText++;
 				// note the beginning of the whole next text in the tree
-				if (i != inText.length() - 1) {
+				if (input.hasNext()) {
 					st.setTextBegin(nrText, i + 1);
 				}
 
@@ -99,40 +154,40 @@ public class GST {
 					incrementTypeContexts(st, typeContextEndIndices, nrText);
 				}
 
-				int end = findChar(inText, i + 1, '$');
+				String nextinText = input.peekText();
 				// inText end not reached
-				if (end > i) {
-					nextinText = inText.substring(i + 1, end + 1);
+				if (nextinText != null) {
 					int res=st.longestPath(nextinText,st.root);
 					st.remainder=res; // see addChar, remainder corresponds 
 					//					 to longest length of label to implicit node
-					// chars from inText must be copied to st.text (=array of char) for identical longest path
-					for (int j=i+1;j<=i+res;j++)st.text[++st.position]=inText.charAt(j);
-					// print out for control
-					i=i+res;
+					// chars from input must be copied to st.text (=array of char) for identical longest path
+					for (int j=0;j<res;j++)st.appendText((char) input.next());
 					
 					// res must be greater 0; otherwise endless while loop
-					if((res!=0)&& (inText.charAt(i)=='$')) {
+					if((res!=0)&& (nextinText.charAt(res-1)=='$')) {
 					// next text is completely contained in suffix tree (i.e. it is a complete repeat of a
-					// precedent text). In this case, addChar won't be called
+					// precedent text). In this case, addChar won't be called; ch is still '$', so the
+					// next text is handled by this loop as well
 						st.addRemaining(nrText);
 					}else break;
 
-				} else break;// if end > i; inText end reached
+				} else break;// inText end reached
 			}// while
 
-		}// for (int i = 0; i < inText.length(); i++)
+		}// while ((ch = input.next()) != -1)
+		in.close();
 		
 		if(typeContextEndIndices != null && !typeContextEndIndices.isEmpty()) {
 			throw new IllegalStateException(
 					"Some type context end numbers were not handled. First remaining textNr: " + typeContextEndIndices.get(0));
 		}
 		
+		// release the capacity not needed
+		st.trimToSize();
 		return st;
 	    
 	}
 	
-
 	// Convenience method to build a GST for a String with the specified contexts. Multiple inputs should be separated by '$'. 
 	public static SuffixTree buildGST(String input, List<Integer> typeContextEndIndices) throws Exception {
 		System.out.println("SuffixTree buildGST 1");
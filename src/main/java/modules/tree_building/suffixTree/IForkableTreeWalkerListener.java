@@ -0,0 +1,39 @@
+package modules.tree_building.suffixTree;
+
+import java.io.IOException;
+
+/**
+ * A listener that can be split up to walk the subtrees of a node in parallel
+ * (see TreeWalker.walkParallel()).
+ *
+ * The TreeWalker calls the entry action for the start node, forks one listener
+ * per child of the start node and walks each child's subtree with its own fork
+ * (possibly in different threads). The forks are joined back in the order of
+ * the children before the exit action for the start node is called. A listener
+ * whose results are independent of the order in which subtrees are processed
+ * (or that restores the order on joining) thus produces the same results as
+ * with a sequential walk.
+ */
+public interface IForkableTreeWalkerListener extends ITreeWalkerListener {
+
+	/**
+	 * Returns a new listener that starts out in the state this listener is in
+	 * right now (i.e. just after entering the start node) and that does not
+	 * share any mutable state with this listener.
+	 *
+	 * @return the forked listener
+	 */
+	IForkableTreeWalkerListener fork();
+
+	/**
+	 * Merges the results of a listener created by fork() into this listener
+	 * once the forked listener has walked its subtree.
+	 *
+	 * @param forked
+	 *            a listener returned by this listener's fork()
+	 * @throws IOException
+	 *             if the implementation throws one.
+	 */
+	void join(IForkableTreeWalkerListener forked) throws IOException;
+
+}
@@ -6,7 +6,7 @@ import java.util.TreeMap;
 
 import models.GstLabelData;
 
-public class ResultToGstLabelDataListener extends AbstractResultNodeStackListener {
+public class ResultToGstLabelDataListener extends AbstractResultNodeStackListener implements IForkableTreeWalkerListener {
 
 	// the tree that will be iterated on with this listener
 	private final BaseSuffixTree tree;
@@ -22,6 +22,38 @@ public class ResultToGstLabelDataListener extends AbstractResultNodeStackListene
 		this.labelsToData = new TreeMap<String, GstLabelData>();
 	}
 
+	// constructor for forks
+	private ResultToGstLabelDataListener(ResultToGstLabelDataListener parent) {
+		super(parent);
+
+		this.tree = parent.tree;
+		this.labelsToData = new TreeMap<String, GstLabelData>();
+	}
+
+	@Override
+	public IForkableTreeWalkerListener fork() {
+		return new ResultToGstLabelDataListener(this);
+	}
+
+	/**
+	 * Merges the label data of a fork. As forks are joined in the order of the
+	 * subtrees, the lists in each label's data keep the order of a sequential
+	 * walk.
+	 */
+	@Override
+	public void join(IForkableTreeWalkerListener forked) {
+		final ResultToGstLabelDataListener other = (ResultToGstLabelDataListener) forked;
+		for (Map.Entry<String, GstLabelData> entry : other.labelsToData.entrySet()) {
+			final GstLabelData data = labelsToData.get(entry.getKey());
+			if (data == null) {
+				labelsToData.put(entry.getKey(), entry.getValue());
+			} else {
+				data.merge(entry.getValue());
+			}
+		}
+		joinLeaves(other);
+	}
+
 	@Override
 	public void process(int nodeNr, List<Node> path, int pathLength, int level) {
 		// ignore the root node as it does not have any label
@@ -30,45 +30,45 @@ public class SuffixTree extends BaseSuffixTree {
 	}
 
 	private void printLeaves(int x, final PrintWriter out) {
-		if (nodes[x].next.size() == 0){
+		if (isTerminal(x)){
 			String positionlabel="";
-			for (int i = 0 ; i< nodes[x].getPositionsAmount() ; i++) {
+			for (int i = 0 ; i< getPositionsAmount(x) ; i++) {
 				// textNr
-				positionlabel += "\n " + nodes[x].getTextNr(i) + " " +
+				positionlabel += "\n " + getTextNr(x, i) + " " +
 				// anf
-				nodes[x].getStart(i) + " " +	
+				getStart(x, i) + " " +	
 				// end
-				nodes[x].getEnd(i);
+				getEnd(x, i);
 			}
 			out.println("\tnode" + x + " [label=\""+x /* +"\" */ + positionlabel +"\",shape=circle]");
 		}
 			
 		else 
-			for (int child : nodes[x].next.values())
+			for (int child = getFirstChild(x); child != 0; child = getNextSibling(child))
 				printLeaves(child, out);
 		
 	}
 
 	private void printInternalNodes(int x, final PrintWriter out) {
-		if (x != root && nodes[x].next.size() > 0)
+		if (x != root && !isTerminal(x))
 			out.println("\tnode" + x
 					+ " [label=\""+x+"\",style=filled,fillcolor=lightgrey,shape=circle,width=.07,height=.07]");
 
-		for (int child : nodes[x].next.values())
+		for (int child = getFirstChild(x); child != 0; child = getNextSibling(child))
 			printInternalNodes(child, out);
 	}
 
 	private void printEdges(int x, final PrintWriter out) {
-		for (int child : nodes[x].next.values()) {
+		for (int child = getFirstChild(x); child != 0; child = getNextSibling(child)) {
 			out.println("\tnode" + x + " -> node" + child + "[label=\"" + edgeString(child) + "\",weight=3]");
 			printEdges(child, out);
 		}
 	}
 
 	private void printSLinks(int x, final PrintWriter out) {
-		if (nodes[x].link > 0)
-			out.println("\tnode" + x + " -> node" + nodes[x].link + " [label=\"\",weight=1,style=dotted]");
-		for (int child : nodes[x].next.values())
+		if (links[x] > 0)
+			out.println("\tnode" + x + " -> node" + links[x] + " [label=\"\",weight=1,style=dotted]");
+		for (int child = getFirstChild(x); child != 0; child = getNextSibling(child))
 			printSLinks(child, out);
 	}
 
@@ -1,19 +1,31 @@
 package modules.tree_building.suffixTree;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import modules.tree_building.suffixTree.BaseSuffixTree;;
 
 public class TreeWalker {
 
+	// initial depth of the explicit stack (grows as needed)
+	private static final int INITIAL_STACK_SIZE = 64;
+
 	// this is only used statically and never instantiated
 	private TreeWalker() {
 	}
 
 	/**
-	 * Walks the tree's nodes recursively (depth-first) and executes the
-	 * listener's actions for each node.
-	 * 
+	 * Walks the tree's nodes depth-first and executes the listener's actions
+	 * for each node. The walk uses an explicit stack, so the depth of the tree
+	 * is not limited by the thread's stack size.
+	 *
 	 * @param startNodeNr
 	 *            The start with
 	 * @param suffixTree
@@ -27,24 +39,143 @@ public class TreeWalker {
 	}
 
 	/**
-	 * Walks the tree's nodes recursively (depth-first) and executes the
-	 * listener's actions for each node.
+	 * Walks the tree's nodes depth-first and executes the listener's actions
+	 * for each node.
 	 * @param startNodeNr The start with
 	 * @param suffixTree The SuffixTree to walk on
 	 * @param listener The listener defining the actions to take on each node
-	 * @param level level
+	 * @param level level of the start node
 	 * @throws IOException on error
 	 */
-	
 	private static void walk(int startNodeNr, BaseSuffixTree suffixTree, ITreeWalkerListener listener, int level)
 			throws IOException {
+		// the nodes on the current path and the next child to visit for each of them
+		int[] nodeNrs = new int[INITIAL_STACK_SIZE];
+		int[] nextChildNrs = new int[INITIAL_STACK_SIZE];
+		int depth = 0;
+
 		listener.entryaction(startNodeNr, level);
+		nodeNrs[0] = startNodeNr;
+		nextChildNrs[0] = suffixTree.getFirstChild(startNodeNr);
 
-		for (int childNodeNr : suffixTree.nodes[startNodeNr].next.values()) {
-			walk(childNodeNr, suffixTree, listener, level + 1);
+		while (depth >= 0) {
+			int childNodeNr = nextChildNrs[depth];
+			if (childNodeNr != 0) {
+				// descend into the next child
+				nextChildNrs[depth] = suffixTree.getNextSibling(childNodeNr);
+				listener.entryaction(childNodeNr, level + depth + 1);
+				depth++;
+				if (depth == nodeNrs.length) {
+					nodeNrs = Arrays.copyOf(nodeNrs, depth * 2);
+					nextChildNrs = Arrays.copyOf(nextChildNrs, depth * 2);
+				}
+				nodeNrs[depth] = childNodeNr;
+				nextChildNrs[depth] = suffixTree.getFirstChild(childNodeNr);
+			} else {
+				// all children done
+				listener.exitaction(nodeNrs[depth], level + depth);
+				depth--;
+			}
 		}
+	}
 
-		listener.exitaction(startNodeNr, level);
+	/**
+	 * Walks the tree's nodes like walk() but processes the subtrees below the
+	 * start node in parallel using the common ForkJoinPool.
+	 *
+	 * @param startNodeNr
+	 *            The start with
+	 * @param suffixTree
+	 *            The SuffixTree to walk on
+	 * @param listener
+	 *            The listener defining the actions to take on each node
+	 * @throws IOException on error
+	 */
+	public static void walkParallel(int startNodeNr, BaseSuffixTree suffixTree, IForkableTreeWalkerListener listener)
+			throws IOException {
+		walkParallel(startNodeNr, suffixTree, listener, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Walks the tree's nodes like walk() but processes the subtrees below the
+	 * start node in parallel: Each child of the start node is walked with its
+	 * own fork of the listener, the forks are joined in the order of the
+	 * children (see IForkableTreeWalkerListener).
+	 *
+	 * @param startNodeNr
+	 *            The start with
+	 * @param suffixTree
+	 *            The SuffixTree to walk on
+	 * @param listener
+	 *            The listener defining the actions to take on each node
+	 * @param pool
+	 *            The pool to walk the subtrees in
+	 * @throws IOException on error
+	 */
+	public static void walkParallel(int startNodeNr, final BaseSuffixTree suffixTree,
+			IForkableTreeWalkerListener listener, ForkJoinPool pool) throws IOException {
+		listener.entryaction(startNodeNr, 0);
+
+		// one task per subtree, each with its own listener
+		final List<SubtreeWalk> walks = new ArrayList<SubtreeWalk>();
+		for (int childNodeNr = suffixTree.getFirstChild(startNodeNr); childNodeNr != 0; childNodeNr = suffixTree
+				.getNextSibling(childNodeNr)) {
+			walks.add(new SubtreeWalk(childNodeNr, suffixTree, listener.fork()));
+		}
+
+		try {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					ForkJoinTask.invokeAll(walks);
+				}
+			});
+		} catch (RuntimeException e) {
+			// rethrow an IOException thrown by a listener as such (the pool may wrap it)
+			Throwable cause = e;
+			while (cause != null && !(cause instanceof IOException))
+				cause = cause.getCause();
+			if (cause != null)
+				throw (IOException) cause;
+			throw e;
+		}
+
+		// merge the results in the order of the subtrees
+		Iterator<SubtreeWalk> walkIterator = walks.iterator();
+		while (walkIterator.hasNext()) {
+			listener.join(walkIterator.next().listener);
+		}
+
+		listener.exitaction(startNodeNr, 0);
+	}
+
+	/*
+	 * Walks the subtree below one child of the start node.
+	 */
+	private static class SubtreeWalk extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int nodeNr;
+		private final BaseSuffixTree suffixTree;
+		private final IForkableTreeWalkerListener listener;
+
+		SubtreeWalk(int nodeNr, BaseSuffixTree suffixTree, IForkableTreeWalkerListener listener) {
+			this.nodeNr = nodeNr;
+			this.suffixTree = suffixTree;
+			this.listener = listener;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				walk(this.nodeNr, this.suffixTree, this.listener, 1);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 	}
 
 }
@@ -1,5 +1,7 @@
 package modules.tree_building.suffixTreeClustering.clustering.hierarchical;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -12,7 +14,9 @@ public class HierarchicalCluster {
 	private int age;
 	private static int nextAge;
 
-	private List<Type> allTypes = new LinkedList<Type>();
+	// types and topics of combined clusters are collected when first
+	// requested, so merging does not copy them again and again
+	private List<Type> allTypes;
 
 	private HierarchicalCluster left;
 	private HierarchicalCluster right;
@@ -23,6 +27,7 @@ public class HierarchicalCluster {
 	 * @param t - Type (Document) to be assigned to that cluster.
 	 */
 	public HierarchicalCluster(Type t) {
+		allTypes = new LinkedList<Type>();
 		allTypes.add(t);
 		this.setAge(nextAge++);
 		this.topics = new HashSet<String>();
@@ -36,12 +41,7 @@ public class HierarchicalCluster {
 	public HierarchicalCluster(HierarchicalCluster left, HierarchicalCluster right) {
 		this.left = left;
 		this.right = right;
-		allTypes.addAll(left.allTypes);
-		allTypes.addAll(right.allTypes);
 		this.setAge(nextAge++);
-		this.topics = new HashSet<String>();
-		this.topics.addAll(left.topics);
-		this.topics.addAll(right.topics);
 	}
 
 	public HierarchicalCluster getLeftChild() {
@@ -53,20 +53,37 @@ public class HierarchicalCluster {
 	}
 
 	public List<Type> getAllTypes() {
+		if (allTypes == null) {
+			// leaves from left to right
+			List<Type> types = new LinkedList<Type>();
+			Deque<HierarchicalCluster> stack = new ArrayDeque<HierarchicalCluster>();
+			stack.push(this);
+			while (!stack.isEmpty()) {
+				HierarchicalCluster cluster = stack.pop();
+				if (cluster.allTypes != null) {
+					types.addAll(cluster.allTypes);
+				} else {
+					stack.push(cluster.right);
+					stack.push(cluster.left);
+				}
+			}
+			allTypes = types;
+		}
 		return allTypes;
 	}
 
 	@Override
 	public String toString() {
+		List<Type> types = getAllTypes();
 		StringBuffer sb = new StringBuffer();
-		for (int i = 0; i < allTypes.size(); i++) {
-			sb.append(allTypes.get(i).getID() + "|");
+		for (int i = 0; i < types.size(); i++) {
+			sb.append(types.get(i).getID() + "|");
 		}
 		return sb.toString();
 	}
 
 	public void addTopic(String topic) {
-		this.topics.add(topic);
+		this.getTopics().add(topic);
 	}
 
 	public int getAge() {
@@ -78,6 +95,24 @@ public class HierarchicalCluster {
 	}
 
 	public Set<String> getTopics() {
+		if (topics == null) {
+			// union of the children's topics (children first, without recursion)
+			Deque<HierarchicalCluster> stack = new ArrayDeque<HierarchicalCluster>();
+			stack.push(this);
+			while (!stack.isEmpty()) {
+				HierarchicalCluster cluster = stack.peek();
+				if (cluster.left.topics == null) {
+					stack.push(cluster.left);
+				} else if (cluster.right.topics == null) {
+					stack.push(cluster.right);
+				} else {
+					cluster.topics = new HashSet<String>();
+					cluster.topics.addAll(cluster.left.topics);
+					cluster.topics.addAll(cluster.right.topics);
+					stack.pop();
+				}
+			}
+		}
 		return topics;
 	}
 }
@@ -1,9 +1,9 @@
 package modules.tree_building.suffixTreeClustering.clustering.hierarchical;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 
 import modules.tree_building.suffixTreeClustering.data.Type;
 
@@ -14,7 +14,15 @@ public class HierarchicalClusterer {
 	int N; // number of Types/Documents
 	private int currentNumberOfClusters;
 	private SimilarityMeasure s;
-	private Map<TypePair, Double> vectorDistances;
+
+	// condensed distance matrix (pairs i < j row by row) and the state of
+	// the clusters by the position of their first member
+	private double[] distances;
+	private int[] sizes;
+	private int[] nextSlots;
+	private int[] previousSlots;
+	private int[] nearestNeighbours;
+	private double[] nearestDistances;
 
 	/**
 	 * Constructor. Initializes documents to cluster and similarity measure.
@@ -23,11 +31,23 @@ public class HierarchicalClusterer {
 	 *            - List of documents to cluster.
 	 */
 	public HierarchicalClusterer(List<Type> types) {
+		this(types, SimilarityMeasure.AVERAGE_LINK);
+	}
+
+	/**
+	 * Constructor. Initializes documents to cluster and similarity measure.
+	 * 
+	 * @param types
+	 *            - List of documents to cluster.
+	 * @param measure
+	 *            - Similarity measure.
+	 */
+	public HierarchicalClusterer(List<Type> types, SimilarityMeasure measure) {
 		this.documents = types;
 		N = this.documents.size();
 		this.clusters = new ArrayList<HierarchicalCluster>();
 
-		s = SimilarityMeasure.AVERAGE_LINK;
+		s = measure;
 	}
 
 	/**
@@ -35,8 +55,6 @@ public class HierarchicalClusterer {
 	 */
 	public void analyze() {
 
-		this.vectorDistances = new HashMap<TypePair, Double>();
-
 		/*
 		 * in the beginning, each document constitutes 1 cluster
 		 */
@@ -55,114 +73,154 @@ public class HierarchicalClusterer {
 	/*
 	 * Clustering Method. As long as more than 1 Cluster is left (halting
 	 * criterion), combine nearest (according to similarity measure) clusters.
+	 * Cluster distances are kept in a condensed matrix which is updated by
+	 * the Lance-Williams formula of the similarity measure on every merge.
+	 * Every cluster remembers its nearest neighbour among the clusters after
+	 * it, so the nearest pair is found without comparing all pairs. Clusters
+	 * keep the position of their first member; if several pairs are nearest,
+	 * the first one in that order is combined.
 	 */
 	private void cluster() {
+		if (currentNumberOfClusters < 2) {
+			return;
+		}
+		initDistances();
+
+		HierarchicalCluster[] slots = clusters.toArray(new HierarchicalCluster[N]);
+		sizes = new int[N];
+		nextSlots = new int[N];
+		previousSlots = new int[N];
+		nearestNeighbours = new int[N];
+		nearestDistances = new double[N];
+		for (int i = 0; i < N; i++) {
+			sizes[i] = 1;
+			nextSlots[i] = i + 1;
+			previousSlots[i] = i - 1;
+		}
+		for (int i = 0; i < N - 1; i++) {
+			updateNearestNeighbour(i);
+		}
+
 		while (currentNumberOfClusters > 1) {
-			if (currentNumberOfClusters == documents.size()) {
-				getVectorDistances();
+			// nearest pair (the first one if there are several)
+			int c1 = -1;
+			for (int i = 0; nextSlots[i] < N; i = nextSlots[i]) {
+				if (c1 < 0 || nearestDistances[i] < nearestDistances[c1]) {
+					c1 = i;
+				}
 			}
+			int c2 = nearestNeighbours[c1];
 
-			combineNearestCluster();
+			combineClusters(c1, c2);
+			slots[c1] = new HierarchicalCluster(slots[c1], slots[c2]);
+			slots[c2] = null;
 
 			currentNumberOfClusters--;
 		}
+
+		clusters.clear();
+		clusters.add(slots[0]);
+		distances = null;
 	}
 
 	/*
 	 * Set up vector distances to be used for clustering.
 	 */
-	private void getVectorDistances() {
-		for (int i = 0; i < documents.size() - 1; i++) {
-			for (int j = i + 1; j < documents.size(); j++) {
-				Type type1 = documents.get(i);
+	private void initDistances() {
+		distances = new double[(int) ((long) N * (N - 1) / 2)];
+		int index = 0;
+		for (int i = 0; i < N - 1; i++) {
+			Type type1 = documents.get(i);
+			for (int j = i + 1; j < N; j++) {
 				Type type2 = documents.get(j);
-				Double dist = type1.getVector().distance(type2.getVector());
-				TypePair pair = new TypePair(type1, type2);
-				Double put = vectorDistances.put(pair, dist);
-				if (put != null) {
-					System.err.println("Map already contained key " + pair);
-				}
+				distances[index++] = type1.getVector().distance(type2.getVector());
 			}
 		}
 	}
 
+	// position of the pair i < j in the condensed matrix
+	private int index(int i, int j) {
+		return (int) ((long) i * (2 * N - i - 1) / 2) + j - i - 1;
+	}
+
 	/*
-	 * Combine the 2 nearest clusters. Add combined cluster to set of clusters
-	 * and delete the 2 clusters.
+	 * Calculate the cluster distance between 2 clusters (i < j) according to
+	 * given similarity measure. For the average link the condensed matrix
+	 * holds the sums of all distances between the members.
 	 */
-	private void combineNearestCluster() {
-		Double smallestClusterDist = Double.POSITIVE_INFINITY;
-		int c1 = 0;
-		int c2 = 0;
-		for (int i = 0; i < clusters.size() - 1; i++) {
-			HierarchicalCluster cluster1 = clusters.get(i);
-			for (int j = i + 1; j < clusters.size(); j++) {
-				HierarchicalCluster cluster2 = clusters.get(j);
-				Double clusterDist = getClusterDistance(cluster1, cluster2);
-				if (clusterDist < smallestClusterDist) {
-					smallestClusterDist = clusterDist;
-					c1 = i;
-					c2 = j;
-				}
-			}
+	private double getClusterDistance(int i, int j) {
+		double distance = distances[index(i, j)];
+		if (s == SimilarityMeasure.AVERAGE_LINK) {
+			return distance / (sizes[i] + sizes[j]);
 		}
-		System.out.println("combine: " + clusters.get(c1) + " and "
-				+ clusters.get(c2));
-		HierarchicalCluster newCluster = new HierarchicalCluster(
-				clusters.get(c1), clusters.get(c2));
-		clusters.remove(c2);
-		clusters.set(c1, newCluster);
+		return distance;
 	}
 
 	/*
-	 * Calculate the cluster distance between 2 clusters according to given
-	 * similarity measure.
+	 * Combine the clusters at positions c1 < c2: the combined cluster takes
+	 * the position of c1.
 	 */
-	private Double getClusterDistance(HierarchicalCluster c1,
-			HierarchicalCluster c2) {
-		List<Type> vecsInC1 = c1.getAllTypes();
-		List<Type> vecsInc2 = c2.getAllTypes();
-		Double minDist = Double.POSITIVE_INFINITY;
-		Double maxDist = 0d;
-		Double averageDist = 0d;
-
-		for (int i = 0; i < vecsInC1.size(); i++) {
-			Type vecID1 = vecsInC1.get(i);
-			for (int j = 0; j < vecsInc2.size(); j++) {
-				Type vecID2 = vecsInc2.get(j);
-				Double dist = 0d;
-				TypePair pair;
-
-				if (vecID2.getID() < vecID1.getID()) {
-					pair = new TypePair(vecID2, vecID1);
-				} else {
-					pair = new TypePair(vecID1, vecID2);
-				}
+	private void combineClusters(int c1, int c2) {
+		// Lance-Williams update of the distances to all other clusters
+		for (int k = 0; k < N; k = nextSlots[k]) {
+			if (k == c1 || k == c2) {
+				continue;
+			}
+			int index1 = k < c1 ? index(k, c1) : index(c1, k);
+			int index2 = k < c2 ? index(k, c2) : index(c2, k);
+			switch (s) {
+			case SINGLE_LINK:
+				distances[index1] = Math.min(distances[index1], distances[index2]);
+				break;
+			case COMPLETE_LINK:
+				distances[index1] = Math.max(distances[index1], distances[index2]);
+				break;
+			case AVERAGE_LINK:
+				distances[index1] += distances[index2];
+				break;
+			default:
+				throw new RuntimeException("invalid similarity measure");
+			}
+		}
+		sizes[c1] += sizes[c2];
 
-				if (!vectorDistances.containsKey(pair))
-					System.out.println("VectorDistances does not contain key "
-							+ pair);
+		// remove c2
+		if (previousSlots[c2] >= 0) {
+			nextSlots[previousSlots[c2]] = nextSlots[c2];
+		}
+		if (nextSlots[c2] < N) {
+			previousSlots[nextSlots[c2]] = previousSlots[c2];
+		}
 
-				dist = vectorDistances.get(pair);
-				averageDist += dist;
-				if (dist < minDist) {
-					minDist = dist;
+		// update the nearest neighbours of the clusters before c1 and of c1
+		for (int i = 0; i < c2 && i < N; i = nextSlots[i]) {
+			if (i > c1) {
+				if (nearestNeighbours[i] == c2) {
+					updateNearestNeighbour(i);
 				}
-				if (dist > maxDist) {
-					maxDist = dist;
+			} else if (i == c1 || nearestNeighbours[i] == c1 || nearestNeighbours[i] == c2) {
+				updateNearestNeighbour(i);
+			} else {
+				double distance = getClusterDistance(i, c1);
+				if (distance < nearestDistances[i]
+						|| (distance == nearestDistances[i] && c1 < nearestNeighbours[i])) {
+					nearestDistances[i] = distance;
+					nearestNeighbours[i] = c1;
 				}
 			}
 		}
-		switch (s) {
-		case SINGLE_LINK:
-			return minDist;
-		case COMPLETE_LINK:
-			return maxDist;
-		case AVERAGE_LINK:
-			averageDist /= (vecsInC1.size() + vecsInc2.size());
-			return averageDist;
-		default:
-			throw new RuntimeException("invalid similarity measure");
+	}
+
+	// nearest cluster after the given one (the first one if there are several)
+	private void updateNearestNeighbour(int i) {
+		nearestNeighbours[i] = -1;
+		nearestDistances[i] = Double.POSITIVE_INFINITY;
+		for (int j = nextSlots[i]; j < N; j = nextSlots[j]) {
+			double distance = getClusterDistance(i, j);
+			if (nearestNeighbours[i] < 0 || distance < nearestDistances[i]) {
+				nearestDistances[i] = distance;
+				nearestNeighbours[i] = j;
+			}
 		}
 	}
 
@@ -178,22 +236,33 @@ public class HierarchicalClusterer {
 
 	private static String clusterToDot(HierarchicalCluster cluster,
 			StringBuilder builder) {
-		if (cluster != null) { // Pre-order: 1. root
-			int clusterID = cluster.getAge();
+		// Pre-order: 1. root, 2. left, 3. right (each with the edge from its
+		// parent), using a stack instead of recursion for deep trees
+		Deque<HierarchicalCluster[]> stack = new ArrayDeque<HierarchicalCluster[]>();
+		if (cluster != null) {
+			stack.push(new HierarchicalCluster[] { null, cluster });
+		}
+		while (!stack.isEmpty()) {
+			HierarchicalCluster[] edge = stack.pop();
+			HierarchicalCluster parent = edge[0];
+			HierarchicalCluster child = edge[1];
+			int clusterID = child.getAge();
 
+			if (parent != null) {
+				builder.append(String.format("%s -> %s;\n", parent.getAge(),
+						clusterID));
+			}
 			builder.append(String.format(clusterID + "[label = \"%s\"];",
-					cluster.getTopics()/* .iterator().next() */));
+					child.getTopics()/* .iterator().next() */));
 
-			if (cluster.getLeftChild() != null) {
-				builder.append(String.format("%s -> %s;\n", clusterID, cluster
-						.getLeftChild().getAge()));
+			if (child.getRightChild() != null) {
+				stack.push(new HierarchicalCluster[] { child,
+						child.getRightChild() });
 			}
-			clusterToDot(cluster.getLeftChild(), builder); // 2. left
-			if (cluster.getRightChild() != null) {
-				builder.append(String.format("%s -> %s;\n", clusterID, cluster
-						.getRightChild().getAge()));
+			if (child.getLeftChild() != null) {
+				stack.push(new HierarchicalCluster[] { child,
+						child.getLeftChild() });
 			}
-			clusterToDot(cluster.getRightChild(), builder); // 3. right
 		}
 		return builder.toString();
 	}
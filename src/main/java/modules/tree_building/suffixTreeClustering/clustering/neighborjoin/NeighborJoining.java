@@ -1,49 +1,103 @@
 package modules.tree_building.suffixTreeClustering.clustering.neighborjoin;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import modules.tree_building.suffixTreeClustering.data.Type;
 
+/**
+ * Neighbor joining (Saitou &amp; Nei, 1987). The pair to join is searched
+ * RapidNJ style (see Simonsen, Mailund &amp; Pedersen: "Rapid Neighbour-Joining",
+ * WABI 2008): Every row of the distance matrix is kept sorted and, using the
+ * cached row sums, is only scanned as long as it may still contain a better
+ * pair. Candidates are compared using exactly computed row sums, so the
+ * resulting tree is the same as with the plain O(n³) search.
+ */
 public class NeighborJoining {
 
 	private static final String LOG_TAG = NeighborJoining.class.getSimpleName();
 	private Logger logger;
 
+	// Default number of quadruples tested for the four point condition
+	public static final int DEFAULT_ADDITIVITY_SAMPLES = 10000;
+
+	// Tolerance used when comparing values that may differ by rounding errors
+	private static final double TOLERANCE = 1e-9;
+
 	private List<Type> documents;
-	private double[][] distanceMatrix;
+	private int size;
+	// row major, indexed by the original indices
+	private double[] distanceMatrix;
 	private int numCluster;
 	private Map<Integer, String> aliasNames;
 	private int[] alias; // merkt sich die urspruenglichen Indizes aus der
-	// Distanzmatrix
-	private double[] r; // Netto-Divergenzen
+	// Distanzmatrix (aufsteigend sortiert)
+	private double[] r; // Netto-Divergenzen (exakt berechnet, nach urspruenglichem Index)
+	private int[] rComputed; // Iteration, in der r berechnet wurde
 	private int newIndex;
 
+	// Cached row sums (updated on every join, recomputed from time to time)
+	private double[] rowSums;
+	private double[] cachedR;
+	private int joinsSinceRefresh;
+	private double maxAbsDistance;
+
+	// Rows sorted by distance (only entries from rowStarts on may be valid)
+	// and the iteration each row was sorted in (-1 for joined rows)
+	private double[][] sortedDistances;
+	private int[][] sortedColumns;
+	private int[] rowStarts;
+	private int[] rowCreated;
+	private int iteration;
+
+	// Candidate pairs found by the bounded search
+	private int[] candidateRows;
+	private int[] candidateColumns;
+	private double[] candidateValues;
+	private int candidateAmount;
+
 	private NJNode root;
 	private int best_i;
 	private int best_j;
 	private int aliasBesti;
 
+	/**
+	 * Prepares neighbor joining of the given types, testing a sample of
+	 * quadruples for additivity.
+	 * @param types Types
+	 */
 	public NeighborJoining(List<Type> types) {
+		this(types, DEFAULT_ADDITIVITY_SAMPLES);
+	}
+
+	/**
+	 * Prepares neighbor joining of the given types.
+	 * @param types Types
+	 * @param additivitySamples Number of random quadruples tested for the four
+	 * point condition (0 to skip the test, a negative value to test all of them)
+	 */
+	public NeighborJoining(List<Type> types, int additivitySamples) {
 		this.logger = Logger.getLogger(LOG_TAG);
 
 		this.documents = types;
 		createDistanceMatrix();
 
-		if (distanceMatrix.length < 3) {
+		if (size < 3) {
 			throw new IllegalArgumentException("ZU WENIGE TAXA IN DER MATRIX!");
 		}
 		if (!isSymmetric(distanceMatrix)) {
 			throw new IllegalArgumentException("MATRIX IST UNSYMMETRISCH!");
 		}
-		if (!isAdditive(distanceMatrix)) {
+		if (additivitySamples != 0 && !isAdditive(distanceMatrix, additivitySamples)) {
 			// throw new IllegalArgumentException("MATRIX IST NICHT ADDITIV!");
 			logger.warning("Matrix ist nicht additiv");
 		}
 
-		this.numCluster = distanceMatrix.length;
+		this.numCluster = size;
 		this.aliasNames = new HashMap<>();
 
 		newIndex = 1;
@@ -68,58 +122,90 @@ public class NeighborJoining {
 		}
 
 		r = new double[numCluster];
+		rComputed = new int[numCluster];
+		Arrays.fill(rComputed, -1);
+
+		// row sums and sorted rows; initially each pair is kept in the row
+		// of its smaller index only
+		rowSums = new double[numCluster];
+		cachedR = new double[numCluster];
+		sortedDistances = new double[numCluster][];
+		sortedColumns = new int[numCluster][];
+		rowStarts = new int[numCluster];
+		rowCreated = new int[numCluster];
+		for (int i = 0; i < numCluster; i++) {
+			rowSums[i] = exactRowSum(i);
+			double[] values = new double[numCluster - i - 1];
+			int[] columns = new int[numCluster - i - 1];
+			for (int j = i + 1; j < numCluster; j++) {
+				values[j - i - 1] = distanceMatrix[i * size + j];
+				columns[j - i - 1] = j;
+				maxAbsDistance = Math.max(maxAbsDistance, Math.abs(values[j - i - 1]));
+			}
+			sortRow(values, columns, 0, values.length - 1);
+			sortedDistances[i] = values;
+			sortedColumns[i] = columns;
+		}
+
+		candidateRows = new int[16];
+		candidateColumns = new int[16];
+		candidateValues = new double[16];
 	}
 
-	
-	private boolean isAdditive(double[][] matrix) {
-		boolean holds = false;
-		for (int i = 0; i < matrix.length; i++) {
-			for (int j = 0; j < matrix.length; j++) {
-				for (int k = 0; k < matrix.length; k++) {
-					for (int l = 0; l < matrix.length; l++) {
-						if (i != j && i != k && i != l && j != k && j != l
-								&& k != l) {
-							holds = isSame(matrix[i][k] + matrix[j][l], 
-									matrix[i][l] + matrix[j][k]) 
-									&& isGreaterOrEqual(matrix[i][k] + matrix[j][l], 
-											matrix[i][j] + matrix[k][l]);
-							if (!holds)
+	/*
+	 * Checks the four point condition (of the three sums d(i,j)+d(k,l),
+	 * d(i,k)+d(j,l) and d(i,l)+d(j,k) the two largest are equal) for all or for
+	 * the given number of randomly chosen quadruples.
+	 */
+	private boolean isAdditive(double[] matrix, int samples) {
+		if (size < 4)
+			return true;
+		if (samples < 0) {
+			for (int i = 0; i < size; i++)
+				for (int j = i + 1; j < size; j++)
+					for (int k = j + 1; k < size; k++)
+						for (int l = k + 1; l < size; l++)
+							if (!holdsFourPointCondition(matrix, i, j, k, l))
 								return false;
-						}
-					}
-				}
+		} else {
+			// fixed seed, so the result is reproducible
+			Random random = new Random(size);
+			for (int s = 0; s < samples; s++) {
+				int i = random.nextInt(size);
+				int j = random.nextInt(size);
+				int k = random.nextInt(size);
+				int l = random.nextInt(size);
+				if (i != j && i != k && i != l && j != k && j != l && k != l
+						&& !holdsFourPointCondition(matrix, i, j, k, l))
+					return false;
 			}
 		}
 		return true;
 	}
 
-	private boolean isGreaterOrEqual(double d1, double d2) {
-		return Double.compare(d1, d2) == 0;
-	}
-
-	private boolean isSame(double d1, double d2) {
-		return Double.compare(d1, d2) >= 0;
+	private boolean holdsFourPointCondition(double[] matrix, int i, int j, int k, int l) {
+		double s1 = matrix[i * size + j] + matrix[k * size + l];
+		double s2 = matrix[i * size + k] + matrix[j * size + l];
+		double s3 = matrix[i * size + l] + matrix[j * size + k];
+		double max = Math.max(s1, Math.max(s2, s3));
+		double middle = Math.max(Math.min(s1, s2), Math.min(Math.max(s1, s2), s3));
+		return max - middle <= TOLERANCE * Math.max(1d, Math.abs(max));
 	}
 
-	private boolean isSymmetric(double[][] matrix) {
-		if (matrix.length != matrix[0].length) {
-			System.err.println("Matrix is not symmetric!");
-			return false;
-		} else {
-			for (int i = 0; i < matrix.length; i++) {
-				for (int j = 0; j < matrix[i].length; j++) {
-					if (!(matrix[i][j] == (matrix[j][i]))) {
-						System.out
-								.printf("Values of matrix[%s][%s]=%s and matrix[%s][%s]=%s are not the same",
-										i, j, matrix[i][j], j, i, matrix[j][i]);
-						return false;
-					}
-					if (i == j && !(matrix[i][j] == (new Double(0.0)))) {
-						System.out.printf(
-								"Value of matrix[%s][%s]=%s is not 0", i, j,
-								matrix[i][j]);
-						return false;
-					}
+	private boolean isSymmetric(double[] matrix) {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if (!(matrix[i * size + j] == matrix[j * size + i])) {
+					System.out
+							.printf("Values of matrix[%s][%s]=%s and matrix[%s][%s]=%s are not the same",
+									i, j, matrix[i * size + j], j, i, matrix[j * size + i]);
+					return false;
+				}
+				if (i == j && !(matrix[i * size + j] == 0.0)) {
+					System.out.printf(
+							"Value of matrix[%s][%s]=%s is not 0", i, j,
+							matrix[i * size + j]);
+					return false;
 				}
 			}
 		}
@@ -142,41 +228,142 @@ public class NeighborJoining {
 	}
 
 	private void findNextPair() {
-		// r_i = sum(d_ij) / (N-2) for all j=1 to N
-		for (int i = 0; i < numCluster; i++) {
-			r[i] = 0.0f;
-			for (int j = 0; j < numCluster; j++) {
-				r[i] += getDistance(i, j);
-			}
-			r[i] /= (numCluster - 2);
+		iteration++;
+
+		// r_i = sum(d_ij) / (N-2) for all j=1 to N, using the cached sums
+		double rMax = Double.NEGATIVE_INFINITY;
+		for (int p = 0; p < numCluster; p++) {
+			int a = alias[p];
+			cachedR[a] = rowSums[a] / (numCluster - 2);
+			rMax = Math.max(rMax, cachedR[a]);
 		}
 
-		best_i = 0;
-		best_j = 0;
-
+		// initial bound: the first valid entry of every row
 		double min = Double.POSITIVE_INFINITY;
+		for (int p = 0; p < numCluster; p++) {
+			int a = alias[p];
+			double[] values = sortedDistances[a];
+			int[] columns = sortedColumns[a];
+			while (rowStarts[a] < values.length && !isValidEntry(a, columns[rowStarts[a]])) {
+				rowStarts[a]++;
+			}
+			if (rowStarts[a] < values.length) {
+				min = Math.min(min, values[rowStarts[a]] - cachedR[a] - cachedR[columns[rowStarts[a]]]);
+			}
+		}
 
-		// calculate M and simultaniously, store the cell with smallest value
-		for (int i = 0; i < numCluster - 1; i++) {
-			for (int j = i + 1; j < numCluster; j++) {
-				// M_ij = D_ij - r_i - r_j
-				double M_ij = getDistance(i, j) - r[i] - r[j];
-
-				if (M_ij < min) {
-					// if there are multiple smallest values, the first pair
-					// will be stored...
-					min = M_ij;
-					best_i = i;
-					best_j = j;
+		// collect all pairs within the tolerance of the minimum, as the cached
+		// sums may be slightly off
+		double epsilon = TOLERANCE * Math.max(maxAbsDistance, Double.MIN_NORMAL);
+		double bound = min + epsilon;
+		candidateAmount = 0;
+		for (int p = 0; p < numCluster; p++) {
+			int a = alias[p];
+			double[] values = sortedDistances[a];
+			int[] columns = sortedColumns[a];
+			double rowBound = cachedR[a] + rMax;
+			int k = rowStarts[a];
+			boolean invalidEntries = false;
+			for (; k < values.length; k++) {
+				// M_ij = D_ij - r_i - r_j cannot become smaller than D_ij - r_i - r_max
+				if (values[k] - rowBound > bound) {
+					break;
+				}
+				int c = columns[k];
+				if (!isValidEntry(a, c)) {
+					invalidEntries = true;
+					continue;
+				}
+				double M_ij = values[k] - cachedR[a] - cachedR[c];
+				if (M_ij <= bound) {
+					addCandidate(a, c, M_ij);
+					if (M_ij < min) {
+						min = M_ij;
+						bound = min + epsilon;
+					}
 				}
 			}
+			if (invalidEntries) {
+				compactRow(a, k);
+			}
+		}
+
+		// compare the candidates with exact row sums; if there are multiple
+		// smallest values, the first pair will be stored
+		best_i = -1;
+		best_j = -1;
+		double exactMin = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < candidateAmount; c++) {
+			if (candidateValues[c] > bound) {
+				continue;
+			}
+			int i = Math.min(candidateRows[c], candidateColumns[c]);
+			int j = Math.max(candidateRows[c], candidateColumns[c]);
+			double M_ij = distanceMatrix[i * size + j] - exactR(i) - exactR(j);
+			if (best_i < 0 || M_ij < exactMin || (M_ij == exactMin && (i < alias[best_i]
+					|| (i == alias[best_i] && j < alias[best_j])))) {
+				exactMin = M_ij;
+				best_i = Arrays.binarySearch(alias, 0, numCluster, i);
+				best_j = Arrays.binarySearch(alias, 0, numCluster, j);
+			}
 		}
 
 		aliasBesti = alias[best_i];
 	}
 
+	// an entry is kept in the row that was sorted last (or in the row of the
+	// smaller index if both were sorted at the same time)
+	private boolean isValidEntry(int row, int column) {
+		int created = rowCreated[column];
+		return created >= 0 && (created < rowCreated[row] || (created == rowCreated[row] && row < column));
+	}
+
+	// moves the valid entries in front of the given end to the end of that range
+	private void compactRow(int row, int end) {
+		double[] values = sortedDistances[row];
+		int[] columns = sortedColumns[row];
+		int w = end;
+		for (int k = end - 1; k >= rowStarts[row]; k--) {
+			if (isValidEntry(row, columns[k])) {
+				w--;
+				values[w] = values[k];
+				columns[w] = columns[k];
+			}
+		}
+		rowStarts[row] = w;
+	}
+
+	private void addCandidate(int row, int column, double value) {
+		if (candidateAmount == candidateRows.length) {
+			candidateRows = Arrays.copyOf(candidateRows, candidateAmount * 2);
+			candidateColumns = Arrays.copyOf(candidateColumns, candidateAmount * 2);
+			candidateValues = Arrays.copyOf(candidateValues, candidateAmount * 2);
+		}
+		candidateRows[candidateAmount] = row;
+		candidateColumns[candidateAmount] = column;
+		candidateValues[candidateAmount] = value;
+		candidateAmount++;
+	}
+
+	// net divergence summed up in the order of the matrix
+	private double exactR(int a) {
+		if (rComputed[a] != iteration) {
+			r[a] = exactRowSum(a) / (numCluster - 2);
+			rComputed[a] = iteration;
+		}
+		return r[a];
+	}
+
+	private double exactRowSum(int a) {
+		double sum = 0.0;
+		for (int p = 0; p < numCluster; p++) {
+			sum += distanceMatrix[a * size + alias[p]];
+		}
+		return sum;
+	}
+
 	private double getDistance(int i, int j) {
-		return distanceMatrix[alias[i]][alias[j]];
+		return distanceMatrix[alias[i] * size + alias[j]];
 	}
 
 	private void newBranchLengths() {
@@ -187,7 +374,7 @@ public class NeighborJoining {
 		// new branch lengths
 		double dij = getDistance(best_i, best_j);
 		// L_iu = (D_ij/2) + ((r_i - r_j) / 2)
-		double liu = ((dij) / 2) + ((r[best_i] - r[best_j]) / 2);
+		double liu = ((dij) / 2) + ((exactR(alias[best_i]) - exactR(alias[best_j])) / 2);
 		double lju = ((dij) - liu);
 
 		child1.setBranchLength(liu);
@@ -195,15 +382,19 @@ public class NeighborJoining {
 	}
 
 	private void join() {
-		// Update distances
+		// Update distances and cached row sums
+		int aliasBestj = alias[best_j];
 		for (int k = 0; k < numCluster; k++) {
 			if (k != best_i && k != best_j) {
 				int ak = alias[k];
-				distanceMatrix[ak][aliasBesti] = distanceMatrix[aliasBesti][ak] = updatedDistance(
-						best_i, best_j, k);
+				double distance = updatedDistance(best_i, best_j, k);
+				rowSums[ak] = rowSums[ak] - distanceMatrix[ak * size + aliasBesti]
+						- distanceMatrix[ak * size + aliasBestj] + distance;
+				distanceMatrix[ak * size + aliasBesti] = distanceMatrix[aliasBesti * size + ak] = distance;
+				maxAbsDistance = Math.max(maxAbsDistance, Math.abs(distance));
 			}
 		}
-		distanceMatrix[aliasBesti][aliasBesti] = 0.0;
+		distanceMatrix[aliasBesti * size + aliasBesti] = 0.0;
 
 		joinChilds(this.root, best_i, best_j);
 
@@ -213,6 +404,78 @@ public class NeighborJoining {
 		}
 
 		numCluster--;
+
+		// the joined node replaces the row of best_i
+		rowCreated[aliasBestj] = -1;
+		sortedDistances[aliasBestj] = null;
+		sortedColumns[aliasBestj] = null;
+		double[] values = new double[numCluster - 1];
+		int[] columns = new int[numCluster - 1];
+		for (int p = 0, k = 0; p < numCluster; p++) {
+			if (alias[p] != aliasBesti) {
+				values[k] = distanceMatrix[aliasBesti * size + alias[p]];
+				columns[k++] = alias[p];
+			}
+		}
+		sortRow(values, columns, 0, values.length - 1);
+		sortedDistances[aliasBesti] = values;
+		sortedColumns[aliasBesti] = columns;
+		rowStarts[aliasBesti] = 0;
+		rowCreated[aliasBesti] = iteration;
+		rowSums[aliasBesti] = exactRowSum(aliasBesti);
+
+		// keep rounding errors of the cached sums small
+		if (++joinsSinceRefresh * 8 >= numCluster) {
+			for (int p = 0; p < numCluster; p++) {
+				rowSums[alias[p]] = exactRowSum(alias[p]);
+			}
+			joinsSinceRefresh = 0;
+		}
+	}
+
+	// sorts the values (and their columns alike) ascending
+	private static void sortRow(double[] values, int[] columns, int from, int to) {
+		while (to - from > 16) {
+			double pivot = values[(from + to) >>> 1];
+			int i = from;
+			int j = to;
+			while (i <= j) {
+				while (values[i] < pivot)
+					i++;
+				while (values[j] > pivot)
+					j--;
+				if (i <= j) {
+					double value = values[i];
+					values[i] = values[j];
+					values[j] = value;
+					int column = columns[i];
+					columns[i] = columns[j];
+					columns[j] = column;
+					i++;
+					j--;
+				}
+			}
+			// recurse into the smaller part
+			if (j - from < to - i) {
+				sortRow(values, columns, from, j);
+				from = i;
+			} else {
+				sortRow(values, columns, i, to);
+				to = j;
+			}
+		}
+		for (int i = from + 1; i <= to; i++) {
+			double value = values[i];
+			int column = columns[i];
+			int j = i - 1;
+			while (j >= from && values[j] > value) {
+				values[j + 1] = values[j];
+				columns[j + 1] = columns[j];
+				j--;
+			}
+			values[j + 1] = value;
+			columns[j + 1] = column;
+		}
 	}
 
 	private void joinChilds(NJNode root, int n1, int n2) {
@@ -255,22 +518,24 @@ public class NeighborJoining {
 				updatedDistance(best_i, best_j, 2));
 
 		distanceMatrix = null;
+		sortedDistances = null;
+		sortedColumns = null;
 	}
 
 	private void createDistanceMatrix() {
-		double[][] temp = new double[documents.size()][documents.size()];
+		this.size = documents.size();
+		double[] temp = new double[size * size];
 
-		for (int i = 0; i < temp.length; i++) {
-			for (int j = 0; j < temp.length; j++) {
-				temp[i][j] = computeDistance(documents.get(i), documents.get(j));
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				temp[i * size + j] = computeDistance(documents.get(i), documents.get(j));
 			}
 		}
 		this.distanceMatrix = temp;
 	}
 
-	private Double computeDistance(Type type1, Type type2) {
-		Double distance = type1.getVector().distance(type2.getVector());
-		return distance;
+	private double computeDistance(Type type1, Type type2) {
+		return type1.getVector().distance(type2.getVector());
 	}
 
 	public NJNode getRoot() {
@@ -289,7 +554,7 @@ public class NeighborJoining {
 		}
 		System.out.println("}");
 	}
-	
+
 	public String getTree() {
 		String njResult = "";
 		njResult += "graph NJTree {";
@@ -314,4 +579,4 @@ public class NeighborJoining {
 			System.out.println();
 		}
 	}
-}
\ No newline at end of file
+}
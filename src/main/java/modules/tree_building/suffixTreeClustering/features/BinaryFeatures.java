@@ -1,6 +1,6 @@
 package modules.tree_building.suffixTreeClustering.features;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import modules.tree_building.suffixTreeClustering.data.Node;
@@ -40,21 +40,23 @@ public final class BinaryFeatures {
 	 * @return FeatureVector
 	 */
 	public FeatureVector vector() {
-		// Ein Vektor für dieses Dokument ist...
-		List<Double> values = new ArrayList<Double>();
 		// ...für jeden Term im Vokabular... (=jeder Knoten im SuffixTree)
 		List<Node> terms = corpus.getNodes();
+		// Ein Vektor für dieses Dokument ist (nur die Werte ungleich 0)...
+		int[] indices = new int[terms.size()];
+		int amount = 0;
 
-		for (Node node : terms) {
+		for (int i = 0; i < terms.size(); i++) {
 			// der boolesche Wert des Terms: hat Knoten besucht oder nicht
-			boolean value = value(node);
-			if (value) {
-				values.add(1.0);
-			} else
-				values.add(0.0);
+			if (value(terms.get(i))) {
+				indices[amount++] = i;
+			}
 		}
 
-		return new FeatureVector(values.toArray(new Double[values.size()]));
+		double[] values = new double[amount];
+		Arrays.fill(values, 1.0);
+		return new FeatureVector(terms.size(), Arrays.copyOf(indices, amount),
+				values);
 	}
 
 	/**
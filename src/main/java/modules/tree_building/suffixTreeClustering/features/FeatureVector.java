@@ -5,38 +5,128 @@ import java.io.Serializable;
 
 /**
  * Class representing a Document Vector. A vector is initialized with vector
- * values (e.g. tf-idf weights)
- * 
+ * values (e.g. tf-idf weights). As most documents visit only few nodes of the
+ * suffix tree, vectors with few non-zero values only store these (sorted by
+ * their index); all other vectors store every value.
+ *
  * @author neumannm
  */
 public final class FeatureVector implements Serializable {
 
-	private static final long serialVersionUID = 4735812009246952588L;
-	private Double[] features;
+	private static final long serialVersionUID = -2262917357810880412L;
+	// vectors with more non-zero values than length / DENSITY store all values
+	private static final int DENSITY = 8;
+	// number of dimensions
+	private int length;
+	// indices of the non-zero values (ascending) and the values, or null if
+	// values holds all values
+	private int[] indices;
+	private double[] values;
+	// Euclidian length
+	private double norm;
 
 	@Override
 	public String toString() {
 		return String.format("%s with %s values", getClass().getSimpleName(),
-				features.length);
+				length);
 	}
 
 	/**
 	 * Initialize Feature Vector.
-	 * 
+	 *
 	 * @param values Values
 	 */
 	public FeatureVector(final Double[] values) {
-		this.features = values;
+		double[] features = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			features[i] = values[i];
+		}
+		this.init(features);
 	}
-	
+
 	public FeatureVector(final double[] values) {
-		this.features = new Double[values.length];
-		for (int i = 0; i < values.length; i++) {
-			this.features[i] = values[i];
+		this.init(values.clone());
+	}
+
+	/**
+	 * Initialize sparse Feature Vector. The arrays are used as they are and
+	 * must not be changed afterwards.
+	 *
+	 * @param length
+	 *            Number of dimensions
+	 * @param indices
+	 *            Ascending indices of the non-zero values
+	 * @param values
+	 *            Non-zero values
+	 */
+	public FeatureVector(final int length, final int[] indices,
+			final double[] values) {
+		if (indices.length != values.length) {
+			throw new IllegalArgumentException(
+					"Amount of indices and values differ");
+		}
+		for (int k = 0; k < indices.length; k++) {
+			if (indices[k] < 0 || indices[k] >= length
+					|| (k > 0 && indices[k] <= indices[k - 1])) {
+				throw new IllegalArgumentException(
+						"Indices must be ascending and smaller than the length");
+			}
+		}
+		this.length = length;
+		if ((long) indices.length * DENSITY > length) {
+			this.values = new double[length];
+			for (int k = 0; k < indices.length; k++) {
+				this.values[indices[k]] = values[k];
+			}
+		} else {
+			this.indices = indices;
+			this.values = values;
+		}
+		this.norm = computeNorm();
+	}
+
+	// takes the given values or their non-zero ones only
+	private void init(final double[] features) {
+		this.length = features.length;
+		int nonZero = 0;
+		for (int i = 0; i < features.length; i++) {
+			if (features[i] != 0) {
+				nonZero++;
+			}
 		}
+		if ((long) nonZero * DENSITY > length) {
+			this.values = features;
+		} else {
+			this.indices = new int[nonZero];
+			this.values = new double[nonZero];
+			for (int i = 0, k = 0; i < features.length; i++) {
+				if (features[i] != 0) {
+					this.indices[k] = i;
+					this.values[k++] = features[i];
+				}
+			}
+		}
+		this.norm = computeNorm();
 	}
 
+	/**
+	 * Returns all values including the zeros (creates a new array on each
+	 * call).
+	 *
+	 * @return Values
+	 */
 	public Double[] getValues() {
+		Double[] features = new Double[length];
+		if (indices == null) {
+			for (int i = 0; i < length; i++) {
+				features[i] = values[i];
+			}
+		} else {
+			Arrays.fill(features, 0d);
+			for (int k = 0; k < indices.length; k++) {
+				features[indices[k]] = values[k];
+			}
+		}
 		return features;
 	}
 
@@ -46,17 +136,20 @@ public final class FeatureVector implements Serializable {
 			return false;
 		}
 		FeatureVector that = (FeatureVector) obj;
-		return Arrays.equals(this.features, that.features);
+		return this.length == that.length
+				&& Arrays.equals(this.indices, that.indices)
+				&& Arrays.equals(this.values, that.values);
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(features);
+		return 31 * (31 * length + Arrays.hashCode(indices))
+				+ Arrays.hashCode(values);
 	}
 
 	/**
 	 * Calculates and returns Euclidian Distance from this vector to another.
-	 * 
+	 *
 	 * @param other
 	 *            - the other feature vector.
 	 * @return float value of Euclidian Distance
@@ -68,7 +161,7 @@ public final class FeatureVector implements Serializable {
 		 * vergleichenden Vektoren müssen gleich lang sein, sonst stimmt
 		 * irgendwas überhaupt nicht:
 		 */
-		if (this.features.length != other.features.length) {
+		if (this.length != other.length) {
 			throw new UncomparableVectorsException(this, other);
 		}
 
@@ -77,7 +170,7 @@ public final class FeatureVector implements Serializable {
 		 */
 		double dist = (float) Math.sqrt(sumOfSquares(other));
 
-		if (new Double(dist).isNaN()) {
+		if (Double.isNaN(dist)) {
 			throw new IllegalStateException(
 					"Distance computed by sum of squares of the two vectors is not a number");
 		}
@@ -85,21 +178,61 @@ public final class FeatureVector implements Serializable {
 	}
 
 	/*
-	 * Calculates sum of squares (for Euclidian Distance).
+	 * Calculates sum of squares (for Euclidian Distance), skipping the
+	 * dimensions where both vectors are zero.
 	 */
 	private double sumOfSquares(FeatureVector other) {
 		double sum = 0;
-		for (int i = 0; i < this.features.length; i++) {
-			double difference = this.features[i] - other.features[i];
-			double square = Math.pow(difference, 2);
-			sum += square;
+		double[] a = this.values;
+		double[] b = other.values;
+		if (this.indices == null && other.indices == null) {
+			for (int i = 0; i < length; i++) {
+				double difference = a[i] - b[i];
+				sum += difference * difference;
+			}
+		} else if (this.indices == null || other.indices == null) {
+			// one of the vectors stores all values
+			int[] sparse = this.indices == null ? other.indices : this.indices;
+			for (int i = 0, k = 0; i < length; i++) {
+				double difference;
+				if (k < sparse.length && sparse[k] == i) {
+					difference = this.indices == null ? a[i] - b[k] : a[k] - b[i];
+					k++;
+				} else {
+					difference = this.indices == null ? a[i] : -b[i];
+				}
+				sum += difference * difference;
+			}
+		} else {
+			// merge the non-zero values
+			int[] ia = this.indices;
+			int[] ib = other.indices;
+			int i = 0;
+			int j = 0;
+			while (i < ia.length && j < ib.length) {
+				double difference;
+				if (ia[i] < ib[j]) {
+					difference = a[i++];
+				} else if (ib[j] < ia[i]) {
+					difference = -b[j++];
+				} else {
+					difference = a[i++] - b[j++];
+				}
+				sum += difference * difference;
+			}
+			for (; i < ia.length; i++) {
+				sum += a[i] * a[i];
+			}
+			for (; j < ib.length; j++) {
+				sum += b[j] * b[j];
+			}
 		}
 		return sum;
 	}
 
 	/**
 	 * Calculates and returns Cosine-similarity between this vector and another.
-	 * 
+	 *
 	 * @param other
 	 *            - the other feature vector.
 	 * @return Double value of Cosine-similarity
@@ -111,11 +244,11 @@ public final class FeatureVector implements Serializable {
 		 * vergleichenden Vektoren müssen gleich lang sein, sonst stimmt
 		 * irgendwas überhaupt nicht:
 		 */
-		if (this.features.length != other.features.length) {
+		if (this.length != other.length) {
 			throw new UncomparableVectorsException(this, other);
 		}
 		double dotProduct = dot(other);
-		double euclidianLengthProduct = euc(other);
+		double euclidianLengthProduct = this.norm * other.norm;
 		/*
 		 * Da die Winkel zwischen Vektoren in einem rein positiven
 		 * Koordinatensystem maximal 90 Grad betragen, ist die
@@ -136,7 +269,7 @@ public final class FeatureVector implements Serializable {
 					+ dist;
 			throw new IllegalStateException(message);
 		}
-		if (new Double(dist).isNaN()) {
+		if (Double.isNaN(dist)) {
 			throw new IllegalStateException(
 					String.format(
 							"Distance computed by devision of dot product %s and euclidian distance %s is not a number",
@@ -145,40 +278,57 @@ public final class FeatureVector implements Serializable {
 		return dist;
 	}
 
-	private double euc(FeatureVector query) {
-
-		double sum1 = 0;
-		double sum2 = 0;
-		/*
-		 * Euklidische Länge: Wurzel aus der Summe der quadrierten Elemente
-		 * eines der Vektoren:
-		 */
-		for (Double f : features) {
-			sum1 += Math.pow(f, 2);
-		}
-		for (Double f : query.features) {
-			sum2 += Math.pow(f, 2);
+	/*
+	 * Euklidische Länge: Wurzel aus der Summe der quadrierten Elemente (wird
+	 * einmal beim Erzeugen berechnet)
+	 */
+	private double computeNorm() {
+		double sum = 0;
+		for (int k = 0; k < values.length; k++) {
+			sum += values[k] * values[k];
 		}
-		/*
-		 * Wir wollen das Produkt der euklidischen Längen der zwei Vektoren
-		 * (|V(d1)| |V(d2)|)
-		 */
-		return (double) (Math.sqrt(sum1) * Math.sqrt(sum2));
+		return Math.sqrt(sum);
 	}
 
 	private double dot(FeatureVector query) {
 		/*
 		 * Das dot Produkt ist die Summe der Produkte der korrespondierenden
-		 * Vektor-Werte:
+		 * Vektor-Werte (Produkte mit 0 werden ausgelassen):
 		 */
 		float sum = 0;
-		for (int i = 0; i < features.length; i++) {
-			sum += (features[i] * query.features[i]);
+		double[] a = this.values;
+		double[] b = query.values;
+		if (this.indices == null && query.indices == null) {
+			for (int i = 0; i < length; i++) {
+				sum += (a[i] * b[i]);
+			}
+		} else if (this.indices == null) {
+			for (int k = 0; k < b.length; k++) {
+				sum += (a[query.indices[k]] * b[k]);
+			}
+		} else if (query.indices == null) {
+			for (int k = 0; k < a.length; k++) {
+				sum += (a[k] * b[this.indices[k]]);
+			}
+		} else {
+			int[] ia = this.indices;
+			int[] ib = query.indices;
+			int i = 0;
+			int j = 0;
+			while (i < ia.length && j < ib.length) {
+				if (ia[i] < ib[j]) {
+					i++;
+				} else if (ib[j] < ia[i]) {
+					j++;
+				} else {
+					sum += (a[i++] * b[j++]);
+				}
+			}
 		}
 		return sum;
 	}
 
 	public Integer getLength() {
-		return this.features.length;
+		return this.length;
 	}
 }
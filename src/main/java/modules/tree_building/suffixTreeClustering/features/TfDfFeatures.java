@@ -1,6 +1,6 @@
 package modules.tree_building.suffixTreeClustering.features;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import modules.tree_building.suffixTreeClustering.data.Node;
@@ -43,19 +43,24 @@ public final class TfDfFeatures {
 	 * @return FeatureVector
 	 */
 	public FeatureVector vector() {
-		// Ein Vektor für dieses Dokument ist...
-		List<Double> values = new ArrayList<Double>();
 		// ...für jeden Term im Vokabular... (=jeder Knoten im SuffixTree)
 		List<Node> terms = corpus.getNodes();
+		// Ein Vektor für dieses Dokument ist (nur die Werte ungleich 0)...
+		int[] indices = new int[terms.size()];
+		double[] values = new double[terms.size()];
+		int amount = 0;
 
 		boolean ok = false;
-		for (Node node : terms) {
+		for (int i = 0; i < terms.size(); i++) {
 			// der tf-idf-Wert des Terms:
-			Double tfdf = tfDf(node);
+			double tfdf = tfDf(terms.get(i));
 			if (tfdf > 0) {
 				ok = true;
 			}
-			values.add(tfdf);
+			if (tfdf != 0) {
+				indices[amount] = i;
+				values[amount++] = tfdf;
+			}
 		}
 		if (!ok) {
 			// FIXME is this OK?
@@ -64,7 +69,8 @@ public final class TfDfFeatures {
 			System.out.println(warning);
 			throw new IllegalStateException(warning);
 		}
-		return new FeatureVector(values.toArray(new Double[values.size()]));
+		return new FeatureVector(terms.size(), Arrays.copyOf(indices, amount),
+				Arrays.copyOf(values, amount));
 	}
 
 	/**
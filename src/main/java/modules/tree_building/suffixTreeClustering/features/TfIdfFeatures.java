@@ -1,6 +1,6 @@
 package modules.tree_building.suffixTreeClustering.features;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import modules.tree_building.suffixTreeClustering.data.Node;
@@ -42,20 +42,24 @@ public final class TfIdfFeatures {
 	 * @return FeatureVector
 	 */
 	public FeatureVector vector() {
-		// Ein Vektor für dieses Dokument ist...
-		List<Double> values = new ArrayList<Double>();
 		// ...für jeden Term im Vokabular... (=jeder Knoten im SuffixTree)
 		List<Node> terms = corpus.getNodes();
+		// Ein Vektor für dieses Dokument ist (nur die Werte ungleich 0)...
+		int[] indices = new int[terms.size()];
+		double[] values = new double[terms.size()];
+		int amount = 0;
 
-		
 		boolean ok = false;
-		for (Node node : terms) {
+		for (int i = 0; i < terms.size(); i++) {
 			// der tf-idf-Wert des Terms:
-			Double tfIdf = tfIdf(node);
-			if (tfIdf > 0 && !(tfIdf.isNaN())) {
+			double tfIdf = tfIdf(terms.get(i));
+			if (tfIdf > 0 && !(Double.isNaN(tfIdf))) {
 				ok = true;
 			}
-			values.add(tfIdf);
+			if (tfIdf != 0) {
+				indices[amount] = i;
+				values[amount++] = tfIdf;
+			}
 		}
 		if (!ok) {
 			// FIXME is this OK?
@@ -64,7 +68,8 @@ public final class TfIdfFeatures {
 			System.out.println(warning);
 			throw new IllegalStateException(warning);
 		}
-		return new FeatureVector(values.toArray(new Double[values.size()]));
+		return new FeatureVector(terms.size(), Arrays.copyOf(indices, amount),
+				Arrays.copyOf(values, amount));
 	}
 	
 	/**
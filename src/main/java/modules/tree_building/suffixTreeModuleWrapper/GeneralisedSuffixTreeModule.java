@@ -140,7 +140,7 @@ public class GeneralisedSuffixTreeModule extends modules.ModuleImpl {
 			final OutputPort labelsOut = this.getOutputPorts().get(OUTPUT_LIST_ID);
 			if (labelsOut.isConnected()) {
 				final ResultLabelListListener listener = new ResultLabelListListener(suffixTree);
-				TreeWalker.walk(suffixTree.getRoot(), suffixTree, listener);
+				TreeWalker.walkParallel(suffixTree.getRoot(), suffixTree, listener);
 
 				for (String label : listener.getLabels()) {
 					labelsOut.outputToAllCharPipes(label + System.lineSeparator());
@@ -201,7 +201,7 @@ public class GeneralisedSuffixTreeModule extends modules.ModuleImpl {
 			final OutputPort labelDataOut = this.getOutputPorts().get(OUTPUT_LABEL_DATA_ID);
 			if (labelDataOut.isConnected()) {
 				final ResultToGstLabelDataListener listener = new ResultToGstLabelDataListener(suffixTree);
-				TreeWalker.walk(suffixTree.getRoot(), suffixTree, listener);
+				TreeWalker.walkParallel(suffixTree.getRoot(), suffixTree, listener);
 				writeGstLabelData(listener.getLabelsToGstData().values(), labelDataOut);
 				labelDataOut.close();
 			}
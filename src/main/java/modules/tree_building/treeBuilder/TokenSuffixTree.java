@@ -0,0 +1,328 @@
+package modules.tree_building.treeBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.CompactTree;
+import models.ExtensibleTreeNode;
+
+/*
+ * Generalised suffix tree over tokens (Ukkonen's algorithm with active point
+ * and suffix links, see BaseSuffixTree for the char based version). Tokens
+ * are interned to ints; the documents are appended to one token array, the
+ * active point is reset at the start of every document so no edge spans two
+ * documents.
+ *
+ * No terminal symbols are used, so the tree is implicit: every substring of
+ * the documents is a path from the root, and the nodes are exactly the
+ * branching points and the ends of substrings that cannot be extended any
+ * further. This is the compact suffix trie TreeBuilderV3Module puts out;
+ * expanding every edge into a chain of single token nodes yields the atomic
+ * one.
+ */
+public class TokenSuffixTree {
+
+	// end of the leaves of the current document (set to the document end when
+	// it is finished)
+	private static final int OPEN_END = Integer.MAX_VALUE;
+	private static final int ROOT = 1;
+
+	// Interned tokens (token ids index tokenValues)
+	private final Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+	private final List<String> tokenValues = new ArrayList<String>();
+
+	// Token ids of all documents
+	private int[] text = new int[16];
+	private int position = -1;
+
+	/*
+	 * The nodes are stored as a struct of arrays indexed by node nr (node 0 is
+	 * unused, so 0 marks "no node"). The edge leading to a node is labelled
+	 * text[starts[node]] to text[ends[node] - 1].
+	 */
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int[] links = new int[16];
+	private int currentNode = 0;
+
+	// Children by (node << 32 | first token of their edge)
+	private final Map<Long, Integer> children = new HashMap<Long, Integer>();
+
+	// Leaves of the current document (their ends are still open)
+	private int[] openLeaves = new int[16];
+	private int openLeafAmount = 0;
+
+	private int activeNode, activeEdge, activeLength, remainder;
+
+	public TokenSuffixTree() {
+		this.newNode(-1, -1);
+		this.startDocument();
+	}
+
+	private int newNode(int start, int end) {
+		this.currentNode++;
+		if (this.currentNode == this.starts.length) {
+			int length = this.starts.length * 2;
+			this.starts = Arrays.copyOf(this.starts, length);
+			this.ends = Arrays.copyOf(this.ends, length);
+			this.links = Arrays.copyOf(this.links, length);
+		}
+		this.starts[this.currentNode] = start;
+		this.ends[this.currentNode] = end;
+		return this.currentNode;
+	}
+
+	private int newLeaf(int parent, int start) {
+		int leaf = this.newNode(start, OPEN_END);
+		this.setChild(parent, this.text[start], leaf);
+		if (this.openLeafAmount == this.openLeaves.length)
+			this.openLeaves = Arrays.copyOf(this.openLeaves, this.openLeafAmount * 2);
+		this.openLeaves[this.openLeafAmount++] = leaf;
+		return leaf;
+	}
+
+	private int getChild(int node, int token) {
+		Integer child = this.children.get(((long) node << 32) | token);
+		return child == null ? 0 : child;
+	}
+
+	private void setChild(int node, int token, int child) {
+		this.children.put(((long) node << 32) | token, child);
+	}
+
+	private int edgeLength(int node) {
+		return Math.min(this.ends[node], this.position + 1) - this.starts[node];
+	}
+
+	/**
+	 * Starts a new document; the following tokens are inserted as a separate
+	 * string (as with a generalised suffix tree).
+	 */
+	public void startDocument() {
+		// close the leaves of the previous document
+		for (int i = 0; i < this.openLeafAmount; i++)
+			this.ends[this.openLeaves[i]] = this.position + 1;
+		this.openLeafAmount = 0;
+
+		this.activeNode = ROOT;
+		this.activeEdge = 0;
+		this.activeLength = 0;
+		this.remainder = 0;
+	}
+
+	/**
+	 * Appends a token to the current document and inserts all suffixes ending
+	 * with it.
+	 * @param token Token
+	 */
+	public void addToken(String token) {
+		Integer id = this.tokenIds.get(token);
+		if (id == null) {
+			id = this.tokenValues.size();
+			this.tokenIds.put(token, id);
+			this.tokenValues.add(token);
+		}
+
+		if (this.position + 1 == this.text.length)
+			this.text = Arrays.copyOf(this.text, this.text.length * 2);
+		this.text[++this.position] = id;
+		int i = this.position;
+
+		int needSuffixLink = 0;
+		this.remainder++;
+		while (this.remainder > 0) {
+			if (this.activeLength == 0)
+				this.activeEdge = i;
+			int next = this.getChild(this.activeNode, this.text[this.activeEdge]);
+			if (next == 0) {
+				// rule 2: new leaf below the active node
+				this.newLeaf(this.activeNode, i);
+				if (needSuffixLink > 0)
+					this.links[needSuffixLink] = this.activeNode;
+				needSuffixLink = 0;
+			} else {
+				// walk down if the active point lies beyond this edge
+				int length = this.edgeLength(next);
+				if (this.activeLength >= length) {
+					this.activeEdge += length;
+					this.activeLength -= length;
+					this.activeNode = next;
+					continue;
+				}
+				// rule 3: the suffix is already contained
+				if (this.text[this.starts[next] + this.activeLength] == id) {
+					if (needSuffixLink > 0 && this.activeNode != ROOT)
+						this.links[needSuffixLink] = this.activeNode;
+					this.activeLength++;
+					break;
+				}
+				// rule 2: split the edge
+				int split = this.newNode(this.starts[next], this.starts[next] + this.activeLength);
+				this.setChild(this.activeNode, this.text[this.activeEdge], split);
+				this.newLeaf(split, i);
+				this.starts[next] += this.activeLength;
+				this.setChild(split, this.text[this.starts[next]], next);
+				if (needSuffixLink > 0)
+					this.links[needSuffixLink] = split;
+				needSuffixLink = split;
+			}
+
+			this.remainder--;
+			if (this.activeNode != ROOT && this.links[this.activeNode] > 0) {
+				this.activeNode = this.links[this.activeNode];
+			} else {
+				// no suffix link (at the root, or a leaf of an earlier document
+				// that became an inner node): rescan from the root
+				this.activeNode = ROOT;
+				this.activeEdge = i - this.remainder + 1;
+				this.activeLength = Math.max(0, this.remainder - 1);
+			}
+		}
+	}
+
+	/*
+	 * Receives the nodes of the converted tree (see toExtensibleTree() and
+	 * toCompactTree()).
+	 */
+	private interface NodeSink<N> {
+		N addChild(N parent, String key, String value);
+
+		void setNodeCounter(N node, int counter);
+	}
+
+	/**
+	 * Converts the tree into ExtensibleTreeNode objects. Every node's counter
+	 * is the amount of leaves below (1 for leaves). Child keys are the tokens
+	 * of the edge, each followed by the given delimiter.
+	 * @param compact Whether to put out the compact tree (else the atomic one)
+	 * @param maxDepth Maximum depth (&lt;0 for none); paths are cut after
+	 *            maxDepth + 1 tokens
+	 * @param delimiter Delimiter to append to every token
+	 * @param omitRedundantInformation Whether to leave out node values (they
+	 *            equal the keys of the parents' child maps)
+	 * @return Root node (value "^")
+	 */
+	public ExtensibleTreeNode toExtensibleTree(boolean compact, int maxDepth, String delimiter,
+			final boolean omitRedundantInformation) {
+		ExtensibleTreeNode root = new ExtensibleTreeNode("^");
+		this.convert(root, compact, maxDepth, delimiter, new NodeSink<ExtensibleTreeNode>() {
+			@Override
+			public ExtensibleTreeNode addChild(ExtensibleTreeNode parent, String key, String value) {
+				ExtensibleTreeNode childNode = new ExtensibleTreeNode();
+				if (!omitRedundantInformation)
+					childNode.setNodeValue(value);
+				parent.getChildNodes().put(key, childNode);
+				return childNode;
+			}
+
+			@Override
+			public void setNodeCounter(ExtensibleTreeNode node, int counter) {
+				node.setNodeCounter(counter);
+			}
+		});
+		return root;
+	}
+
+	/**
+	 * Converts the tree into a CompactTree, with the same structure as
+	 * {@link #toExtensibleTree(boolean, int, String, boolean)}.
+	 * @param compact Whether to put out the compact tree (else the atomic one)
+	 * @param maxDepth Maximum depth (&lt;0 for none)
+	 * @param delimiter Delimiter to append to every token
+	 * @param omitRedundantInformation Whether to leave out node values
+	 * @return Compact tree
+	 */
+	public CompactTree toCompactTree(boolean compact, int maxDepth, String delimiter,
+			final boolean omitRedundantInformation) {
+		final CompactTree.Builder builder = new CompactTree.Builder();
+		int root = builder.addRoot("^", 0);
+		this.convert(root, compact, maxDepth, delimiter, new NodeSink<Integer>() {
+			@Override
+			public Integer addChild(Integer parent, String key, String value) {
+				return builder.addChild(parent, key, omitRedundantInformation ? null : value, 0);
+			}
+
+			@Override
+			public void setNodeCounter(Integer node, int counter) {
+				builder.setNodeCounter(node, counter);
+			}
+		});
+		return builder.build();
+	}
+
+	private <N> void convert(N root, boolean compact, int maxDepth, String delimiter, NodeSink<N> sink) {
+		// close the leaves of the current document
+		for (int i = 0; i < this.openLeafAmount; i++)
+			this.ends[this.openLeaves[i]] = this.position + 1;
+		this.openLeafAmount = 0;
+
+		String[] labels = new String[this.tokenValues.size()];
+		for (int i = 0; i < labels.length; i++)
+			labels[i] = this.tokenValues.get(i).concat(delimiter);
+
+		// child lists (order does not matter, both outputs sort them)
+		int[] firstChildren = new int[this.currentNode + 1];
+		int[] nextSiblings = new int[this.currentNode + 1];
+		for (Map.Entry<Long, Integer> entry : this.children.entrySet()) {
+			int parent = (int) (entry.getKey() >>> 32);
+			int child = entry.getValue();
+			nextSiblings[child] = firstChildren[parent];
+			firstChildren[parent] = child;
+		}
+
+		int maxLength = maxDepth < 0 ? Integer.MAX_VALUE : maxDepth + 1;
+		int leaves = this.convertChildren(ROOT, root, 0, maxLength, compact, labels, sink, firstChildren,
+				nextSiblings);
+		sink.setNodeCounter(root, Math.max(1, leaves));
+	}
+
+	/*
+	 * Adds the children of the given node (at the given depth) to the given
+	 * target node; returns the amount of leaves below.
+	 */
+	private <N> int convertChildren(int node, N target, int depth, int maxLength, boolean compact, String[] labels,
+			NodeSink<N> sink, int[] firstChildren, int[] nextSiblings) {
+		if (depth >= maxLength)
+			return 0;
+		int leaves = 0;
+		for (int child = firstChildren[node]; child != 0; child = nextSiblings[child]) {
+			// create the node(s) for the edge: one for compact trees, one per
+			// token for atomic ones. Leaves of earlier documents that were
+			// extended later on have a single child; their edges are merged.
+			N parent = target;
+			List<N> chain = new ArrayList<N>();
+			StringBuilder key = new StringBuilder();
+			int end = child;
+			int endDepth = depth;
+			while (true) {
+				int start = this.starts[end];
+				int length = Math.min(this.ends[end] - start, maxLength - endDepth);
+				endDepth += length;
+				boolean merge = endDepth < maxLength && firstChildren[end] != 0
+						&& nextSiblings[firstChildren[end]] == 0;
+				for (int n = 0; n < length; n++) {
+					key.append(labels[this.text[start + n]]);
+					if (!compact || (n == length - 1 && !merge)) {
+						parent = sink.addChild(parent, key.toString(), key.toString());
+						chain.add(parent);
+						key.setLength(0);
+					}
+				}
+				if (!merge)
+					break;
+				end = firstChildren[end];
+			}
+
+			int childLeaves = this.convertChildren(end, parent, endDepth, maxLength, compact, labels, sink,
+					firstChildren, nextSiblings);
+			childLeaves = Math.max(1, childLeaves);
+			for (N chainNode : chain)
+				sink.setNodeCounter(chainNode, childLeaves);
+			leaves += childLeaves;
+		}
+		return leaves;
+	}
+}
@@ -1,26 +1,21 @@
 package modules.tree_building.treeBuilder;
 
 import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.SortedMap;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import base.workbench.ModuleRunner;
 import common.parallelization.CallbackReceiver;
+import models.CompactTreeNode;
 import models.ExtensibleTreeNode;
 import modules.CharPipe;
 import modules.InputPort;
 import modules.ModuleImpl;
+import modules.ObjectPipe;
 import modules.OutputPort;
 import modules.Pipe;
 
@@ -34,6 +29,7 @@ public class TreeBuilderV3Module extends ModuleImpl {
 	public static final String PROPERTYKEY_MAXDEPTH = "Tree depth";
 	public static final String PROPERTYKEY_OMITREDUNDANTINFO = "Omit redundant info";
 	public static final String PROPERTYKEY_STRUCTURE = "Compact or atomic?";
+	public static final String PROPERTYKEY_COMPACTMODEL = "Compact tree model";
 	// public static final String PROPERTYKEY_MAXTHREADS = "Max. threads";
 
 	// Define I/O IDs (must be unique for every input or output)
@@ -47,6 +43,7 @@ public class TreeBuilderV3Module extends ModuleImpl {
 	private int maxDepth = -1;
 	private boolean omitRedundantInformation;
 	private boolean compactTree;
+	private boolean compactTreeModel;
 
 	// private int maxThreads;
 	
@@ -62,7 +59,7 @@ public class TreeBuilderV3Module extends ModuleImpl {
 		super(callbackReceiver, properties);
 
 		// Add module description
-		this.setDescription("<p>This module can be used to construct different types of suffix trees from formatted or non-formatted text input. It uses a custom algorithm and runs in approximate linear time (actually it did turn out that the processing time grows exponentially under certain circumstances, so no guarantee) and uses single thread processing.</p>"
+		this.setDescription("<p>This module can be used to construct different types of suffix trees from formatted or non-formatted text input. The input segments are interned and inserted into a generalised suffix tree over segments using Ukkonen's algorithm [2], which runs in linear time; the atomic and depth-restricted trees are derived from it on output. It uses single thread processing.</p>"
 				+ "<p> The type of tree to build is determined by various parameters. With those, you can build suffix trees that are"
 				+ "<ul>"
 				+ "<li><i>generalised</i> or <i>non-generalised</i>,</li>"
@@ -72,6 +69,7 @@ public class TreeBuilderV3Module extends ModuleImpl {
 				+ "<p>Additionally, the tree will also be generated with a variable for each node that counts how many leafes are below. The output is a JSON-encoded tree consisting of <i>ExtensibleTreeNode</i> objects.</p>"
 				+ "<ol>"
 				+ "<li>Giegerich, Robert, and Stefan Kurtz. &quot;A comparison of imperative and purely functional suffix tree constructions.&quot; Science of Computer Programming 25.2 (1995): 187-218.</li>"
+				+ "<li>Ukkonen, Esko. &quot;On-line construction of suffix trees.&quot; Algorithmica 14.3 (1995): 249-260.</li>"
 				+ "</ol>");
 
 		// Add module category
@@ -96,6 +94,9 @@ public class TreeBuilderV3Module extends ModuleImpl {
 		this.getPropertyDescriptions()
 				.put(PROPERTYKEY_STRUCTURE,
 						"Type of suffix tree to output; possible values are 'compact' and 'atomic'.");
+		this.getPropertyDescriptions()
+				.put(PROPERTYKEY_COMPACTMODEL,
+						"Hand a CompactTree (read-only ExtensibleTreeNode views on an array based tree) to object pipes instead of separate ExtensibleTreeNode objects; needs far less heap for large trees. The JSON output is the same.");
 
 		// Add property defaults (_should_ be provided for every property)
 		this.getPropertyDefaultValues().put(ModuleImpl.PROPERTYKEY_NAME, "TreeBuilder v3 Module");
@@ -105,6 +106,7 @@ public class TreeBuilderV3Module extends ModuleImpl {
 		this.getPropertyDefaultValues().put(PROPERTYKEY_MAXDEPTH, "-1");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_OMITREDUNDANTINFO, "true");
 		this.getPropertyDefaultValues().put(PROPERTYKEY_STRUCTURE, "compact");
+		this.getPropertyDefaultValues().put(PROPERTYKEY_COMPACTMODEL, "false");
 
 		// Define I/O
 		/*
@@ -119,8 +121,9 @@ public class TreeBuilderV3Module extends ModuleImpl {
 		inputPort.addSupportedPipe(CharPipe.class);
 		OutputPort outputPort = new OutputPort(
 				ID_OUTPUT,
-				"JSON-encoded suffix tree (nodes based on the TreeNode interface).",
+				"Suffix tree (nodes based on the TreeNode interface); JSON-encoded on character pipes.",
 				this);
+		outputPort.addSupportedPipe(ObjectPipe.class);
 		outputPort.addSupportedPipe(CharPipe.class);
 
 		// Add I/O ports to instance (don't forget...)
@@ -132,13 +135,8 @@ public class TreeBuilderV3Module extends ModuleImpl {
 	@Override
 	public boolean process() throws Exception {
 
-		// Initialise tree root node
-		ExtensibleTreeNode rootNode = new ExtensibleTreeNode("^");
-		rootNode.setNodeCounter(1);
-		
-		// Initialise parent relation map
-		Map<ExtensibleTreeNode,ExtensibleTreeNode> childParentRelationMap = new HashMap<ExtensibleTreeNode,ExtensibleTreeNode>();
-		childParentRelationMap.put(rootNode, null);
+		// Initialise suffix tree
+		TokenSuffixTree suffixTree = new TokenSuffixTree();
 
 		// Instantiate outer input scanner
 		Scanner outerInputScanner = new Scanner(this.getInputPorts()
@@ -158,9 +156,8 @@ public class TreeBuilderV3Module extends ModuleImpl {
 			// Determine next segment
 			String outerInputSegment = outerInputScanner.next();
 
-			// Initialise leaf list
-			List<ExtensibleTreeNode> leafList = new ArrayList<ExtensibleTreeNode>();
-			leafList.add(rootNode);
+			// Each segment is inserted into the tree independently
+			suffixTree.startDocument();
 
 			// Instantiate inner input scanner
 			Scanner innerInputScanner = new Scanner(new StringReader(
@@ -178,269 +175,39 @@ public class TreeBuilderV3Module extends ModuleImpl {
 							"Thread has been interrupted.");
 				}
 
-				// Determine next segment
-				String inputSegment = innerInputScanner.next().concat(
-						this.outputDelimiter);
-
-				/*
-				 * Each segment is to be attached as a child to each tree node
-				 * of last loop's leaf list (or increase the counter of the
-				 * respective child node should it already exist) and then add
-				 * the created/found child node to next loop's list.
-				 */
-
-				List<ExtensibleTreeNode> nextLeafList = new ArrayList<ExtensibleTreeNode>(
-						leafList.size() + 1);
-				nextLeafList.add(rootNode);
-
-				Iterator<ExtensibleTreeNode> leaves = leafList.iterator();
-				while (leaves.hasNext()) {
-					// Determine next node
-					ExtensibleTreeNode node = leaves.next();
-
-					// Get child node for the read segment
-					ExtensibleTreeNode childNode = null;
-					if (compactTree) {
-						// Determine all child nodes that start with the read
-						// segment (amount can only be one or zero)
-						SortedMap<String, ExtensibleTreeNode> childNodesThatStartWithSegment = node
-								.getChildNodes().subMap(inputSegment,
-										inputSegment + Character.MAX_VALUE);
-						if (!childNodesThatStartWithSegment.isEmpty()) {
-							String childNodeValue = childNodesThatStartWithSegment
-									.firstKey();
-							childNode = (ExtensibleTreeNode) childNodesThatStartWithSegment
-									.get(childNodeValue);
-							// If the child node's value is longer than the
-							// input segment, we have to insert a split (i.e. a
-							// new node)
-							if (childNodeValue.length() > inputSegment.length()) {
-								// Determine the part of the child node value to
-								// detach as a suffix
-								String childNodeValueSuffix = childNodeValue
-										.substring(inputSegment.length());
-
-								// Determine parent node value
-								String parentNodeValue = (String) node
-										.getNodeValue();
-								// If the value is only present as a map key, we
-								// have to search it first
-								if (omitRedundantInformation
-										&& !node.equals(rootNode)) {
-									for (Entry<String, ExtensibleTreeNode> entry : childParentRelationMap.get(node).getChildNodes().entrySet()) {
-										if (Objects.equals(node,
-												entry.getValue())) {
-											parentNodeValue = entry.getKey();
-											break;
-										}
-									}
-								}
-
-								// Clip read segment from child node
-								if (!omitRedundantInformation)
-									childNode
-											.setNodeValue(childNodeValueSuffix);
-								// Detach child node (will be re-attached with
-								// only the suffix as key)
-								node.getChildNodes().remove(childNodeValue);
-
-								// Check whether the child node was an only
-								// child
-								if (node.getChildNodes().size() == 0
-										&& !node.equals(rootNode)) {
-									// Incorporate read segment into node
-									if (!omitRedundantInformation)
-										node.setNodeValue(parentNodeValue
-												+ inputSegment);
-									// Update grandparent map key
-									childParentRelationMap.get(node)
-											.getChildNodes().remove(
-													parentNodeValue);
-									childParentRelationMap.get(node)
-											.getChildNodes().put(
-													parentNodeValue
-															+ inputSegment,
-													node);
-									// Re-attach child node
-									node.getChildNodes().put(
-											childNodeValueSuffix, childNode);
-
-									// Update child node reference (because the
-									// child node will be added to next
-									// iteration's leaf list further down)
-									childNode = node;
-								} else {
-									// Create new node for the read segment
-									ExtensibleTreeNode newNode = new ExtensibleTreeNode();
-									newNode.setNodeCounter(childNode
-											.getNodeCounter());
-									if (!omitRedundantInformation)
-										newNode.setNodeValue(inputSegment);
-									// Attach new node to parent node
-									node.getChildNodes().put(inputSegment,
-											newNode);
-									childParentRelationMap.put(newNode, node);
-									// Re-attach child node
-									newNode.getChildNodes().put(
-											childNodeValueSuffix, childNode);
-									childParentRelationMap.put(childNode, newNode);
-
-									// Update child node reference (because the
-									// child node will be added to next
-									// iteration's leaf list further down)
-									childNode = newNode;
-								}
-							}
-						}
-
-					} else
-						childNode = (ExtensibleTreeNode) node.getChildNodes()
-								.get(inputSegment);
-
-					// Check if child node does not yet exist (and if so, create
-					// it)
-					if (childNode == null) {
-
-						// Merge with parent or construct separate child node
-						if (compactTree && !node.equals(rootNode)
-								&& node.getChildNodes().size() == 0
-								&& !nextLeafList.contains(node)) {
-
-							// Determine node value
-							String nodeValue = node.getNodeValue();
-							// If the value is only present as a map key, we
-							// have to search it first
-							if (omitRedundantInformation) {
-
-								for (Entry<String, ExtensibleTreeNode> entry : childParentRelationMap.get(node)
-										.getChildNodes().entrySet()) {
-									if (Objects.equals(node, entry.getValue())) {
-										nodeValue = entry.getKey();
-										break;
-									}
-								}
-							}
-							childParentRelationMap.get(node)
-									.getChildNodes().values().remove(node);
-							childParentRelationMap.get(node)
-									.getChildNodes().put(
-											nodeValue + inputSegment, node);
-							if (!omitRedundantInformation)
-								node.setNodeValue(nodeValue + inputSegment);
-							node.getChildNodes().clear();
-							childNode = node;
-
-						} else {
-							childNode = new ExtensibleTreeNode();
-							childParentRelationMap.put(childNode, node);
-							if (!omitRedundantInformation)
-								childNode.setNodeValue(inputSegment);
-							node.getChildNodes().put(inputSegment, childNode);
-
-							// Increment child node counter
-							childNode
-									.setNodeCounter(childNode.getNodeCounter() + 1);
-
-							// If there is a new split, increment ancestor node
-							// counters
-							ExtensibleTreeNode ancestor = node;
-							if (ancestor.getChildNodes().size() > 1)
-								while (ancestor != null) {
-									ancestor.setNodeCounter(ancestor
-											.getNodeCounter() + 1);
-									ancestor = childParentRelationMap.get(ancestor);
-								}
-						}
-					} else {
-						// Merge with parent or construct separate child node
-						if (compactTree && !node.equals(rootNode)
-								&& node.getChildNodes().size() == 1
-								&& !node.equals(childNode)
-								&& !nextLeafList.contains(node)) {
-
-							// Determine node value
-							String nodeValue = node.getNodeValue();
-							// If the value is only present as a map key, we
-							// have to
-							// search it first
-							if (omitRedundantInformation) {
-
-								for (Entry<String, ExtensibleTreeNode> entry : childParentRelationMap.get(node)
-										.getChildNodes().entrySet()) {
-									if (Objects.equals(node, entry.getValue())) {
-										nodeValue = entry.getKey();
-										break;
-									}
-								}
-							}
-							// Determine child node value
-							String childNodeValue = childNode.getNodeValue();
-							// If the value is only present as a map key, we
-							// have to
-							// search it first
-							if (omitRedundantInformation) {
-
-								for (Entry<String, ExtensibleTreeNode> entry : node
-										.getChildNodes().entrySet()) {
-									if (Objects.equals(childNode,
-											entry.getValue())) {
-										childNodeValue = entry.getKey();
-										break;
-									}
-								}
-							}
-							childParentRelationMap.get(node)
-									.getChildNodes().values().remove(node);
-							childParentRelationMap.get(node)
-									.getChildNodes().put(
-											nodeValue + childNodeValue,
-											childNode);
-							if (!omitRedundantInformation)
-								childNode.setNodeValue(nodeValue
-										+ childNodeValue);
-							node.getChildNodes().clear();
-							childParentRelationMap.put(childNode, childParentRelationMap.get(node));
-						}
-					}
-
-					// Apply max depth constraint if specified
-					if (this.maxDepth < 0
-							|| nextLeafList.size() <= this.maxDepth)
-
-						// Append child node to next loop's leaf list
-						nextLeafList.add(childNode);
-				}
-
-				// Update list reference
-				leafList = nextLeafList;
+				// Insert all suffixes ending with the next segment
+				suffixTree.addToken(innerInputScanner.next());
 			}
 			innerInputScanner.close();
 
 		}
 		outerInputScanner.close();
 
-		// Loop over leaves to eliminate parent relations (since they make
-		// serialisation impossible)
-		/*
-		 * Iterator<ExtensibleTreeNode> leaves = leafList.iterator(); while
-		 * (leaves.hasNext()){ ExtensibleTreeNode leaf = leaves.next();
-		 * ExtensibleTreeNode parent =
-		 * (((ExtensibleTreeNode)(leaf.getAttributes(
-		 * ).get(attribkey_parentnode)))); while (parent != null){
-		 * leaf.getAttributes().put(attribkey_parentnode, null); leaf = parent;
-		 * parent =
-		 * (((ExtensibleTreeNode)(parent.getAttributes().get(attribkey_parentnode
-		 * )))); } }
-		 */
+		// Convert the suffix tree into the requested structure
+		ExtensibleTreeNode rootNode;
+		if (this.compactTreeModel)
+			rootNode = suffixTree.toCompactTree(this.compactTree,
+					this.maxDepth, this.outputDelimiter,
+					this.omitRedundantInformation).getRoot();
+		else
+			rootNode = suffixTree.toExtensibleTree(this.compactTree,
+					this.maxDepth, this.outputDelimiter,
+					this.omitRedundantInformation);
+
+		// Hand the tree over to object pipes as is
+		OutputPort outputPort = this.getOutputPorts().get(ID_OUTPUT);
+		if (!outputPort.getPipes(ObjectPipe.class).isEmpty())
+			outputPort.outputToAllObjectPipes(rootNode);
 
 		// Initialise JSON serialiser
 		GsonBuilder gsonBuilder = new GsonBuilder();
+		gsonBuilder.registerTypeAdapter(CompactTreeNode.class,
+				new CompactTreeNode.JsonAdapter());
 		// gsonBuilder.registerTypeAdapter(ModuleNetwork.class, new
 		// ParentRelationTreeNodeSerialiser());
 		Gson gson = gsonBuilder.setPrettyPrinting().create();
 
-		// Write to outputs // TODO Not sure if this is really the best
-		// performing method. Needs testing.
+		// Write JSON to character outputs
 		Iterator<Pipe> outputPipes = this.getOutputPorts().get(ID_OUTPUT)
 				.getPipes(CharPipe.class).iterator();
 		while (outputPipes.hasNext()) {
@@ -507,6 +274,13 @@ public class TreeBuilderV3Module extends ModuleImpl {
 				throw new Exception("Invalid value for property '"
 						+ PROPERTYKEY_STRUCTURE + "'.");
 
+		String compactTreeModelString = this.getProperties().getProperty(
+				PROPERTYKEY_COMPACTMODEL,
+				this.getPropertyDefaultValues().get(PROPERTYKEY_COMPACTMODEL));
+		if (compactTreeModelString != null)
+			this.compactTreeModel = Boolean
+					.parseBoolean(compactTreeModelString);
+
 		// this.maxThreads =
 		// Integer.parseInt(this.getProperties().getProperty(PROPERTYKEY_MAXTHREADS,
 		// this.getPropertyDefaultValues().get(PROPERTYKEY_MAXTHREADS)));
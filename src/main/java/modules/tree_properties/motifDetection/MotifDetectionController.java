@@ -7,16 +7,9 @@ import java.util.Map;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-//Apache utility imports.
-import org.apache.commons.lang3.ArrayUtils;
 
 //Java I/O imports.
-import java.io.BufferedReader;
-import java.io.StringReader;
-import java.io.PipedInputStream;
+import java.io.InputStream;
 
 //Workbench specific imports.
 import java.util.Properties;
@@ -34,9 +27,12 @@ import models.GSTXmlNode;
 //Workbench Dot2TreeNodes imports.
 import models.Dot2TreeInnerNode;
 import models.Dot2TreeInnerNodesParent;
-import models.Dot2TreeLeafNode;
 import models.Dot2TreeNodes;
 
+// Dot parser imports.
+import modules.format_conversion.dot2tree.DotTreeParser;
+import modules.format_conversion.dot2tree.Dot2TreeNodesBuilder;
+
 /**
  * This module transverses a Generalized Suffix Tree (GST) bottom up
  * and detects nodes which are linked by suffix-links to one-another.
@@ -56,13 +52,6 @@ public class MotifDetectionController extends ModuleImpl {
 		ModuleRunner.runStandAlone(MotifDetectionController.class, args);
 	}
 
-	
-	// Enumerators:	
-	private enum DotTags {
-			ROOT, LEAFSTART, LEAFEND, INTERNAL, EDGE, SUFFIXLINK, UNDEFINED
-	}
-	// End enumerators.
-	
 	// Property keys:
 	public static final String PROPERTYKEY_MAXCOMBINATORICS = "Maximum number of trials";
 	
@@ -82,9 +71,6 @@ public class MotifDetectionController extends ModuleImpl {
 	// This variable defines the minimum length of the string delta.
 	private int minDeltaLen;
 	
-	// Dot document status.
-	DotTags DotStat = DotTags.UNDEFINED;
-	
 	// Dot2TreeNodes root object.
 	// Create the root of the tree and incorporate all nodes beneath.
 	Dot2TreeInnerNodesParent rootNode;
@@ -93,7 +79,7 @@ public class MotifDetectionController extends ModuleImpl {
 	GSTXmlStreamReader treeXmlStreamReader;
 	
 	// GST XML input stream.
-	private PipedInputStream suffixTreeInStream;
+	private InputStream suffixTreeInStream;
 	
 	// GST XML TreeMap holding each node.
 	private TreeMap <Integer, GSTXmlNode> gstXmlNodes;
@@ -110,9 +96,6 @@ public class MotifDetectionController extends ModuleImpl {
 	
 	private HashMap <String, CompareSets> nSetCompared;
 	
-	// Variable holding each line of the input.
-	private String inputString;
-	
 	// IDs for I/O pipelines.
 	private final String INPUTDOTID = "dot input";
 	private final String INPUTXMLID = "xml input";
@@ -178,9 +161,6 @@ public class MotifDetectionController extends ModuleImpl {
 	
 	@Override
 	public boolean process () throws Exception {
-		// Initialize inputString.
-		this.inputString = "";
-			
 		// Read form input stream and parse GST XML format.
 		
 		try {
@@ -191,7 +171,7 @@ public class MotifDetectionController extends ModuleImpl {
 			e.printStackTrace();
 		}
 		
-		// Convert the string variable "inputString" into Dot2TreeNodes objects.
+		// Parse the dot input into Dot2TreeNodes objects.
 		this.convertString2TreeNodes ();
 		
 		// Follow all suffix links and the length of the branch labels.
@@ -266,262 +246,10 @@ public class MotifDetectionController extends ModuleImpl {
 	 * This method converts the tree information from the dot file into a Dot2TreeNodes TreeMap.
 	 * @return void
 	 */
-	private void convertString2TreeNodes () {
-		
-		/* Prepare field matcher for: 
-		 * 1.) root node 
-		 * 2.) leaf nodes
-		 * 3.) inner nodes
-		 * 4.) suffix links 
-		 */
-		
-		// Define regex patterns.
-		
-		// Root node pattern.
-		Pattern rootPat = Pattern.compile("\\A\t(node)(1) \\[");
-		
-		// Leaf node pattern.
-		Pattern leafPat = Pattern.compile("\\A\t(node\\d+) \\[label=\"(\\d+)(( \\d+ \\d+ \\d+)+)\",.+\\]");
-		// Leaf start pattern.
-		Pattern leafStartPat = Pattern.compile("\\A\tnode\\d+ \\[label=\"\\d+\\z");
-		// Leaf end pattern.
-		Pattern leafEndPat = Pattern.compile("\\A \\d+ \\d+ \\d+\",.+\\]");
-		
-		// Inner node pattern.
-		Pattern innerPat = Pattern.compile("\\A\t(node\\d+) \\[label=\"(\\d+)\",.*\\]\\z"); 
-			
-		// Edge pattern.
-		Pattern edgePat = Pattern.compile("\\A\t(node)(\\d+) -> (node)(\\d+)\\[label=\"(.+)\",.*\\]");
-		
-		// Suffix link pattern.
-		Pattern suffLinkPat = Pattern.compile("\\A\t(node)(\\d+) -> (node)(\\d+)\\ \\[label=\"\",.*\\]");
-		
-		// Node fields:
-		int nodeNumber = 1;
-		int nodeFreq;
-		ArrayList <Integer> nodeLeafInfo = new ArrayList <Integer> ();
-		
-		// Node vs node comparison.
-		int node1Number;
-		int node2Number;
-			
-		// Local variable holding the current line.
-		String currLine = null;
-		
-		// Local variable holding leaf node information for parsing.
-		String leafInfo = "";
-		
-		// Save the truncated end of a string which does not end on a newline sign.
-		String nextLine = "";
-		
-		try {
-			
-			// Variables used for input data.
-			int bufferSize = 1024;
-			char [] bufferInput = new char [bufferSize];
-			
-			// Read first characters
-			int charCode = this.getInputPorts().get(INPUTDOTID).getInputReader().read(bufferInput, 0, bufferSize);
-			
-			while( charCode != -1 )
-			{
-				// Check for interrupt signal.
-				if (Thread.interrupted()) {
-					this.closeAllOutputs();
-					throw new InterruptedException("Thread has been interrupted.");
-				}
-				
-				// Convert char array to string buffer.
-				StringBuffer inputBuffer = new StringBuffer(new String (bufferInput).substring(0, charCode));
-				
-				// Check whether there was a previous empty nextLine or not.
-				if (nextLine.isEmpty()) {
-					this.inputString = inputBuffer.toString();
-				} else {
-					this.inputString = nextLine;
-					this.inputString += inputBuffer.toString();
-				}
-				
-				
-				BufferedReader bufReader;
-				
-				// Save the currently read lines.
-				String[] currentLines = null;
-				
-				// Decide whether to pursue the lines line by line, or truncate the last line in case it does not end on
-				// a newline character.
-				if (this.inputString.substring(this.inputString.length() - 1).equals("\n")) {
-					
-					// No truncated line needed.
-					nextLine = "";
-					
-					// Loop through the inputString via a BufferedReader line by line.
-					bufReader = new BufferedReader(new StringReader(this.inputString));
-					
-				} else {
-					
-					currentLines = this.inputString.split("\n");
-					
-					// Save the last truncated line to nextLine.
-					nextLine = currentLines[currentLines.length-1];
-					
-					// Remove last truncated line.
-					currentLines = ArrayUtils.remove(currentLines, currentLines.length-1);
-					
-					String newLines = "";
-					for (String i : currentLines) {
-						newLines += i + "\n";
-					}
-					// Loop through the truncated lines line by line.
-					bufReader = new BufferedReader(new StringReader(newLines));
-					
-					
-				}
-				
-				try {
-						
-					// Loop through the current input string line by line.
-					while ( (currLine = bufReader.readLine()) != null) {
-										
-						// Define matcher.
-						Matcher rootQuery = rootPat.matcher(currLine);
-						Matcher leafStartQ = leafStartPat.matcher(currLine);
-						Matcher leafEndQ = leafEndPat.matcher(currLine);
-						Matcher innerQ = innerPat.matcher(currLine);
-						Matcher edgeQ = edgePat.matcher(currLine);
-						Matcher suffLinkQ = suffLinkPat.matcher(currLine);
-						
-						// Search for regular expressions and set search status.
-						if (rootQuery.find()) {
-							nodeNumber = Integer.parseInt(rootQuery.group(2));
-							this.DotStat = DotTags.ROOT;
-						} else if (leafStartQ.find()) {
-							this.DotStat = DotTags.LEAFSTART;
-						} else if (leafEndQ.find()) {
-							this.DotStat = DotTags.LEAFEND;
-						} else if (innerQ.find()) {
-							this.DotStat = DotTags.INTERNAL;
-						} else if (edgeQ.find()) {
-							this.DotStat = DotTags.EDGE;
-						} else if (suffLinkQ.find()) {
-							this.DotStat = DotTags.SUFFIXLINK;
-						}
-						
-						// Execute actions appropriate for the current search status.
-						switch (this.DotStat) {
-						case ROOT:
-							nodeFreq = this.gstXmlNodes.get(nodeNumber).getNodeFrequency();
-							this.rootNode = new Dot2TreeInnerNodesParent(nodeNumber, nodeFreq, "node1", "");
-							
-							// Set tree depth for the root node.
-							this.rootNode.setNodeDepth(0);
-							this.dot2TreeNodesMap.put(nodeNumber, rootNode);
-							this.DotStat = DotTags.UNDEFINED;
-							break;
-							
-						case LEAFSTART:
-							leafInfo += currLine;
-							break;
-							
-						case LEAFEND:
-							// Add the end of the leaf to leafInfo.
-							leafInfo += currLine;
-							
-							// Define an appropriate matcher to get the different groups from the leaf node string.
-							Matcher leafQ = leafPat.matcher(leafInfo);
-						
-							leafQ.find();
-							nodeNumber = Integer.parseInt(leafQ.group(2));
-							nodeFreq = this.gstXmlNodes.get(nodeNumber).getNodeFrequency();
-							
-							
-							// Create new dot2TreeLeafNode object and save it in the TreeMap dot2TreeNodesMap.
-							this.dot2TreeNodesMap.put(nodeNumber, new Dot2TreeLeafNode(nodeNumber, nodeFreq, leafQ.group(1)));
-							
-							// Save information about text number, starting point of occurrence and end point in the ArrayList
-							// "nodeLeafInfo" temporarily.
-							String [] tokenArray = leafQ.group(3).split(" ");
-							
-							/* Start with index i = 1 to skip the first (empty) element of the array "tokenArray". 
-							 * Due the chosen pattern the string starts with " ".
-							 * Hence, the first element after splitting for each " " will be an empty string. 
-							 * This first element must be skipped.
-							 */
-							for (int i = 1; i < tokenArray.length; i++) 
-								nodeLeafInfo.add(Integer.parseInt(tokenArray[i]));
-												
-							// Fill the fields for the new Dot2TreeLeafNode object with information gathered from the "nodeLeafInfo" ArrayList.
-							for (int i = 0; i < (nodeLeafInfo.size()/3); i ++)
-								((Dot2TreeLeafNode) this.dot2TreeNodesMap.get(nodeNumber)).setLeafInfo(
-										nodeLeafInfo.get(i*3), nodeLeafInfo.get(i*3+1), nodeLeafInfo.get(i*3+2));
-							
-							// Reset leafInfo.
-							leafInfo = "";
-							
-							// Reset nodeLeafInfo.
-							nodeLeafInfo.clear();
-							this.DotStat = DotTags.UNDEFINED;
-							break;
-							
-						case INTERNAL:
-							nodeNumber = Integer.parseInt(innerQ.group(2));
-							nodeFreq = this.gstXmlNodes.get(nodeNumber).getNodeFrequency();
-							
-							// Attention I used here a different class to represent internal nodes. This class also holds informations 
-							// about direct parental nodes.
-							this.dot2TreeNodesMap.put(nodeNumber, new Dot2TreeInnerNodesParent (nodeNumber, nodeFreq, innerQ.group(1)));
-							this.DotStat = DotTags.UNDEFINED;
-							break;
-						
-						case EDGE:
-							node1Number = Integer.parseInt(edgeQ.group(2));
-							node2Number = Integer.parseInt(edgeQ.group(4));
-							String edgeLabel = edgeQ.group(5);
-							this.dot2TreeNodesMap.get(node2Number).setEdgeLabel(edgeLabel);
-							if (this.dot2TreeNodesMap.get(node2Number).getClass().equals(Dot2TreeInnerNodesParent.class)) {
-								
-								// Add edge between two internal nodes.
-								((Dot2TreeInnerNodesParent) this.dot2TreeNodesMap.get(node1Number))
-									.addInnerNode(node2Number,((Dot2TreeInnerNodesParent)this.dot2TreeNodesMap.get(node2Number)));
-								
-								// Add the number of the direct parent for node "node2Number".
-								((Dot2TreeInnerNodesParent) this.dot2TreeNodesMap.get(node2Number))
-									.setParent( ((Dot2TreeInnerNodesParent)this.dot2TreeNodesMap.get(node1Number)).getNodeNumber() );
-								
-							}
-							else if (this.dot2TreeNodesMap.get(node2Number).getClass().equals(Dot2TreeLeafNode.class))
-								((Dot2TreeInnerNodesParent) this.dot2TreeNodesMap.get(node1Number))
-									.addLeaf(node2Number,((Dot2TreeLeafNode)this.dot2TreeNodesMap.get(node2Number)));
-							this.DotStat = DotTags.UNDEFINED;
-							break;
-						
-						case SUFFIXLINK:
-							node1Number = Integer.parseInt(suffLinkQ.group(2));
-							node2Number = Integer.parseInt(suffLinkQ.group(4));
-							((Dot2TreeInnerNodesParent) this.dot2TreeNodesMap.get(node1Number)).setSuffixLinks(node2Number);
-													
-							this.DotStat = DotTags.UNDEFINED;
-							break;
-							
-						default: 
-							break;
-						}
-					}
-				
-				// Read next charsplitWords.
-				charCode = this.getInputPorts().get(INPUTDOTID).getInputReader().read(bufferInput, 0, bufferSize);
-				
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-				
-				// Delete the current lines in the inputString.
-				this.inputString = "";
-	
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+	private void convertString2TreeNodes () throws Exception {
+		Dot2TreeNodesBuilder builder = new Dot2TreeNodesBuilder(this.dot2TreeNodesMap, this.gstXmlNodes, true);
+		new DotTreeParser(this.getInputPorts().get(INPUTDOTID).getInputReader()).parse(builder);
+		this.rootNode = (Dot2TreeInnerNodesParent) builder.getRootNode();
 	}
 	
 	/**
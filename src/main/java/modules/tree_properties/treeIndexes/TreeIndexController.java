@@ -1,7 +1,7 @@
 package modules.tree_properties.treeIndexes;
 
 // Java I/O imports.
-import java.io.PipedReader;
+import java.io.Reader;
 
 // Java math imports.
 import java.math.BigInteger;
@@ -160,7 +160,7 @@ public class TreeIndexController extends ModuleImpl {
 	
 	//setters:
 		
-	public void setGson(PipedReader reader) {
+	public void setGson(Reader reader) {
 		gson = new Gson();
 		this.rootNode = gson.fromJson(reader, Dot2TreeInnerNode.class);
 	}
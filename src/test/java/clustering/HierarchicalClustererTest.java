@@ -0,0 +1,162 @@
+package clustering;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import modules.tree_building.suffixTreeClustering.clustering.hierarchical.HierarchicalCluster;
+import modules.tree_building.suffixTreeClustering.clustering.hierarchical.HierarchicalClusterer;
+import modules.tree_building.suffixTreeClustering.clustering.hierarchical.SimilarityMeasure;
+import modules.tree_building.suffixTreeClustering.data.Type;
+import modules.tree_building.suffixTreeClustering.features.FeatureVector;
+
+import org.junit.Test;
+
+public class HierarchicalClustererTest {
+
+	@Test
+	public void testRandomVectors() {
+		Random random = new Random(5);
+		for (int k = 0; k < 60; k++) {
+			int n = 2 + random.nextInt(30);
+			int dimensions = 1 + random.nextInt(4);
+			int range = 1 + random.nextInt(k % 2 == 0 ? 3 : 100);
+			List<Type> types = new ArrayList<Type>();
+			for (int i = 0; i < n; i++) {
+				double[] values = new double[dimensions];
+				for (int d = 0; d < dimensions; d++)
+					values[d] = random.nextInt(range);
+				types.add(type(values, i));
+			}
+			this.assertSameDendrogram(types);
+		}
+	}
+
+	@Test
+	public void testTies() {
+		// Points on a line with equal gaps: every neighbouring pair ties
+		List<Type> types = new ArrayList<Type>();
+		for (int i = 0; i < 16; i++)
+			types.add(type(new double[] { i }, i));
+		this.assertSameDendrogram(types);
+
+		// All distances equal
+		types = new ArrayList<Type>();
+		for (int i = 0; i < 10; i++) {
+			double[] values = new double[10];
+			values[i] = 1d;
+			types.add(type(values, i));
+		}
+		this.assertSameDendrogram(types);
+
+		// Duplicates (distance 0) and a grid
+		types = new ArrayList<Type>();
+		for (int i = 0; i < 20; i++)
+			types.add(type(new double[] { i % 4, (i / 4) % 3 }, i));
+		this.assertSameDendrogram(types);
+	}
+
+	private static Type type(double[] values, int id) {
+		Type type = new Type(new FeatureVector(values));
+		type.setTypeString("t" + id);
+		type.setID(id);
+		return type;
+	}
+
+	private void assertSameDendrogram(List<Type> types) {
+		for (SimilarityMeasure measure : SimilarityMeasure.values()) {
+			HierarchicalClusterer clusterer = new HierarchicalClusterer(types, measure);
+			clusterer.analyze();
+			HierarchicalCluster root = clusterer.getClusters().get(0);
+			assertEquals(measure + " " + types, NaiveClusterer.run(types, measure), dump(root, minimumAge(root)));
+		}
+	}
+
+	// Ages are counted globally; the leaves of one run have the smallest ones
+	private static int minimumAge(HierarchicalCluster cluster) {
+		if (cluster.getLeftChild() == null)
+			return cluster.getAge();
+		return Math.min(minimumAge(cluster.getLeftChild()), minimumAge(cluster.getRightChild()));
+	}
+
+	private static String dump(HierarchicalCluster cluster, int firstAge) {
+		if (cluster.getLeftChild() == null)
+			return (cluster.getAge() - firstAge) + ":" + cluster.getAllTypes().get(0).getID();
+		return (cluster.getAge() - firstAge) + "(" + dump(cluster.getLeftChild(), firstAge) + ","
+				+ dump(cluster.getRightChild(), firstAge) + ")";
+	}
+
+	/**
+	 * Clustering with a search over all cluster pairs in every step and the
+	 * linkage computed from all member distances (the implementation
+	 * HierarchicalClusterer used before the condensed matrix). Returns the
+	 * dendrogram in the format of dump().
+	 */
+	private static class NaiveClusterer {
+
+		static String run(List<Type> types, SimilarityMeasure measure) {
+			int n = types.size();
+			double[][] distances = new double[n][n];
+			for (int i = 0; i < n - 1; i++)
+				for (int j = i + 1; j < n; j++)
+					distances[i][j] = distances[j][i] = types.get(i).getVector().distance(types.get(j).getVector());
+
+			List<List<Integer>> members = new ArrayList<List<Integer>>();
+			List<String> dendrograms = new ArrayList<String>();
+			for (int i = 0; i < n; i++) {
+				List<Integer> member = new ArrayList<Integer>();
+				member.add(i);
+				members.add(member);
+				dendrograms.add(i + ":" + types.get(i).getID());
+			}
+
+			int age = n;
+			while (members.size() > 1) {
+				double smallest = Double.POSITIVE_INFINITY;
+				int c1 = 0;
+				int c2 = 0;
+				for (int i = 0; i < members.size() - 1; i++) {
+					for (int j = i + 1; j < members.size(); j++) {
+						double distance = linkage(members.get(i), members.get(j), distances, measure);
+						if (distance < smallest) {
+							smallest = distance;
+							c1 = i;
+							c2 = j;
+						}
+					}
+				}
+				List<Integer> merged = new ArrayList<Integer>(members.get(c1));
+				merged.addAll(members.get(c2));
+				members.set(c1, merged);
+				members.remove(c2);
+				dendrograms.set(c1, (age++) + "(" + dendrograms.get(c1) + "," + dendrograms.get(c2) + ")");
+				dendrograms.remove(c2);
+			}
+			return dendrograms.get(0);
+		}
+
+		private static double linkage(List<Integer> cluster1, List<Integer> cluster2, double[][] distances,
+				SimilarityMeasure measure) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = 0d;
+			double sum = 0d;
+			for (int i : cluster1) {
+				for (int j : cluster2) {
+					sum += distances[i][j];
+					min = Math.min(min, distances[i][j]);
+					max = Math.max(max, distances[i][j]);
+				}
+			}
+			switch (measure) {
+			case SINGLE_LINK:
+				return min;
+			case COMPLETE_LINK:
+				return max;
+			default:
+				return sum / (cluster1.size() + cluster2.size());
+			}
+		}
+	}
+}
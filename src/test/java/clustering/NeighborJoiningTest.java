@@ -0,0 +1,176 @@
+package clustering;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import modules.tree_building.suffixTreeClustering.clustering.neighborjoin.NJNode;
+import modules.tree_building.suffixTreeClustering.clustering.neighborjoin.NeighborJoining;
+import modules.tree_building.suffixTreeClustering.data.Type;
+import modules.tree_building.suffixTreeClustering.features.FeatureVector;
+
+import org.junit.Test;
+
+public class NeighborJoiningTest {
+
+	@Test
+	public void testWordVectors() {
+		String[] inputs = { "aa$bb$aa$bb$aa$", "aab$bba$aabccd$aabbba$bbaaab$", "petra$peter$ab$",
+				"aaa$aab$aac$aad$aba$abb$abc$abd$aca$acb$acc$acd$ada$adb$adc$add$baa$bab$bac$bad$" };
+		for (String input : inputs) {
+			String[] words = input.split("(?<=\\$)");
+			List<Type> types = new ArrayList<Type>();
+			for (int i = 0; i < words.length; i++) {
+				double[] values = new double[27];
+				for (char ch : words[i].toCharArray())
+					values[ch == '$' ? 26 : ch - 'a']++;
+				types.add(type(values, words[i] + i));
+			}
+			this.assertSameTree(types);
+		}
+	}
+
+	@Test
+	public void testRandomVectors() {
+		Random random = new Random(1);
+		for (int k = 0; k < 100; k++) {
+			int n = 3 + random.nextInt(40);
+			int dimensions = 1 + random.nextInt(5);
+			int range = 1 + random.nextInt(k % 2 == 0 ? 3 : 100);
+			List<Type> types = new ArrayList<Type>();
+			for (int i = 0; i < n; i++) {
+				double[] values = new double[dimensions];
+				for (int d = 0; d < dimensions; d++)
+					values[d] = random.nextInt(range);
+				types.add(type(values, "t" + i));
+			}
+			this.assertSameTree(types);
+		}
+	}
+
+	@Test
+	public void testTies() {
+		// All distances equal: every pair has the same Q value, the first one has to win in every step
+		List<Type> types = new ArrayList<Type>();
+		for (int i = 0; i < 12; i++) {
+			double[] values = new double[12];
+			values[i] = 1d;
+			types.add(type(values, "e" + i));
+		}
+		this.assertSameTree(types);
+
+		// Points on a grid: many (but not all) pairs tie
+		types = new ArrayList<Type>();
+		for (int i = 0; i < 25; i++)
+			types.add(type(new double[] { i % 5, i / 5 }, "g" + i));
+		this.assertSameTree(types);
+	}
+
+	private static Type type(double[] values, String name) {
+		Type type = new Type(new FeatureVector(values));
+		type.setTypeString(name);
+		return type;
+	}
+
+	private void assertSameTree(List<Type> types) {
+		NeighborJoining neighborJoining = new NeighborJoining(types);
+		neighborJoining.start();
+		assertEquals(dump(NaiveNeighborJoining.run(types)), dump(neighborJoining.getRoot()));
+	}
+
+	private static String dump(NJNode node) {
+		StringBuilder result = new StringBuilder(node.getLabel()).append(':').append(node.getBranchLength()).append('(');
+		for (NJNode child : node.getChildren())
+			result.append(dump(child)).append(',');
+		return result.append(')').toString();
+	}
+
+	/**
+	 * Neighbor joining with a full search for the minimal pair in every step
+	 * (the implementation NeighborJoining used before the bounded search).
+	 */
+	private static class NaiveNeighborJoining {
+
+		static NJNode run(List<Type> types) {
+			int numCluster = types.size();
+			double[][] distances = new double[numCluster][numCluster];
+			for (int i = 0; i < numCluster; i++)
+				for (int j = 0; j < numCluster; j++)
+					distances[i][j] = types.get(i).getVector().distance(types.get(j).getVector());
+
+			NJNode root = new NJNode(null, "root");
+			String[] names = new String[numCluster];
+			int[] alias = new int[numCluster];
+			for (int i = 0; i < numCluster; i++) {
+				root.addChild(new NJNode(root, types.get(i)));
+				names[i] = types.get(i).getString();
+				alias[i] = i;
+			}
+
+			double[] r = new double[numCluster];
+			int newIndex = 1;
+			int bestI, bestJ;
+			while (true) {
+				for (int i = 0; i < numCluster; i++) {
+					r[i] = 0.0f;
+					for (int j = 0; j < numCluster; j++)
+						r[i] += distances[alias[i]][alias[j]];
+					r[i] /= (numCluster - 2);
+				}
+				bestI = 0;
+				bestJ = 0;
+				double min = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < numCluster - 1; i++) {
+					for (int j = i + 1; j < numCluster; j++) {
+						double m = distances[alias[i]][alias[j]] - r[i] - r[j];
+						if (m < min) {
+							min = m;
+							bestI = i;
+							bestJ = j;
+						}
+					}
+				}
+
+				NJNode child1 = root.getChildByName(names[alias[bestI]]);
+				NJNode child2 = root.getChildByName(names[alias[bestJ]]);
+				double dij = distances[alias[bestI]][alias[bestJ]];
+				double liu = (dij / 2) + ((r[bestI] - r[bestJ]) / 2);
+				child1.setBranchLength(liu);
+				child2.setBranchLength(dij - liu);
+				if (numCluster == 3)
+					break;
+
+				int aliasBestI = alias[bestI];
+				for (int k = 0; k < numCluster; k++) {
+					if (k != bestI && k != bestJ) {
+						distances[alias[k]][aliasBestI] = distances[aliasBestI][alias[k]] = updatedDistance(distances,
+								alias, bestI, bestJ, k);
+					}
+				}
+				distances[aliasBestI][aliasBestI] = 0.0;
+
+				NJNode newNode = new NJNode(root, "U" + (newIndex++));
+				newNode.addChild(child1);
+				newNode.addChild(child2);
+				newNode.addDocuments(child1.getClusteredDocuments());
+				newNode.addDocuments(child2.getClusteredDocuments());
+				root.removeChild(child1);
+				root.removeChild(child2);
+				root.addChild(newNode);
+				names[aliasBestI] = newNode.getLabel();
+
+				for (int i = bestJ; i < numCluster - 1; i++)
+					alias[i] = alias[i + 1];
+				numCluster--;
+			}
+			root.getChild(bestJ).setBranchLength(updatedDistance(distances, alias, bestI, bestJ, 2));
+			return root;
+		}
+
+		private static double updatedDistance(double[][] distances, int[] alias, int i, int j, int k) {
+			return (distances[alias[k]][alias[i]] + distances[alias[k]][alias[j]] - distances[alias[i]][alias[j]]) / 2.0;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package misc;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import modules.basic_text_processing.burrows_wheeler.BurrowsWheelerTransform;
+import modules.basic_text_processing.burrows_wheeler.FmIndex;
+import modules.basic_text_processing.burrows_wheeler.SuffixArray;
+
+public class BurrowsWheelerTransformTest {
+
+	@Test
+	public void testSuffixArray() {
+		final Random random = new Random(1);
+		for (int k = 0; k < 500; k++) {
+			final String str = randomString(random, random.nextInt(40), "aab$");
+			final int[] sa = SuffixArray.build(str);
+
+			// compare to naively sorted suffixes
+			final String[] suffixes = new String[str.length()];
+			for (int i = 0; i < str.length(); i++)
+				suffixes[i] = str.substring(i);
+			Arrays.sort(suffixes);
+			assertEquals(str.length(), sa.length);
+			for (int i = 0; i < sa.length; i++)
+				assertEquals(suffixes[i], str.substring(sa[i]));
+		}
+	}
+
+	@Test
+	public void testTransform() {
+		assertEquals("annb$aa", BurrowsWheelerTransform.transform("banana$"));
+		assertEquals("banana$", BurrowsWheelerTransform.reverseTransform("annb$aa", '$'));
+		assertEquals("", BurrowsWheelerTransform.transform(""));
+		assertNull(BurrowsWheelerTransform.reverseTransform("abc", '$'));
+
+		final Random random = new Random(2);
+		for (int k = 0; k < 500; k++) {
+			// repeated strings result in rotations that are equal
+			String str = randomString(random, random.nextInt(20), "ab c");
+			if (random.nextBoolean())
+				str = str + str;
+			str = str + "$";
+
+			final String transformed = BurrowsWheelerTransform.transform(str);
+			assertEquals(naiveTransform(str), transformed);
+			assertEquals(str, BurrowsWheelerTransform.reverseTransform(transformed, '$'));
+		}
+	}
+
+	@Test
+	public void testFmIndex() throws IOException {
+		final Random random = new Random(3);
+		for (int k = 0; k < 200; k++) {
+			// texts with more than 256 distinct chars are stored differently
+			final String text = (k % 4 == 3) ? randomString(random, 2000, largeAlphabet())
+					: randomString(random, random.nextInt(300), "ab c");
+			FmIndex index = FmIndex.build(text, 1 + random.nextInt(8));
+
+			// the index has to survive writing and reading
+			if (k % 2 == 0) {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				index.write(out);
+				index = FmIndex.read(new ByteArrayInputStream(out.toByteArray()));
+			}
+			assertEquals(text.length(), index.length());
+
+			for (int q = 0; q < 20; q++) {
+				// patterns taken from the text as well as random ones
+				String pattern;
+				if (q % 2 == 0 && text.length() > 0) {
+					final int start = random.nextInt(text.length());
+					pattern = text.substring(start, Math.min(text.length(), start + 1 + random.nextInt(5)));
+				} else {
+					pattern = randomString(random, 1 + random.nextInt(3), "ab cz");
+				}
+
+				final List<Integer> expected = new ArrayList<Integer>();
+				for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1))
+					expected.add(i);
+
+				assertEquals(expected.size(), index.count(pattern));
+				final int[] positions = index.locate(pattern);
+				assertEquals(expected.size(), positions.length);
+				for (int i = 0; i < positions.length; i++)
+					assertEquals(expected.get(i).intValue(), positions[i]);
+			}
+		}
+	}
+
+	private static String largeAlphabet() {
+		final StringBuilder sb = new StringBuilder("ab cz");
+		for (char c = '\u0400'; c < '\u0600'; c++)
+			sb.append(c);
+		return sb.toString();
+	}
+
+	private static String naiveTransform(String str) {
+		final String[] rotations = new String[str.length()];
+		for (int i = 0; i < str.length(); i++)
+			rotations[i] = str.substring(i) + str.substring(0, i);
+		Arrays.sort(rotations);
+		final StringBuilder sb = new StringBuilder();
+		for (String rotation : rotations)
+			sb.append(rotation.charAt(str.length() - 1));
+		return sb.toString();
+	}
+
+	private static String randomString(Random random, int length, String alphabet) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,133 @@
+package models;
+
+import java.util.Random;
+
+import modules.clustering.treeSimilarityClustering.NodeComparator;
+import modules.clustering.treeSimilarityClustering.SubtreeSignatures;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class CompactTreeTest {
+
+	@Test
+	public void builderTest() {
+		CompactTree.Builder builder = new CompactTree.Builder();
+		int root = builder.addRoot("^", 3);
+		int b = builder.addChild(root, "b", "b", 1);
+		int a = builder.addChild(root, "a", null, 2);
+		int ab = builder.addChild(a, "b", "b", 1);
+		builder.setAttribute(a, "count", 7);
+		builder.setAttribute(ab, "weight", 0.5d);
+		builder.setAttribute(b, "mixed", 1);
+		builder.setAttribute(ab, "mixed", "x");
+		CompactTree tree = builder.build();
+
+		// children are sorted by key
+		Assert.assertEquals(a, tree.getChild(root, 0));
+		Assert.assertEquals(b, tree.getChild(root, 1));
+		Assert.assertEquals(ab, tree.findChild(a, "b"));
+		Assert.assertEquals(-1, tree.findChild(a, "c"));
+		Assert.assertSame(tree.getView(ab), tree.getView(a).getChildNode("b"));
+		Assert.assertNull(tree.getView(a).getChildNode("c"));
+
+		// typed and mixed attributes
+		Assert.assertEquals(7, tree.getIntAttribute(a, "count"));
+		Assert.assertEquals(0.5d, tree.getDoubleAttribute(ab, "weight"), 0d);
+		Assert.assertEquals(Integer.valueOf(1), tree.getAttribute(b, "mixed"));
+		Assert.assertEquals("x", tree.getAttribute(ab, "mixed"));
+		Assert.assertNull(tree.getAttribute(b, "count"));
+
+		// views
+		ExtensibleTreeNode view = tree.getRoot();
+		Assert.assertSame(view.getChildNodes().get("a"), tree.getView(a));
+		Assert.assertNull(view.getChildNodes().get("a").getNodeValue());
+		Assert.assertEquals(2, view.getChildNodes().get("a").getNodeCounter());
+	}
+
+	@Test
+	public void serialisationTest() {
+		ExtensibleTreeNode node = new ExtensibleTreeNode("1");
+		node.setNodeCounter(5);
+		node.getAttributes().put("doubleCounter", new Double(3));
+		node.getAttributes().put("text", "this is the parent node");
+
+		ExtensibleTreeNode node2 = new ExtensibleTreeNode();
+		node2.setNodeCounter(2);
+		node2.getAttributes().put("doubleCounter", new Double(4));
+		node.getChildNodes().put("child", node2);
+
+		// views are written like the nodes they were copied from
+		Gson gson = new GsonBuilder().setPrettyPrinting()
+				.registerTypeAdapter(CompactTreeNode.class, new CompactTreeNode.JsonAdapter()).create();
+		String json = gson.toJson(node);
+		Assert.assertEquals(json, gson.toJson(CompactTree.fromTree(node).getRoot()));
+
+		ExtensibleTreeNode node3 = new Gson().fromJson(json, ExtensibleTreeNode.class);
+		Assert.assertEquals(4d, node3.getChildNodes().get("child").getAttributes().get("doubleCounter"));
+	}
+
+	@Test
+	public void nodeComparatorTest() {
+		Random random = new Random(7);
+		for (int i = 0; i < 20; i++) {
+			ExtensibleTreeNode tree1 = randomTree(random, 4);
+			ExtensibleTreeNode tree2 = randomTree(random, 4);
+			ExtensibleTreeNode view1 = CompactTree.fromTree(tree1).getRoot();
+			ExtensibleTreeNode view2 = CompactTree.fromTree(tree2).getRoot();
+
+			// merging comparison
+			NodeComparator comparator = new NodeComparator(-1, 1d, false);
+			double expected = comparator.vergleiche(tree1, tree2);
+			Assert.assertEquals(expected, comparator.vergleiche(view1, view2), 1e-9);
+			Assert.assertEquals(expected, comparator.vergleiche(tree1, view2), 1e-9);
+
+			// comparison by subtree signatures
+			SubtreeSignatures signatures = new SubtreeSignatures();
+			signatures.add(view1);
+			signatures.add(view2);
+			comparator.setSignaturen(signatures);
+			Assert.assertEquals(expected, comparator.vergleiche(view1, view2), 1e-9);
+		}
+	}
+
+	private static ExtensibleTreeNode randomTree(Random random, int depth) {
+		ExtensibleTreeNode node = new ExtensibleTreeNode(String.valueOf((char) ('a' + random.nextInt(3))));
+		node.setNodeCounter(1 + random.nextInt(5));
+		if (depth > 0) {
+			int children = random.nextInt(4);
+			for (int i = 0; i < children; i++)
+				node.getChildNodes().put(String.valueOf((char) ('a' + random.nextInt(4))), randomTree(random, depth - 1));
+		}
+		return node;
+	}
+
+	@Test
+	public void attributeTypeTest() {
+		CompactTree.Builder builder = new CompactTree.Builder();
+		int root = builder.addRoot("^", 1);
+		int a = builder.addChild(root, "a", "a", 1);
+		builder.setAttribute(root, "count", 3);
+		try {
+			builder.setAttribute(a, "count", 0.5d);
+			Assert.fail("Setting a double in an int column should fail.");
+		} catch (IllegalArgumentException e) {
+			// the node must not be marked as having the attribute
+		}
+		CompactTree tree = builder.build();
+		Assert.assertEquals(Integer.valueOf(3), tree.getAttribute(root, "count"));
+		Assert.assertNull(tree.getAttribute(a, "count"));
+		Assert.assertFalse(tree.getAttributes(a).containsKey("count"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnlyTest() {
+		CompactTree.Builder builder = new CompactTree.Builder();
+		builder.addRoot("^", 1);
+		builder.build().getRoot().setNodeCounter(2);
+	}
+
+}
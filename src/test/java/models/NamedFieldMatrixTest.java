@@ -3,6 +3,9 @@ package models;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+
 import org.junit.Test;
 
 public class NamedFieldMatrixTest {
@@ -177,6 +180,38 @@ public class NamedFieldMatrixTest {
 		assertTrue(matrix.getHammingDistanceForColumns(0, 1) == 1);
 	}
 
+	@Test
+	public void readCSVTest() {
+		try {
+			// sum up each column while reading, without building a matrix
+			final double[] sums = new double[4];
+			NamedFieldMatrix.readCSV(new StringReader(CSV), ",", new NamedFieldMatrix.RowVisitor() {
+				@Override
+				public void visitHeader(String[] columnNames) {
+					assertTrue(columnNames.length == 4 && columnNames[0].equals("data1"));
+				}
+
+				@Override
+				public void visitRow(String rowName, double[] values) {
+					for (int i = 0; i < values.length; i++) {
+						sums[i] += values[i];
+					}
+				}
+			});
+			assertTrue(sums[0] == 2.1d + 14.64d);
+			assertTrue(sums[2] == 3.5d + 1.2d + 2.6d);
+
+			// streamed output should equal the header and lines
+			NamedFieldMatrix matrix = NamedFieldMatrix.parseCSV(CSV, ",");
+			StringWriter writer = new StringWriter();
+			matrix.writeCSV(writer);
+			assertTrue(writer.toString().equals(CSV));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
 	private NamedFieldMatrix makeTestMatrix() {
 		NamedFieldMatrix matrix = new NamedFieldMatrix();
 		matrix.addValue("set1", "data1", 1.1d);
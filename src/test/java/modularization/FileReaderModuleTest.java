@@ -0,0 +1,87 @@
+package modularization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import modules.CharPipe;
+import modules.InputPort;
+import modules.ModuleNetwork;
+import modules.input_output.FileReaderModule;
+
+import org.junit.Test;
+
+public class FileReaderModuleTest {
+
+	// Supplementary chars that compose under NFC (U+11131 U+11127 -> U+1112E)
+	// between BMP text
+	private static final String INPUT = "a\uD804\uDD31\uD804\uDD27b\uD804\uDD31\uD804\uDD27\u0301c";
+
+	@Test
+	public void testStreamedNormalisationWithSurrogates() throws Exception {
+		String expected = Normalizer.normalize(INPUT, Form.NFC);
+
+		// UTF-16 is not chunkable and gets streamed
+		File file = File.createTempFile("frtest", ".txt");
+		file.deleteOnExit();
+		this.write(file, INPUT.getBytes("UTF-16LE"), false);
+		assertEquals(expected, this.read(file, "UTF-16LE", false));
+
+		// as do compressed files
+		this.write(file, INPUT.getBytes("UTF-8"), true);
+		assertEquals(expected, this.read(file, "UTF-8", true));
+	}
+
+	private void write(File file, byte[] bytes, boolean gzip) throws IOException {
+		OutputStream outputStream = new FileOutputStream(file);
+		if (gzip)
+			outputStream = new GZIPOutputStream(outputStream);
+		try {
+			outputStream.write(bytes);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	private String read(File file, String encoding, boolean gzip) throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty(FileReaderModule.PROPERTYKEY_INPUTFILE, file.getAbsolutePath());
+		properties.setProperty(FileReaderModule.PROPERTYKEY_ENCODING, encoding);
+		properties.setProperty(FileReaderModule.PROPERTYKEY_USEGZIP, Boolean.toString(gzip));
+		// every read ends between the chars of a surrogate pair at some point
+		properties.setProperty(FileReaderModule.PROPERTYKEY_BUFFERLENGTH, "1");
+		FileReaderModule fileReader = new FileReaderModule(new ModuleNetwork(), properties);
+		fileReader.applyProperties();
+
+		InputPort inputPort = new InputPort("input", "", null);
+		inputPort.addSupportedPipe(CharPipe.class);
+		final CharPipe pipe = new CharPipe();
+		new ModuleNetwork().addConnection(fileReader.getOutputPorts().get("output"), inputPort, pipe);
+
+		final StringBuilder result = new StringBuilder();
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					char[] buffer = new char[64];
+					int read;
+					while ((read = pipe.read(buffer, 0, buffer.length)) != -1)
+						result.append(buffer, 0, read);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		reader.start();
+		fileReader.process();
+		reader.join();
+		return result.toString();
+	}
+}
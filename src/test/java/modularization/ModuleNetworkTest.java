@@ -8,6 +8,10 @@ import java.util.Properties;
 import modules.CharPipe;
 import modules.ModuleImpl;
 import modules.ModuleNetwork;
+import modules.ModuleNetworkRun;
+import modules.ModuleScheduler;
+import modules.PoolModuleScheduler;
+import modules.ThreadModuleScheduler;
 import modules.input_output.ConsoleWriterModule;
 import modules.input_output.FileFinderModule;
 import modules.input_output.FileWriterModule;
@@ -19,6 +23,16 @@ public class ModuleNetworkTest {
 
 	@Test
 	public void test() throws Exception {
+		this.runNetwork(new ThreadModuleScheduler());
+	}
+
+	@Test
+	public void testPoolScheduler() throws Exception {
+		// A single worker must not deadlock modules connected by pipes
+		this.runNetwork(new PoolModuleScheduler(1));
+	}
+
+	private void runNetwork(ModuleScheduler scheduler) throws Exception {
 		
 		String oancLoc0 = "src"+File.separator+"test"+File.separator+"data"+File.separator;
 		
@@ -31,6 +45,7 @@ public class ModuleNetworkTest {
 		
 		// Set up module tree
 		ModuleNetwork moduleNetwork = new ModuleNetwork();
+		moduleNetwork.setScheduler(scheduler);
 		
 		// Prepare FileFinderModule module
 		Properties oancProperties = new Properties();
@@ -100,9 +115,11 @@ public class ModuleNetworkTest {
 		
 		// Run modules in tree
 		System.out.println("Attempting to run module tree");
-		moduleNetwork.runModules(true);
+		ModuleNetworkRun run = moduleNetwork.runModules(true);
 		
-		assertTrue(true);
+		// The call returns once every module has called back
+		assertTrue(run.isDone());
+		assertTrue(run.getFailedModules().isEmpty());
 	}
 
 }
@@ -0,0 +1,158 @@
+package modularization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import modules.BytePipe;
+import modules.CharPipe;
+import modules.InputPort;
+import modules.ModuleNetwork;
+import modules.ObjectPipe;
+import modules.OutputPort;
+import modules.Pipe;
+
+import org.junit.Test;
+
+public class PipeTest {
+
+	@Test
+	public void testCharPipeTransfer() throws Exception {
+		// Small capacity forces wrap-around and blocking on both sides
+		final CharPipe pipe = new CharPipe(16);
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+			expected.append(i).append(' ');
+
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					String data = expected.toString();
+					int offset = 0;
+					while (offset < data.length()) {
+						int end = Math.min(data.length(), offset + 7);
+						pipe.write(data.substring(offset, end));
+						offset = end;
+					}
+					pipe.writeClose();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		writer.start();
+
+		StringBuilder result = new StringBuilder();
+		char[] buffer = new char[5];
+		int read;
+		while ((read = pipe.read(buffer, 0, buffer.length)) != -1)
+			result.append(buffer, 0, read);
+		writer.join();
+
+		assertEquals(expected.toString(), result.toString());
+	}
+
+	@Test
+	public void testBytePipeTransfer() throws Exception {
+		final BytePipe pipe = new BytePipe(32);
+		final byte[] expected = new byte[100000];
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = (byte) (i * 31);
+
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					pipe.write(expected, 0, expected.length);
+					pipe.writeClose();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		writer.start();
+
+		byte[] result = new byte[expected.length];
+		int offset = 0;
+		int read;
+		while ((read = pipe.read(result, offset, Math.min(13, result.length - offset))) > 0)
+			offset += read;
+		assertEquals(-1, pipe.getInput().read());
+		writer.join();
+
+		assertEquals(expected.length, offset);
+		assertTrue(Arrays.equals(expected, result));
+	}
+
+	@Test
+	public void testWriteAfterReadClose() throws Exception {
+		CharPipe pipe = new CharPipe(4);
+		pipe.readClose();
+		try {
+			pipe.write("test");
+			fail("Writing to a pipe closed by the reader should fail.");
+		} catch (IOException e) {
+			assertTrue(true);
+		}
+	}
+
+	@Test
+	public void testReadAfterWriteAbort() throws Exception {
+		final CharPipe pipe = new CharPipe(16);
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					pipe.write("partial");
+					pipe.writeAbort();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		writer.start();
+
+		// The data written before the abort is delivered, then the reader fails instead of getting EOF
+		StringBuilder result = new StringBuilder();
+		char[] buffer = new char[4];
+		try {
+			int read;
+			while ((read = pipe.read(buffer, 0, buffer.length)) != -1)
+				result.append(buffer, 0, read);
+			fail("Reading from an aborted pipe should fail.");
+		} catch (IOException e) {
+			assertEquals("partial", result.toString());
+		}
+		writer.join();
+	}
+
+	@Test
+	public void testObjectPipeNegotiation() throws Exception {
+		OutputPort outputPort = new OutputPort("out", "", null);
+		outputPort.addSupportedPipe(ObjectPipe.class);
+		outputPort.addSupportedPipe(CharPipe.class);
+		InputPort objectInputPort = new InputPort("objects", "", null);
+		objectInputPort.addSupportedPipe(ObjectPipe.class);
+		objectInputPort.addSupportedPipe(CharPipe.class);
+		InputPort charInputPort = new InputPort("chars", "", null);
+		charInputPort.addSupportedPipe(CharPipe.class);
+
+		// Object pipe is preferred if both ports support it, char pipe is the fallback
+		Pipe pipe = ModuleNetwork.getCompatiblePipe(outputPort, objectInputPort);
+		assertEquals(ObjectPipe.class, pipe.getClass());
+		assertEquals(CharPipe.class, ModuleNetwork.getCompatiblePipe(outputPort, charInputPort).getClass());
+
+		new ModuleNetwork().addConnection(outputPort, objectInputPort, pipe);
+		Object payload = new Object();
+		outputPort.outputToAllObjectPipes(payload);
+		outputPort.close();
+		assertTrue(payload == objectInputPort.readObject(Object.class));
+		assertNull(objectInputPort.readObject(Object.class));
+	}
+
+}
@@ -0,0 +1,84 @@
+package suffixTree;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import models.GstLabelData;
+import modules.tree_building.suffixTree.GST;
+import modules.tree_building.suffixTree.ITreeWalkerListener;
+import modules.tree_building.suffixTree.ResultLabelListListener;
+import modules.tree_building.suffixTree.ResultToGstLabelDataListener;
+import modules.tree_building.suffixTree.SuffixTree;
+import modules.tree_building.suffixTree.TreeWalker;
+
+public class TreeWalkerTest {
+
+	private static final String INPUT = "aab$bba$aabccd$aabbba$bbaaab$abcabxabcd$aa$bb$aa$";
+
+	@Test
+	public void testParallelWalkMatchesSequentialWalk() throws Exception {
+		// label lists
+		SuffixTree tree = GST.buildGST(INPUT);
+		final ResultLabelListListener labels = new ResultLabelListListener(tree);
+		TreeWalker.walk(tree.getRoot(), tree, labels);
+
+		tree = GST.buildGST(INPUT);
+		final ResultLabelListListener parallelLabels = new ResultLabelListListener(tree);
+		TreeWalker.walkParallel(tree.getRoot(), tree, parallelLabels);
+
+		final Set<String> expectedLabels = labels.getLabels();
+		assertFalse(expectedLabels.isEmpty());
+		assertEquals(expectedLabels, parallelLabels.getLabels());
+
+		// label data (lists of values per label have to keep their order)
+		tree = GST.buildGST(INPUT);
+		final ResultToGstLabelDataListener data = new ResultToGstLabelDataListener(tree);
+		TreeWalker.walk(tree.getRoot(), tree, data);
+
+		tree = GST.buildGST(INPUT);
+		final ResultToGstLabelDataListener parallelData = new ResultToGstLabelDataListener(tree);
+		TreeWalker.walkParallel(tree.getRoot(), tree, parallelData);
+
+		final Map<String, GstLabelData> expectedData = data.getLabelsToGstData();
+		final Map<String, GstLabelData> actualData = parallelData.getLabelsToGstData();
+		assertEquals(expectedData.keySet(), actualData.keySet());
+		for (String label : expectedData.keySet()) {
+			assertEquals(expectedData.get(label).toCsv(), actualData.get(label).toCsv());
+		}
+	}
+
+	@Test
+	public void testDeepTree() throws Exception {
+		// a single repeated letter results in a path as long as the input
+		final StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			input.append('a');
+		}
+		input.append('$');
+		final SuffixTree tree = GST.buildGST(input.toString());
+
+		final int[] maxLevel = { 0 };
+		final int[] balance = { 0 };
+		TreeWalker.walk(tree.getRoot(), tree, new ITreeWalkerListener() {
+			@Override
+			public void entryaction(int nodeNr, int level) throws IOException {
+				maxLevel[0] = Math.max(maxLevel[0], level);
+				balance[0]++;
+			}
+
+			@Override
+			public void exitaction(int nodeNr, int level) throws IOException {
+				balance[0]--;
+			}
+		});
+
+		assertEquals(100000, maxLevel[0]);
+		assertEquals(0, balance[0]);
+	}
+
+}
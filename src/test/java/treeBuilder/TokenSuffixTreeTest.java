@@ -0,0 +1,118 @@
+package treeBuilder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import models.ExtensibleTreeNode;
+import modules.tree_building.treeBuilder.TokenSuffixTree;
+
+import org.junit.Test;
+
+public class TokenSuffixTreeTest {
+
+	private static final String[] TOKENS = { "a", "b", "c", "ab" };
+
+	@Test
+	public void testRandomInputs() {
+		Random random = new Random(3);
+		for (int k = 0; k < 300; k++) {
+			// few distinct tokens, so that there are many repeats
+			int alphabet = 1 + random.nextInt(TOKENS.length);
+			List<List<String>> documents = new ArrayList<List<String>>();
+			int documentAmount = 1 + random.nextInt(4);
+			for (int d = 0; d < documentAmount; d++) {
+				List<String> document = new ArrayList<String>();
+				int length = random.nextInt(12);
+				for (int i = 0; i < length; i++)
+					document.add(TOKENS[random.nextInt(alphabet)]);
+				documents.add(document);
+			}
+
+			TokenSuffixTree tree = new TokenSuffixTree();
+			for (List<String> document : documents) {
+				tree.startDocument();
+				for (String token : document)
+					tree.addToken(token);
+			}
+
+			for (int maxDepth : new int[] { -1, 0, 1, 3 }) {
+				String delimiter = k % 2 == 0 ? " " : "|";
+				ExtensibleTreeNode atomic = suffixTrie(documents, maxDepth, delimiter);
+				ExtensibleTreeNode compact = compacted(atomic);
+				String message = documents + ", depth " + maxDepth;
+				assertEquals(message, dump(atomic), dump(tree.toExtensibleTree(false, maxDepth, delimiter, false)));
+				assertEquals(message, dump(compact), dump(tree.toExtensibleTree(true, maxDepth, delimiter, false)));
+				assertEquals(message, dump(atomic), dump(tree.toCompactTree(false, maxDepth, delimiter, false).getRoot()));
+				assertEquals(message, dump(compact), dump(tree.toCompactTree(true, maxDepth, delimiter, false).getRoot()));
+			}
+		}
+	}
+
+	/*
+	 * Inserts every suffix of every document (cut after maxDepth + 1 tokens)
+	 * into a trie with one node per token; counters are the amount of leaves
+	 * below.
+	 */
+	private static ExtensibleTreeNode suffixTrie(List<List<String>> documents, int maxDepth, String delimiter) {
+		int maxLength = maxDepth < 0 ? Integer.MAX_VALUE : maxDepth + 1;
+		ExtensibleTreeNode root = new ExtensibleTreeNode("^");
+		for (List<String> document : documents) {
+			for (int start = 0; start < document.size(); start++) {
+				ExtensibleTreeNode node = root;
+				for (int i = start; i < document.size() && i - start < maxLength; i++) {
+					String key = document.get(i) + delimiter;
+					ExtensibleTreeNode child = node.getChildNodes().get(key);
+					if (child == null) {
+						child = new ExtensibleTreeNode(key);
+						node.getChildNodes().put(key, child);
+					}
+					node = child;
+				}
+			}
+		}
+		countLeaves(root);
+		return root;
+	}
+
+	private static int countLeaves(ExtensibleTreeNode node) {
+		int leaves = 0;
+		for (ExtensibleTreeNode child : node.getChildNodes().values())
+			leaves += countLeaves(child);
+		node.setNodeCounter(Math.max(1, leaves));
+		return leaves == 0 ? 1 : leaves;
+	}
+
+	/*
+	 * Merges every chain of nodes with a single child (below the root) into
+	 * one node.
+	 */
+	private static ExtensibleTreeNode compacted(ExtensibleTreeNode node) {
+		ExtensibleTreeNode result = new ExtensibleTreeNode(node.getNodeValue());
+		result.setNodeCounter(node.getNodeCounter());
+		for (Entry<String, ExtensibleTreeNode> entry : node.getChildNodes().entrySet()) {
+			String key = entry.getKey();
+			ExtensibleTreeNode child = entry.getValue();
+			while (child.getChildNodes().size() == 1) {
+				Entry<String, ExtensibleTreeNode> next = child.getChildNodes().firstEntry();
+				key += next.getKey();
+				child = next.getValue();
+			}
+			ExtensibleTreeNode compactChild = compacted(child);
+			compactChild.setNodeValue(key);
+			result.getChildNodes().put(key, compactChild);
+		}
+		return result;
+	}
+
+	private static String dump(ExtensibleTreeNode node) {
+		StringBuilder result = new StringBuilder();
+		result.append(node.getNodeValue()).append(':').append(node.getNodeCounter()).append('(');
+		for (Entry<String, ExtensibleTreeNode> child : node.getChildNodes().entrySet())
+			result.append(child.getKey()).append('=').append(dump(child.getValue())).append(',');
+		return result.append(')').toString();
+	}
+}